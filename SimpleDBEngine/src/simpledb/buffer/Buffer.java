@@ -1,5 +1,6 @@
 package simpledb.buffer;
 
+import java.util.*;
 import simpledb.file.*;
 import simpledb.log.LogMgr;
 
@@ -9,7 +10,13 @@ import simpledb.log.LogMgr;
  * such as the associated disk block,
  * the number of times the buffer has been pinned,
  * whether its contents have been modified,
- * and if so, the id and lsn of the modifying transaction.
+ * and if so, the ids of the modifying transactions
+ * and the lsn of the latest modification.
+ * Several transactions can modify a buffer at the same time
+ * when they lock different records of its block.
+ * The buffer's monitor is its latch: a transaction holds it
+ * while reading or writing the page, and it is held while
+ * the page is written to disk.
  * @author Edward Sciore
  */
 public class Buffer {
@@ -18,8 +25,8 @@ public class Buffer {
    private Page contents;
    private BlockId blk = null;
    private int pins = 0;
-   private int txnum = -1;
-   private int lsn = -1;
+   private Set<Integer> modifiers = new HashSet<>();
+   private long lsn = -1;
 
    public Buffer(FileMgr fm, LogMgr lm) {
       this.fm = fm;
@@ -40,9 +47,9 @@ public class Buffer {
       return blk;
    }
 
-   public void setModified(int txnum, int lsn) {
-      this.txnum = txnum;
-      if (lsn >= 0)
+   public synchronized void setModified(int txnum, long lsn) {
+      modifiers.add(txnum);
+      if (lsn > this.lsn)
          this.lsn = lsn;
    }
 
@@ -55,8 +62,14 @@ public class Buffer {
       return pins > 0;
    }
    
-   public int modifyingTx() {
-      return txnum;
+   /**
+    * Return true if the specified transaction has modified
+    * the buffer since it was last written to disk.
+    * @param txnum the id of a transaction
+    * @return true if the transaction modified the buffer
+    */
+   public synchronized boolean isModifiedBy(int txnum) {
+      return modifiers.contains(txnum);
    }
 
    /**
@@ -76,14 +89,24 @@ public class Buffer {
    /**
     * Write the buffer to its disk block if it is dirty.
     */
-   void flush() {
-      if (txnum >= 0) {
+   synchronized void flush() {
+      if (!modifiers.isEmpty()) {
          lm.flush(lsn);
          fm.write(blk, contents);
-         txnum = -1;
+         modifiers.clear();
       }
    }
 
+   /**
+    * Detach the buffer from its block without writing it,
+    * because the block is about to be removed from its file.
+    */
+   synchronized void discard() {
+      blk = null;
+      modifiers.clear();
+      lsn = -1;
+   }
+
    /**
     * Increase the buffer's pin count.
     */
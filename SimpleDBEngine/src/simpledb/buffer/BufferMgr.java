@@ -10,6 +10,7 @@ import simpledb.log.LogMgr;
  */
 public class BufferMgr {
    private Buffer[] bufferpool;
+   private FileMgr fm;
    private int numAvailable;
    private static final long MAX_TIME = 10000; // 10 seconds
    
@@ -21,6 +22,7 @@ public class BufferMgr {
     * @param numbuffs the number of buffer slots to allocate
     */
    public BufferMgr(FileMgr fm, LogMgr lm, int numbuffs) {
+      this.fm = fm;
       bufferpool = new Buffer[numbuffs];
       numAvailable = numbuffs;
       for (int i=0; i<numbuffs; i++)
@@ -41,11 +43,32 @@ public class BufferMgr {
     */
    public synchronized void flushAll(int txnum) {
       for (Buffer buff : bufferpool)
-         if (buff.modifyingTx() == txnum)
-         buff.flush();
+         if (buff.isModifiedBy(txnum))
+            buff.flush();
    }
    
    
+   /**
+    * Truncates the specified file to the specified number
+    * of blocks, after detaching the buffers assigned to the
+    * removed blocks, so that they are never written back.
+    * The file is left unchanged if one of those buffers
+    * is pinned, since a transaction may still be using it.
+    * @param filename the name of the file
+    * @param numblocks the number of blocks to keep
+    * @return true if the file was truncated
+    */
+   public synchronized boolean truncate(String filename, int numblocks) {
+      for (Buffer buff : bufferpool)
+         if (isRemoved(buff.block(), filename, numblocks) && buff.isPinned())
+            return false;
+      for (Buffer buff : bufferpool)
+         if (isRemoved(buff.block(), filename, numblocks))
+            buff.discard();
+      fm.truncate(filename, numblocks);
+      return true;
+   }
+   
    /**
     * Unpins the specified data buffer. If its pin count
     * goes to zero, then notify any waiting threads.
@@ -84,6 +107,10 @@ public class BufferMgr {
       }
    }  
    
+   private boolean isRemoved(BlockId blk, String filename, int numblocks) {
+      return blk != null && blk.fileName().equals(filename) && blk.number() >= numblocks;
+   }
+   
    private boolean waitingTooLong(long starttime) {
       return System.currentTimeMillis() - starttime > MAX_TIME;
    }
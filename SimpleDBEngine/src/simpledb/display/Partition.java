@@ -0,0 +1,61 @@
+package simpledb.display;
+
+import simpledb.plan.Plan;
+
+import java.util.List;
+
+/**
+ * The ExecutionChain class for partition plans
+ * format: tablename.PARTITIONS(childExecutionChain, ...)
+ */
+public class Partition implements ExecutionChain {
+    String tablename;
+    List<ExecutionChain> children;
+    Plan main;
+
+    /**
+     * Creates a partition execution chain
+     *
+     * @param main      the partition plan
+     * @param tablename the name of the partitioned table
+     * @param children  the execution chains of the scanned partitions
+     */
+    public Partition(Plan main, String tablename, List<ExecutionChain> children) {
+        this.main = main;
+        this.tablename = tablename;
+        this.children = children;
+    }
+
+    /**
+     * Return the formatted name of the partition plan in main.
+     *
+     * @see ExecutionChain#getName()
+     */
+    public String getName() {
+        return "PARTITIONS";
+    }
+
+    /**
+     * Return the formatted string of the execution chain.
+     *
+     * @see ExecutionChain#toString()
+     */
+    public String toString() {
+        StringBuilder formattedChildren = new StringBuilder();
+        for (ExecutionChain child : children) {
+            if (formattedChildren.length() > 0)
+                formattedChildren.append(", ");
+            formattedChildren.append(child.toString());
+        }
+        return tablename + "." + getName() + "(" + formattedChildren + ")";
+    }
+
+    /**
+     * Return the total cost up till the partition execution chain.
+     *
+     * @see ExecutionChain#cost()
+     */
+    public int cost() {
+        return main.blocksAccessed();
+    }
+}
@@ -61,6 +61,16 @@ public class FileMgr {
       return blk;
    }
 
+   public synchronized void truncate(String filename, int numblocks) {
+      try {
+         RandomAccessFile f = getFile(filename);
+         f.setLength((long) numblocks * blocksize);
+      }
+      catch (IOException e) {
+         throw new RuntimeException("cannot truncate " + filename);
+      }
+   }
+
    public int length(String filename) {
       try {
          RandomAccessFile f = getFile(filename);
@@ -39,6 +39,19 @@ public class Page {
       bb.put(b);
    }
    
+   // Raw bytes have no length prefix; the caller supplies the length.
+   public byte[] getRawBytes(int offset, int length) {
+      bb.position(offset);
+      byte[] b = new byte[length];
+      bb.get(b);
+      return b;
+   }
+
+   public void setRawBytes(int offset, byte[] b) {
+      bb.position(offset);
+      bb.put(b);
+   }
+
    public String getString(int offset) {
       byte[] b = getBytes(offset);
       return new String(b, CHARSET);
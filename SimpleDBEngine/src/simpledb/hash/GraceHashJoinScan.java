@@ -1,8 +1,10 @@
 package simpledb.hash;
 
 import simpledb.materialize.TempTable;
+import simpledb.query.ColumnMap;
 import simpledb.query.Constant;
 import simpledb.query.Scan;
+import simpledb.record.Layout;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -32,8 +34,11 @@ public class GraceHashJoinScan implements Scan {
     boolean allPartitionsClosed;
     private int keyIterator = 0;
 
-    private Map<Constant, ArrayList<Map<String, Constant>>> hashTable;
+    private Map<Constant, ArrayList<Constant[]>> hashTable;
     private boolean isEmpty;
+    private Layout layout1, layout2;
+    private int joincol1, joincol2;
+    private ColumnMap columns = new ColumnMap();
 
     /**
      * Creates a block join scan for the specified LHS scan and
@@ -52,6 +57,12 @@ public class GraceHashJoinScan implements Scan {
         this.partitions = partitions1.size();
         this.partitions1 = partitions1;
         this.partitions2 = partitions2;
+        if (partitions > 0) {
+            layout1 = partitions1.get(0).getLayout();
+            layout2 = partitions2.get(0).getLayout();
+            joincol1 = layout1.column(joinfield1);
+            joincol2 = layout2.column(joinfield2);
+        }
 
         beforeFirst();
     }
@@ -84,16 +95,19 @@ public class GraceHashJoinScan implements Scan {
 
         //initialise hashtable
         hashTable = new HashMap<>();
+        //each row holds the values of s1 in column order
+        int numcols = layout1.schema().fields().size();
         while (s1.next()) {
-            if (!hashTable.containsKey(s1.getVal(joinfield1))) {
-                hashTable.put(s1.getVal(joinfield1), new ArrayList<>());
+            Constant key = s1.getVal(joincol1);
+            if (!hashTable.containsKey(key)) {
+                hashTable.put(key, new ArrayList<>());
             }
 
-            Map<String, Constant> row = new HashMap<>();
-            for (String field : partitions1.get(0).getLayout().schema().fields()) {
-                row.put(field, s1.getVal(field));
+            Constant[] row = new Constant[numcols];
+            for (int col = 0; col < numcols; col++) {
+                row[col] = s1.getVal(col);
             }
-            hashTable.get(s1.getVal(joinfield1)).add(row);
+            hashTable.get(key).add(row);
         }
         s1.close();
 
@@ -136,14 +150,15 @@ public class GraceHashJoinScan implements Scan {
 //            System.out.println("next...");
 
             //first check if there are duplicate key values in our hashtable
-            if (hashTable.keySet().contains(s2.getVal(joinfield2)) &&
-                    keyIterator < hashTable.get(s2.getVal(joinfield2)).size()) {
+            Constant key = s2.getVal(joincol2);
+            if (hashTable.keySet().contains(key) &&
+                    keyIterator < hashTable.get(key).size()) {
                 keyIterator++;
                 return true;
             }
             while (s2.next()) {
 //                System.out.println("next() s2.next()");
-                if (hashTable.keySet().contains(s2.getVal(joinfield2))) {
+                if (hashTable.keySet().contains(s2.getVal(joincol2))) {
                     keyIterator = 1;
                     return true;
                 }
@@ -153,6 +168,41 @@ public class GraceHashJoinScan implements Scan {
         }
     }
 
+    /**
+     * Returns the column number of the specified field,
+     * which is mapped to its column in the RHS partitions
+     * if they contain the field, or else to its column in
+     * the rows of the hash table.
+     *
+     * @see Scan#columnIndex(String)
+     */
+    public int columnIndex(String fldname) {
+        int col = columns.column(fldname);
+        if (col >= 0)
+            return col;
+        if (layout2 == null)
+            return -1;
+        if (layout2.schema().hasField(fldname))
+            return columns.add(fldname, 1, layout2.column(fldname));
+        else
+            return columns.add(fldname, 0, layout1.column(fldname));
+    }
+
+    public int getInt(int col) {
+        return getVal(col).asInt();
+    }
+
+    public String getString(int col) {
+        return getVal(col).asString();
+    }
+
+    public Constant getVal(int col) {
+        if (columns.scan(col) == 1)
+            return s2.getVal(columns.subColumn(col));
+        else
+            return currentRow()[columns.subColumn(col)];
+    }
+
     /**
      * Returns the integer value of the specified field.
      *
@@ -162,8 +212,7 @@ public class GraceHashJoinScan implements Scan {
         if (s2.hasField(fldname))
             return s2.getInt(fldname);
         else {
-            return hashTable.get(s2.getVal(joinfield2))
-                    .get(keyIterator - 1).get(fldname).asInt();
+            return currentRow()[layout1.column(fldname)].asInt();
         }
     }
 
@@ -176,7 +225,7 @@ public class GraceHashJoinScan implements Scan {
         if (s2.hasField(fldname))
             return s2.getVal(fldname);
         else {
-            return hashTable.get(s2.getVal(joinfield2)).get(keyIterator - 1).get(fldname);
+            return currentRow()[layout1.column(fldname)];
         }
     }
 
@@ -189,8 +238,7 @@ public class GraceHashJoinScan implements Scan {
         if (s2.hasField(fldname))
             return s2.getString(fldname);
         else {
-            return hashTable.get(s2.getVal(joinfield2)).
-                    get(keyIterator - 1).get(fldname).asString();
+            return currentRow()[layout1.column(fldname)].asString();
         }
     }
 
@@ -200,9 +248,11 @@ public class GraceHashJoinScan implements Scan {
      * @see Scan#hasField(String)
      */
     public boolean hasField(String fldname) {
-        return s2.hasField(fldname) ||
-                hashTable.get(s2.getVal(joinfield2)).
-                        get(keyIterator - 1).keySet().contains(fldname);
+        return s2.hasField(fldname) || layout1.schema().hasField(fldname);
+    }
+
+    private Constant[] currentRow() {
+        return hashTable.get(s2.getVal(joincol2)).get(keyIterator - 1);
     }
 
     /**
@@ -1,5 +1,6 @@
 package simpledb.index.planner;
 
+import java.io.*;
 import java.util.*;
 import simpledb.tx.Transaction;
 import simpledb.record.*;
@@ -104,8 +105,66 @@ public class IndexUpdatePlanner implements UpdatePlanner {
       return count;
    }
    
+   /**
+    * Load the rows of the CSV data into the table a page
+    * at a time, as the basic planner does, and then build
+    * the indexes of the table from the loaded records, one
+    * index at a time.
+    */
+   public int executeCopy(CopyData data, Reader csv, Transaction tx) {
+      String tblname = data.tableName();
+      Layout layout = mdm.getLayout(tblname, tx);
+      
+      // first, load the records
+      BulkLoader loader = BasicUpdatePlanner.load(data, csv, layout, tx);
+      
+      // then insert them into each index
+      if (loader.count() > 0) {
+         Map<String,IndexInfo> indexes = mdm.getIndexInfo(tblname, tx);
+         for (String fldname : indexes.keySet()) {
+            Index idx = indexes.get(fldname).open();
+            TableScan s = new TableScan(tx, tblname, layout);
+            s.moveToRid(new RID(loader.firstBlock(), -1));
+            while (s.next())
+               idx.insert(s.getVal(fldname), s.getRid());
+            s.close();
+            idx.close();
+         }
+      }
+      return loader.count();
+   }
+   
+   /**
+    * Compact the table, and then move the index records
+    * of each moved record from its old RID to its new one,
+    * one index at a time.
+    */
+   public int executeVacuum(VacuumData data, Transaction tx) {
+      String tblname = data.tableName();
+      Layout layout = mdm.getLayout(tblname, tx);
+      TableCompactor compactor = new TableCompactor(tx, tblname, layout);
+      compactor.compact();
+      Map<RID,RID> moves = compactor.moves();
+      
+      Map<String,IndexInfo> indexes = mdm.getIndexInfo(tblname, tx);
+      for (String fldname : indexes.keySet()) {
+         Index idx = indexes.get(fldname).open();
+         TableScan s = new TableScan(tx, tblname, layout);
+         for (Map.Entry<RID,RID> move : moves.entrySet()) {
+            s.moveToRid(move.getValue());
+            Constant val = s.getVal(fldname);
+            idx.delete(val, move.getKey());
+            idx.insert(val, move.getValue());
+         }
+         s.close();
+         idx.close();
+      }
+      return moves.size();
+   }
+   
    public int executeCreateTable(CreateTableData data, Transaction tx) {
-      mdm.createTable(data.tableName(), data.newSchema(), tx);
+      mdm.createTable(data.tableName(), data.newSchema(), data.layoutFormat(),
+                      data.dictionaryEncoded(), tx);
       return 0;
    }
    
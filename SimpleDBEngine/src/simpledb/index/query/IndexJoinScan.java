@@ -18,6 +18,8 @@ public class IndexJoinScan implements Scan {
    private String joinfield;
    private TableScan rhs;
    private boolean isEmpty;
+   private int joincol;
+   private ColumnMap columns = new ColumnMap();
    
    /**
     * Creates an index join scan for the specified LHS scan and 
@@ -32,6 +34,7 @@ public class IndexJoinScan implements Scan {
       this.idx  = idx;
       this.joinfield = joinfield;
       this.rhs = rhs;
+      joincol = lhs.columnIndex(joinfield);
       beforeFirst();
    }
    
@@ -107,6 +110,37 @@ public class IndexJoinScan implements Scan {
          return lhs.getString(fldname);
    }
    
+   /**
+    * Returns the column number of the specified field,
+    * which is mapped to its column in whichever scan
+    * contains the field.
+    * @see simpledb.query.Scan#columnIndex(java.lang.String)
+    */
+   public int columnIndex(String fldname) {
+      int col = columns.column(fldname);
+      if (col >= 0)
+         return col;
+      if (rhs.hasField(fldname))
+         return columns.add(fldname, 1, rhs.columnIndex(fldname));
+      else
+         return columns.add(fldname, 0, lhs.columnIndex(fldname));
+   }
+
+   public int getInt(int col) {
+      Scan s = (columns.scan(col) == 0) ? lhs : rhs;
+      return s.getInt(columns.subColumn(col));
+   }
+
+   public String getString(int col) {
+      Scan s = (columns.scan(col) == 0) ? lhs : rhs;
+      return s.getString(columns.subColumn(col));
+   }
+
+   public Constant getVal(int col) {
+      Scan s = (columns.scan(col) == 0) ? lhs : rhs;
+      return s.getVal(columns.subColumn(col));
+   }
+
    /** Returns true if the field is in the schema.
      * @see simpledb.query.Scan#hasField(java.lang.String)
      */
@@ -125,7 +159,7 @@ public class IndexJoinScan implements Scan {
    }
 
    private void resetIndex() {
-      Constant searchkey = lhs.getVal(joinfield);
+      Constant searchkey = lhs.getVal(joincol);
       idx.beforeFirst(searchkey);
    }
 }
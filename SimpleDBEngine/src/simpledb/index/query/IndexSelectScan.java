@@ -80,6 +80,38 @@ public class IndexSelectScan implements Scan {
       return ts.getVal(fldname);
    }
    
+   /**
+    * Returns the column of the field in the data records.
+    * @see simpledb.query.Scan#columnIndex(java.lang.String)
+    */
+   public int columnIndex(String fldname) {
+      return ts.columnIndex(fldname);
+   }
+
+   /**
+    * Returns the value of the field of the current data record.
+    * @see simpledb.query.Scan#getInt(int)
+    */
+   public int getInt(int col) {
+      return ts.getInt(col);
+   }
+
+   /**
+    * Returns the value of the field of the current data record.
+    * @see simpledb.query.Scan#getString(int)
+    */
+   public String getString(int col) {
+      return ts.getString(col);
+   }
+
+   /**
+    * Returns the value of the field of the current data record.
+    * @see simpledb.query.Scan#getVal(int)
+    */
+   public Constant getVal(int col) {
+      return ts.getVal(col);
+   }
+
    /**
     * Returns whether the data record has the specified field.
     * @see simpledb.query.Scan#hasField(java.lang.String)
@@ -12,6 +12,23 @@ import java.util.concurrent.*;
  * @author Edward Sciore
  */
 public abstract class ConnectionAdapter implements Connection {
+   /**
+    * The client info property that controls whether commits
+    * wait for the commit record to reach disk.
+    * Its value is either "on" (the default) or "off".
+    */
+   public static final String SYNCHRONOUS_COMMIT = "synchronous_commit";
+
+   /**
+    * The client info property that selects the concurrency
+    * control of the connection's transactions.
+    * Its value is either "locking" (the default), for two-phase
+    * locking, or "optimistic". An optimistic commit may fail
+    * validation, in which case the client should retry
+    * the transaction.
+    */
+   public static final String CONCURRENCY_CONTROL = "concurrency_control";
+
    public void clearWarnings() throws SQLException {
       throw new SQLException("operation not implemented");
    }
@@ -168,10 +185,40 @@ public abstract class ConnectionAdapter implements Connection {
       throw new SQLException("operation not implemented");
    }
    
-   public void setClientInfo(String name, String value) {
+   public void setClientInfo(String name, String value) throws SQLClientInfoException {
    }
    
-   public void setClientInfo(Properties properties) {
+   public void setClientInfo(Properties properties) throws SQLClientInfoException {
+      for (String name : properties.stringPropertyNames())
+         setClientInfo(name, properties.getProperty(name));
+   }
+
+   /**
+    * Interpret the value of the synchronous_commit property.
+    * @param value the property value
+    * @return false if commits should not wait for the log
+    */
+   protected static boolean parseSynchronousCommit(String value) throws SQLClientInfoException {
+      if (value.equalsIgnoreCase("on") || value.equalsIgnoreCase("true"))
+         return true;
+      else if (value.equalsIgnoreCase("off") || value.equalsIgnoreCase("false"))
+         return false;
+      else
+         throw new SQLClientInfoException("bad value for " + SYNCHRONOUS_COMMIT + ": " + value, null);
+   }
+   
+   /**
+    * Interpret the value of the concurrency_control property.
+    * @param value the property value
+    * @return true if transactions should be optimistic
+    */
+   protected static boolean parseConcurrencyControl(String value) throws SQLClientInfoException {
+      if (value.equalsIgnoreCase("optimistic") || value.equalsIgnoreCase("occ"))
+         return true;
+      else if (value.equalsIgnoreCase("locking") || value.equalsIgnoreCase("2pl"))
+         return false;
+      else
+         throw new SQLClientInfoException("bad value for " + CONCURRENCY_CONTROL + ": " + value, null);
    }
    
    public void setHoldability(int holdability) throws SQLException {
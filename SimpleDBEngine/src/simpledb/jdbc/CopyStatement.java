@@ -0,0 +1,24 @@
+package simpledb.jdbc;
+
+import java.io.Reader;
+import java.sql.*;
+
+/**
+ * The statements of both SimpleDB drivers implement this
+ * interface, which loads CSV data supplied by the client
+ * into a table with the bulk loader, as the SQL statement
+ * <i>copy tblname from 'file'</i> does for a file on the server.
+ * A client casts a statement to this interface to use it.
+ */
+public interface CopyStatement extends Statement {
+   /**
+    * Loads the rows of the CSV data into the specified table
+    * and commits. Each row holds a value for every field of
+    * the table, in the order in which the fields were created.
+    * Rolls back and throws an SQLException on an error.
+    * @param tblname the name of the table
+    * @param csv the CSV data
+    * @return the number of inserted records
+    */
+   public int copyIn(String tblname, Reader csv) throws SQLException;
+}
@@ -1,5 +1,6 @@
 package simpledb.jdbc.embedded;
 
+import java.sql.SQLClientInfoException;
 import java.sql.SQLException;
 import simpledb.server.SimpleDB;
 import simpledb.tx.Transaction;
@@ -15,6 +16,10 @@ class EmbeddedConnection extends ConnectionAdapter {
    private SimpleDB db;
    private Transaction currentTx;
    private Planner planner;
+   private boolean synchronousCommit = true;
+   private boolean readOnly = false;
+   private boolean optimistic = false;
+   private boolean closesdb;
 
    /**
     * Creates a connection
@@ -22,8 +27,19 @@ class EmbeddedConnection extends ConnectionAdapter {
     * @throws RemoteException
     */
    public EmbeddedConnection(SimpleDB db) {
+      this(db, false);
+   }
+
+   /**
+    * Creates a connection that, if the flag is true,
+    * shuts down the database when it is closed.
+    * @param db the database
+    * @param closesdb whether closing the connection closes the database
+    */
+   public EmbeddedConnection(SimpleDB db, boolean closesdb) {
       this.db = db;
-      currentTx = db.newTx();
+      this.closesdb = closesdb;
+      currentTx = newTx();
       planner = db.planner();
    }
 
@@ -35,18 +51,32 @@ class EmbeddedConnection extends ConnectionAdapter {
    }
 
    /**
-    * Closes the connection by committing the current transaction.
+    * Closes the connection by committing the current transaction,
+    * and shuts down the database if the connection owns it.
     */
    public void close() throws SQLException {
       currentTx.commit();
+      if (closesdb)
+         db.close();
    }
 
    /**
     * Commits the current transaction and begins a new one.
+    * If the commit fails (for example, if the transaction is
+    * optimistic and fails validation), the transaction is
+    * rolled back and an SQLException is thrown;
+    * a new transaction is begun in either case.
     */
    public void commit() throws SQLException {
-      currentTx.commit();
-      currentTx = db.newTx();
+      try {
+         currentTx.commit();
+      }
+      catch(RuntimeException e) {
+         currentTx.rollback();
+         currentTx = newTx();
+         throw new SQLException(e);
+      }
+      currentTx = newTx();
    }
 
    /**
@@ -54,7 +84,54 @@ class EmbeddedConnection extends ConnectionAdapter {
     */
    public void rollback() throws SQLException {
       currentTx.rollback();
-      currentTx = db.newTx();
+      currentTx = newTx();
+   }
+
+   /**
+    * Sets a client info property.
+    * The recognized properties are synchronous_commit,
+    * which applies to the current and all later transactions
+    * of this connection, and concurrency_control; as with
+    * setReadOnly, changing the concurrency control commits the
+    * current transaction and begins a new one.
+    * Other properties are ignored.
+    */
+   public void setClientInfo(String name, String value) throws SQLClientInfoException {
+      if (name.equals(SYNCHRONOUS_COMMIT)) {
+         synchronousCommit = parseSynchronousCommit(value);
+         currentTx.setSynchronousCommit(synchronousCommit);
+      }
+      else if (name.equals(CONCURRENCY_CONTROL)) {
+         boolean occ = parseConcurrencyControl(value);
+         if (occ == optimistic)
+            return;
+         optimistic = occ;
+         try {
+            commit();
+         }
+         catch(SQLException e) {
+            throw new SQLClientInfoException(e.getMessage(), null, e);
+         }
+      }
+   }
+
+   /**
+    * Puts the connection in read-only mode, or takes it out.
+    * The transactions of a read-only connection read a snapshot
+    * of the database, take no locks, write no log records
+    * and reject updates.
+    * If the mode changes, the current transaction is
+    * committed and a new one is begun in the new mode.
+    */
+   public void setReadOnly(boolean readOnly) throws SQLException {
+      if (readOnly == this.readOnly)
+         return;
+      this.readOnly = readOnly;
+      commit();
+   }
+
+   public boolean isReadOnly() throws SQLException {
+      return readOnly;
    }
 
    /**
@@ -65,5 +142,17 @@ class EmbeddedConnection extends ConnectionAdapter {
    Transaction getTransaction() {  
       return currentTx;
    }
+
+   private Transaction newTx() {
+      Transaction tx;
+      if (readOnly)
+         tx = db.newReadOnlyTx();
+      else if (optimistic)
+         tx = db.newOptimisticTx();
+      else
+         tx = db.newTx();
+      tx.setSynchronousCommit(synchronousCommit);
+      return tx;
+   }
 }
 
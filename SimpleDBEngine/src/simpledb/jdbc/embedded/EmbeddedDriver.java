@@ -14,12 +14,19 @@ public class EmbeddedDriver extends DriverAdapter {
    /**
     * Creates a new RemoteConnectionImpl object and 
     * returns it.
+    * The properties are passed to the connection
+    * as client info properties.
+    * The database is opened for the connection,
+    * and closing the connection shuts it down.
     * @see simpledb.jdbc.network.RemoteDriver#connect()
     */
    public EmbeddedConnection connect(String url, Properties p) throws SQLException {
       String dbname = url.replace("jdbc:simpledb:", "");
       SimpleDB db = new SimpleDB(dbname);
-      return new EmbeddedConnection(db);
+      EmbeddedConnection conn = new EmbeddedConnection(db, true);
+      if (p != null)
+         conn.setClientInfo(p);
+      return conn;
    }
 }
 
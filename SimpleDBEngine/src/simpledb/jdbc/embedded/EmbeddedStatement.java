@@ -1,15 +1,16 @@
 package simpledb.jdbc.embedded;
 
+import java.io.Reader;
 import java.sql.SQLException;
 import simpledb.tx.Transaction;
 import simpledb.plan.*;
-import simpledb.jdbc.StatementAdapter;
+import simpledb.jdbc.*;
 
 /**
  * The embedded implementation of Statement.
  * @author Edward Sciore
  */
-class EmbeddedStatement extends StatementAdapter {
+class EmbeddedStatement extends StatementAdapter implements CopyStatement {
    private EmbeddedConnection conn;
    private Planner planner;
    
@@ -54,6 +55,24 @@ class EmbeddedStatement extends StatementAdapter {
       }
    }
    
+   /**
+    * Loads the CSV data into the specified table by sending
+    * it to the planner and then committing.
+    * Rolls back and throws an SQLException on an error.
+    */
+   public int copyIn(String tblname, Reader csv) throws SQLException {
+      try {
+         Transaction tx = conn.getTransaction();
+         int result = planner.executeCopy(tblname, csv, tx);
+         conn.commit();
+         return result;
+      }
+      catch(RuntimeException e) {
+         conn.rollback();
+         throw new SQLException(e);
+      }
+   }
+   
    public void close() throws SQLException {
    }
 }
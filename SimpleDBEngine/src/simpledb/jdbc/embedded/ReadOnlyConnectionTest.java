@@ -0,0 +1,68 @@
+package simpledb.jdbc.embedded;
+
+import java.sql.*;
+import java.util.Iterator;
+import simpledb.server.SimpleDB;
+import simpledb.log.LogMgr;
+
+/**
+ * Tests the read-only mode of a connection.
+ * The transactions of a read-only connection must write
+ * nothing to the log, and must reject updates; a connection
+ * taken out of read-only mode must be able to update again.
+ */
+public class ReadOnlyConnectionTest {
+   public static void main(String[] args) throws SQLException {
+      SimpleDB db = new SimpleDB("readonlytest");
+      LogMgr lm = db.logMgr();
+      Connection conn = new EmbeddedConnection(db);
+      Statement stmt = conn.createStatement();
+      stmt.executeUpdate("create table T(a int, b varchar(9))");
+      for (int i=0; i<20; i++)
+         stmt.executeUpdate("insert into T(a, b) values (" + i + ", 'x" + i + "')");
+
+      conn.setReadOnly(true);
+      int before = logRecords(lm);
+      int sum = 0;
+      for (int k=0; k<200; k++) {
+         ResultSet rs = stmt.executeQuery("select a from T where a = " + (k % 20));
+         while (rs.next())
+            sum += rs.getInt("a");
+         rs.close();
+         conn.commit();
+      }
+      ResultSet rs = stmt.executeQuery("select a, b from T order by b");
+      int sorted = 0;
+      while (rs.next())
+         sorted++;
+      rs.close();
+      conn.commit();
+      System.out.println("200 read-only lookups found a sum of " + sum + " (expected 1900), "
+                         + "a sort returned " + sorted + " records (expected 20)");
+      System.out.println("The read-only transactions wrote " + (logRecords(lm) - before)
+                         + " log records (expected 0)");
+
+      try {
+         stmt.executeUpdate("insert into T(a, b) values (1, 'y')");
+         System.out.println("The read-only connection inserted a record");
+      }
+      catch(SQLException e) {
+         System.out.println("Insertion rejected: " + e.getMessage());
+      }
+      conn.setReadOnly(false);
+      System.out.println("After leaving read-only mode, "
+                         + stmt.executeUpdate("insert into T(a, b) values (1, 'y')")
+                         + " record inserted (expected 1)");
+      conn.close();
+   }
+
+   private static int logRecords(LogMgr lm) {
+      int count = 0;
+      Iterator<byte[]> iter = lm.iterator();
+      while (iter.hasNext()) {
+         iter.next();
+         count++;
+      }
+      return count;
+   }
+}
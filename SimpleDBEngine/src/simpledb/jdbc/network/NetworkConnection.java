@@ -34,5 +34,38 @@ public class NetworkConnection extends ConnectionAdapter {
          throw new SQLException(e);
       }
    }
+
+   public void setReadOnly(boolean readOnly) throws SQLException {
+      try {
+         rconn.setReadOnly(readOnly);
+      }
+      catch(Exception e) {
+         throw new SQLException(e);
+      }
+   }
+
+   public boolean isReadOnly() throws SQLException {
+      try {
+         return rconn.isReadOnly();
+      }
+      catch(Exception e) {
+         throw new SQLException(e);
+      }
+   }
+
+   public void setClientInfo(String name, String value) throws SQLClientInfoException {
+      try {
+         if (name.equals(SYNCHRONOUS_COMMIT))
+            rconn.setSynchronousCommit(parseSynchronousCommit(value));
+         else if (name.equals(CONCURRENCY_CONTROL))
+            rconn.setOptimistic(parseConcurrencyControl(value));
+      }
+      catch(SQLClientInfoException e) {
+         throw e;
+      }
+      catch(Exception e) {
+         throw new SQLClientInfoException(e.getMessage(), null, e);
+      }
+   }
 }
 
@@ -21,8 +21,8 @@ public class NetworkDriver extends DriverAdapter {
     * This stub is wrapped in a SimpleConnection object
     * and is returned. 
     * <P>
-    * The current implementation of this method ignores the 
-    * properties argument.
+    * The properties are passed to the connection
+    * as client info properties.
     * @see java.sql.Driver#connect(java.lang.String, Properties)
     */
    public Connection connect(String url, Properties prop) throws SQLException {
@@ -31,7 +31,10 @@ public class NetworkDriver extends DriverAdapter {
          Registry reg = LocateRegistry.getRegistry(host, 1099);
          RemoteDriver rdvr = (RemoteDriver) reg.lookup("simpledb");
          RemoteConnection rconn = rdvr.connect();
-         return new NetworkConnection(rconn);
+         NetworkConnection conn = new NetworkConnection(rconn);
+         if (prop != null)
+            conn.setClientInfo(prop);
+         return conn;
       }
       catch (Exception e) {
          throw new SQLException(e);
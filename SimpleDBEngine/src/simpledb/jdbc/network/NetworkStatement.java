@@ -1,7 +1,8 @@
 package simpledb.jdbc.network;
 
+import java.io.*;
 import java.sql.*;
-import simpledb.jdbc.StatementAdapter;
+import simpledb.jdbc.*;
 
 /**
  * An adapter class that wraps RemoteStatement.
@@ -9,7 +10,7 @@ import simpledb.jdbc.StatementAdapter;
  * into SQLExceptions.
  * @author Edward Sciore
  */
-public class NetworkStatement extends StatementAdapter {
+public class NetworkStatement extends StatementAdapter implements CopyStatement {
    private RemoteStatement rstmt;
 
    public NetworkStatement(RemoteStatement s) {
@@ -35,6 +36,21 @@ public class NetworkStatement extends StatementAdapter {
       }
    }
 
+   /**
+    * Reads all of the CSV data on the client and sends it
+    * to the server in a single call.
+    */
+   public int copyIn(String tblname, Reader csv) throws SQLException {
+      try {
+         StringWriter data = new StringWriter();
+         csv.transferTo(data);
+         return rstmt.copyIn(tblname, data.toString());
+      }
+      catch(Exception e) {
+         throw new SQLException(e);
+      }
+   }
+
    public void close() throws SQLException {
       try {
          rstmt.close();
@@ -11,5 +11,9 @@ import java.rmi.*;
 public interface RemoteConnection extends Remote {
    public RemoteStatement createStatement() throws RemoteException;
    public void close() throws RemoteException;
+   public void setSynchronousCommit(boolean synchronous) throws RemoteException;
+   public void setReadOnly(boolean readOnly) throws RemoteException;
+   public void setOptimistic(boolean optimistic) throws RemoteException;
+   public boolean isReadOnly() throws RemoteException;
 }
 
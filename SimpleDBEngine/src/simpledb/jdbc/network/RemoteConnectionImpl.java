@@ -16,6 +16,9 @@ class RemoteConnectionImpl extends UnicastRemoteObject implements RemoteConnecti
    private SimpleDB db;
    private Transaction currentTx;
    private Planner planner;
+   private boolean synchronousCommit = true;
+   private boolean readOnly = false;
+   private boolean optimistic = false;
    
    /**
     * Creates a remote connection
@@ -24,7 +27,7 @@ class RemoteConnectionImpl extends UnicastRemoteObject implements RemoteConnecti
     */
    RemoteConnectionImpl(SimpleDB db) throws RemoteException {
       this.db = db;
-      currentTx = db.newTx();
+      currentTx = newTx();
       planner = db.planner();
    }
    
@@ -44,6 +47,50 @@ class RemoteConnectionImpl extends UnicastRemoteObject implements RemoteConnecti
    public void close() throws RemoteException {
       currentTx.commit();
    }
+
+   /**
+    * Specifies whether the commits of this connection
+    * wait for the commit record to reach disk.
+    * The setting applies to the current and all later transactions.
+    * @see simpledb.jdbc.network.RemoteConnection#setSynchronousCommit(boolean)
+    */
+   public void setSynchronousCommit(boolean synchronous) throws RemoteException {
+      synchronousCommit = synchronous;
+      currentTx.setSynchronousCommit(synchronous);
+   }
+
+   /**
+    * Puts the connection in read-only mode, or takes it out.
+    * If the mode changes, the current transaction is
+    * committed and a new one is begun in the new mode.
+    * @see simpledb.jdbc.network.RemoteConnection#setReadOnly(boolean)
+    */
+   public void setReadOnly(boolean readOnly) throws RemoteException {
+      if (readOnly == this.readOnly)
+         return;
+      this.readOnly = readOnly;
+      commit();
+   }
+
+   /**
+    * Specifies whether the transactions of this connection
+    * are optimistic. If the setting changes, the current
+    * transaction is committed and a new one is begun.
+    * @see simpledb.jdbc.network.RemoteConnection#setOptimistic(boolean)
+    */
+   public void setOptimistic(boolean optimistic) throws RemoteException {
+      if (optimistic == this.optimistic)
+         return;
+      this.optimistic = optimistic;
+      commit();
+   }
+
+   /**
+    * @see simpledb.jdbc.network.RemoteConnection#isReadOnly()
+    */
+   public boolean isReadOnly() throws RemoteException {
+      return readOnly;
+   }
    
 // The following methods are used by the server-side classes.
    
@@ -59,10 +106,20 @@ class RemoteConnectionImpl extends UnicastRemoteObject implements RemoteConnecti
    /**
     * Commits the current transaction,
     * and begins a new one.
+    * If the commit fails, the transaction is rolled back;
+    * a new transaction is begun in either case.
     */
    void commit() {
-      currentTx.commit();
-      currentTx = db.newTx();
+      try {
+         currentTx.commit();
+      }
+      catch(RuntimeException e) {
+         currentTx.rollback();
+         throw e;
+      }
+      finally {
+         currentTx = newTx();
+      }
    }
    
    /**
@@ -71,7 +128,19 @@ class RemoteConnectionImpl extends UnicastRemoteObject implements RemoteConnecti
     */
    void rollback() {
       currentTx.rollback();
-      currentTx = db.newTx();
+      currentTx = newTx();
+   }
+
+   private Transaction newTx() {
+      Transaction tx;
+      if (readOnly)
+         tx = db.newReadOnlyTx();
+      else if (optimistic)
+         tx = db.newOptimisticTx();
+      else
+         tx = db.newTx();
+      tx.setSynchronousCommit(synchronousCommit);
+      return tx;
    }
 }
 
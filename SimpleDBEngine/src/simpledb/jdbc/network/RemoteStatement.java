@@ -11,6 +11,7 @@ import java.rmi.*;
 public interface RemoteStatement extends Remote {
    public RemoteResultSet executeQuery(String qry) throws RemoteException;
    public int            executeUpdate(String cmd) throws RemoteException;
+   public int            copyIn(String tblname, String csv) throws RemoteException;
    public void           close() throws RemoteException;
 }
 
@@ -4,6 +4,7 @@ import simpledb.plan.Plan;
 import simpledb.plan.Planner;
 import simpledb.tx.Transaction;
 
+import java.io.StringReader;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 
@@ -59,6 +60,25 @@ class RemoteStatementImpl extends UnicastRemoteObject implements RemoteStatement
       }
    }
    
+   /**
+    * Loads the CSV data into the specified table.
+    * The method sends the data to the planner,
+    * which loads it with the bulk loader.
+    * @see simpledb.jdbc.network.RemoteStatement#copyIn(java.lang.String, java.lang.String)
+    */
+   public int copyIn(String tblname, String csv) throws RemoteException {
+      try {
+         Transaction tx = rconn.getTransaction();
+         int result = planner.executeCopy(tblname, new StringReader(csv), tx);
+         rconn.commit();
+         return result;
+      }
+      catch(RuntimeException e) {
+         rconn.rollback();
+         throw e;
+      }
+   }
+   
    public void close() {
    }
 }
@@ -0,0 +1,94 @@
+package simpledb.log;
+
+import java.util.*;
+import simpledb.file.*;
+
+/**
+ * A persistent dictionary that assigns a small integer id
+ * to each file name mentioned in the log.
+ * Log records store the id instead of repeating the name.
+ * <p>
+ * The dictionary is kept in its own file.
+ * Each block holds the number of names in it, followed by the names;
+ * the id of a name is its position in the file.
+ * A new name is written to disk as soon as it is assigned an id,
+ * so the dictionary on disk always covers every log record
+ * that has been written.
+ */
+class FileDictionary {
+   private FileMgr fm;
+   private String dictfile;
+   private List<String> names = new ArrayList<>();
+   private Map<String,Integer> ids = new HashMap<>();
+   private Page page;
+   private BlockId currentblk;
+   private int currentpos;
+
+   /**
+    * Reads the dictionary from the specified file,
+    * creating the file if it does not yet exist.
+    * @param fm the file manager
+    * @param dictfile the name of the dictionary file
+    */
+   public FileDictionary(FileMgr fm, String dictfile) {
+      this.fm = fm;
+      this.dictfile = dictfile;
+      page = new Page(new byte[fm.blockSize()]);
+      int size = fm.length(dictfile);
+      if (size == 0) {
+         currentblk = appendNewBlock();
+         return;
+      }
+      for (int i=0; i<size; i++) {
+         currentblk = new BlockId(dictfile, i);
+         fm.read(currentblk, page);
+         int count = page.getInt(0);
+         currentpos = Integer.BYTES;
+         for (int j=0; j<count; j++) {
+            String name = page.getString(currentpos);
+            ids.put(name, names.size());
+            names.add(name);
+            currentpos += Page.maxLength(name.length());
+         }
+      }
+   }
+
+   /**
+    * Returns the id of the specified file name,
+    * assigning it a new id if necessary.
+    * @param filename the name of a file
+    * @return the id of the file
+    */
+   public synchronized int id(String filename) {
+      Integer id = ids.get(filename);
+      if (id != null)
+         return id;
+      if (currentpos + Page.maxLength(filename.length()) > fm.blockSize())
+         currentblk = appendNewBlock();
+      page.setString(currentpos, filename);
+      currentpos += Page.maxLength(filename.length());
+      page.setInt(0, page.getInt(0) + 1);
+      fm.write(currentblk, page);
+      id = names.size();
+      ids.put(filename, id);
+      names.add(filename);
+      return id;
+   }
+
+   /**
+    * Returns the file name having the specified id.
+    * @param id the id of a file
+    * @return the name of the file
+    */
+   public synchronized String name(int id) {
+      return names.get(id);
+   }
+
+   private BlockId appendNewBlock() {
+      BlockId blk = fm.append(dictfile);
+      page.setInt(0, 0);
+      fm.write(blk, page);
+      currentpos = Integer.BYTES;
+      return blk;
+   }
+}
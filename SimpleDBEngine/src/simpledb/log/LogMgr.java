@@ -8,6 +8,17 @@ import simpledb.file.*;
  * writing log records into a log file. The tail of 
  * the log is kept in a bytebuffer, which is flushed
  * to disk when needed. 
+ * <p>
+ * The LSN of a log record is its address in the log file:
+ * the block number times the block size, plus the distance
+ * of the record from the end of its block.
+ * LSNs therefore increase with every append, survive restarts,
+ * and allow a record to be read back directly by {@link #read(long)}.
+ * LSNs are longs, so the log can grow past 2 GB.
+ * <p>
+ * The log manager also keeps a dictionary of the file names
+ * mentioned in log records, so that a record can refer
+ * to a file by a small id instead of by its name.
  * @author Edward Sciore
  */
 public class LogMgr {
@@ -15,8 +26,11 @@ public class LogMgr {
    private String logfile;
    private Page logpage;
    private BlockId currentblk;
-   private int latestLSN = 0;
-   private int lastSavedLSN = 0;
+   private long latestLSN = 0;
+   private long lastSavedLSN = 0;
+   private long flushInterval = 200; // milliseconds
+   private Thread flusher = null;
+   private FileDictionary dictionary;
 
    /**
     * Creates the manager for the specified log file.
@@ -37,6 +51,9 @@ public class LogMgr {
          currentblk = new BlockId(logfile, logsize-1);
          fm.read(currentblk, logpage);
       }
+      latestLSN = lsn(currentblk.number(), logpage.getInt(0));
+      lastSavedLSN = latestLSN;
+      dictionary = new FileDictionary(fm, logfile + ".files");
    }
 
    /**
@@ -45,16 +62,109 @@ public class LogMgr {
     * All earlier log records will also be written to disk.
     * @param lsn the LSN of a log record
     */
-   public void flush(int lsn) {
+   public synchronized void flush(long lsn) {
       if (lsn >= lastSavedLSN)
          flush();
    }
 
-   public Iterator<byte[]> iterator() {
+   /**
+    * Arranges for the log record corresponding to the
+    * specified LSN to be written to disk within the
+    * flush interval, without waiting for the write.
+    * The writing is done by a background flusher thread,
+    * which is started on the first call.
+    * @param lsn the LSN of a log record
+    */
+   public synchronized void flushAsync(long lsn) {
+      if (lsn < lastSavedLSN)
+         return;
+      if (flusher == null) {
+         flusher = new Thread(this::runFlusher, "log flusher");
+         flusher.setDaemon(true);
+         flusher.start();
+      }
+   }
+
+   /**
+    * Stops the background flusher, waiting for it to finish,
+    * and writes the log buffer to disk, so that no
+    * asynchronously-committed record is left in memory.
+    * A later call to flushAsync starts a new flusher.
+    */
+   public void close() {
+      Thread t;
+      synchronized (this) {
+         t = flusher;
+         flusher = null;
+         notifyAll();
+      }
+      if (t != null) {
+         try {
+            t.join();
+         }
+         catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+      }
+      synchronized (this) {
+         if (latestLSN > lastSavedLSN)
+            flush();
+      }
+   }
+
+   /**
+    * Sets how long the background flusher may let
+    * asynchronously-committed log records stay in memory.
+    * @param millis the flush interval, in milliseconds
+    */
+   public synchronized void setFlushInterval(long millis) {
+      flushInterval = millis;
+   }
+
+   public synchronized Iterator<byte[]> iterator() {
       flush();
       return new LogIterator(fm, currentblk);
    }
 
+   /**
+    * Returns the log record having the specified LSN.
+    * If the record is in the tail of the log, it is read
+    * from the log buffer; otherwise its block is read from disk.
+    * @param lsn the LSN of a log record
+    * @return the bytes of that log record
+    */
+   public synchronized byte[] read(long lsn) {
+      int blknum = (int) (lsn / fm.blockSize());
+      int recpos = fm.blockSize() - (int) (lsn % fm.blockSize());
+      if (blknum == currentblk.number())
+         return logpage.getBytes(recpos);
+      Page p = new Page(new byte[fm.blockSize()]);
+      fm.read(new BlockId(logfile, blknum), p);
+      return p.getBytes(recpos);
+   }
+
+   /**
+    * Returns the id of the specified file in the
+    * log's file dictionary, adding the file if necessary.
+    * The dictionary is written to disk before the method
+    * returns, so a log record can safely refer to the id.
+    * @param filename the name of a file
+    * @return the id of the file
+    */
+   public int fileId(String filename) {
+      return dictionary.id(filename);
+   }
+
+   /**
+    * Returns the name of the file having the specified id
+    * in the log's file dictionary.
+    * @param id the id of a file
+    * @return the name of the file
+    */
+   public String fileName(int id) {
+      return dictionary.name(id);
+   }
+
    /**
     * Appends a log record to the log buffer. 
     * The record consists of an arbitrary array of bytes. 
@@ -67,7 +177,7 @@ public class LogMgr {
     * @param logrec a byte buffer containing the bytes.
     * @return the LSN of the final value
     */
-   public synchronized int append(byte[] logrec) {
+   public synchronized long append(byte[] logrec) {
       int boundary = logpage.getInt(0);
       int recsize = logrec.length;
       int bytesneeded = recsize + Integer.BYTES;
@@ -80,10 +190,18 @@ public class LogMgr {
 
       logpage.setBytes(recpos, logrec);
       logpage.setInt(0, recpos); // the new boundary
-      latestLSN += 1;
+      latestLSN = lsn(currentblk.number(), recpos);
       return latestLSN;
    }
 
+   /**
+    * Return the LSN of the record that starts at the
+    * specified position of the specified log block.
+    */
+   private long lsn(int blknum, int recpos) {
+      return (long) blknum * fm.blockSize() + (fm.blockSize() - recpos);
+   }
+
    /**
     * Initialize the bytebuffer and append it to the log file.
     */
@@ -94,6 +212,30 @@ public class LogMgr {
       return blk;
    }
 
+   /**
+    * The body of the background flusher thread.
+    * Every flush interval, it writes the log buffer
+    * to disk if it holds records that are not yet saved.
+    * It stops when {@link #close} replaces it.
+    * The thread waits on the log manager's monitor instead
+    * of sleeping, so that close can wake it without an
+    * interrupt, which could abort a write in progress.
+    */
+   private void runFlusher() {
+      try {
+         synchronized (this) {
+            while (flusher == Thread.currentThread()) {
+               wait(flushInterval);
+               if (latestLSN > lastSavedLSN)
+                  flush();
+            }
+         }
+      }
+      catch(InterruptedException e) {
+         // the flusher stops
+      }
+   }
+
    /**
     * Write the buffer to the log file.
     */
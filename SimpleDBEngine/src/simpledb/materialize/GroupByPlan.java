@@ -7,6 +7,7 @@ import simpledb.display.Group;
 import simpledb.tx.Transaction;
 import simpledb.record.Schema;
 import simpledb.plan.Plan;
+import simpledb.plan.ProjectPlan;
 import simpledb.query.*;
 
 /**
@@ -26,6 +27,9 @@ public class GroupByPlan implements Plan {
      * collection of group fields,
      * and the aggregation is computed by the
      * specified collection of aggregation functions.
+     * The underlying records are projected on the fields
+     * that the grouping reads before they are sorted, so
+     * the other fields are neither read nor copied.
      *
      * @param p           a plan for the underlying query
      * @param groupfields the group fields
@@ -33,6 +37,12 @@ public class GroupByPlan implements Plan {
      * @param tx          the calling transaction
      */
     public GroupByPlan(Transaction tx, Plan p, List<String> groupfields, List<AggregationFn> aggfns) {
+        List<String> fields = new ArrayList<>(groupfields);
+        for (AggregationFn fn : aggfns)
+            if (p.schema().hasField(fn.field()) && !fields.contains(fn.field()))
+                fields.add(fn.field());
+        if (!fields.isEmpty() && fields.size() < p.schema().fields().size())
+            p = new ProjectPlan(p, fields);
         LinkedHashMap<String, Boolean> mapGroupfields = new LinkedHashMap<>();
         for (String field : groupfields) {
             mapGroupfields.put(field, true);
@@ -12,7 +12,8 @@ public class GroupByScan implements Scan {
    private Scan s;
    private List<String> groupfields;
    private List<AggregationFn> aggfns;
-   private GroupValue groupval;
+   private int[] groupcols;
+   private Constant[] groupvals;
    private boolean moregroups;
    
    /**
@@ -25,6 +26,9 @@ public class GroupByScan implements Scan {
       this.s = s;
       this.groupfields = groupfields;
       this.aggfns = aggfns;
+      groupcols = new int[groupfields.size()];
+      for (int i=0; i<groupcols.length; i++)
+         groupcols[i] = s.columnIndex(groupfields.get(i));
       beforeFirst();
    }
    
@@ -49,7 +53,8 @@ public class GroupByScan implements Scan {
     * it encounters a record having a different key.
     * The aggregation functions are called for each record
     * in the group. 
-    * The values of the grouping fields for the group are saved.
+    * The values of the grouping fields for the group are saved
+    * in an array, in the order of the group fields.
     * @see simpledb.query.Scan#next()
     */
    public boolean next() {
@@ -58,10 +63,11 @@ public class GroupByScan implements Scan {
       for (AggregationFn fn : aggfns) {
          fn.processFirst(s);
       }
-      groupval = new GroupValue(s, groupfields);
+      groupvals = new Constant[groupcols.length];
+      for (int i=0; i<groupcols.length; i++)
+         groupvals[i] = groupFieldVal(i);
       while(moregroups = s.next()) {
-         GroupValue gv = new GroupValue(s, groupfields);
-         if (!groupval.equals(gv))
+         if (!inGroup())
             break;
          for (AggregationFn fn : aggfns)
             fn.processNext(s);
@@ -77,6 +83,38 @@ public class GroupByScan implements Scan {
       s.close();
    }
    
+   /**
+    * Get the column number of the specified field.
+    * The group fields are numbered first, in order,
+    * followed by the fields of the aggregation functions.
+    * @see simpledb.query.Scan#columnIndex(java.lang.String)
+    */
+   public int columnIndex(String fldname) {
+      int col = groupfields.indexOf(fldname);
+      if (col >= 0)
+         return col;
+      for (int i=0; i<aggfns.size(); i++)
+         if (aggfns.get(i).fieldName().equals(fldname))
+            return groupfields.size() + i;
+      return -1;
+   }
+
+   public Constant getVal(int col) {
+      int n = groupfields.size();
+      if (col < n)
+         return groupvals[col];
+      else
+         return aggfns.get(col - n).value();
+   }
+
+   public int getInt(int col) {
+      return getVal(col).asInt();
+   }
+
+   public String getString(int col) {
+      return getVal(col).asString();
+   }
+
    /**
     * Get the Constant value of the specified field.
     * If the field is a group field, then its value can
@@ -86,8 +124,9 @@ public class GroupByScan implements Scan {
     * @see simpledb.query.Scan#getVal(java.lang.String)
     */
    public Constant getVal(String fldname) {
-      if (groupfields.contains(fldname))
-         return groupval.getVal(fldname);
+      int col = groupfields.indexOf(fldname);
+      if (col >= 0)
+         return groupvals[col];
       for (AggregationFn fn : aggfns)
          if (fn.fieldName().equals(fldname))
          return fn.value();
@@ -136,5 +175,26 @@ public class GroupByScan implements Scan {
    public List<AggregationFn> getAggFns() {
       return aggfns;
    }
+
+   /**
+    * Return the value of the specified group field
+    * in the current record of the underlying scan,
+    * reading it by column if the scan has resolved one.
+    */
+   private Constant groupFieldVal(int i) {
+      int col = groupcols[i];
+      return (col >= 0) ? s.getVal(col) : s.getVal(groupfields.get(i));
+   }
+
+   /**
+    * Return true if the current record of the underlying
+    * scan has the values of the current group.
+    */
+   private boolean inGroup() {
+      for (int i=0; i<groupcols.length; i++)
+         if (!groupFieldVal(i).equals(groupvals[i]))
+            return false;
+      return true;
+   }
 }
 
@@ -1,5 +1,7 @@
 package simpledb.materialize;
 
+import java.util.List;
+
 import simpledb.display.ExecutionChain;
 import simpledb.tx.Transaction;
 import simpledb.record.*;
@@ -35,10 +37,14 @@ public class MaterializePlan implements Plan {
       TempTable temp = new TempTable(tx, sch);
       Scan src = srcplan.open();
       UpdateScan dest = temp.open();
+      List<String> fields = sch.fields();
+      int[] cols = new int[fields.size()];
+      for (int i=0; i<cols.length; i++)
+         cols[i] = src.columnIndex(fields.get(i));
       while (src.next()) {
          dest.insert();
-         for (String fldname : sch.fields())
-            dest.setVal(fldname, src.getVal(fldname));
+         for (int i=0; i<cols.length; i++)
+            dest.setVal(fields.get(i), src.getVal(cols[i]));
       }
       src.close();
       dest.beforeFirst();
@@ -55,7 +61,7 @@ public class MaterializePlan implements Plan {
    public int blocksAccessed() {
       // create a dummy Layout object to calculate record length
       Layout layout = new Layout(srcplan.schema());
-      double rpb = (double) (tx.blockSize() / layout.slotSize());
+      double rpb = (double) RecordPage.slotCount(tx.blockSize(), layout.slotSize());
       return (int) Math.ceil(srcplan.recordsOutput() / rpb);
    }
    
@@ -14,6 +14,8 @@ public class MergeJoinScan implements Scan {
     private Constant joinval = null;
     private CondOp condOp;
     private boolean isEmpty;
+    private int col1, col2;
+    private ColumnMap columns = new ColumnMap();
 
     /**
      * Create a mergejoin scan for the two underlying sorted scans.
@@ -30,6 +32,8 @@ public class MergeJoinScan implements Scan {
         this.fldname1 = fldname1;
         this.fldname2 = fldname2;
         this.condOp = condOp; //condOp is passed in for future development of non-equi mergejoin
+        col1 = s1.columnIndex(fldname1);
+        col2 = s2.columnIndex(fldname2);
         beforeFirst();
     }
 
@@ -77,21 +81,21 @@ public class MergeJoinScan implements Scan {
 
         boolean hasmore2 = s2.next();
 
-        if (hasmore2 && s2.getVal(fldname2).equals(joinval))
+        if (hasmore2 && s2.getVal(col2).equals(joinval))
             return true;
 
         boolean hasmore1 = s1.next();
-        if (hasmore1 && condOp.evaluate(s1.getVal(fldname1), joinval)) {
+        if (hasmore1 && condOp.evaluate(s1.getVal(col1), joinval)) {
             s2.restorePosition();
             return true;
         }
         while (hasmore1 && hasmore2) {
-            Constant v1 = s1.getVal(fldname1);
-            Constant v2 = s2.getVal(fldname2);
+            Constant v1 = s1.getVal(col1);
+            Constant v2 = s2.getVal(col2);
 
             if (condOp.evaluate(v1, v2)) {
                 s2.savePosition();
-                joinval = s2.getVal(fldname2);
+                joinval = s2.getVal(col2);
                 return true;
             }
 
@@ -103,6 +107,38 @@ public class MergeJoinScan implements Scan {
         return false;
     }
 
+    /**
+     * Return the column number of the specified field,
+     * which is mapped to its column in whichever scan
+     * contains the field.
+     *
+     * @see simpledb.query.Scan#columnIndex(java.lang.String)
+     */
+    public int columnIndex(String fldname) {
+        int col = columns.column(fldname);
+        if (col >= 0)
+            return col;
+        if (s1.hasField(fldname))
+            return columns.add(fldname, 0, s1.columnIndex(fldname));
+        else
+            return columns.add(fldname, 1, s2.columnIndex(fldname));
+    }
+
+    public int getInt(int col) {
+        Scan s = (columns.scan(col) == 0) ? s1 : s2;
+        return s.getInt(columns.subColumn(col));
+    }
+
+    public String getString(int col) {
+        Scan s = (columns.scan(col) == 0) ? s1 : s2;
+        return s.getString(columns.subColumn(col));
+    }
+
+    public Constant getVal(int col) {
+        Scan s = (columns.scan(col) == 0) ? s1 : s2;
+        return s.getVal(columns.subColumn(col));
+    }
+
     /**
      * Return the integer value of the specified field.
      * The value is obtained from whichever scan
@@ -10,6 +10,8 @@ import simpledb.query.*;
  */
 public class RecordComparator implements Comparator<Scan> {
    public LinkedHashMap<String, Boolean> fields;
+   private Scan scan1, scan2;
+   private int[] cols1, cols2;
    
    /**
     * Create a comparator using the specified fields,
@@ -33,15 +35,33 @@ public class RecordComparator implements Comparator<Scan> {
     * @return the result of comparing each scan's current record according to the field list
     */
    public int compare(Scan s1, Scan s2) {
-      for (Map.Entry<String, Boolean> entry : fields.entrySet()) {
-         Constant val1 = s1.getVal(entry.getKey());
-         Constant val2 = s2.getVal(entry.getKey());
+      // the columns of each argument are resolved once per scan
+      if (s1 != scan1) {
+         scan1 = s1;
+         cols1 = columns(s1);
+      }
+      if (s2 != scan2) {
+         scan2 = s2;
+         cols2 = columns(s2);
+      }
+      int i = 0;
+      for (Boolean isAsc : fields.values()) {
+         Constant val1 = s1.getVal(cols1[i]);
+         Constant val2 = s2.getVal(cols2[i]);
          int result = val1.compareTo(val2);
-         Boolean isAsc = entry.getValue();
+         i++;
          if (result != 0)
             //we included the asc/dsc logic here for smoother integration
             return isAsc ? result : -1 * result;
       }
       return 0;
    }
+
+   private int[] columns(Scan s) {
+      int[] cols = new int[fields.size()];
+      int i = 0;
+      for (String fldname : fields.keySet())
+         cols[i++] = s.columnIndex(fldname);
+      return cols;
+   }
 }
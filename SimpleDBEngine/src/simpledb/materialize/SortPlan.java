@@ -121,14 +121,16 @@ public class SortPlan implements Plan {
         src.beforeFirst();
         if (!src.next())
             return temps;
-        TempTable currenttemp = new TempTable(tx, sch);
+        // the runs store encoded values by their codes
+        Map<String, FieldDictionary> dicts = TempTable.dictionaries(src, sch);
+        TempTable currenttemp = new TempTable(tx, sch, dicts);
         temps.add(currenttemp);
         UpdateScan currentscan = currenttemp.open();
         while (copy(src, currentscan))
             if (comp.compare(src, currentscan) < 0) {
                 // start a new run everytime the order is wrong. average case generating record number of runs/2
                 currentscan.close();
-                currenttemp = new TempTable(tx, sch);
+                currenttemp = new TempTable(tx, sch, dicts);
                 temps.add(currenttemp);
                 currentscan = (UpdateScan) currenttemp.open();
             }
@@ -151,11 +153,11 @@ public class SortPlan implements Plan {
     private TempTable mergeTwoRuns(TempTable p1, TempTable p2) {
         Scan src1 = p1.open();
         Scan src2 = p2.open();
-        TempTable result = new TempTable(tx, sch);
-        UpdateScan dest = result.open();
-
         boolean hasmore1 = src1.next();
         boolean hasmore2 = src2.next();
+        TempTable result = new TempTable(tx, sch, TempTable.dictionaries(src1, sch));
+        UpdateScan dest = result.open();
+
         while (hasmore1 && hasmore2) {
             if (comp.compare(src1, src2) < 0)
                 hasmore1 = copy(src1, dest);
@@ -103,6 +103,28 @@ public class SortScan implements Scan {
             s2.close();
     }
 
+    /**
+     * Return the column number of the specified field.
+     * All runs have the same layout, so the column
+     * is the same in each of them.
+     * @see simpledb.query.Scan#columnIndex(java.lang.String)
+     */
+    public int columnIndex(String fldname) {
+        return (s1 == null) ? -1 : s1.columnIndex(fldname);
+    }
+
+    public Constant getVal(int col) {
+        return currentscan.getVal(col);
+    }
+
+    public int getInt(int col) {
+        return currentscan.getInt(col);
+    }
+
+    public String getString(int col) {
+        return currentscan.getString(col);
+    }
+
     /**
      * Get the Constant value of the specified field
      * of the current scan.
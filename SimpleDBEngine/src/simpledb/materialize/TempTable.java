@@ -1,5 +1,8 @@
 package simpledb.materialize;
 
+import static java.sql.Types.INTEGER;
+import java.util.*;
+
 import simpledb.tx.Transaction;
 import simpledb.query.*;
 import simpledb.record.*;
@@ -28,6 +31,40 @@ public class TempTable {
       tblname = nextTableName();
       layout = new Layout(sch);
    }
+
+   /**
+    * Allocate a name for a new temporary table having the
+    * specified schema, whose specified string fields are
+    * encoded with the given dictionaries.
+    * Values copied from a scan that share those dictionaries
+    * are then stored by their codes.
+    * @param sch the new table's schema
+    * @param dictionaries the dictionaries of the encoded fields
+    * @param tx the calling transaction
+    */
+   public TempTable(Transaction tx, Schema sch, Map<String,FieldDictionary> dictionaries) {
+      this.tx = tx;
+      tblname = nextTableName();
+      layout = new Layout(sch, Layout.FIXED, dictionaries);
+   }
+
+   /**
+    * Return the dictionaries of the encoded string fields
+    * in the current record of the specified scan.
+    * @param s a scan, positioned at a record
+    * @param sch the schema of the scan
+    * @return the dictionaries of the scan's encoded fields
+    */
+   public static Map<String,FieldDictionary> dictionaries(Scan s, Schema sch) {
+      Map<String,FieldDictionary> dicts = new HashMap<>();
+      for (String fldname : sch.fields())
+         if (sch.type(fldname) != INTEGER) {
+            FieldDictionary dict = s.getVal(fldname).dictionary();
+            if (dict != null)
+               dicts.put(fldname, dict);
+         }
+      return dicts;
+   }
    
    /**
     * Open a table scan for the temporary table.
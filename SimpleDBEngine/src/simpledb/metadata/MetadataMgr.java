@@ -9,19 +9,31 @@ public class MetadataMgr {
    private static ViewMgr   viewmgr;
    private static StatMgr   statmgr;
    private static IndexMgr  idxmgr;
+   private static PartitionMgr partmgr;
    
    public MetadataMgr(boolean isnew, Transaction tx) {
       tblmgr  = new TableMgr(isnew, tx);
       viewmgr = new ViewMgr(isnew, tblmgr, tx);
       statmgr = new StatMgr(tblmgr, tx);
       idxmgr  = new IndexMgr(isnew, tblmgr, statmgr, tx);
+      partmgr = new PartitionMgr(isnew, tblmgr, tx);
    }
    
    public void createTable(String tblname, Schema sch, Transaction tx) {
       tblmgr.createTable(tblname, sch, tx);
    }
+
+   public void createTable(String tblname, Schema sch, int format, Transaction tx) {
+      tblmgr.createTable(tblname, sch, format, tx);
+   }
+
+   public void createTable(String tblname, Schema sch, int format, boolean encoded, Transaction tx) {
+      tblmgr.createTable(tblname, sch, format, encoded, tx);
+   }
    
    public Layout getLayout(String tblname, Transaction tx) {
+      if (SystemViews.isSystemView(tblname))
+         return new Layout(SystemViews.schema(tblname));
       return tblmgr.getLayout(tblname, tx);
    }
    
@@ -41,7 +53,19 @@ public class MetadataMgr {
       return idxmgr.getIndexInfo(tblname, tx);
    }
    
+   public void createPartitions(PartitionInfo pi, Transaction tx) {
+      partmgr.createPartitions(pi, tx);
+   }
+   
+   public PartitionInfo getPartitionInfo(String tblname, Transaction tx) {
+      if (SystemViews.isSystemView(tblname))
+         return null;
+      return partmgr.getPartitionInfo(tblname, tx);
+   }
+   
    public StatInfo getStatInfo(String tblname, Layout layout, Transaction tx) {
+      if (SystemViews.isSystemView(tblname))
+         return SystemViews.statInfo(tblname);
       return statmgr.getStatInfo(tblname, layout, tx);
    }
 
@@ -52,6 +76,8 @@ public class MetadataMgr {
     * @return schema of the specified table
     */
    public Schema getSchema(String tblname, Transaction tx) {
+      if (SystemViews.isSystemView(tblname))
+         return SystemViews.schema(tblname);
       return tblmgr.getSchema(tblname, tx);
    }
 }
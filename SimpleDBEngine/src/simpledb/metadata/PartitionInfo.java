@@ -0,0 +1,181 @@
+package simpledb.metadata;
+
+import static simpledb.metadata.TableMgr.MAX_NAME;
+import java.util.*;
+import simpledb.parse.BadSyntaxException;
+import simpledb.query.*;
+
+/**
+ * The information about how a table is partitioned.
+ * The records of a partitioned table are stored in separate
+ * tables, one per partition, named tblname#0, tblname#1 and so on;
+ * the table itself holds no records. The partition of a record
+ * is determined by the value of its partitioning field:
+ * <ul>
+ * <li>a RANGE partitioned table has an increasing list of bounds,
+ *     and a value belongs to the first partition whose bound
+ *     is greater than it, or to the last partition if there is none;
+ * <li>a HASH partitioned table has a fixed number of partitions,
+ *     and a value belongs to the partition given by its hash code.
+ * </ul>
+ * A record whose partitioning field has not been set has the
+ * initial value of the field, which is 0 or the empty string.
+ */
+public class PartitionInfo {
+   public static final int RANGE = 0, HASH = 1;
+   private String tblname, fldname;
+   private int kind, numparts;
+   private List<Integer> bounds;
+
+   /**
+    * Create a PartitionInfo object for the specified table.
+    * @param tblname the name of the partitioned table
+    * @param fldname the name of the partitioning field
+    * @param kind RANGE or HASH
+    * @param numparts the number of partitions
+    * @param bounds the upper bounds of all the partitions
+    *        but the last, for a RANGE partitioned table
+    */
+   public PartitionInfo(String tblname, String fldname, int kind,
+                        int numparts, List<Integer> bounds) {
+      this.tblname = tblname;
+      this.fldname = fldname;
+      this.kind = kind;
+      this.numparts = numparts;
+      this.bounds = bounds;
+   }
+
+   /**
+    * Return the name of a table or index that belongs to the
+    * specified partition, such as the partition's own table.
+    * The name cannot be given in SQL, since the lexer does not
+    * accept the '#' character.
+    * @param name the name of the partitioned table or index
+    * @param partnum the number of the partition
+    * @return the name of the partition's table or index
+    */
+   public static String partitionName(String name, int partnum) {
+      String partname = name + "#" + partnum;
+      if (partname.length() > MAX_NAME)
+         throw new BadSyntaxException("The name '" + name + "' is too long for "
+                                      + (partnum + 1) + " partitions");
+      return partname;
+   }
+
+   /**
+    * Return the name of the partitioned table or index that
+    * the specified partition's table or index belongs to,
+    * or the name itself if it does not belong to a partition.
+    * @param name the name of a table or index
+    * @return the name of the partitioned table or index
+    */
+   public static String baseName(String name) {
+      int pos = name.lastIndexOf('#');
+      return (pos < 0) ? name : name.substring(0, pos);
+   }
+
+   /**
+    * Return the name of the partitioned table.
+    * @return the name of the table
+    */
+   public String tableName() {
+      return tblname;
+   }
+
+   /**
+    * Return the name of the partitioning field.
+    * @return the name of the field
+    */
+   public String fieldName() {
+      return fldname;
+   }
+
+   /**
+    * Return the kind of partitioning.
+    * @return RANGE or HASH
+    */
+   public int kind() {
+      return kind;
+   }
+
+   /**
+    * Return the number of partitions.
+    * @return the number of partitions
+    */
+   public int numPartitions() {
+      return numparts;
+   }
+
+   /**
+    * Return the upper bound of the specified partition,
+    * which is exclusive; the last partition of a RANGE
+    * partitioned table, and every partition of a HASH
+    * partitioned table, have no bound.
+    * @param partnum the number of the partition
+    * @return the bound of the partition, or Integer.MAX_VALUE
+    */
+   public int bound(int partnum) {
+      return (partnum < bounds.size()) ? bounds.get(partnum) : Integer.MAX_VALUE;
+   }
+
+   /**
+    * Return the names of the tables of all the partitions.
+    * @return the names of the partition tables
+    */
+   public List<String> partitions() {
+      List<String> result = new ArrayList<>();
+      for (int i=0; i<numparts; i++)
+         result.add(partitionName(tblname, i));
+      return result;
+   }
+
+   /**
+    * Return the name of the table of the partition
+    * that holds the specified value of the partitioning field.
+    * @param val the value of the field, or null if it is not set
+    * @return the name of the partition table
+    */
+   public String partitionOf(Constant val) {
+      return partitionName(tblname, partnum(val));
+   }
+
+   /**
+    * Return the names of the tables of the partitions that may
+    * hold a record satisfying the predicate. The constant terms
+    * on the partitioning field rule out the other partitions:
+    * the range terms (F op c, for =, <, <=, > and >=) of a RANGE
+    * partitioned table, and an equality term of a HASH
+    * partitioned table.
+    * @param pred the predicate
+    * @return the names of the partition tables to scan
+    */
+   public List<String> prune(Predicate pred) {
+      List<String> result = new ArrayList<>();
+      if (kind == HASH) {
+         Constant val = pred.equatesWithConstant(fldname);
+         if (val != null) {
+            result.add(partitionOf(val));
+            return result;
+         }
+         return partitions();
+      }
+      long[] range = pred.range(fldname);
+      for (int i=0; i<numparts; i++) {
+         long lo = (i == 0) ? Integer.MIN_VALUE : bound(i-1);
+         long hi = (i == numparts-1) ? Integer.MAX_VALUE : bound(i) - 1L;
+         if (lo <= range[1] && hi >= range[0])
+            result.add(partitionName(tblname, i));
+      }
+      return result;
+   }
+
+   private int partnum(Constant val) {
+      if (kind == HASH)
+         return (val == null) ? 0 : Math.floorMod(val.hashCode(), numparts);
+      int ival = (val == null) ? 0 : val.asInt();
+      int i = 0;
+      while (i < bounds.size() && ival >= bounds.get(i))
+         i++;
+      return i;
+   }
+}
@@ -0,0 +1,109 @@
+package simpledb.metadata;
+
+import static simpledb.metadata.TableMgr.MAX_NAME;
+import java.util.*;
+import simpledb.record.*;
+import simpledb.tx.Transaction;
+import simpledb.tx.TxMode;
+
+/**
+ * The partition manager.
+ * The partitioning of each partitioned table is stored in the
+ * <i>partcat</i> table, which has a record for each partition
+ * giving the table, its partitioning field and kind, and
+ * the partition's number and bound.
+ * <p>
+ * As the statistics manager does, the manager keeps the
+ * partitionings in memory, since the planners look them up
+ * for every table of every statement. The cache is discarded
+ * when partitions are created, and read again from partcat by
+ * a locking transaction that has not created partitions itself,
+ * so that it only holds committed partitionings.
+ */
+class PartitionMgr {
+   private TableMgr tblMgr;
+   private Map<String,PartitionInfo> partitionings;
+   private Set<Transaction> creators = new HashSet<>();
+
+   /**
+    * Create the partition manager.
+    * If the database is new, or was created before tables
+    * could be partitioned, then the <i>partcat</i> table is created.
+    * @param isNew indicates whether this is a new database
+    * @param tblMgr the table manager
+    * @param tx the system startup transaction
+    */
+   public PartitionMgr(boolean isNew, TableMgr tblMgr, Transaction tx) {
+      this.tblMgr = tblMgr;
+      if (isNew || !tblMgr.tableExists("partcat", tx)) {
+         Schema sch = new Schema();
+         sch.addStringField("tblname", MAX_NAME);
+         sch.addStringField("fldname", MAX_NAME);
+         sch.addIntField("kind");
+         sch.addIntField("partnum");
+         sch.addIntField("bound");
+         tblMgr.createTable("partcat", sch, tx);
+      }
+   }
+
+   public synchronized void createPartitions(PartitionInfo pi, Transaction tx) {
+      Layout layout = tblMgr.getLayout("partcat", tx);
+      TableScan ts = new TableScan(tx, "partcat", layout);
+      for (int i=0; i<pi.numPartitions(); i++) {
+         ts.insert();
+         ts.setString("tblname", pi.tableName());
+         ts.setString("fldname", pi.fieldName());
+         ts.setInt("kind", pi.kind());
+         ts.setInt("partnum", i);
+         ts.setInt("bound", pi.bound(i));
+      }
+      ts.close();
+      partitionings = null;
+      creators.add(tx);
+   }
+
+   /**
+    * Return the partitioning of the specified table,
+    * or null if the table is not partitioned.
+    * @param tblname the name of the table
+    * @param tx the calling transaction
+    * @return the partitioning of the table, or null
+    */
+   public synchronized PartitionInfo getPartitionInfo(String tblname, Transaction tx) {
+      if (partitionings != null)
+         return partitionings.get(tblname);
+      Map<String,PartitionInfo> result = readPartitionings(tx);
+      creators.retainAll(Transaction.activeTransactions());
+      if (tx.mode() == TxMode.LOCKING && !creators.contains(tx))
+         partitionings = result;
+      return result.get(tblname);
+   }
+
+   private Map<String,PartitionInfo> readPartitionings(Transaction tx) {
+      Map<String,String> fields = new HashMap<>();
+      Map<String,Integer> kinds = new HashMap<>();
+      Map<String,SortedMap<Integer,Integer>> bounds = new HashMap<>();
+      Layout layout = tblMgr.getLayout("partcat", tx);
+      TableScan ts = new TableScan(tx, "partcat", layout);
+      while (ts.next()) {
+         String tblname = ts.getString("tblname");
+         fields.put(tblname, ts.getString("fldname"));
+         kinds.put(tblname, ts.getInt("kind"));
+         bounds.computeIfAbsent(tblname, k -> new TreeMap<>())
+               .put(ts.getInt("partnum"), ts.getInt("bound"));
+      }
+      ts.close();
+      Map<String,PartitionInfo> result = new HashMap<>();
+      for (String tblname : fields.keySet()) {
+         int kind = kinds.get(tblname);
+         SortedMap<Integer,Integer> tblbounds = bounds.get(tblname);
+         int numparts = tblbounds.size();
+         List<Integer> rangebounds = new ArrayList<>();
+         if (kind == PartitionInfo.RANGE)
+            rangebounds.addAll(tblbounds.headMap(numparts - 1).values());
+         result.put(tblname, new PartitionInfo(tblname, fields.get(tblname), kind,
+                                               numparts, rangebounds));
+      }
+      return result;
+   }
+}
@@ -0,0 +1,69 @@
+package simpledb.metadata;
+
+import java.util.*;
+import simpledb.query.*;
+import simpledb.record.Schema;
+
+/**
+ * The scan over the records of a system view,
+ * which were computed when the scan was opened.
+ */
+class SystemViewScan implements Scan {
+   private Schema sch;
+   private List<Map<String,Constant>> rows;
+   private int current = -1;
+
+   public SystemViewScan(Schema sch, List<Map<String,Constant>> rows) {
+      this.sch = sch;
+      this.rows = rows;
+   }
+
+   public void beforeFirst() {
+      current = -1;
+   }
+
+   public boolean next() {
+      current++;
+      return current < rows.size();
+   }
+
+   public int getInt(String fldname) {
+      return rows.get(current).get(fldname).asInt();
+   }
+
+   public String getString(String fldname) {
+      return rows.get(current).get(fldname).asString();
+   }
+
+   public Constant getVal(String fldname) {
+      return rows.get(current).get(fldname);
+   }
+
+   /**
+    * Return the column number of the field,
+    * which is its position in the view's schema.
+    * @see simpledb.query.Scan#columnIndex(java.lang.String)
+    */
+   public int columnIndex(String fldname) {
+      return sch.fields().indexOf(fldname);
+   }
+
+   public int getInt(int col) {
+      return getVal(col).asInt();
+   }
+
+   public String getString(int col) {
+      return getVal(col).asString();
+   }
+
+   public Constant getVal(int col) {
+      return getVal(sch.fields().get(col));
+   }
+
+   public boolean hasField(String fldname) {
+      return sch.hasField(fldname);
+   }
+
+   public void close() {
+   }
+}
@@ -0,0 +1,60 @@
+package simpledb.metadata;
+
+import simpledb.server.SimpleDB;
+import simpledb.tx.Transaction;
+import simpledb.plan.*;
+import simpledb.query.Scan;
+
+public class SystemViewTest {
+   public static void main(String[] args) throws Exception {
+      SimpleDB db = new SimpleDB("sysviewtest");
+      Planner planner = db.planner();
+      Transaction tx = db.newTx();
+      planner.executeUpdate("create table T(A int, B varchar(9))", tx);
+      planner.executeUpdate("insert into T(A, B) values (1, 'one')", tx);
+      tx.commit();
+
+      // Tx 1 modifies T, so tx 2 has to wait to read it.
+      Transaction tx1 = db.newTx();
+      planner.executeUpdate("update T set A = 2 where A = 1", tx1);
+      Thread reader = new Thread(() -> {
+         Transaction tx2 = db.newTx();
+         Scan s = planner.createQueryPlan("select A from T", tx2).open();
+         while (s.next())
+            System.out.println("reader: A = " + s.getInt("a"));
+         s.close();
+         tx2.commit();
+      });
+      reader.start();
+      Thread.sleep(500);
+
+      Transaction tx3 = db.newTx();
+      print(planner, tx3, "select txnum, txmode, numlocks, waitfile, waitblk, waitmode, waitms "
+                        + "from sys_transactions");
+      print(planner, tx3, "select filename, blknum, granularity, txnum, lockmode, status, waitms "
+                        + "from sys_locks where filename = 't.tbl'");
+      tx1.commit();
+      reader.join();
+      print(planner, tx3, "select statname, statvalue from sys_lockstats");
+      try {
+         planner.executeUpdate("delete from sys_locks", tx3);
+      }
+      catch(RuntimeException e) {
+         System.out.println("delete rejected: " + e.getMessage());
+      }
+      tx3.commit();
+   }
+
+   private static void print(Planner planner, Transaction tx, String qry) {
+      System.out.println(qry);
+      Plan p = planner.createQueryPlan(qry, tx);
+      Scan s = p.open();
+      while (s.next()) {
+         StringBuilder sb = new StringBuilder();
+         for (String fldname : p.schema().fields())
+            sb.append(s.getVal(fldname)).append(" ");
+         System.out.println("   " + sb);
+      }
+      s.close();
+   }
+}
@@ -0,0 +1,184 @@
+package simpledb.metadata;
+
+import java.util.*;
+import simpledb.query.*;
+import simpledb.record.*;
+import simpledb.tx.Transaction;
+import simpledb.tx.concurrency.*;
+
+/**
+ * The system views, which are read-only tables whose records
+ * describe the current state of the lock manager and of
+ * the active transactions:
+ * <ul>
+ * <li>sys_locks has a record for each lock that is held or waited for;
+ * <li>sys_transactions has a record for each active transaction,
+ *     giving the lock it is waiting for, if any;
+ * <li>sys_lockstats has a record for each lock statistic.
+ * </ul>
+ * The views are not stored in the catalog.
+ * A query on a view sees the state at the time its scan is opened;
+ * since the records are computed from in-memory structures,
+ * reading them takes no locks and so never waits.
+ */
+public class SystemViews {
+   public static final String LOCKS = "sys_locks";
+   public static final String TRANSACTIONS = "sys_transactions";
+   public static final String LOCKSTATS = "sys_lockstats";
+   private static final int NAME_LENGTH = 30;
+   private static Map<String,Schema> schemas = new HashMap<>();
+
+   static {
+      Schema sch = new Schema();
+      sch.addStringField("filename", NAME_LENGTH);
+      sch.addIntField("blknum");
+      sch.addIntField("slot");
+      sch.addStringField("granularity", 6);
+      sch.addIntField("txnum");
+      sch.addStringField("lockmode", 3);
+      sch.addStringField("status", 7);
+      sch.addIntField("waitms");
+      schemas.put(LOCKS, sch);
+
+      sch = new Schema();
+      sch.addIntField("txnum");
+      sch.addStringField("txmode", 10);
+      sch.addIntField("agems");
+      sch.addIntField("numlocks");
+      sch.addStringField("waitfile", NAME_LENGTH);
+      sch.addIntField("waitblk");
+      sch.addStringField("waitmode", 3);
+      sch.addIntField("waitms");
+      schemas.put(TRANSACTIONS, sch);
+
+      sch = new Schema();
+      sch.addStringField("statname", NAME_LENGTH);
+      sch.addIntField("statvalue");
+      schemas.put(LOCKSTATS, sch);
+   }
+
+   /**
+    * Return true if the name is that of a system view.
+    * @param tblname the name of a table
+    * @return true if the table is a system view
+    */
+   public static boolean isSystemView(String tblname) {
+      return schemas.containsKey(tblname);
+   }
+
+   /**
+    * Return the schema of the specified system view.
+    * @param tblname the name of the view
+    * @return the view's schema
+    */
+   public static Schema schema(String tblname) {
+      return schemas.get(tblname);
+   }
+
+   /**
+    * Return the statistics of the specified system view.
+    * The records are computed in memory, so reading the view
+    * accesses no blocks; the number of records is that of
+    * the current state of the view.
+    * @param tblname the name of the view
+    * @return the view's statistics
+    */
+   public static StatInfo statInfo(String tblname) {
+      int numrecs;
+      if (tblname.equals(LOCKS))
+         numrecs = ConcurrencyMgr.locks().size();
+      else if (tblname.equals(TRANSACTIONS))
+         numrecs = Transaction.activeTransactions().size();
+      else
+         numrecs = statRows().size();
+      return new StatInfo(0, numrecs);
+   }
+
+   /**
+    * Open a scan over the current records of the view.
+    * @param tblname the name of the view
+    * @return a scan over the view's records
+    */
+   public static Scan open(String tblname) {
+      List<Map<String,Constant>> rows;
+      if (tblname.equals(LOCKS))
+         rows = lockRows();
+      else if (tblname.equals(TRANSACTIONS))
+         rows = transactionRows();
+      else
+         rows = statRows();
+      return new SystemViewScan(schemas.get(tblname), rows);
+   }
+
+   private static List<Map<String,Constant>> lockRows() {
+      List<Map<String,Constant>> rows = new ArrayList<>();
+      for (LockInfo li : ConcurrencyMgr.locks()) {
+         Map<String,Constant> row = new HashMap<>();
+         row.put("filename", new Constant(li.block().fileName()));
+         row.put("blknum", new Constant(li.block().number()));
+         row.put("slot", new Constant(li.slot()));
+         row.put("granularity", new Constant(li.granularity()));
+         row.put("txnum", new Constant(li.txNum()));
+         row.put("lockmode", new Constant(li.mode().toString()));
+         row.put("status", new Constant(li.isGranted() ? "granted" : "waiting"));
+         row.put("waitms", new Constant(clamp(li.waitTime())));
+         rows.add(row);
+      }
+      return rows;
+   }
+
+   private static List<Map<String,Constant>> transactionRows() {
+      List<Map<String,Constant>> rows = new ArrayList<>();
+      long now = System.currentTimeMillis();
+      for (Transaction tx : Transaction.activeTransactions()) {
+         LockInfo li = tx.waitingFor();
+         Map<String,Constant> row = new HashMap<>();
+         row.put("txnum", new Constant(tx.txNum()));
+         row.put("txmode", new Constant(tx.mode().toString().toLowerCase()));
+         row.put("agems", new Constant(clamp(now - tx.startTime())));
+         row.put("numlocks", new Constant(tx.lockCount()));
+         row.put("waitfile", new Constant(li == null ? "" : li.block().fileName()));
+         row.put("waitblk", new Constant(li == null ? -1 : li.block().number()));
+         row.put("waitmode", new Constant(li == null ? "" : li.mode().toString()));
+         row.put("waitms", new Constant(li == null ? 0 : clamp(li.waitTime())));
+         rows.add(row);
+      }
+      return rows;
+   }
+
+   private static List<Map<String,Constant>> statRows() {
+      List<Map<String,Constant>> rows = new ArrayList<>();
+      LockStats stats = ConcurrencyMgr.lockStats();
+      for (LockMode mode : LockMode.values())
+         addStat(rows, "acquired_" + mode.toString().toLowerCase(), stats.acquisitions(mode));
+      for (LockMode mode : LockMode.values())
+         addStat(rows, "waited_" + mode.toString().toLowerCase(), stats.waits(mode));
+      long[] histogram = stats.waitHistogram();
+      for (int i=0; i<LockStats.WAIT_BOUNDS.length; i++)
+         addStat(rows, "wait_le_" + LockStats.WAIT_BOUNDS[i] + "ms", histogram[i]);
+      int last = LockStats.WAIT_BOUNDS.length;
+      addStat(rows, "wait_gt_" + LockStats.WAIT_BOUNDS[last-1] + "ms", histogram[last]);
+      addStat(rows, "wait_total_ms", stats.totalWaitTime());
+      addStat(rows, "timeouts", stats.timeouts());
+      addStat(rows, "deadlocks", stats.deadlocks());
+      addStat(rows, "wait_dies", stats.waitDies());
+      addStat(rows, "wounds", stats.wounds());
+      addStat(rows, "escalations", ConcurrencyMgr.escalationCount());
+      addStat(rows, "escalated_locks", ConcurrencyMgr.escalatedLockCount());
+      LockInfo longest = ConcurrencyMgr.longestWaiter();
+      addStat(rows, "longest_wait_ms", longest == null ? 0 : longest.waitTime());
+      addStat(rows, "active_transactions", Transaction.activeTransactions().size());
+      return rows;
+   }
+
+   private static void addStat(List<Map<String,Constant>> rows, String name, long value) {
+      Map<String,Constant> row = new HashMap<>();
+      row.put("statname", new Constant(name));
+      row.put("statvalue", new Constant(clamp(value)));
+      rows.add(row);
+   }
+
+   private static int clamp(long value) {
+      return (int) Math.min(value, Integer.MAX_VALUE);
+   }
+}
@@ -1,5 +1,6 @@
 package simpledb.metadata;
 
+import static java.sql.Types.VARCHAR;
 import java.util.*;
 
 import simpledb.parse.BadSyntaxException;
@@ -17,6 +18,8 @@ class TableMgr {
    // The max characters a tablename or fieldname can have.
    public static final int MAX_NAME = 16;
    private Layout tcatLayout, fcatLayout;
+   private Map<String,FieldDictionary> dictionaries = new HashMap<>();
+   private Map<String,ZoneMap> zonemaps = new HashMap<>();
 
    /**
     * Create a new catalog manager for the database system.
@@ -29,6 +32,8 @@ class TableMgr {
       Schema tcatSchema = new Schema();
       tcatSchema.addStringField("tblname", MAX_NAME);
       tcatSchema.addIntField("slotsize");
+      tcatSchema.addIntField("format");
+      tcatSchema.addIntField("encoding");
       tcatLayout = new Layout(tcatSchema);
 
       Schema fcatSchema = new Schema();
@@ -52,12 +57,40 @@ class TableMgr {
     * @param tx the transaction creating the table
     */
    public void createTable(String tblname, Schema sch, Transaction tx) {
-      Layout layout = new Layout(sch);
+      createTable(tblname, sch, Layout.FIXED, tx);
+   }
+
+   /**
+    * Create a new table having the specified name and schema,
+    * whose records are stored in the specified page format.
+    * @param tblname the name of the new table
+    * @param sch the table's schema
+    * @param format the page format, Layout.FIXED, Layout.SLOTTED or Layout.PAX
+    * @param tx the transaction creating the table
+    */
+   public void createTable(String tblname, Schema sch, int format, Transaction tx) {
+      createTable(tblname, sch, format, false, tx);
+   }
+
+   /**
+    * Create a new table having the specified name and schema,
+    * whose records are stored in the specified page format,
+    * and whose string fields may be dictionary-encoded.
+    * @param tblname the name of the new table
+    * @param sch the table's schema
+    * @param format the page format, Layout.FIXED, Layout.SLOTTED or Layout.PAX
+    * @param encoded true if the table's string fields are dictionary-encoded
+    * @param tx the transaction creating the table
+    */
+   public void createTable(String tblname, Schema sch, int format, boolean encoded, Transaction tx) {
+      Layout layout = new Layout(sch, format, dictionaries(tblname, sch, encoded, tx));
       // insert one record into tblcat
       TableScan tcat = new TableScan(tx, "tblcat", tcatLayout);
       tcat.insert();
       tcat.setString("tblname", tblname);
       tcat.setInt("slotsize", layout.slotSize());
+      tcat.setInt("format", format);
+      tcat.setInt("encoding", encoded ? 1 : 0);
       tcat.close();
 
       // insert a record into fldcat for each field
@@ -82,10 +115,14 @@ class TableMgr {
     */
    public Layout getLayout(String tblname, Transaction tx) {
       int size = -1;
+      int format = Layout.FIXED;
+      boolean encoded = false;
       TableScan tcat = new TableScan(tx, "tblcat", tcatLayout);
       while(tcat.next())
          if(tcat.getString("tblname").equals(tblname)) {
             size = tcat.getInt("slotsize");
+            format = tcat.getInt("format");
+            encoded = tcat.getInt("encoding") != 0;
             break;
          }
       tcat.close();
@@ -103,7 +140,47 @@ class TableMgr {
             sch.addField(fldname, fldtype, fldlen);
          }
       fcat.close();
-      return new Layout(sch, offsets, size);
+      return new Layout(sch, offsets, size, format, dictionaries(tblname, sch, encoded, tx),
+                        zoneMap(tblname, sch, format, tx));
+   }
+
+   /**
+    * Return the dictionaries of the string fields of the
+    * specified table, if they are encoded, loading them
+    * if necessary. A field's dictionary is created once
+    * and then shared by every layout of its table.
+    * The partitions of a table share the table's dictionaries,
+    * so that a value has the same code in every partition.
+    */
+   private synchronized Map<String,FieldDictionary> dictionaries(String tblname, Schema sch,
+                                                                  boolean encoded, Transaction tx) {
+      Map<String,FieldDictionary> dicts = new HashMap<>();
+      if (!encoded)
+         return dicts;
+      for (String fldname : sch.fields())
+         if (sch.type(fldname) == VARCHAR) {
+            String basename = PartitionInfo.baseName(tblname);
+            FieldDictionary dict = dictionaries.computeIfAbsent(basename + "." + fldname,
+                  k -> new FieldDictionary(basename, fldname, sch.length(fldname)));
+            dict.load(tx);
+            dicts.put(fldname, dict);
+         }
+      return dicts;
+   }
+
+   /**
+    * Return the zone map of the specified table, loading it
+    * if necessary, or null if the table has none.
+    * The catalog tables have no zone map, since the table
+    * manager modifies them through its own layouts.
+    */
+   private synchronized ZoneMap zoneMap(String tblname, Schema sch, int format, Transaction tx) {
+      if (format == Layout.SLOTTED || !ZoneMap.applies(sch)
+            || tblname.equals("tblcat") || tblname.equals("fldcat"))
+         return null;
+      ZoneMap zonemap = zonemaps.computeIfAbsent(tblname, k -> new ZoneMap(tblname, sch));
+      zonemap.load(tx);
+      return zonemap;
    }
 
    /**
@@ -112,14 +189,27 @@ class TableMgr {
     * @param tx the transaction
     */
    public void verifyTable(String tblname, Transaction tx) {
+      if (!tableExists(tblname, tx))
+         throw new BadSyntaxException("Table '" + tblname + "' does not exist");
+   }
+
+   /**
+    * Return true if the catalog has the specified table.
+    * @param tblname the name of the table
+    * @param tx the transaction
+    * @return true if the table exists
+    */
+   public boolean tableExists(String tblname, Transaction tx) {
       TableScan tcat = new TableScan(tx, "tblcat", tcatLayout);
-      while(tcat.next())
-         if(tcat.getString("tblname").equals(tblname)) {
-            tcat.close();
-            return;
-         }
-      tcat.close();
-      throw new BadSyntaxException("Table '" + tblname + "' does not exist");
+      try {
+         while(tcat.next())
+            if(tcat.getString("tblname").equals(tblname))
+               return true;
+         return false;
+      }
+      finally {
+         tcat.close();
+      }
    }
 
    /**
@@ -1,5 +1,6 @@
 package simpledb.multibuffer;
 
+import simpledb.query.ColumnMap;
 import simpledb.query.CondOp;
 import simpledb.query.Constant;
 import simpledb.query.Scan;
@@ -18,6 +19,8 @@ public class BlockJoinScan implements Scan {
    private int chunksize, nextblknum, filesize;
    private CondOp condOp;
    private boolean isEmpty;
+   private int outercol, innercol;
+   private ColumnMap columns = new ColumnMap();
 
 
    /**
@@ -43,6 +46,8 @@ public class BlockJoinScan implements Scan {
       beforeFirst();
       this.joinfieldOuter = joinfieldOuter;
       this.joinfieldInner = joinfieldInner;
+      outercol = layout.column(joinfieldOuter);
+      innercol = inner.columnIndex(joinfieldInner);
    }
    
    /**
@@ -99,7 +104,7 @@ public class BlockJoinScan implements Scan {
             }
          }
 
-         if (condOp.evaluate(outer.getVal(joinfieldOuter), inner.getVal(joinfieldInner))) {
+         if (condOp.evaluate(outer.getVal(outercol), inner.getVal(innercol))) {
             return true;
          }
       }
@@ -114,6 +119,37 @@ public class BlockJoinScan implements Scan {
       outer.close();
    }
    
+   /**
+    * Returns the column number of the specified field.
+    * A field of the outer table is mapped to its column
+    * in the table, which is the same in every chunk.
+    * @see Scan#columnIndex(String)
+    */
+   public int columnIndex(String fldname) {
+      int col = columns.column(fldname);
+      if (col >= 0)
+         return col;
+      if (inner.hasField(fldname))
+         return columns.add(fldname, 0, inner.columnIndex(fldname));
+      else
+         return columns.add(fldname, 1, layout.column(fldname));
+   }
+
+   public int getInt(int col) {
+      Scan s = (columns.scan(col) == 0) ? inner : outer;
+      return s.getInt(columns.subColumn(col));
+   }
+
+   public String getString(int col) {
+      Scan s = (columns.scan(col) == 0) ? inner : outer;
+      return s.getString(columns.subColumn(col));
+   }
+
+   public Constant getVal(int col) {
+      Scan s = (columns.scan(col) == 0) ? inner : outer;
+      return s.getVal(columns.subColumn(col));
+   }
+
    /** 
     * Returns the value of the specified field.
     * The value is obtained from whichever scan
@@ -35,7 +35,7 @@ public class ChunkScan implements Scan {
       this.endbnum   = endbnum;
       for (int i=startbnum; i<=endbnum; i++) {
          BlockId blk = new BlockId(filename, i);
-         buffs.add(new RecordPage(tx, blk, layout));
+         buffs.add(RecordPage.open(tx, blk, layout));
       }
       moveToBlock(startbnum);
    }
@@ -93,10 +93,42 @@ public class ChunkScan implements Scan {
     * @see simpledb.query.Scan#getVal(java.lang.String)
     */
    public Constant getVal(String fldname) {
-      if (layout.schema().type(fldname) == INTEGER)
-         return new Constant(getInt(fldname));
-      else
-         return new Constant(getString(fldname));
+      return getVal(layout.column(fldname));
+   }
+
+   /**
+    * Return the column number of the field,
+    * which is its position in the table's schema.
+    * @see simpledb.query.Scan#columnIndex(java.lang.String)
+    */
+   public int columnIndex(String fldname) {
+      return layout.column(fldname);
+   }
+
+   /**
+    * @see simpledb.query.Scan#getInt(int)
+    */
+   public int getInt(int col) {
+      return rp.getInt(currentslot, col);
+   }
+
+   /**
+    * @see simpledb.query.Scan#getString(int)
+    */
+   public String getString(int col) {
+      return rp.getString(currentslot, col);
+   }
+
+   /**
+    * @see simpledb.query.Scan#getVal(int)
+    */
+   public Constant getVal(int col) {
+      if (layout.type(col) == INTEGER)
+         return new Constant(getInt(col));
+      FieldDictionary dict = layout.dictionary(col);
+      if (dict != null)
+         return new Constant(dict, rp.getInt(currentslot, col));
+      return new Constant(getString(col));
    }
 
   /**
@@ -15,6 +15,7 @@ public class MultibufferProductScan implements Scan {
    private String filename;
    private Layout layout;
    private int chunksize, nextblknum, filesize;
+   private ColumnMap columns = new ColumnMap();
    
    
    /**
@@ -98,6 +99,37 @@ public class MultibufferProductScan implements Scan {
       return prodscan.getString(fldname);
    }
    
+   /**
+    * Returns the column number of the specified field.
+    * A field of the RHS table is mapped to its column in
+    * the table, which is the same in every chunk.
+    * @see simpledb.query.Scan#columnIndex(java.lang.String)
+    */
+   public int columnIndex(String fldname) {
+      int col = columns.column(fldname);
+      if (col >= 0)
+         return col;
+      if (lhsscan.hasField(fldname))
+         return columns.add(fldname, 0, lhsscan.columnIndex(fldname));
+      else
+         return columns.add(fldname, 1, layout.column(fldname));
+   }
+
+   public int getInt(int col) {
+      Scan s = (columns.scan(col) == 0) ? lhsscan : rhsscan;
+      return s.getInt(columns.subColumn(col));
+   }
+
+   public String getString(int col) {
+      Scan s = (columns.scan(col) == 0) ? lhsscan : rhsscan;
+      return s.getString(columns.subColumn(col));
+   }
+
+   public Constant getVal(int col) {
+      Scan s = (columns.scan(col) == 0) ? lhsscan : rhsscan;
+      return s.getVal(columns.subColumn(col));
+   }
+
    /**
     * Returns true if the specified field is in
     * either of the underlying scans.
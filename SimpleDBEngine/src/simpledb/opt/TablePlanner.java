@@ -1,6 +1,8 @@
 package simpledb.opt;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import simpledb.controller.Setting;
@@ -14,15 +16,21 @@ import simpledb.metadata.*;
 import simpledb.index.planner.*;
 import simpledb.materialize.MergeJoinPlan;
 import simpledb.multibuffer.MultibufferProductPlan;
+import simpledb.partition.PartitionPlan;
 import simpledb.plan.*;
 
 /**
  * This class contains methods for planning a single table.
+ * A partitioned table is planned as the concatenation of the
+ * partitions that the query predicate does not rule out,
+ * each of which is planned by a table planner of its own.
  *
  * @author Edward Sciore
  */
 class TablePlanner {
-    private TablePlan myplan;
+    private Plan myplan;
+    private PartitionInfo partinfo;
+    private List<TablePlanner> partplanners = new ArrayList<>();
     private Predicate mypred;
     private Schema myschema;
     private Map<String, IndexInfo> indexes;
@@ -43,10 +51,25 @@ class TablePlanner {
     public TablePlanner(String tblname, Predicate mypred, Transaction tx, MetadataMgr mdm, boolean isDistinct) {
         this.mypred = mypred;
         this.tx = tx;
-        myplan = new TablePlan(tx, tblname, mdm);
-        myschema = myplan.schema();
-        indexes = mdm.getIndexInfo(tblname, tx);
         this.isDistinct = isDistinct;
+        partinfo = mdm.getPartitionInfo(tblname, tx);
+        if (partinfo == null) {
+            myplan = new TablePlan(tx, tblname, mdm);
+            myschema = myplan.schema();
+            indexes = mdm.getIndexInfo(tblname, tx);
+            return;
+        }
+
+        // the indexes of a partitioned table belong to its partitions
+        List<Plan> partplans = new ArrayList<>();
+        for (String partname : partinfo.prune(mypred)) {
+            TablePlanner tp = new TablePlanner(partname, mypred, tx, mdm, isDistinct);
+            partplanners.add(tp);
+            partplans.add(tp.myplan);
+        }
+        myschema = mdm.getSchema(tblname, tx);
+        myplan = new PartitionPlan(partinfo, myschema, partplans);
+        indexes = new HashMap<>();
     }
 
     /**
@@ -56,6 +79,12 @@ class TablePlanner {
      * @return a select plan for the table.
      */
     public Plan makeSelectPlan() {
+        if (partinfo != null) {
+            List<Plan> partplans = new ArrayList<>();
+            for (TablePlanner tp : partplanners)
+                partplans.add(tp.makeSelectPlan());
+            return new PartitionPlan(partinfo, myschema, partplans);
+        }
         Plan p = makeIndexSelect();
         if (p == null)
             p = myplan;
@@ -0,0 +1,50 @@
+package simpledb.parse;
+
+import java.util.*;
+
+/**
+ * Data for the SQL <i>copy</i> statement, which loads
+ * the rows of a CSV file into a table.
+ */
+public class CopyData {
+   private String tblname;
+   private List<String> flds;
+   private String filename;
+   
+   /**
+    * Saves the table name, the field list and the file name.
+    * An empty field list stands for all the fields of
+    * the table, in the order in which they were created.
+    */
+   public CopyData(String tblname, List<String> flds, String filename) {
+      this.tblname = tblname;
+      this.flds = flds;
+      this.filename = filename;
+   }
+   
+   /**
+    * Returns the name of the affected table.
+    * @return the name of the affected table
+    */
+   public String tableName() {
+      return tblname;
+   }
+   
+   /**
+    * Returns the fields whose values each row of the file
+    * specifies, in the order of the values in the row,
+    * or an empty list if each row specifies every field.
+    * @return a list of field names
+    */
+   public List<String> fields() {
+      return flds;
+   }
+   
+   /**
+    * Returns the name of the CSV file.
+    * @return the name of the file
+    */
+   public String fileName() {
+      return filename;
+   }
+}
@@ -1,21 +1,42 @@
 package simpledb.parse;
 
-import simpledb.record.Schema;
+import java.util.*;
+import simpledb.record.*;
 
 /**
  * Data for the SQL <i>create table</i> statement.
+ * The statement may end with a list of storage options,
+ * as in <i>with (layout='slotted')</i> or
+ * <i>with (layout='pax', encoding='dictionary')</i>.
+ * It may also partition the table, as in
+ * <i>partition by range(gradyear) (1950, 2000)</i>, which
+ * creates three partitions split at the two bounds, or
+ * <i>partition by hash(id) 4</i>, which creates four partitions.
  * @author Edward Sciore
  */
 public class CreateTableData {
    private String tblname;
    private Schema sch;
+   private Map<String,String> options;
+   private String partfld;
+   private boolean hashed;
+   private int numparts = 1;
+   private List<Integer> bounds = new ArrayList<>();
    
    /**
     * Saves the table name and schema.
     */
    public CreateTableData(String tblname, Schema sch) {
+      this(tblname, sch, new HashMap<>());
+   }
+
+   /**
+    * Saves the table name, schema and storage options.
+    */
+   public CreateTableData(String tblname, Schema sch, Map<String,String> options) {
       this.tblname = tblname;
       this.sch = sch;
+      this.options = options;
    }
    
    /**
@@ -33,5 +54,99 @@ public class CreateTableData {
    public Schema newSchema() {
       return sch;
    }
-}
 
+   /**
+    * Saves the partitioning of the new table.
+    */
+   void partitionBy(String fldname, boolean hashed, int numparts, List<Integer> bounds) {
+      this.partfld = fldname;
+      this.hashed = hashed;
+      this.numparts = numparts;
+      this.bounds = bounds;
+   }
+
+   Map<String,String> options() {
+      return options;
+   }
+
+   /**
+    * Returns the name of the field on which the new table
+    * is partitioned, or null if it is not partitioned.
+    * @return the name of the partitioning field, or null
+    */
+   public String partitionField() {
+      return partfld;
+   }
+
+   /**
+    * Returns true if the new table is partitioned by
+    * hash, and false if it is partitioned by range.
+    * @return true if the table is hash partitioned
+    */
+   public boolean hashPartitioned() {
+      return hashed;
+   }
+
+   /**
+    * Returns the number of partitions of the new table.
+    * @return the number of partitions
+    */
+   public int numPartitions() {
+      return numparts;
+   }
+
+   /**
+    * Returns the increasing bounds that split the values
+    * of the partitioning field of a range partitioned table;
+    * each bound is the exclusive upper bound of a partition.
+    * @return the bounds of the partitions
+    */
+   public List<Integer> partitionBounds() {
+      return bounds;
+   }
+
+   /**
+    * Returns the value of the specified storage option,
+    * or null if the statement does not specify it.
+    * @param name the name of the option
+    * @return the value of the option
+    */
+   public String option(String name) {
+      return options.get(name);
+   }
+
+   /**
+    * Returns the page format given by the layout option:
+    * 'fixed' (the default), 'slotted' or 'pax'.
+    * @return Layout.FIXED, Layout.SLOTTED or Layout.PAX
+    */
+   public int layoutFormat() {
+      String layout = options.getOrDefault("layout", "fixed");
+      if (layout.equals("fixed"))
+         return Layout.FIXED;
+      if (layout.equals("slotted"))
+         return Layout.SLOTTED;
+      if (layout.equals("pax"))
+         return Layout.PAX;
+      throw new BadSyntaxException("Unknown layout '" + layout + "'");
+   }
+
+   /**
+    * Returns true if the encoding option is 'dictionary',
+    * which encodes the string fields of the table,
+    * and false if it is 'none' (the default).
+    * Encoded fields need fixed-size slots, so the
+    * slotted layout does not support them.
+    * @return true if the table's string fields are encoded
+    */
+   public boolean dictionaryEncoded() {
+      String encoding = options.getOrDefault("encoding", "none");
+      if (encoding.equals("none"))
+         return false;
+      if (!encoding.equals("dictionary"))
+         throw new BadSyntaxException("Unknown encoding '" + encoding + "'");
+      if (layoutFormat() == Layout.SLOTTED)
+         throw new BadSyntaxException("The slotted layout does not support dictionary encoding");
+      return true;
+   }
+}
@@ -0,0 +1,104 @@
+package simpledb.parse;
+
+import static java.sql.Types.INTEGER;
+import java.io.*;
+import java.util.*;
+import simpledb.query.Constant;
+import simpledb.record.Schema;
+
+/**
+ * The parser for the rows of CSV data that a copy
+ * statement loads into a table.
+ * Each line holds one row, whose values are separated by
+ * commas. A value may be enclosed in double quotes, in which
+ * case it may contain commas, and a double quote is written
+ * twice. Empty lines are ignored.
+ * The values of a row are converted to constants
+ * according to the types of the fields they belong to.
+ */
+public class CsvParser {
+   private BufferedReader reader;
+   private Schema sch;
+   private List<String> fields;
+   private int linenum = 0;
+
+   /**
+    * Creates a parser for the CSV data read from the
+    * specified reader, whose rows hold the values of
+    * the specified fields of the schema.
+    * @param reader the CSV data
+    * @param sch the schema of the table
+    * @param fields the fields of each row, in order
+    */
+   public CsvParser(Reader reader, Schema sch, List<String> fields) {
+      this.reader = new BufferedReader(reader);
+      this.sch = sch;
+      this.fields = fields;
+      for (String fldname : fields)
+         if (!sch.hasField(fldname))
+            throw new BadSyntaxException("Field '" + fldname + "' does not exist");
+   }
+
+   /**
+    * Returns the values of the next row,
+    * or null if there are no more rows.
+    * @return the values of the row, one for each field
+    */
+   public List<Constant> next() throws IOException {
+      String line = reader.readLine();
+      linenum++;
+      while (line != null && line.isEmpty()) {
+         line = reader.readLine();
+         linenum++;
+      }
+      if (line == null)
+         return null;
+      List<String> strs = split(line);
+      if (strs.size() != fields.size())
+         throw new BadSyntaxException("line " + linenum + " has " + strs.size()
+                                      + " values instead of " + fields.size());
+      List<Constant> vals = new ArrayList<>(strs.size());
+      for (int i=0; i<strs.size(); i++)
+         vals.add(constant(fields.get(i), strs.get(i)));
+      return vals;
+   }
+
+   private Constant constant(String fldname, String s) {
+      if (sch.type(fldname) != INTEGER)
+         return new Constant(s);
+      try {
+         return new Constant(Integer.parseInt(s.trim()));
+      }
+      catch(NumberFormatException e) {
+         throw new BadSyntaxException("line " + linenum + ": '" + s
+                                      + "' is not an integer value of " + fldname);
+      }
+   }
+
+   private List<String> split(String line) {
+      List<String> strs = new ArrayList<>();
+      StringBuilder sb = new StringBuilder();
+      boolean quoted = false;
+      for (int i=0; i<line.length(); i++) {
+         char c = line.charAt(i);
+         if (quoted) {
+            if (c != '"')
+               sb.append(c);
+            else if (i+1 < line.length() && line.charAt(i+1) == '"')
+               sb.append(line.charAt(++i));
+            else
+               quoted = false;
+         }
+         else if (c == '"')
+            quoted = true;
+         else if (c == ',') {
+            strs.add(sb.toString());
+            sb.setLength(0);
+         }
+         else
+            sb.append(c);
+      }
+      strs.add(sb.toString());
+      return strs;
+   }
+}
@@ -244,7 +244,7 @@ public class Lexer {
               "insert", "into", "values", "delete", "update", "set",
               "create", "table", "int", "varchar", "view", "as", "index", "on",
               "btree", "using", "hash", "order", "by", "asc", "desc",
-              "group", "by");
+              "group", "by", "copy", "vacuum", "partition", "range");
    }
 
    private void initAggregate() {
@@ -1,5 +1,6 @@
 package simpledb.parse;
 
+import static java.sql.Types.INTEGER;
 import java.util.*;
 
 import simpledb.controller.Setting;
@@ -281,6 +282,10 @@ public class Parser {
             return delete();
         else if (lex.matchKeyword("update"))
             return modify();
+        else if (lex.matchKeyword("copy"))
+            return copy();
+        else if (lex.matchKeyword("vacuum"))
+            return vacuum();
         else
             return create();
     }
@@ -345,6 +350,30 @@ public class Parser {
         return L;
     }
 
+// Method for parsing copy commands
+
+    public CopyData copy() {
+        lex.eatKeyword("copy");
+        String tblname = lex.eatId();
+        List<String> flds = new ArrayList<>();
+        if (lex.matchDelim('(')) {
+            lex.eatDelim('(');
+            flds = fieldList();
+            lex.eatDelim(')');
+        }
+        lex.eatKeyword("from");
+        String filename = lex.eatStringConstant();
+        return new CopyData(tblname, flds, filename);
+    }
+
+// Method for parsing vacuum commands
+
+    public VacuumData vacuum() {
+        lex.eatKeyword("vacuum");
+        String tblname = lex.eatId();
+        return new VacuumData(tblname);
+    }
+
 // Method for parsing modify commands
 
     public ModifyData modify() {
@@ -370,7 +399,64 @@ public class Parser {
         lex.eatDelim('(');
         Schema sch = fieldDefs();
         lex.eatDelim(')');
-        return new CreateTableData(tblname, sch);
+        CreateTableData data = new CreateTableData(tblname, sch, new HashMap<>());
+        if (lex.matchKeyword("partition")) {
+            lex.eatKeyword("partition");
+            lex.eatKeyword("by");
+            partitioning(data);
+        }
+        if (lex.matchKeyword("with")) {
+            lex.eatKeyword("with");
+            lex.eatDelim('(');
+            tableOptions(data.options());
+            lex.eatDelim(')');
+        }
+        return data;
+    }
+
+    // Either range(F) (c1, c2, ...), which splits the values of
+    // the integer field F at the increasing bounds c1, c2, ...,
+    // or hash(F) n, which hashes the values of F to n partitions.
+    private void partitioning(CreateTableData data) {
+        boolean hashed = lex.matchKeyword("hash");
+        lex.eatKeyword(hashed ? "hash" : "range");
+        lex.eatDelim('(');
+        String fldname = field();
+        lex.eatDelim(')');
+        Schema sch = data.newSchema();
+        if (!sch.hasField(fldname))
+            throw new BadSyntaxException("Field '" + fldname + "' does not exist");
+        List<Integer> bounds = new ArrayList<>();
+        if (hashed) {
+            int numparts = lex.eatIntConstant();
+            if (numparts < 1)
+                throw new BadSyntaxException("A table needs at least one partition");
+            data.partitionBy(fldname, true, numparts, bounds);
+            return;
+        }
+        if (sch.type(fldname) != INTEGER)
+            throw new BadSyntaxException("Range partitioning needs an integer field");
+        lex.eatDelim('(');
+        bounds.add(lex.eatIntConstant());
+        while (lex.matchDelim(',')) {
+            lex.eatDelim(',');
+            int bound = lex.eatIntConstant();
+            if (bound <= bounds.get(bounds.size() - 1))
+                throw new BadSyntaxException("The partition bounds must increase");
+            bounds.add(bound);
+        }
+        lex.eatDelim(')');
+        data.partitionBy(fldname, false, bounds.size() + 1, bounds);
+    }
+
+    private void tableOptions(Map<String,String> options) {
+        String name = lex.eatId();
+        lex.eatDelim('=');
+        options.put(name, lex.eatStringConstant().toLowerCase());
+        if (lex.matchDelim(',')) {
+            lex.eatDelim(',');
+            tableOptions(options);
+        }
     }
 
     private Schema fieldDefs() {
@@ -0,0 +1,24 @@
+package simpledb.parse;
+
+/**
+ * Data for the SQL <i>vacuum</i> statement, which
+ * compacts a table.
+ */
+public class VacuumData {
+   private String tblname;
+   
+   /**
+    * Saves the table name.
+    */
+   public VacuumData(String tblname) {
+      this.tblname = tblname;
+   }
+   
+   /**
+    * Returns the name of the table to be compacted.
+    * @return the name of the table
+    */
+   public String tableName() {
+      return tblname;
+   }
+}
@@ -0,0 +1,105 @@
+package simpledb.partition;
+
+import java.util.*;
+
+import simpledb.display.ExecutionChain;
+import simpledb.display.Partition;
+import simpledb.metadata.PartitionInfo;
+import simpledb.plan.Plan;
+import simpledb.query.Scan;
+import simpledb.record.Schema;
+
+/**
+ * The Plan class for a partitioned table, which
+ * concatenates the records of the plans of the
+ * partitions that a query has to scan.
+ */
+public class PartitionPlan implements Plan {
+   private PartitionInfo pi;
+   private Schema sch;
+   private List<Plan> plans;
+
+   /**
+    * Create a plan that scans the specified partitions
+    * of a table.
+    * @param pi the partitioning of the table
+    * @param sch the schema of the table
+    * @param plans the plans of the partitions to scan
+    */
+   public PartitionPlan(PartitionInfo pi, Schema sch, List<Plan> plans) {
+      this.pi = pi;
+      this.sch = sch;
+      this.plans = plans;
+   }
+
+   /**
+    * Creates a scan that reads each partition in turn.
+    * @see simpledb.plan.Plan#open()
+    */
+   public Scan open() {
+      return new PartitionScan(plans);
+   }
+
+   /**
+    * Estimates the number of block accesses,
+    * which is the sum of those of the partitions.
+    * @see simpledb.plan.Plan#blocksAccessed()
+    */
+   public int blocksAccessed() {
+      int blocks = 0;
+      for (Plan p : plans)
+         blocks += p.blocksAccessed();
+      return blocks;
+   }
+
+   /**
+    * Estimates the number of output records,
+    * which is the sum of those of the partitions.
+    * @see simpledb.plan.Plan#recordsOutput()
+    */
+   public int recordsOutput() {
+      int records = 0;
+      for (Plan p : plans)
+         records += p.recordsOutput();
+      return records;
+   }
+
+   /**
+    * Estimates the number of distinct field values.
+    * The partitions have no values of the partitioning
+    * field in common, so their numbers of values add up;
+    * the values of any other field may occur in every
+    * partition, so the largest number is taken.
+    * @see simpledb.plan.Plan#distinctValues(java.lang.String)
+    */
+   public int distinctValues(String fldname) {
+      int values = 0;
+      for (Plan p : plans) {
+         if (fldname.equals(pi.fieldName()))
+            values += p.distinctValues(fldname);
+         else
+            values = Math.max(values, p.distinctValues(fldname));
+      }
+      return values;
+   }
+
+   /**
+    * Returns the schema of the partitioned table.
+    * @see simpledb.plan.Plan#schema()
+    */
+   public Schema schema() {
+      return sch;
+   }
+
+   /**
+    * Returns the execution chain of the scanned partitions.
+    *
+    * @see Plan#getChain()
+    */
+   public ExecutionChain getChain() {
+      List<ExecutionChain> children = new ArrayList<>();
+      for (Plan p : plans)
+         children.add(p.getChain());
+      return new Partition(this, pi.tableName(), children);
+   }
+}
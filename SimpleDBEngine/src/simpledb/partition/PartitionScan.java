@@ -0,0 +1,101 @@
+package simpledb.partition;
+
+import java.util.List;
+
+import simpledb.plan.Plan;
+import simpledb.query.*;
+
+/**
+ * The scan class of a partitioned table, which returns
+ * the records of each of its partitions in turn.
+ * Only one partition is open at a time, so the scan pins
+ * no more buffers than the scan of a single partition.
+ * The partitions of a table have the same layout, so a field
+ * has the same column number in each of them.
+ */
+public class PartitionScan implements Scan {
+   private List<Plan> plans;
+   private int current = -1;
+   private Scan s;
+
+   /**
+    * Create a scan of the specified partitions,
+    * positioned before the first record of the first one.
+    * @param plans the plans of the partitions
+    */
+   public PartitionScan(List<Plan> plans) {
+      this.plans = plans;
+      beforeFirst();
+   }
+
+   public void beforeFirst() {
+      open(0);
+   }
+
+   public boolean next() {
+      while (s != null) {
+         if (s.next())
+            return true;
+         open(current + 1);
+      }
+      return false;
+   }
+
+   public int getInt(String fldname) {
+      return s.getInt(fldname);
+   }
+
+   public String getString(String fldname) {
+      return s.getString(fldname);
+   }
+
+   public Constant getVal(String fldname) {
+      return s.getVal(fldname);
+   }
+
+   /**
+    * Return the column number of the field in the
+    * partitions, or -1 if there are none to scan.
+    * @see simpledb.query.Scan#columnIndex(java.lang.String)
+    */
+   public int columnIndex(String fldname) {
+      return (s == null) ? -1 : s.columnIndex(fldname);
+   }
+
+   public int getInt(int col) {
+      return s.getInt(col);
+   }
+
+   public String getString(int col) {
+      return s.getString(col);
+   }
+
+   public Constant getVal(int col) {
+      return s.getVal(col);
+   }
+
+   public boolean hasField(String fldname) {
+      return !plans.isEmpty() && plans.get(0).schema().hasField(fldname);
+   }
+
+   public void close() {
+      if (s != null)
+         s.close();
+      s = null;
+   }
+
+   /**
+    * Close the current partition, and open the
+    * specified one if there is such a partition.
+    */
+   private void open(int partnum) {
+      if (partnum == current && s != null) {
+         s.beforeFirst();
+         return;
+      }
+      close();
+      current = partnum;
+      if (partnum < plans.size())
+         s = plans.get(partnum).open();
+   }
+}
@@ -0,0 +1,174 @@
+package simpledb.partition;
+
+import java.io.*;
+import simpledb.server.SimpleDB;
+import simpledb.tx.Transaction;
+import simpledb.metadata.PartitionInfo;
+import simpledb.parse.BadSyntaxException;
+import simpledb.plan.*;
+import simpledb.query.*;
+import simpledb.record.*;
+
+public class PartitionTest {
+   private static final int ROWS = 2000;
+   private static final String[] NAMES = {"kim", "lee", "park", "choi", "jung"};
+   private static SimpleDB db;
+   private static Planner planner;
+
+   public static void main(String[] args) throws Exception {
+      db = new SimpleDB("partitiontest");
+      planner = db.planner();
+      String csvfile = "partitiontest/students.csv";
+      try (PrintWriter out = new PrintWriter(new FileWriter(csvfile))) {
+         for (int i=0; i<ROWS; i++)
+            out.println(i + "," + (1900 + i / 20) + ",\"student, " + i + "\"");
+      }
+
+      Transaction tx = db.newTx();
+      String fields = "(id int, yr int, name varchar(20))";
+      planner.executeUpdate("create table R" + fields + " partition by range(yr) (1950, 2000)", tx);
+      planner.executeUpdate("create table H" + fields + " partition by hash(id) 4 with (layout='pax')", tx);
+      planner.executeUpdate("create table D(dyr int, dname varchar(10))", tx);
+      planner.executeUpdate("create index rid on R(id) using btree", tx);
+      planner.executeUpdate("create index hid on H(id) using hash", tx);
+      for (int i=0; i<300; i++)
+         planner.executeUpdate("insert into R(id, yr, name) values (" + i + ", "
+                               + (1900 + i % 150) + ", 'student" + i + "')", tx);
+      planner.executeUpdate("insert into R(id, name) values (999, 'no year')", tx);
+      int loaded = planner.executeUpdate("copy H from '" + csvfile + "'", tx);
+      for (int i=0; i<10; i++)
+         planner.executeUpdate("insert into D(dyr, dname) values (" + (1900 + i) + ", 'd" + i + "')", tx);
+      System.out.println(loaded + " records copied into H (expected " + ROWS + ")");
+      tx.commit();
+
+      tx = db.newTx();
+      checkPartitions(tx, "r");
+      checkPartitions(tx, "h");
+      query(tx, "select id from R", 301);
+      query(tx, "select id from R where yr < 1950", 101);
+      query(tx, "select id from R where yr >= 1950 and yr < 2000", 100);
+      query(tx, "select id from R where 2010 = yr", 2);
+      query(tx, "select id from R where yr > 3000", 0);
+      query(tx, "select id from R where id = 7", 1);
+      query(tx, "select id from H where id = 1234", 1);
+      query(tx, "select name from H where name = 'student, 17'", 1);
+      query(tx, "select id from H where yr = 1950", 20);
+      query(tx, "select id, dname from H, D where yr = dyr", 200);
+      query(tx, "select id, dname from R, D where yr = dyr and yr < 1950", 20);
+      tx.commit();
+
+      // Updates affect only the partitions that the predicate allows.
+      tx = db.newTx();
+      int modified = planner.executeUpdate("update R set name = 'late' where yr >= 2000", tx);
+      int deleted = planner.executeUpdate("delete from H where id < 100", tx);
+      System.out.println(modified + " records modified (expected 100), "
+                         + deleted + " records deleted (expected 100)");
+      try {
+         planner.executeUpdate("update R set yr = 1990 where id = 3", tx);
+         System.out.println("the partitioning field was modified");
+      }
+      catch(BadSyntaxException e) {
+         System.out.println("modify rejected: " + e.getMessage());
+      }
+      query(tx, "select id from R where name = 'late'", 100);
+      query(tx, "select id from H", ROWS - 100);
+      tx.commit();
+
+      // A rolled-back insertion leaves its partition as it was.
+      tx = db.newTx();
+      planner.executeUpdate("insert into R(id, yr, name) values (5000, 2500, 'gone')", tx);
+      tx.rollback();
+      tx = db.newTx();
+      query(tx, "select id from R where yr > 2049", 0);
+      tx.commit();
+
+      // Vacuuming compacts each partition and keeps its index up to date.
+      tx = db.newTx();
+      int moved = planner.executeUpdate("vacuum H", tx);
+      tx.commit();
+      tx = db.newTx();
+      System.out.println(moved + " records moved by vacuum");
+      checkPartitions(tx, "h");
+      query(tx, "select id from H where id = 1500", 1);
+      query(tx, "select id from H where id = 50", 0);
+      tx.commit();
+
+      // The partitions of an encoded table share its dictionaries,
+      // so sorting and grouping can compare the codes of any two partitions.
+      tx = db.newTx();
+      planner.executeUpdate("create table W(id int, name varchar(10)) partition by hash(id) 3"
+                            + " with (encoding='dictionary')", tx);
+      for (int i=0; i<90; i++)
+         planner.executeUpdate("insert into W(id, name) values (" + i + ", '"
+                               + NAMES[i % 3 + (i / 3) % 3] + "')", tx);
+      tx.commit();
+      tx = db.newTx();
+      int shared = 0;
+      for (String partname : db.mdMgr().getPartitionInfo("w", tx).partitions()) {
+         Layout layout = db.mdMgr().getLayout(partname, tx);
+         if (layout.dictionary(layout.column("name")) == db.mdMgr().getLayout("w", tx)
+               .dictionary(layout.column("name")))
+            shared++;
+      }
+      System.out.println(shared + " partitions of W share its dictionary (expected 3)");
+      tx.commit();
+      tx = db.newTx();
+      sortAndGroup(tx, "locking");
+      tx.commit();
+      tx = db.newReadOnlyTx();
+      sortAndGroup(tx, "read-only");
+      tx.commit();
+   }
+
+   private static void sortAndGroup(Transaction tx, String mode) {
+      Scan s = planner.createQueryPlan("select name from W order by name", tx).open();
+      int count = 0, misordered = 0;
+      String prev = "";
+      while (s.next()) {
+         String name = s.getString("name");
+         if (name.compareTo(prev) < 0)
+            misordered++;
+         prev = name;
+         count++;
+      }
+      s.close();
+      s = planner.createQueryPlan("select name, count(id) from W group by name", tx).open();
+      int groups = 0, total = 0;
+      while (s.next()) {
+         total += s.getInt("countofid");
+         groups++;
+      }
+      s.close();
+      System.out.println(mode + ": " + count + " records sorted (expected 90), " + misordered
+                         + " out of order; " + groups + " groups (expected " + NAMES.length
+                         + ") of " + total + " records (expected 90)");
+   }
+
+   // Each partition holds only the records that belong to it.
+   private static void checkPartitions(Transaction tx, String tblname) {
+      PartitionInfo pi = db.mdMgr().getPartitionInfo(tblname, tx);
+      int count = 0, misplaced = 0;
+      for (String partname : pi.partitions()) {
+         Layout layout = db.mdMgr().getLayout(partname, tx);
+         TableScan ts = new TableScan(tx, partname, layout);
+         while (ts.next()) {
+            count++;
+            if (!pi.partitionOf(ts.getVal(pi.fieldName())).equals(partname))
+               misplaced++;
+         }
+         ts.close();
+      }
+      System.out.println(tblname + ": " + count + " records in " + pi.numPartitions()
+                         + " partitions, " + misplaced + " misplaced");
+   }
+
+   private static void query(Transaction tx, String qry, int expected) {
+      Plan p = planner.createQueryPlan(qry, tx);
+      Scan s = p.open();
+      int count = 0;
+      while (s.next())
+         count++;
+      s.close();
+      System.out.println(qry + ": " + count + " records (expected " + expected + ")");
+   }
+}
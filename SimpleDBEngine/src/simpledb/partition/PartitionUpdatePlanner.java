@@ -0,0 +1,172 @@
+package simpledb.partition;
+
+import static java.sql.Types.INTEGER;
+import java.io.*;
+import java.util.*;
+import simpledb.tx.Transaction;
+import simpledb.record.Schema;
+import simpledb.metadata.*;
+import simpledb.query.Constant;
+import simpledb.parse.*;
+import simpledb.plan.UpdatePlanner;
+
+/**
+ * An update planner for partitioned tables.
+ * It passes each statement on a partitioned table to another
+ * update planner once for each of the partitions it affects,
+ * and passes the statements on any other table unchanged.
+ * An index on a partitioned table is made of one index per
+ * partition, named idxname#0, idxname#1 and so on.
+ */
+public class PartitionUpdatePlanner implements UpdatePlanner {
+   private UpdatePlanner up;
+   private MetadataMgr mdm;
+
+   public PartitionUpdatePlanner(UpdatePlanner up, MetadataMgr mdm) {
+      this.up = up;
+      this.mdm = mdm;
+   }
+
+   /**
+    * Insert the record into the partition that its
+    * value of the partitioning field belongs to.
+    */
+   public int executeInsert(InsertData data, Transaction tx) {
+      PartitionInfo pi = mdm.getPartitionInfo(data.tableName(), tx);
+      if (pi == null)
+         return up.executeInsert(data, tx);
+      int pos = data.fields().indexOf(pi.fieldName());
+      Constant key = (pos < 0) ? null : data.vals().get(pos);
+      String partname = pi.partitionOf(key);
+      return up.executeInsert(new InsertData(partname, data.fields(), data.vals()), tx);
+   }
+
+   /**
+    * Delete the records from each partition that the
+    * predicate does not rule out.
+    */
+   public int executeDelete(DeleteData data, Transaction tx) {
+      PartitionInfo pi = mdm.getPartitionInfo(data.tableName(), tx);
+      if (pi == null)
+         return up.executeDelete(data, tx);
+      int count = 0;
+      for (String partname : pi.prune(data.pred()))
+         count += up.executeDelete(new DeleteData(partname, data.pred()), tx);
+      return count;
+   }
+
+   /**
+    * Modify the records of each partition that the
+    * predicate does not rule out. The partitioning field
+    * cannot be modified, since a modified record might
+    * then belong to another partition.
+    */
+   public int executeModify(ModifyData data, Transaction tx) {
+      PartitionInfo pi = mdm.getPartitionInfo(data.tableName(), tx);
+      if (pi == null)
+         return up.executeModify(data, tx);
+      if (data.targetField().equals(pi.fieldName()))
+         throw new BadSyntaxException("The partitioning field '" + pi.fieldName()
+                                      + "' of '" + pi.tableName() + "' cannot be modified");
+      int count = 0;
+      for (String partname : pi.prune(data.pred()))
+         count += up.executeModify(new ModifyData(partname, data.targetField(),
+                                                  data.newValue(), data.pred()), tx);
+      return count;
+   }
+
+   /**
+    * Split the rows of the CSV data by partition, and then
+    * load the rows of each partition in turn, so that each
+    * is loaded a page at a time. The rows are held in memory
+    * until they have all been read.
+    */
+   public int executeCopy(CopyData data, Reader csv, Transaction tx) {
+      PartitionInfo pi = mdm.getPartitionInfo(data.tableName(), tx);
+      if (pi == null)
+         return up.executeCopy(data, csv, tx);
+      Schema sch = mdm.getSchema(data.tableName(), tx);
+      List<String> fields = data.fields().isEmpty() ? sch.fields() : data.fields();
+      CsvParser parser = new CsvParser(csv, sch, fields);
+      int pos = fields.indexOf(pi.fieldName());
+      Map<String,StringBuilder> rows = new LinkedHashMap<>();
+      try {
+         for (List<Constant> vals = parser.next(); vals != null; vals = parser.next()) {
+            String partname = pi.partitionOf((pos < 0) ? null : vals.get(pos));
+            StringBuilder sb = rows.computeIfAbsent(partname, k -> new StringBuilder());
+            for (int i=0; i<fields.size(); i++) {
+               if (i > 0)
+                  sb.append(',');
+               if (sch.type(fields.get(i)) == INTEGER)
+                  sb.append(vals.get(i).asInt());
+               else
+                  sb.append('"').append(vals.get(i).asString().replace("\"", "\"\"")).append('"');
+            }
+            sb.append('\n');
+         }
+      }
+      catch(IOException e) {
+         throw new RuntimeException("cannot read the data of " + data.tableName(), e);
+      }
+      int count = 0;
+      for (Map.Entry<String,StringBuilder> e : rows.entrySet()) {
+         CopyData partdata = new CopyData(e.getKey(), data.fields(), data.fileName());
+         count += up.executeCopy(partdata, new StringReader(e.getValue().toString()), tx);
+      }
+      return count;
+   }
+
+   /**
+    * Compact each partition in turn.
+    */
+   public int executeVacuum(VacuumData data, Transaction tx) {
+      PartitionInfo pi = mdm.getPartitionInfo(data.tableName(), tx);
+      if (pi == null)
+         return up.executeVacuum(data, tx);
+      int count = 0;
+      for (String partname : pi.partitions())
+         count += up.executeVacuum(new VacuumData(partname), tx);
+      return count;
+   }
+
+   /**
+    * Create the table, which holds no records, and then
+    * a table for each partition, with the same schema and
+    * storage options.
+    */
+   public int executeCreateTable(CreateTableData data, Transaction tx) {
+      if (data.partitionField() == null)
+         return up.executeCreateTable(data, tx);
+      int kind = data.hashPartitioned() ? PartitionInfo.HASH : PartitionInfo.RANGE;
+      PartitionInfo pi = new PartitionInfo(data.tableName(), data.partitionField(), kind,
+                                           data.numPartitions(), data.partitionBounds());
+      List<String> partnames = pi.partitions();
+      up.executeCreateTable(data, tx);
+      for (String partname : partnames)
+         mdm.createTable(partname, data.newSchema(), data.layoutFormat(),
+                         data.dictionaryEncoded(), tx);
+      mdm.createPartitions(pi, tx);
+      return 0;
+   }
+
+   public int executeCreateView(CreateViewData data, Transaction tx) {
+      return up.executeCreateView(data, tx);
+   }
+
+   /**
+    * Create an index on each partition of a partitioned table.
+    */
+   public int executeCreateIndex(CreateIndexData data, Transaction tx) {
+      PartitionInfo pi = mdm.getPartitionInfo(data.tableName(), tx);
+      if (pi == null)
+         return up.executeCreateIndex(data, tx);
+      List<String> partnames = pi.partitions();
+      List<String> idxnames = new ArrayList<>();
+      for (int i=0; i<partnames.size(); i++)
+         idxnames.add(PartitionInfo.partitionName(data.indexName(), i));
+      for (int i=0; i<partnames.size(); i++)
+         up.executeCreateIndex(new CreateIndexData(idxnames.get(i), partnames.get(i),
+                                                   data.fieldName(), data.indexType()), tx);
+      return 0;
+   }
+}
@@ -1,9 +1,11 @@
 package simpledb.plan;
 
-import java.util.Iterator;
+import java.io.*;
+import java.util.*;
 import simpledb.tx.Transaction;
 import simpledb.parse.*;
 import simpledb.query.*;
+import simpledb.record.*;
 import simpledb.metadata.MetadataMgr;
 
 /**
@@ -57,8 +59,54 @@ public class BasicUpdatePlanner implements UpdatePlanner {
       return 1;
    }
    
+   /**
+    * Load the rows of the CSV data into the table a page
+    * at a time, with a bulk loader.
+    */
+   public int executeCopy(CopyData data, Reader csv, Transaction tx) {
+      Layout layout = mdm.getLayout(data.tableName(), tx);
+      return load(data, csv, layout, tx).count();
+   }
+
+   /**
+    * Load the rows of the CSV data of a copy statement
+    * into its table with a bulk loader, and return the
+    * closed loader, which tells where the loaded records are.
+    * @param data the copy statement
+    * @param csv the CSV data
+    * @param layout the layout of the table
+    * @param tx the transaction
+    * @return the loader
+    */
+   public static BulkLoader load(CopyData data, Reader csv, Layout layout, Transaction tx) {
+      List<String> fields = data.fields().isEmpty() ? layout.schema().fields() : data.fields();
+      CsvParser parser = new CsvParser(csv, layout.schema(), fields);
+      BulkLoader loader = new BulkLoader(tx, data.tableName(), layout);
+      try {
+         for (List<Constant> vals = parser.next(); vals != null; vals = parser.next())
+            loader.insert(fields, vals);
+      }
+      catch(IOException e) {
+         throw new RuntimeException("cannot read the data of " + data.tableName(), e);
+      }
+      loader.close();
+      return loader;
+   }
+   
+   /**
+    * Compact the table. The basic planner
+    * ignores indexes, as it does for insertions.
+    */
+   public int executeVacuum(VacuumData data, Transaction tx) {
+      Layout layout = mdm.getLayout(data.tableName(), tx);
+      TableCompactor compactor = new TableCompactor(tx, data.tableName(), layout);
+      compactor.compact();
+      return compactor.moves().size();
+   }
+   
    public int executeCreateTable(CreateTableData data, Transaction tx) {
-      mdm.createTable(data.tableName(), data.newSchema(), tx);
+      mdm.createTable(data.tableName(), data.newSchema(), data.layoutFormat(),
+                      data.dictionaryEncoded(), tx);
       return 0;
    }
    
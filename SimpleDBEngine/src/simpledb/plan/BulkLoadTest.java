@@ -0,0 +1,168 @@
+package simpledb.plan;
+
+import java.io.*;
+import java.sql.*;
+import simpledb.server.SimpleDB;
+import simpledb.tx.Transaction;
+import simpledb.index.Index;
+import simpledb.jdbc.CopyStatement;
+import simpledb.jdbc.embedded.EmbeddedDriver;
+import simpledb.parse.BadSyntaxException;
+import simpledb.query.*;
+import simpledb.record.*;
+
+public class BulkLoadTest {
+   private static final int ROWS = 5000;
+   private static final String[] DEPTS = {"compsci", "math", "drama"};
+   private static Planner planner;
+
+   public static void main(String[] args) throws Exception {
+      SimpleDB db = new SimpleDB("bulkloadtest");
+      planner = db.planner();
+      String csvfile = "bulkloadtest/students.csv";
+      try (PrintWriter out = new PrintWriter(new FileWriter(csvfile))) {
+         for (int i=0; i<ROWS; i++)
+            out.println(i + ",student" + i + "," + DEPTS[i % 3]);
+      }
+
+      Transaction tx = db.newTx();
+      String fields = "(id int, name varchar(20), dname varchar(10))";
+      planner.executeUpdate("create table I" + fields, tx);
+      planner.executeUpdate("create table C" + fields, tx);
+      planner.executeUpdate("create table E" + fields + " with (layout='pax', encoding='dictionary')", tx);
+      planner.executeUpdate("create table S" + fields + " with (layout='slotted')", tx);
+      planner.executeUpdate("create index sid on S(id) using btree", tx);
+      planner.executeUpdate("create index iid on I(id) using hash", tx);
+      planner.executeUpdate("create index cid on C(id) using hash", tx);
+      tx.commit();
+
+      // Load the same rows with one insert statement per row, then with copy.
+      tx = db.newTx();
+      long start = System.currentTimeMillis();
+      for (int i=0; i<ROWS; i++)
+         planner.executeUpdate("insert into I(id, name, dname) values (" + i
+                               + ", 'student" + i + "', '" + DEPTS[i % 3] + "')", tx);
+      tx.commit();
+      report("insert", ROWS, System.currentTimeMillis() - start);
+
+      tx = db.newTx();
+      start = System.currentTimeMillis();
+      int n = planner.executeUpdate("copy C from '" + csvfile + "'", tx);
+      tx.commit();
+      report("copy", n, System.currentTimeMillis() - start);
+
+      // A table without an index, in the PAX format and dictionary-encoded.
+      tx = db.newTx();
+      start = System.currentTimeMillis();
+      n = planner.executeUpdate("copy E(id, name, dname) from '" + csvfile + "'", tx);
+      tx.commit();
+      report("copy without index", n, System.currentTimeMillis() - start);
+
+      // A table in the SLOTTED format, whose records have variable length.
+      tx = db.newTx();
+      start = System.currentTimeMillis();
+      n = planner.executeUpdate("copy S from '" + csvfile + "'", tx);
+      tx.commit();
+      report("copy slotted", n, System.currentTimeMillis() - start);
+
+      tx = db.newTx();
+      check(tx, "I", ROWS);
+      check(tx, "C", ROWS);
+      check(tx, "E", ROWS);
+      check(tx, "S", ROWS);
+      System.out.println(count(tx, "select id from S where id = 4321")
+                         + " record of S found by its index (expected 1)");
+      System.out.println(count(tx, "select id from E where dname = 'math'")
+                         + " records of E in math (expected 1667)");
+      lookup(db, tx);
+      tx.commit();
+
+      // A rolled-back copy leaves the table as it was.
+      tx = db.newTx();
+      planner.executeUpdate("copy C from '" + csvfile + "'", tx);
+      check(tx, "C", 2 * ROWS);
+      tx.rollback();
+      tx = db.newTx();
+      check(tx, "C", ROWS);
+      tx.commit();
+
+      // A copy statement only reads files in the copy directory.
+      tx = db.newTx();
+      try {
+         planner.executeUpdate("copy C from '../" + csvfile + "'", tx);
+         System.out.println("a file outside the copy directory was read");
+      }
+      catch(BadSyntaxException e) {
+         System.out.println("copy rejected: " + e.getMessage());
+      }
+      tx.rollback();
+
+      // Quoted values and rows supplied by a JDBC client.
+      Connection conn = new EmbeddedDriver().connect("jdbc:simpledb:bulkloadtest", null);
+      CopyStatement stmt = (CopyStatement) conn.createStatement();
+      String csv = "9001,\"Smith, Jo\",math\n\n9002,\"say \"\"hi\"\"\",drama\n";
+      n = stmt.copyIn("c", new StringReader(csv));
+      ResultSet rs = stmt.executeQuery("select name from c where id > 9000");
+      System.out.print(n + " records loaded through JDBC:");
+      while (rs.next())
+         System.out.print(" [" + rs.getString("name") + "]");
+      System.out.println();
+      rs.close();
+      try {
+         stmt.copyIn("c", new StringReader("9003,x\n"));
+      }
+      catch(SQLException e) {
+         System.out.println("short row rejected: " + e.getCause().getMessage());
+      }
+      conn.close();
+   }
+
+   private static void report(String how, int rows, long ms) {
+      System.out.println(how + ": " + rows + " rows in " + ms + " ms ("
+                         + (rows * 1000L / Math.max(ms, 1)) + " rows/sec)");
+   }
+
+   private static void check(Transaction tx, String tblname, int expected) {
+      Plan p = planner.createQueryPlan("select id, name, dname from " + tblname, tx);
+      Scan s = p.open();
+      int count = 0, errors = 0;
+      while (s.next()) {
+         int id = s.getInt("id");
+         if (!s.getString("name").equals("student" + id)
+               || !s.getString("dname").equals(DEPTS[id % 3]))
+            errors++;
+         count++;
+      }
+      s.close();
+      System.out.println(tblname + ": " + count + " records (expected " + expected
+                         + "), " + errors + " wrong values");
+   }
+
+   private static int count(Transaction tx, String query) {
+      Scan s = planner.createQueryPlan(query, tx).open();
+      int count = 0;
+      while (s.next())
+         count++;
+      s.close();
+      return count;
+   }
+
+   // The index built after the copy finds every loaded record.
+   private static void lookup(SimpleDB db, Transaction tx) {
+      Layout layout = db.mdMgr().getLayout("c", tx);
+      Index idx = db.mdMgr().getIndexInfo("c", tx).get("id").open();
+      TableScan ts = new TableScan(tx, "c", layout);
+      int found = 0;
+      for (int i=0; i<ROWS; i+=7) {
+         idx.beforeFirst(new Constant(i));
+         if (idx.next()) {
+            ts.moveToRid(idx.getDataRid());
+            if (ts.getInt("id") == i)
+               found++;
+         }
+      }
+      ts.close();
+      idx.close();
+      System.out.println("index lookups: " + found + " of " + ((ROWS + 6) / 7) + " found");
+   }
+}
@@ -4,7 +4,10 @@ import simpledb.query.Predicate;
 import simpledb.record.Schema;
 import simpledb.tx.Transaction;
 import simpledb.parse.*;
+import simpledb.metadata.SystemViews;
 
+import java.io.*;
+import java.nio.file.*;
 import java.util.*;
 
 /**
@@ -14,11 +17,23 @@ import java.util.*;
 public class Planner {
    private QueryPlanner qplanner;
    private UpdatePlanner uplanner;
+   private Path copydir = Paths.get(".");
 
    public Planner(QueryPlanner qplanner, UpdatePlanner uplanner) {
       this.qplanner = qplanner;
       this.uplanner = uplanner;
    }
+
+   /**
+    * Specify the directory that holds the files
+    * read by copy statements; a copy statement cannot
+    * read a file outside of it.
+    * The default is the server's working directory.
+    * @param dirname the name of the directory
+    */
+   public void setCopyDirectory(String dirname) {
+      copydir = Paths.get(dirname);
+   }
    
    /**
     * Creates a plan for an SQL select statement, using the supplied planner.
@@ -41,8 +56,8 @@ public class Planner {
    }
    
    /**
-    * Executes an SQL insert, delete, modify, or
-    * create statement.
+    * Executes an SQL insert, delete, modify, copy,
+    * vacuum or create statement.
     * The method dispatches to the appropriate method of the
     * supplied update planner,
     * depending on what the parser returns.
@@ -60,6 +75,10 @@ public class Planner {
          return uplanner.executeDelete((DeleteData)data, tx);
       else if (data instanceof ModifyData)
          return uplanner.executeModify((ModifyData)data, tx);
+      else if (data instanceof CopyData)
+         return executeCopy((CopyData)data, tx);
+      else if (data instanceof VacuumData)
+         return uplanner.executeVacuum((VacuumData)data, tx);
       else if (data instanceof CreateTableData)
          return uplanner.executeCreateTable((CreateTableData)data, tx);
       else if (data instanceof CreateViewData)
@@ -70,6 +89,51 @@ public class Planner {
          return 0;
    }
 
+   /**
+    * Loads the rows of CSV data supplied by the client
+    * into the specified table, as the SQL statement
+    * <i>copy tblname from 'file'</i> does for a file.
+    * Each row holds a value for every field of the table,
+    * in the order in which the fields were created.
+    * @param tblname the name of the table
+    * @param csv the CSV data
+    * @param tx the transaction
+    * @return the number of inserted records
+    */
+   public int executeCopy(String tblname, Reader csv, Transaction tx) {
+      CopyData data = new CopyData(tblname, new ArrayList<>(), null);
+      verifyUpdate(data);
+      return uplanner.executeCopy(data, csv, tx);
+   }
+
+   /**
+    * Executes a copy statement, whose file is opened
+    * relative to the copy directory. The file is rejected
+    * if its path leads out of that directory, either
+    * as written or once links are followed.
+    */
+   private int executeCopy(CopyData data, Transaction tx) {
+      Path file;
+      try {
+         Path dir = copydir.toRealPath();
+         file = dir.resolve(data.fileName()).normalize();
+         if (file.startsWith(dir))
+            file = file.toRealPath();
+         if (!file.startsWith(dir))
+            throw new BadSyntaxException("'" + data.fileName()
+                                         + "' is outside the copy directory");
+      }
+      catch(IOException e) {
+         throw new RuntimeException("cannot read " + data.fileName(), e);
+      }
+      try (Reader csv = new FileReader(file.toFile())) {
+         return uplanner.executeCopy(data, csv, tx);
+      }
+      catch(IOException e) {
+         throw new RuntimeException("cannot read " + data.fileName(), e);
+      }
+   }
+
    /**
     * Checks if the entire query is valid. Gets schema from all
     * tables selected and checks if the fields listed in the query
@@ -130,6 +194,24 @@ public class Planner {
    }
 
    // SimpleDB does not verify updates, although it should.
+   // It only checks that the system views are not modified.
    private void verifyUpdate(Object data) {
+      String tblname = null;
+      if (data instanceof InsertData)
+         tblname = ((InsertData)data).tableName();
+      else if (data instanceof DeleteData)
+         tblname = ((DeleteData)data).tableName();
+      else if (data instanceof ModifyData)
+         tblname = ((ModifyData)data).tableName();
+      else if (data instanceof CopyData)
+         tblname = ((CopyData)data).tableName();
+      else if (data instanceof VacuumData)
+         tblname = ((VacuumData)data).tableName();
+      else if (data instanceof CreateTableData)
+         tblname = ((CreateTableData)data).tableName();
+      else if (data instanceof CreateViewData)
+         tblname = ((CreateViewData)data).viewName();
+      if (tblname != null && SystemViews.isSystemView(tblname))
+         throw new BadSyntaxException("'" + tblname + "' is a read-only system view");
    }
 }
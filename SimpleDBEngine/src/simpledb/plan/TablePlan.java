@@ -31,10 +31,13 @@ public class TablePlan implements Plan {
    }
    
    /**
-    * Creates a table scan for this query.
+    * Creates a table scan for this query,
+    * or a scan over the current records of a system view.
     * @see simpledb.plan.Plan#open()
     */
    public Scan open() {
+      if (SystemViews.isSystemView(tblname))
+         return SystemViews.open(tblname);
       return new TableScan(tx, tblname, layout);
    }
    
@@ -1,5 +1,6 @@
 package simpledb.plan;
 
+import java.io.Reader;
 import simpledb.tx.Transaction;
 import simpledb.parse.*;
 
@@ -37,6 +38,28 @@ public interface UpdatePlanner {
     */
    public int executeModify(ModifyData data, Transaction tx);
    
+   /**
+    * Executes the specified copy statement, which loads the
+    * rows of the specified CSV data into a table, and
+    * returns the number of inserted records.
+    * @param data the parsed representation of the copy statement
+    * @param csv the CSV data
+    * @param tx the calling transaction
+    * @return the number of affected records
+    */
+   public int executeCopy(CopyData data, Reader csv, Transaction tx);
+   
+   /**
+    * Executes the specified vacuum statement, which compacts
+    * a table, and returns the number of moved records.
+    * The table is locked exclusively until the
+    * transaction ends.
+    * @param data the parsed representation of the vacuum statement
+    * @param tx the calling transaction
+    * @return the number of affected records
+    */
+   public int executeVacuum(VacuumData data, Transaction tx);
+   
    /**
     * Executes the specified create table statement, and
     * returns the number of affected records.
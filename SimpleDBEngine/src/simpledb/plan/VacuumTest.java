@@ -0,0 +1,136 @@
+package simpledb.plan;
+
+import java.io.*;
+import simpledb.server.SimpleDB;
+import simpledb.tx.Transaction;
+import simpledb.index.Index;
+import simpledb.query.*;
+import simpledb.record.*;
+
+public class VacuumTest {
+   private static final int ROWS = 2000;
+   private static SimpleDB db;
+   private static Planner planner;
+
+   public static void main(String[] args) throws Exception {
+      db = new SimpleDB("vacuumtest");
+      planner = db.planner();
+      String csvfile = "vacuumtest/rows.csv";
+      try (PrintWriter out = new PrintWriter(new FileWriter(csvfile))) {
+         for (int i=0; i<ROWS; i++)
+            out.println(i + "," + (i % 10) + ",name" + i);
+      }
+
+      Transaction tx = db.newTx();
+      String fields = "(id int, grp int, name varchar(20))";
+      planner.executeUpdate("create table F" + fields, tx);
+      planner.executeUpdate("create table P" + fields + " with (layout='pax')", tx);
+      planner.executeUpdate("create table S" + fields + " with (layout='slotted')", tx);
+      planner.executeUpdate("create index fid on F(id) using hash", tx);
+      planner.executeUpdate("create index fname on F(name) using btree", tx);
+      for (String tbl : new String[] {"F", "P", "S"}) {
+         planner.executeUpdate("copy " + tbl + " from '" + csvfile + "'", tx);
+         planner.executeUpdate("delete from " + tbl + " where grp > 1", tx);
+      }
+      tx.commit();
+
+      // A rolled-back vacuum leaves the table and its indexes as they were.
+      tx = db.newTx();
+      planner.executeUpdate("vacuum F", tx);
+      tx.rollback();
+      tx = db.newTx();
+      check(tx, "F");
+      lookup(tx);
+      tx.commit();
+
+      for (String tbl : new String[] {"F", "P", "S"}) {
+         String filename = tbl.toLowerCase() + ".tbl";
+         tx = db.newTx();
+         int before = tx.size(filename);
+         int moved = planner.executeUpdate("vacuum " + tbl, tx);
+         tx.commit();
+         tx = db.newTx();
+         System.out.println(tbl + ": " + moved + " records moved, " + before + " blocks before, "
+                            + tx.size(filename) + " after");
+         check(tx, tbl);
+         tx.commit();
+      }
+      // A read-only transaction keeps the removed blocks until it ends.
+      tx = db.newTx();
+      planner.executeUpdate("delete from P where grp = 1", tx);
+      tx.commit();
+      Transaction reader = db.newReadOnlyTx();
+      tx = db.newTx();
+      int before = tx.size("p.tbl");
+      planner.executeUpdate("vacuum P", tx);
+      tx.commit();
+      System.out.println("P: " + reader.size("p.tbl") + " blocks during a read-only transaction (expected "
+                         + before + "), " + count(reader, "select id from P") + " records (expected 200)");
+      reader.commit();
+      tx = db.newTx();
+      planner.executeUpdate("vacuum P", tx);
+      tx.commit();
+      tx = db.newTx();
+      System.out.println("P: " + tx.size("p.tbl") + " blocks after it ended, "
+                         + count(tx, "select id from P") + " records (expected 200)");
+      tx.commit();
+
+      tx = db.newTx();
+      lookup(tx);
+
+      // The compacted table grows again from its free slots.
+      for (int i=ROWS; i<ROWS+100; i++)
+         planner.executeUpdate("insert into F(id, grp, name) values (" + i + ", 0, 'name" + i + "')", tx);
+      System.out.println(tx.size("f.tbl") + " blocks after 100 more insertions");
+      tx.commit();
+   }
+
+   private static int count(Transaction tx, String query) {
+      Scan s = planner.createQueryPlan(query, tx).open();
+      int count = 0;
+      while (s.next())
+         count++;
+      s.close();
+      return count;
+   }
+
+   private static void check(Transaction tx, String tblname) {
+      Plan p = planner.createQueryPlan("select id, grp, name from " + tblname, tx);
+      Scan s = p.open();
+      int count = 0, errors = 0;
+      while (s.next()) {
+         int id = s.getInt("id");
+         if (s.getInt("grp") != id % 10 || s.getInt("grp") > 1
+               || !s.getString("name").equals("name" + id))
+            errors++;
+         count++;
+      }
+      s.close();
+      System.out.println(tblname + ": " + count + " records (expected " + (ROWS / 5)
+                         + "), " + errors + " wrong values");
+   }
+
+   // Both indexes find every remaining record at its current RID.
+   private static void lookup(Transaction tx) {
+      Layout layout = db.mdMgr().getLayout("f", tx);
+      TableScan ts = new TableScan(tx, "f", layout);
+      int found = 0;
+      for (String fldname : new String[] {"id", "name"}) {
+         Index idx = db.mdMgr().getIndexInfo("f", tx).get(fldname).open();
+         for (int i=0; i<ROWS; i++) {
+            if (i % 10 > 1)
+               continue;
+            Constant key = fldname.equals("id") ? new Constant(i) : new Constant("name" + i);
+            idx.beforeFirst(key);
+            if (idx.next()) {
+               ts.moveToRid(idx.getDataRid());
+               if (ts.getInt("id") == i)
+                  found++;
+            }
+         }
+         idx.close();
+      }
+      ts.close();
+      System.out.println("index lookups: " + found + " of " + (2 * ROWS / 5) + " found");
+   }
+}
@@ -0,0 +1,134 @@
+package simpledb.plan;
+
+import java.io.*;
+import simpledb.server.SimpleDB;
+import simpledb.parse.Parser;
+import simpledb.tx.Transaction;
+import simpledb.tx.concurrency.*;
+import simpledb.query.*;
+import simpledb.record.*;
+
+public class ZoneMapTest {
+   private static final int ROWS = 20000;
+   private static SimpleDB db;
+   private static Planner planner;
+
+   public static void main(String[] args) throws Exception {
+      db = new SimpleDB("zonemaptest");
+      planner = db.planner();
+      String csvfile = "zonemaptest/students.csv";
+      try (PrintWriter out = new PrintWriter(new FileWriter(csvfile))) {
+         for (int i=0; i<ROWS; i++)
+            out.println(i + "," + gradyear(i) + ",student" + i);
+      }
+
+      // The graduation year follows the order in which the students are loaded.
+      Transaction tx = db.newTx();
+      String fields = "(id int, gradyear int, name varchar(20))";
+      planner.executeUpdate("create table F" + fields, tx);
+      planner.executeUpdate("create table P" + fields + " with (layout='pax')", tx);
+      planner.executeUpdate("create table S" + fields + " with (layout='slotted')", tx);
+      for (int i=0; i<ROWS/10; i++)
+         planner.executeUpdate("insert into F(id, gradyear, name) values (" + i + ", "
+                               + gradyear(i) + ", 'student" + i + "')", tx);
+      planner.executeUpdate("copy P from '" + csvfile + "'", tx);
+      planner.executeUpdate("copy S from '" + csvfile + "'", tx);
+      tx.commit();
+
+      tx = db.newTx();
+      for (String tbl : new String[] {"F", "P", "S"}) {
+         check(tx, tbl, "gradyear = 1915", 100);
+         check(tx, tbl, "gradyear > 1917 and gradyear <= 1919", 200);
+         check(tx, tbl, "2000 > gradyear and id < 150", 150);
+         check(tx, tbl, "gradyear = 1800", 0);
+      }
+      tx.commit();
+      time("select id from P where gradyear = 1990");
+      time("select id from P where name = 'student19000'");
+
+      // An updated value widens its block's range.
+      tx = db.newTx();
+      planner.executeUpdate("update F set gradyear = 1800 where id = 1500", tx);
+      planner.executeUpdate("update P set gradyear = 2500 where id = 7", tx);
+      check(tx, "F", "gradyear = 1800", 1);
+      check(tx, "P", "gradyear > 2100", 1);
+      tx.commit();
+
+      // A rolled-back update leaves the wider range, which is harmless.
+      tx = db.newTx();
+      planner.executeUpdate("update F set gradyear = 1700 where gradyear = 1800", tx);
+      tx.rollback();
+      tx = db.newTx();
+      check(tx, "F", "gradyear = 1800", 1);
+      check(tx, "F", "gradyear = 1700", 0);
+
+      // A record inserted into a block whose slot was freed is found.
+      planner.executeUpdate("delete from F where gradyear = 1900", tx);
+      planner.executeUpdate("insert into F(id, gradyear, name) values (99999, 1999, 'late')", tx);
+      check(tx, "F", "gradyear = 1999", 1);
+      check(tx, "F", "gradyear = 1900", 0);
+      tx.commit();
+
+      // A restricted scan S-locks the blocks that it skips,
+      // as well as those it reads, instead of the whole table.
+      tx = db.newTx();
+      check(tx, "F", "gradyear = 1910", 100);
+      int size = tx.size("f.tbl"), locked = 0;
+      String tablelock = "none";
+      for (LockInfo li : ConcurrencyMgr.locks())
+         if (li.txNum() == tx.txNum() && li.block().fileName().equals("f.tbl")) {
+            if (li.block().number() == -2)
+               tablelock = li.mode().toString();
+            else if (li.block().number() >= 0 && li.slot() < 0 && li.mode() == LockMode.S)
+               locked++;
+         }
+      System.out.println("The scan holds " + tablelock + " on the table (expected IS) and S on "
+                         + locked + " blocks (expected " + size + ")");
+      tx.commit();
+   }
+
+   private static int gradyear(int i) {
+      return 1900 + i / 100;
+   }
+
+   // The restricted scan finds the same records as a full scan,
+   // while reading only some of the blocks.
+   private static void check(Transaction tx, String tblname, String cond, int expected) {
+      int count = 0;
+      Scan s = planner.createQueryPlan("select id from " + tblname + " where " + cond, tx).open();
+      while (s.next())
+         count++;
+      s.close();
+
+      Layout layout = db.mdMgr().getLayout(tblname.toLowerCase(), tx);
+      int size = tx.size(tblname.toLowerCase() + ".tbl");
+      int read = size;
+      ZoneMap zonemap = layout.zoneMap();
+      if (zonemap != null) {
+         Predicate pred = new Parser("select id from " + tblname + " where " + cond).query().pred();
+         long[] ranges = zonemap.ranges(pred, layout.schema());
+         read = 0;
+         for (int blknum=0; blknum<size; blknum++)
+            if (ranges == null || zonemap.mayContain(blknum, ranges))
+               read++;
+      }
+      System.out.println(tblname + " where " + cond + ": " + count + " records (expected "
+                         + expected + "), " + read + " of " + size + " blocks read");
+   }
+
+   private static void time(String query) {
+      Transaction tx = db.newTx();
+      Plan p = planner.createQueryPlan(query, tx);
+      long start = System.nanoTime();
+      int count = 0;
+      for (int i=0; i<20; i++) {
+         Scan s = p.open();
+         while (s.next())
+            count++;
+         s.close();
+      }
+      System.out.println(query + ": " + (count / 20) + " records, "
+                         + (System.nanoTime() - start) / 20000 + " us per query");
+      tx.commit();
+   }
+}
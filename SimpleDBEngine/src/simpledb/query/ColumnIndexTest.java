@@ -0,0 +1,77 @@
+package simpledb.query;
+
+import simpledb.server.SimpleDB;
+import simpledb.tx.Transaction;
+import simpledb.record.*;
+
+public class ColumnIndexTest {
+   public static void main(String[] args) throws Exception {
+      SimpleDB db = new SimpleDB("columnindextest");
+      Transaction tx = db.newTx();
+
+      Schema sch1 = new Schema();
+      sch1.addIntField("A");
+      sch1.addStringField("B", 9);
+      Layout layout1 = new Layout(sch1);
+      UpdateScan s1 = new TableScan(tx, "T1", layout1);
+      for (int i=0; i<200; i++) {
+         s1.insert();
+         s1.setInt("A", i);
+         s1.setString("B", "rec" + i);
+      }
+      s1.close();
+
+      Schema sch2 = new Schema();
+      sch2.addIntField("C");
+      sch2.addStringField("D", 9);
+      Layout layout2 = new Layout(sch2);
+      UpdateScan s2 = new TableScan(tx, "T2", layout2);
+      for (int i=0; i<200; i++) {
+         s2.insert();
+         s2.setInt("C", i % 10);
+         s2.setString("D", "rec" + i);
+      }
+      s2.close();
+
+      // Read every field of the product by name, then by column.
+      long start = System.currentTimeMillis();
+      long sum1 = 0;
+      Scan s = product(tx, layout1, layout2);
+      while (s.next())
+         sum1 += s.getInt("A") + s.getInt("C") + s.getString("B").length()
+               + s.getString("D").length();
+      s.close();
+      long time1 = System.currentTimeMillis() - start;
+
+      start = System.currentTimeMillis();
+      long sum2 = 0;
+      s = product(tx, layout1, layout2);
+      int a = s.columnIndex("A"), b = s.columnIndex("B");
+      int c = s.columnIndex("C"), d = s.columnIndex("D");
+      while (s.next())
+         sum2 += s.getInt(a) + s.getInt(c) + s.getString(b).length()
+               + s.getString(d).length();
+      s.close();
+      long time2 = System.currentTimeMillis() - start;
+      System.out.println("by name: " + sum1 + " in " + time1 + " ms");
+      System.out.println("by column: " + sum2 + " in " + time2 + " ms");
+      System.out.println("unknown field: " + s.columnIndex("E") + " (expected -1)");
+
+      // A selection binds its predicate to columns when it is opened.
+      s = new TableScan(tx, "T2", layout2);
+      Term t = new Term(new Expression("C"), new CondOp("<"), new Expression(new Constant(3)));
+      s = new SelectScan(s, new Predicate(t));
+      int count = 0;
+      while (s.next())
+         count++;
+      s.close();
+      System.out.println(count + " records with C < 3 (expected 60)");
+      tx.commit();
+   }
+
+   private static Scan product(Transaction tx, Layout layout1, Layout layout2) {
+      Scan s1 = new TableScan(tx, "T1", layout1);
+      Scan s2 = new TableScan(tx, "T2", layout2);
+      return new ProductScan(s1, s2);
+   }
+}
@@ -0,0 +1,71 @@
+package simpledb.query;
+
+import java.util.*;
+
+/**
+ * The columns of a scan that combines the records of
+ * several underlying scans, such as a product or a join.
+ * Each field that is resolved gets the next column number,
+ * which is mapped to the underlying scan that has the field
+ * (identified by its position, starting at 0) and to
+ * the column of the field in that scan.
+ * Resolving a field again returns the same column number.
+ */
+public class ColumnMap {
+   private Map<String,Integer> columns = new HashMap<>();
+   private int[] scans = new int[8];
+   private int[] subcols = new int[8];
+
+   /**
+    * Return the column number of the specified field,
+    * if it has already been resolved.
+    * @param fldname the name of the field
+    * @return the column number, or -1 if the field has not been resolved
+    */
+   public int column(String fldname) {
+      Integer col = columns.get(fldname);
+      return (col == null) ? -1 : col;
+   }
+
+   /**
+    * Resolve the specified field to the specified column
+    * of an underlying scan, and return its column number.
+    * @param fldname the name of the field
+    * @param scan the position of the underlying scan
+    * @param subcol the column number of the field in the underlying scan
+    * @return the column number of the field, or -1 if subcol is -1
+    */
+   public int add(String fldname, int scan, int subcol) {
+      if (subcol < 0)
+         return -1;
+      int col = columns.size();
+      if (col == scans.length) {
+         scans = Arrays.copyOf(scans, 2 * col);
+         subcols = Arrays.copyOf(subcols, 2 * col);
+      }
+      scans[col] = scan;
+      subcols[col] = subcol;
+      columns.put(fldname, col);
+      return col;
+   }
+
+   /**
+    * Return the position of the underlying scan
+    * that has the field in the specified column.
+    * @param col a column number
+    * @return the position of the underlying scan
+    */
+   public int scan(int col) {
+      return scans[col];
+   }
+
+   /**
+    * Return the column number of the field
+    * in its underlying scan.
+    * @param col a column number
+    * @return the field's column number in the underlying scan
+    */
+   public int subColumn(int col) {
+      return subcols[col];
+   }
+}
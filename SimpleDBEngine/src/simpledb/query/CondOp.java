@@ -92,6 +92,33 @@ public class CondOp {
         }
     }
 
+    /**
+     * Evaluate the conditional operator on the result
+     * of comparing two values
+     *
+     * @param cmp the result of the comparison: negative, zero or positive
+     *            if the first value is less than, equal to or greater than the second
+     * @return if the relationship between the two values is true
+     */
+    public boolean evaluate(int cmp) {
+        switch (val) {
+            case lessThan:
+                return cmp < 0;
+            case lessThanOrEquals:
+                return cmp <= 0;
+            case equals:
+                return cmp == 0;
+            case moreThan:
+                return cmp > 0;
+            case moreThanOrEquals:
+                return cmp >= 0;
+            case notEquals:
+                return cmp != 0;
+            default:
+                throw new BadSyntaxException();
+        }
+    }
+
     /**
      * Evaluate two constants with the conditional operator
      *
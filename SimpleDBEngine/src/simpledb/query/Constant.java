@@ -1,12 +1,20 @@
 package simpledb.query;
 
+import simpledb.record.FieldDictionary;
+
 /**
  * The class that denotes values stored in the database.
+ * A value of a dictionary-encoded field holds its code,
+ * and is only decoded when its string is needed;
+ * two values from the same dictionary are compared
+ * for equality by their codes.
  * @author Edward Sciore
  */
 public class Constant implements Comparable<Constant> {
    private Integer ival = null;
    private String  sval = null;
+   private FieldDictionary dict = null;
+   private int code;
    
    public Constant(Integer ival) {
       this.ival = ival;
@@ -15,32 +23,71 @@ public class Constant implements Comparable<Constant> {
    public Constant(String sval) {
       this.sval = sval;
    }
+
+   /**
+    * Create a string constant for the value
+    * that has the specified code in a dictionary.
+    * @param dict the dictionary of the value's field
+    * @param code the code of the value
+    */
+   public Constant(FieldDictionary dict, int code) {
+      this.dict = dict;
+      this.code = code;
+   }
    
    public int asInt() {
       return ival;
    }
+
+   /**
+    * Return true if the constant is an integer.
+    * @return true if the constant is an integer
+    */
+   public boolean isInt() {
+      return ival != null;
+   }
    
    public String asString() {
+      if (sval == null && dict != null)
+         sval = dict.value(code);
       return sval;
    }
+
+   /**
+    * Return the dictionary whose code the constant holds.
+    * @return the dictionary, or null if the constant is not encoded
+    */
+   public FieldDictionary dictionary() {
+      return dict;
+   }
+
+   /**
+    * Return the code of an encoded constant.
+    * @return the code of the constant in its dictionary
+    */
+   public int code() {
+      return code;
+   }
    
    public boolean equals(Object obj) {
       if (obj == null && this != null) {
          return false;
       }
       Constant c = (Constant) obj;
-      return (ival != null) ? ival.equals(c.ival) : sval.equals(c.sval);
+      if (dict != null && dict == c.dict)
+         return code == c.code;
+      return (ival != null) ? ival.equals(c.ival) : asString().equals(c.asString());
    }
    
    public int compareTo(Constant c) {
-      return (ival != null) ? ival.compareTo(c.ival) : sval.compareTo(c.sval);
+      return (ival != null) ? ival.compareTo(c.ival) : asString().compareTo(c.asString());
    }
    
    public int hashCode() {
-      return (ival != null) ? ival.hashCode() : sval.hashCode();
+      return (ival != null) ? ival.hashCode() : asString().hashCode();
    }
    
    public String toString() {
-      return (ival != null) ? ival.toString() : sval.toString();
+      return (ival != null) ? ival.toString() : asString().toString();
    }   
 }
@@ -28,6 +28,17 @@ public class Expression {
    public Constant evaluate(Scan s) {
       return (val != null) ? val : s.getVal(fldname);
    }
+
+   /**
+    * Return the column of the specified scan that
+    * holds the field of a field reference.
+    * @param s the scan
+    * @return the column number of the field,
+    *         or -1 if the expression is a constant
+    */
+   public int columnIndex(Scan s) {
+      return (val != null) ? -1 : s.columnIndex(fldname);
+   }
    
    /**
     * Return true if the expression is a field reference.
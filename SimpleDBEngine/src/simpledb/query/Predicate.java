@@ -57,6 +57,86 @@ public class Predicate {
       return true;
    }
 
+   /**
+    * Bind the terms of the predicate to the specified scan,
+    * resolving their fields to the columns of the scan.
+    * The bindings also hold the values that the terms cache
+    * while they are evaluated against the scan.
+    * @param s the scan
+    * @return a binding for each term, in order
+    */
+   public TermBinding[] bind(Scan s) {
+      TermBinding[] bindings = new TermBinding[terms.size()];
+      for (int i=0; i<terms.size(); i++)
+         bindings[i] = new TermBinding(terms.get(i).getLhs().columnIndex(s),
+                                       terms.get(i).getRhs().columnIndex(s));
+      return bindings;
+   }
+
+   /**
+    * Returns true if the predicate evaluates to true
+    * with respect to the specified scan, to which its
+    * terms have been bound.
+    * @param s the scan
+    * @param bindings the bindings returned by bind(s)
+    * @return true if the predicate is true in the scan
+    */
+   public boolean isSatisfied(Scan s, TermBinding[] bindings) {
+      for (int i=0; i<terms.size(); i++)
+         if (!terms.get(i).isSatisfied(s, bindings[i]))
+            return false;
+      return true;
+   }
+
+   /**
+    * Return the range of values of the specified integer
+    * field that the terms of the form "F op c" or "c op F"
+    * allow, where c is an integer constant and op is one of
+    * =, <, <=, > and >=. The other terms are ignored.
+    * The range is empty if its lowest value is greater
+    * than its highest.
+    * @param fldname the name of the field
+    * @return the lowest and highest allowed values
+    */
+   public long[] range(String fldname) {
+      long lo = Integer.MIN_VALUE, hi = Integer.MAX_VALUE;
+      for (Term t : terms) {
+         Expression lhs = t.getLhs(), rhs = t.getRhs();
+         CondOp op = t.getCondOp();
+         if (rhs.isFieldName() && !lhs.isFieldName()) {
+            Expression e = lhs;
+            lhs = rhs;
+            rhs = e;
+            op = op.flip();
+         }
+         if (!lhs.isFieldName() || !lhs.asFieldName().equals(fldname)
+               || rhs.isFieldName() || !rhs.asConstant().isInt())
+            continue;
+         long c = rhs.asConstant().asInt();
+         switch (op.getVal()) {
+            case equals:
+               lo = Math.max(lo, c);
+               hi = Math.min(hi, c);
+               break;
+            case lessThan:
+               hi = Math.min(hi, c - 1);
+               break;
+            case lessThanOrEquals:
+               hi = Math.min(hi, c);
+               break;
+            case moreThan:
+               lo = Math.max(lo, c + 1);
+               break;
+            case moreThanOrEquals:
+               lo = Math.max(lo, c);
+               break;
+            default:
+               break;
+         }
+      }
+      return new long[] {lo, hi};
+   }
+
    /**
     * Returns a list of any fields that are in the predicate
     * @return list of fields names in the predicate
@@ -8,6 +8,7 @@ package simpledb.query;
 public class ProductScan implements Scan {
    private Scan s1, s2;
    private boolean isEmpty;
+   private ColumnMap columns = new ColumnMap();
 
    /**
     * Create a product scan having the two underlying scans.
@@ -92,6 +93,37 @@ public class ProductScan implements Scan {
          return s2.getVal(fldname);
    }
 
+   /**
+    * Return the column number of the specified field,
+    * which is mapped to its column in whichever scan
+    * contains the field.
+    * @see simpledb.query.Scan#columnIndex(java.lang.String)
+    */
+   public int columnIndex(String fldname) {
+      int col = columns.column(fldname);
+      if (col >= 0)
+         return col;
+      if (s1.hasField(fldname))
+         return columns.add(fldname, 0, s1.columnIndex(fldname));
+      else
+         return columns.add(fldname, 1, s2.columnIndex(fldname));
+   }
+
+   public int getInt(int col) {
+      Scan s = (columns.scan(col) == 0) ? s1 : s2;
+      return s.getInt(columns.subColumn(col));
+   }
+
+   public String getString(int col) {
+      Scan s = (columns.scan(col) == 0) ? s1 : s2;
+      return s.getString(columns.subColumn(col));
+   }
+
+   public Constant getVal(int col) {
+      Scan s = (columns.scan(col) == 0) ? s1 : s2;
+      return s.getVal(columns.subColumn(col));
+   }
+
    /**
     * Returns true if the specified field is in
     * either of the underlying scans.
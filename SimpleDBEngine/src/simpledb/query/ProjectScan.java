@@ -54,6 +54,27 @@ public class ProjectScan implements Scan {
          throw new RuntimeException("field " + fldname + " not found.");
    }
 
+   /**
+    * Return the column number of the field in the
+    * underlying scan, or -1 if the field is not projected.
+    * @see simpledb.query.Scan#columnIndex(java.lang.String)
+    */
+   public int columnIndex(String fldname) {
+      return hasField(fldname) ? s.columnIndex(fldname) : -1;
+   }
+
+   public int getInt(int col) {
+      return s.getInt(col);
+   }
+
+   public String getString(int col) {
+      return s.getString(col);
+   }
+
+   public Constant getVal(int col) {
+      return s.getVal(col);
+   }
+
    public boolean hasField(String fldname) {
       return fieldlist.contains(fldname);
    }
@@ -4,6 +4,12 @@ package simpledb.query;
  * The interface will be implemented by each query scan.
  * There is a Scan class for each relational
  * algebra operator.
+ * <p>
+ * A field can be accessed by name or by column number.
+ * The column number of a field is obtained once from
+ * {@link #columnIndex}, typically when the scan is opened;
+ * the accessors that take a column number then read the
+ * field of each record without looking up its name.
  * @author Edward Sciore
  */
 public interface Scan {
@@ -44,6 +50,40 @@ public interface Scan {
     */
    public Constant getVal(String fldname);
    
+   /**
+    * Return the column number of the specified field,
+    * for use with the accessors that take a column number.
+    * The column number is valid for as long as the scan is open.
+    * @param fldname the name of the field
+    * @return the field's column number, or -1 if the scan
+    *         does not have the field
+    */
+   public int columnIndex(String fldname);
+
+   /**
+    * Return the value of the integer field in the
+    * specified column of the current record.
+    * @param col the column number of the field
+    * @return the field's integer value in the current record
+    */
+   public int getInt(int col);
+
+   /**
+    * Return the value of the string field in the
+    * specified column of the current record.
+    * @param col the column number of the field
+    * @return the field's string value in the current record
+    */
+   public String getString(int col);
+
+   /**
+    * Return the value of the field in the specified
+    * column of the current record, expressed as a Constant.
+    * @param col the column number of the field
+    * @return the value of that field, expressed as a Constant
+    */
+   public Constant getVal(int col);
+
    /**
     * Return true if the scan has the specified field.
     * @param fldname the name of the field
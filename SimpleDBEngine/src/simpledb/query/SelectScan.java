@@ -12,16 +12,22 @@ import simpledb.record.*;
 public class SelectScan implements UpdateScan {
 	private Scan s;
 	private Predicate pred;
+	private TermBinding[] bindings;
 
 	/**
 	 * Create a select scan having the specified underlying
 	 * scan and predicate.
+	 * A table scan is restricted to the blocks that
+	 * may hold records satisfying the predicate.
 	 * @param s the scan of the underlying query
 	 * @param pred the selection predicate
 	 */
 	public SelectScan(Scan s, Predicate pred) {
 		this.s = s;
 		this.pred = pred;
+		bindings = pred.bind(s);
+		if (s instanceof TableScan)
+			((TableScan) s).restrict(pred);
 	}
 
 	// Scan methods
@@ -32,7 +38,7 @@ public class SelectScan implements UpdateScan {
 
 	public boolean next() {
 		while (s.next()) {
-			if (pred.isSatisfied(s))
+			if (pred.isSatisfied(s, bindings))
 				return true;
 		}
 		return false;
@@ -50,6 +56,22 @@ public class SelectScan implements UpdateScan {
       return s.getVal(fldname);
    }
 
+	public int columnIndex(String fldname) {
+		return s.columnIndex(fldname);
+	}
+
+	public int getInt(int col) {
+		return s.getInt(col);
+	}
+
+	public String getString(int col) {
+		return s.getString(col);
+	}
+
+	public Constant getVal(int col) {
+		return s.getVal(col);
+	}
+
 	public boolean hasField(String fldname) {
 		return s.hasField(fldname);
 	}
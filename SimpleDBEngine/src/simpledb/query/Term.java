@@ -44,6 +44,30 @@ public class Term {
         return condOp.evaluate(lhsval, rhsval);
     }
 
+    /**
+     * Return true if the term is satisfied by the current
+     * record of the specified scan, to which the term is bound.
+     * A field that is compared with a constant is read with
+     * the accessor for the constant's type, so that
+     * no Constant is created for it, except when an
+     * equality is tested: the value of a dictionary-encoded
+     * field is then compared with the constant by its code,
+     * which is looked up once and kept in the binding.
+     *
+     * @param s the scan
+     * @param b the binding of the term to the scan
+     * @return true if both expressions satisfy the operator in the scan
+     */
+    public boolean isSatisfied(Scan s, TermBinding b) {
+        if (b.lhscol >= 0 && b.rhscol < 0)
+            return condOp.evaluate(compare(s, b, b.lhscol, rhs.asConstant()));
+        if (b.lhscol < 0 && b.rhscol >= 0)
+            return condOp.evaluate(-compare(s, b, b.rhscol, lhs.asConstant()));
+        Constant lhsval = (b.lhscol < 0) ? lhs.asConstant() : s.getVal(b.lhscol);
+        Constant rhsval = (b.rhscol < 0) ? rhs.asConstant() : s.getVal(b.rhscol);
+        return condOp.evaluate(lhsval, rhsval);
+    }
+
     /**
      * Returns a list of any fields in the term
      *
@@ -147,6 +171,29 @@ public class Term {
         return lhs.appliesTo(sch) && rhs.appliesTo(sch);
     }
 
+    private int compare(Scan s, TermBinding b, int col, Constant c) {
+        String sval = c.asString();
+        if (sval == null)
+            return Integer.compare(s.getInt(col), c.asInt());
+        CondOp.types op = condOp.getVal();
+        if (!b.plainstrings && (op == CondOp.types.equals || op == CondOp.types.notEquals)) {
+            Constant val = s.getVal(col);
+            FieldDictionary d = val.dictionary();
+            if (d == null) {
+                b.plainstrings = true;  // the field is not encoded
+                return val.asString().equals(sval) ? 0 : 1;
+            }
+            // A value that is not in the dictionary is looked up
+            // again, since it may have been added in the meantime.
+            if (d != b.dict || b.code < 0) {
+                b.dict = d;
+                b.code = d.find(sval);
+            }
+            return (val.code() == b.code) ? 0 : 1;
+        }
+        return Integer.signum(s.getString(col).compareTo(sval));
+    }
+
     public CondOp getCondOp() {return condOp;}
 
     public Expression getLhs() {return lhs;}
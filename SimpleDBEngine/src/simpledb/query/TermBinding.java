@@ -0,0 +1,28 @@
+package simpledb.query;
+
+import simpledb.record.FieldDictionary;
+
+/**
+ * The state of a term that is evaluated against a particular scan:
+ * the columns of the scan that hold the term's fields, and what the
+ * term has learned about the scan's values while evaluating them.
+ * Keeping this state out of the term lets the same predicate
+ * be evaluated against several scans at once, such as scans
+ * whose string fields are encoded by different dictionaries.
+ */
+public class TermBinding {
+   int lhscol, rhscol;
+   boolean plainstrings = false;
+   FieldDictionary dict;
+   int code = -1;
+
+   /**
+    * Bind a term to the specified columns.
+    * @param lhscol the column of the LHS field, or -1 if the LHS is a constant
+    * @param rhscol the column of the RHS field, or -1 if the RHS is a constant
+    */
+   TermBinding(int lhscol, int rhscol) {
+      this.lhscol = lhscol;
+      this.rhscol = rhscol;
+   }
+}
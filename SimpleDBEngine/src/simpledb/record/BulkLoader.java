@@ -0,0 +1,108 @@
+package simpledb.record;
+
+import static java.sql.Types.INTEGER;
+import java.util.*;
+import simpledb.file.BlockId;
+import simpledb.query.Constant;
+import simpledb.tx.Transaction;
+
+/**
+ * Load records into a table a page at a time.
+ * The loader collects as many records as a page has slots,
+ * then appends a new block to the table and fills it with
+ * a single write (see {@link RecordPage#load}).
+ * A loaded page costs one small log record, instead of
+ * a slot log record for each record and a lock for each slot,
+ * and the loaded blocks are recorded in the table's
+ * free-space map as they are filled.
+ * <p>
+ * The records are always appended to the table, so the
+ * records loaded by a loader are exactly those in the
+ * blocks from {@link #firstBlock} to the end of the table;
+ * the indexes of the table can be built from them once
+ * the load is complete.
+ * A page of a table in the SLOTTED format is loaded with as
+ * many records as it could hold if they had the maximum size,
+ * which is when an insertion would consider it full.
+ */
+public class BulkLoader {
+   private Transaction tx;
+   private Layout layout;
+   private String filename;
+   private FreeSpaceMap fsm;
+   private List<Constant[]> records = new ArrayList<>();
+   private int perpage, count = 0, firstblk = -1;
+
+   /**
+    * Create a loader for the specified table.
+    * @param tx the transaction
+    * @param tblname the name of the table
+    * @param layout the layout of the table's records
+    */
+   public BulkLoader(Transaction tx, String tblname, Layout layout) {
+      this.tx = tx;
+      this.layout = layout;
+      filename = tblname + ".tbl";
+      fsm = new FreeSpaceMap(tx, tblname);
+      perpage = RecordPage.loadCount(tx.blockSize(), layout);
+   }
+
+   /**
+    * Add a record with the specified values to the table.
+    * The fields that are not specified are 0 or empty,
+    * as in a record inserted by a scan.
+    * The record is stored when its page is full,
+    * or when the loader is closed.
+    * @param fields the names of the fields whose values are specified
+    * @param vals the values of those fields
+    */
+   public void insert(List<String> fields, List<Constant> vals) {
+      List<String> columns = layout.schema().fields();
+      Constant[] rec = new Constant[columns.size()];
+      for (int i=0; i<fields.size(); i++)
+         rec[layout.column(fields.get(i))] = vals.get(i);
+      for (int col=0; col<rec.length; col++)
+         if (rec[col] == null)
+            rec[col] = (layout.type(col) == INTEGER) ? new Constant(0) : new Constant("");
+      records.add(rec);
+      count++;
+      if (records.size() == perpage)
+         flush();
+   }
+
+   /**
+    * Store the records of the last page, which may not be full.
+    */
+   public void close() {
+      if (!records.isEmpty())
+         flush();
+   }
+
+   /**
+    * Return the number of records loaded so far.
+    * @return the number of records
+    */
+   public int count() {
+      return count;
+   }
+
+   /**
+    * Return the number of the first block that the loader
+    * appended to the table, or -1 if it has not appended any.
+    * @return the number of the first loaded block
+    */
+   public int firstBlock() {
+      return firstblk;
+   }
+
+   private void flush() {
+      BlockId blk = tx.append(filename);
+      if (firstblk < 0)
+         firstblk = blk.number();
+      RecordPage rp = RecordPage.open(tx, blk, layout);
+      rp.load(records);
+      fsm.record(blk.number(), rp.freeSlots());
+      tx.unpin(blk);
+      records.clear();
+   }
+}
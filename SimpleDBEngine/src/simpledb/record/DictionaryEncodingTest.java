@@ -0,0 +1,90 @@
+package simpledb.record;
+
+import simpledb.server.SimpleDB;
+import simpledb.tx.Transaction;
+import simpledb.plan.*;
+import simpledb.query.Scan;
+
+public class DictionaryEncodingTest {
+   private static final String[] DEPTS = {"compsci", "math", "drama", "physics", "history"};
+   private static Planner planner;
+
+   public static void main(String[] args) throws Exception {
+      SimpleDB db = new SimpleDB("dicttest");
+      planner = db.planner();
+      Transaction tx = db.newTx();
+      String fields = "(id int, dname varchar(30), grade varchar(2))";
+      planner.executeUpdate("create table P" + fields, tx);
+      planner.executeUpdate("create table E" + fields + " with (encoding='dictionary')", tx);
+      tx.commit();
+
+      tx = db.newTx();
+      for (int i=0; i<1000; i++) {
+         String vals = "(" + i + ", '" + DEPTS[i % 5] + "', '" + (char) ('A' + i % 4) + "')";
+         planner.executeUpdate("insert into P(id, dname, grade) values " + vals, tx);
+         planner.executeUpdate("insert into E(id, dname, grade) values " + vals, tx);
+      }
+      System.out.println("blocks for 1000 records: plain " + tx.size("p.tbl")
+                       + ", encoded " + tx.size("e.tbl"));
+      tx.commit();
+
+      tx = db.newTx();
+      String query = "select id from %s where dname = 'drama'";
+      for (String tbl : new String[] {"P", "E", "P", "E"}) {
+         long start = System.currentTimeMillis();
+         int n = 0;
+         for (int i=0; i<20; i++)
+            n = count(tx, String.format(query, tbl));
+         System.out.println(tbl + ": 20 selections of " + n + " records (expected 200) took "
+                          + (System.currentTimeMillis() - start) + " ms");
+      }
+      System.out.println(count(tx, "select id from E where dname = 'music'")
+                       + " records in an absent department (expected 0)");
+      System.out.println(groups(tx) + " groups (expected 5)");
+      tx.commit();
+
+      // A new value is added to the dictionary; a rolled-back one is not visible.
+      tx = db.newTx();
+      planner.executeUpdate("update E set dname = 'music' where id < 10", tx);
+      planner.executeUpdate("insert into E(id, dname, grade) values (5000, 'art', 'B')", tx);
+      tx.rollback();
+      tx = db.newTx();
+      planner.executeUpdate("update E set dname = 'music' where dname = 'math'", tx);
+      tx.commit();
+
+      // The dictionaries survive a restart.
+      db = new SimpleDB("dicttest");
+      planner = db.planner();
+      tx = db.newTx();
+      System.out.println(count(tx, "select id from E where dname = 'music'")
+                       + " records in music (expected 200), "
+                       + count(tx, "select id from E where dname = 'art'")
+                       + " in art (expected 0), "
+                       + count(tx, "select id from E where grade = 'C'")
+                       + " with grade C (expected 250)");
+      tx.commit();
+   }
+
+   private static int count(Transaction tx, String query) {
+      Plan p = planner.createQueryPlan(query, tx);
+      Scan s = p.open();
+      int count = 0;
+      while (s.next())
+         count++;
+      s.close();
+      return count;
+   }
+
+   private static int groups(Transaction tx) {
+      Plan p = planner.createQueryPlan("select dname, count(id) from E group by dname", tx);
+      Scan s = p.open();
+      int count = 0;
+      while (s.next()) {
+         if (s.getInt("countofid") != 200)
+            System.out.println("wrong count for " + s.getString("dname"));
+         count++;
+      }
+      s.close();
+      return count;
+   }
+}
@@ -0,0 +1,151 @@
+package simpledb.record;
+
+import java.util.*;
+import java.util.function.Consumer;
+import simpledb.file.*;
+import simpledb.tx.Transaction;
+
+/**
+ * The dictionary of a dictionary-encoded string field,
+ * which maps each distinct value of the field to an integer
+ * code. The records of the table store the codes of their
+ * values instead of the values themselves.
+ * <p>
+ * The dictionary is stored in the file tblname.fldname.dict.
+ * Each block begins with the number of values it holds, which
+ * follow in entries as long as the field's maximum length; the
+ * code of a value is the position of its entry in the file.
+ * Values are only ever appended, so a code never changes
+ * its meaning, and the dictionary needs no locking or logging.
+ * As with the zone map, the blocks that new values are added to
+ * are written to disk when a transaction commits, before its
+ * commit record, so a committed record never refers to a code
+ * that was lost in a crash: a record on disk whose value is not
+ * in the dictionary on disk belongs to a transaction that had not
+ * committed, and is undone by recovery. The values added by a
+ * transaction that rolls back simply remain unused.
+ * <p>
+ * A single FieldDictionary object is shared by all transactions,
+ * and the whole dictionary is kept in memory, so decoding a
+ * value does not read the disk or create a string.
+ */
+public class FieldDictionary {
+   private static final int COUNT = 0;
+   private String filename;
+   private int entrysize;
+   private int perblock = -1;
+   private int size = 0;
+   private volatile String[] values = new String[0];
+   private Map<String,Integer> codes = new HashMap<>();
+   private Set<Integer> dirty = new HashSet<>();
+   private final Consumer<Transaction> flusher = this::flush;
+
+   /**
+    * Create the dictionary of the specified field.
+    * The dictionary is read from disk when it is first loaded.
+    * @param tblname the name of the table
+    * @param fldname the name of the encoded field
+    * @param length the maximum length of the field's values
+    */
+   public FieldDictionary(String tblname, String fldname, int length) {
+      filename = tblname + "." + fldname + ".dict";
+      entrysize = Page.maxLength(length);
+   }
+
+   /**
+    * Read the dictionary from disk, if that has not been
+    * done yet.
+    * @param tx the calling transaction
+    */
+   public synchronized void load(Transaction tx) {
+      if (perblock >= 0)
+         return;
+      perblock = (tx.blockSize() - Integer.BYTES) / entrysize;
+      int numblocks = tx.hintSize(filename);
+      String[] vals = new String[numblocks * perblock];
+      Page p = new Page(tx.blockSize());
+      for (int b=0; b<numblocks; b++) {
+         tx.readUnbuffered(new BlockId(filename, b), p);
+         int count = p.getInt(COUNT);
+         for (int i=0; i<count; i++) {
+            int code = b * perblock + i;
+            vals[code] = p.getString(entryOffset(i));
+            codes.put(vals[code], code);
+         }
+         size = b * perblock + count;
+      }
+      values = vals;
+   }
+
+   /**
+    * Return the value that has the specified code.
+    * @param code a code of the dictionary
+    * @return the value with that code
+    */
+   public String value(int code) {
+      return values[code];
+   }
+
+   /**
+    * Return the code of the specified value,
+    * or -1 if the dictionary does not contain it.
+    * @param val a value of the field
+    * @return the code of the value, or -1
+    */
+   public synchronized int find(String val) {
+      Integer code = codes.get(val);
+      return (code == null) ? -1 : code;
+   }
+
+   /**
+    * Return the code of the specified value,
+    * adding the value to the dictionary if necessary.
+    * A value that is not yet on disk is written
+    * there when the calling transaction commits.
+    * @param tx the calling transaction
+    * @param val a value of the field
+    * @return the code of the value
+    */
+   public synchronized int code(Transaction tx, String val) {
+      load(tx);
+      Integer code = codes.get(val);
+      if (code != null) {
+         // the value may have been added by a transaction that rolled back
+         if (dirty.contains(code / perblock))
+            tx.beforeCommit(flusher);
+         return code;
+      }
+      code = size++;
+      dirty.add(code / perblock);
+      tx.beforeCommit(flusher);
+      String[] vals = values;
+      if (code >= vals.length)
+         vals = Arrays.copyOf(vals, Math.max(code + 1, 2 * vals.length));
+      vals[code] = val;
+      values = vals;
+      codes.put(val, code);
+      return code;
+   }
+
+   /**
+    * Write the blocks that new values were added to.
+    * The file is extended by the blocks it does not have yet.
+    */
+   private synchronized void flush(Transaction tx) {
+      for (int b : dirty) {
+         while (tx.hintSize(filename) <= b)
+            tx.appendHint(filename);
+         Page p = new Page(tx.blockSize());
+         int count = Math.min(perblock, size - b * perblock);
+         for (int i=0; i<count; i++)
+            p.setString(entryOffset(i), values[b * perblock + i]);
+         p.setInt(COUNT, count);
+         tx.writeUnbuffered(new BlockId(filename, b), p);
+      }
+      dirty.clear();
+   }
+
+   private int entryOffset(int i) {
+      return Integer.BYTES + i * entrysize;
+   }
+}
@@ -0,0 +1,141 @@
+package simpledb.record;
+
+import simpledb.file.BlockId;
+import simpledb.tx.Transaction;
+
+/**
+ * The free-space map of a table, which records how many
+ * free slots each block of the table has, so that an
+ * insertion can go directly to a block with room.
+ * <p>
+ * The map is stored in the file tblname.fsm as an array
+ * of integers. The first integer is the number of the
+ * lowest block that may have room, plus one; the integer
+ * for block b follows at position b+1. A block's integer
+ * is its number of free slots plus one, so that the value 0,
+ * which a new block of the map contains, means that the block
+ * has not been recorded yet and may have room.
+ * <p>
+ * The map is a hint file: it is read and written without
+ * locks or logging, so it can be stale after a rollback,
+ * a crash or a concurrent insertion. A block found through
+ * the map is therefore always searched for an empty slot,
+ * and its entry is corrected if it has none.
+ */
+public class FreeSpaceMap {
+   private static final int START = 0;
+   private Transaction tx;
+   private String filename;
+   private int perblock;
+
+   /**
+    * Create the free-space map of the specified table.
+    * @param tx the transaction
+    * @param tblname the name of the table
+    */
+   public FreeSpaceMap(Transaction tx, String tblname) {
+      this.tx = tx;
+      this.filename = tblname + ".fsm";
+      perblock = tx.blockSize() / Integer.BYTES;
+   }
+
+   /**
+    * Record the number of free slots of the specified block.
+    * @param blknum the number of a block of the table
+    * @param freeslots the number of free slots in the block
+    */
+   public void record(int blknum, int freeslots) {
+      BlockId blk = block(blknum + 1);
+      while (tx.hintSize(filename) <= blk.number())
+         tx.appendHint(filename);
+      tx.pin(blk);
+      tx.setHint(blk, offset(blknum + 1), freeslots + 1);
+      tx.unpin(blk);
+      if (freeslots > 0 && blknum < start())
+         setStart(blknum);
+   }
+
+   /**
+    * Return the lowest-numbered block that may have room
+    * for a record, or -1 if none of the table's blocks has.
+    * The search begins at the lowest block that may have
+    * room, which is advanced past the full blocks it finds.
+    * @param numblocks the number of blocks of the table
+    * @return the number of a block that may have room, or -1
+    */
+   public int findBlock(int numblocks) {
+      int first = Math.min(start(), numblocks);
+      int blknum = first;
+      int mapsize = tx.hintSize(filename);
+      BlockId current = null;
+      try {
+         while (blknum < numblocks) {
+            BlockId blk = block(blknum + 1);
+            if (blk.number() >= mapsize)
+               break;  // the rest of the blocks are not recorded
+            if (current == null || !current.equals(blk)) {
+               if (current != null)
+                  tx.unpin(current);
+               tx.pin(blk);
+               current = blk;
+            }
+            if (tx.getHint(blk, offset(blknum + 1)) != 1)
+               break;
+            blknum++;
+         }
+      }
+      finally {
+         if (current != null)
+            tx.unpin(current);
+      }
+      if (blknum != first)
+         setStart(blknum);
+      return (blknum < numblocks) ? blknum : -1;
+   }
+
+   /**
+    * Forget the free space of the blocks from the specified
+    * one on, which are about to be removed from the table.
+    * Their entries return to 0, so that a block that later
+    * reuses one of those numbers is not taken to be full.
+    * @param numblocks the number of blocks that the table keeps
+    */
+   public void truncate(int numblocks) {
+      int mapsize = tx.hintSize(filename);
+      for (int pos=numblocks+1; block(pos).number() < mapsize; pos++) {
+         BlockId blk = block(pos);
+         tx.pin(blk);
+         tx.setHint(blk, offset(pos), 0);
+         tx.unpin(blk);
+      }
+      if (numblocks < start())
+         setStart(numblocks);
+   }
+
+   private int start() {
+      if (tx.hintSize(filename) == 0)
+         return 0;
+      BlockId blk = block(START);
+      tx.pin(blk);
+      int val = tx.getHint(blk, offset(START));
+      tx.unpin(blk);
+      return Math.max(val - 1, 0);
+   }
+
+   private void setStart(int blknum) {
+      if (tx.hintSize(filename) == 0)
+         tx.appendHint(filename);
+      BlockId blk = block(START);
+      tx.pin(blk);
+      tx.setHint(blk, offset(START), blknum + 1);
+      tx.unpin(blk);
+   }
+
+   private BlockId block(int pos) {
+      return new BlockId(filename, pos / perblock);
+   }
+
+   private int offset(int pos) {
+      return (pos % perblock) * Integer.BYTES;
+   }
+}
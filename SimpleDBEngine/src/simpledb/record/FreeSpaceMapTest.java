@@ -0,0 +1,63 @@
+package simpledb.record;
+
+import simpledb.server.SimpleDB;
+import simpledb.tx.Transaction;
+
+public class FreeSpaceMapTest {
+   public static void main(String[] args) throws Exception {
+      SimpleDB db = new SimpleDB("fsmtest", 400, 50);
+      Schema sch = new Schema();
+      sch.addIntField("a");
+      sch.addStringField("b", 20);
+      Layout layout = new Layout(sch);
+
+      // Fill the table, inserting each record with a new scan,
+      // as the planner does.
+      Transaction tx = db.newTx();
+      long start = System.currentTimeMillis();
+      for (int i=0; i<3000; i++)
+         insert(tx, layout, i);
+      int size = tx.size("T.tbl");
+      System.out.println("3000 insertions took " + (System.currentTimeMillis() - start)
+                       + " ms; table has " + size + " blocks");
+      tx.commit();
+
+      // Delete a few records from the first blocks.
+      tx = db.newTx();
+      TableScan ts = new TableScan(tx, "T", layout);
+      int deleted = 0;
+      while (ts.next())
+         if (ts.getInt("a") % 100 == 7) {
+            ts.delete();
+            deleted++;
+         }
+      ts.close();
+      tx.commit();
+
+      // The new records fill the freed slots before the table grows.
+      tx = db.newTx();
+      for (int i=0; i<deleted; i++)
+         insert(tx, layout, 5000 + i);
+      System.out.println(deleted + " records deleted and reinserted; table has "
+                       + tx.size("T.tbl") + " blocks (expected " + size + ")");
+      insert(tx, layout, 9999);
+      System.out.println("one more record; table has " + tx.size("T.tbl")
+                       + " blocks (expected " + (size + 1) + ")");
+
+      ts = new TableScan(tx, "T", layout);
+      int count = 0;
+      while (ts.next())
+         count++;
+      ts.close();
+      System.out.println("table has " + count + " records (expected 3001)");
+      tx.commit();
+   }
+
+   private static void insert(Transaction tx, Layout layout, int a) {
+      TableScan ts = new TableScan(tx, "T", layout);
+      ts.insert();
+      ts.setInt("a", a);
+      ts.setString("b", "rec" + a);
+      ts.close();
+   }
+}
@@ -7,14 +7,40 @@ import simpledb.file.Page;
 /**
  * Description of the structure of a record.
  * It contains the name, type, length and offset of
- * each field of the table.
+ * each field of the table, and the format of the
+ * table's pages.
+ * <p>
+ * In the FIXED format, each record occupies a slot of
+ * fixed size, which reserves the maximum length of each
+ * string field, and a field's offset is its position
+ * within the slot.
+ * In the SLOTTED format, records have variable length
+ * and are stored in slotted pages (see {@link SlottedRecordPage}).
+ * Each field has a 4-byte entry at its offset within the record:
+ * the value of an integer field, or the position of the
+ * value of a string field, which follows the entries.
+ * The slot size is then the maximum length of a record.
+ * In the PAX format, the offsets and the slot size are those
+ * of the FIXED format, but the slots of a page are stored
+ * column by column (see {@link PaxRecordPage}).
+ * <p>
+ * A string field can be dictionary-encoded (in the FIXED and
+ * PAX formats): it then occupies 4 bytes, which hold the code
+ * of its value in the field's {@link FieldDictionary}.
  * @author Edward Sciore
  *
  */
 public class Layout {
+   public static final int FIXED = 0, SLOTTED = 1, PAX = 2;
    private Schema schema;
    private Map<String,Integer> offsets;
+   private Map<String,FieldDictionary> dictionaries;
+   private Map<String,Integer> columns = new HashMap<>();
+   private int[] coloffsets, coltypes, collengths;
+   private FieldDictionary[] coldicts;
+   private ZoneMap zonemap;
    private int slotsize;
+   private int format;
 
    /**
     * This constructor creates a Layout object from a schema. 
@@ -25,14 +51,52 @@ public class Layout {
     * @param schema the schema of the table's records
     */
    public Layout(Schema schema) {
+      this(schema, FIXED);
+   }
+
+   /**
+    * Create a Layout object from a schema,
+    * for records stored in the specified format.
+    * @param schema the schema of the table's records
+    * @param format the page format, FIXED, SLOTTED or PAX
+    */
+   public Layout(Schema schema, int format) {
+      this(schema, format, new HashMap<>());
+   }
+
+   /**
+    * Create a Layout object from a schema, for records stored
+    * in the specified format, whose specified string fields
+    * are dictionary-encoded.
+    * @param schema the schema of the table's records
+    * @param format the page format, FIXED or PAX
+    * @param dictionaries the dictionaries of the encoded fields
+    */
+   public Layout(Schema schema, int format, Map<String,FieldDictionary> dictionaries) {
       this.schema = schema;
+      this.format = format;
+      this.dictionaries = dictionaries;
       offsets  = new HashMap<>();
-      int pos = Integer.BYTES; // leave space for the empty/inuse flag
-      for (String fldname : schema.fields()) {
-         offsets.put(fldname, pos);
-         pos += lengthInBytes(fldname);
+      if (format == SLOTTED) {
+         int pos = 0;
+         for (String fldname : schema.fields()) {
+            offsets.put(fldname, pos);
+            pos += Integer.BYTES;
+         }
+         for (String fldname : schema.fields())
+            if (schema.type(fldname) != INTEGER)
+               pos += lengthInBytes(fldname);
+         slotsize = pos;
       }
-      slotsize = pos;
+      else {
+         int pos = Integer.BYTES; // leave space for the empty/inuse flag
+         for (String fldname : schema.fields()) {
+            offsets.put(fldname, pos);
+            pos += lengthInBytes(fldname);
+         }
+         slotsize = pos;
+      }
+      numberColumns();
    }
 
    /**
@@ -45,9 +109,57 @@ public class Layout {
     * @param recordlen the already-calculated length of each record
     */
    public Layout(Schema schema, Map<String,Integer> offsets, int slotsize) {
+      this(schema, offsets, slotsize, FIXED);
+   }
+
+   /**
+    * Create a Layout object from the specified metadata,
+    * for records stored in the specified format.
+    * @param schema the schema of the table's records
+    * @param offsets the already-calculated offsets of the fields within a record
+    * @param slotsize the already-calculated length of each record
+    * @param format the page format, FIXED, SLOTTED or PAX
+    */
+   public Layout(Schema schema, Map<String,Integer> offsets, int slotsize, int format) {
+      this(schema, offsets, slotsize, format, new HashMap<>());
+   }
+
+   /**
+    * Create a Layout object from the specified metadata,
+    * for records stored in the specified format, whose
+    * specified string fields are dictionary-encoded.
+    * @param schema the schema of the table's records
+    * @param offsets the already-calculated offsets of the fields within a record
+    * @param slotsize the already-calculated length of each record
+    * @param format the page format, FIXED, SLOTTED or PAX
+    * @param dictionaries the dictionaries of the encoded fields
+    */
+   public Layout(Schema schema, Map<String,Integer> offsets, int slotsize, int format,
+                 Map<String,FieldDictionary> dictionaries) {
+      this(schema, offsets, slotsize, format, dictionaries, null);
+   }
+
+   /**
+    * Create a Layout object from the specified metadata,
+    * for records stored in the specified format, whose
+    * specified string fields are dictionary-encoded,
+    * and whose blocks are described by the specified zone map.
+    * @param schema the schema of the table's records
+    * @param offsets the already-calculated offsets of the fields within a record
+    * @param slotsize the already-calculated length of each record
+    * @param format the page format, FIXED, SLOTTED or PAX
+    * @param dictionaries the dictionaries of the encoded fields
+    * @param zonemap the zone map of the table, or null if it has none
+    */
+   public Layout(Schema schema, Map<String,Integer> offsets, int slotsize, int format,
+                 Map<String,FieldDictionary> dictionaries, ZoneMap zonemap) {
       this.schema    = schema;
+      this.dictionaries = dictionaries;
       this.offsets   = offsets;
       this.slotsize = slotsize;
+      this.format = format;
+      this.zonemap = zonemap;
+      numberColumns();
    }
 
    /**
@@ -67,17 +179,98 @@ public class Layout {
       return offsets.get(fldname);
    }
 
+   /**
+    * Return the column number of the specified field,
+    * which is its position in the schema.
+    * @param fldname the name of the field
+    * @return the field's column number, or -1 if there is no such field
+    */
+   public int column(String fldname) {
+      Integer col = columns.get(fldname);
+      return (col == null) ? -1 : col;
+   }
+
+   /**
+    * Return the offset of the field in the specified column.
+    * @param col the column number of the field
+    * @return the offset of that field within a record
+    */
+   public int offset(int col) {
+      return coloffsets[col];
+   }
+
+   /**
+    * Return the type of the field in the specified column.
+    * @param col the column number of the field
+    * @return the type of the field, as defined in java.sql.Types
+    */
+   public int type(int col) {
+      return coltypes[col];
+   }
+
+   /**
+    * Return the number of bytes that the field
+    * in the specified column occupies in a slot.
+    * @param col the column number of the field
+    * @return the length of the field, in bytes
+    */
+   public int length(int col) {
+      return collengths[col];
+   }
+
+   /**
+    * Return the dictionary of the field in the specified column.
+    * @param col the column number of the field
+    * @return the field's dictionary, or null if the field is not encoded
+    */
+   public FieldDictionary dictionary(int col) {
+      return coldicts[col];
+   }
+
    /**
     * Return the size of a slot, in bytes.
+    * In the SLOTTED format, this is the maximum size of a record.
     * @return the size of a slot
     */
    public int slotSize() {
       return slotsize;
    }
 
+   /**
+    * Return the format of the table's pages.
+    * @return FIXED, SLOTTED or PAX
+    */
+   public int format() {
+      return format;
+   }
+
+   /**
+    * Return the zone map of the table.
+    * @return the table's zone map, or null if it has none
+    */
+   public ZoneMap zoneMap() {
+      return zonemap;
+   }
+
+   private void numberColumns() {
+      List<String> fields = schema.fields();
+      coloffsets = new int[fields.size()];
+      coltypes = new int[fields.size()];
+      collengths = new int[fields.size()];
+      coldicts = new FieldDictionary[fields.size()];
+      for (int col=0; col<fields.size(); col++) {
+         String fldname = fields.get(col);
+         columns.put(fldname, col);
+         coloffsets[col] = offsets.get(fldname);
+         coltypes[col] = schema.type(fldname);
+         collengths[col] = lengthInBytes(fldname);
+         coldicts[col] = dictionaries.get(fldname);
+      }
+   }
+
    private int lengthInBytes(String fldname) {
       int fldtype = schema.type(fldname);
-      if (fldtype == INTEGER)
+      if (fldtype == INTEGER || dictionaries.containsKey(fldname))
          return Integer.BYTES;
       else // fldtype == VARCHAR
          return Page.maxLength(schema.length(fldname));
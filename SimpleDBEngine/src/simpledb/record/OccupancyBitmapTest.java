@@ -0,0 +1,77 @@
+package simpledb.record;
+
+import simpledb.server.SimpleDB;
+import simpledb.tx.Transaction;
+
+public class OccupancyBitmapTest {
+   private static Layout layout;
+
+   public static void main(String[] args) throws Exception {
+      SimpleDB db = new SimpleDB("bitmaptest", 400, 50);
+      Schema sch = new Schema();
+      sch.addIntField("a");
+      layout = new Layout(sch);
+      System.out.println(RecordPage.slotCount(400, layout.slotSize())
+                       + " slots of " + layout.slotSize() + " bytes per page");
+
+      Transaction tx = db.newTx();
+      TableScan ts = new TableScan(tx, "T", layout);
+      for (int i=0; i<5000; i++) {
+         ts.insert();
+         ts.setInt("a", i);
+      }
+      ts.close();
+      tx.commit();
+
+      // A transaction that reads its own deletions,
+      // then rolls back, must not lose the records.
+      tx = db.newTx();
+      delete(tx, 10);
+      System.out.println("after own deletion: " + count(tx) + " records (expected 500)");
+      tx.rollback();
+      tx = db.newTx();
+      System.out.println("after rollback: " + count(tx) + " records (expected 5000)");
+      tx.commit();
+
+      // Delete 90% of the records for good.
+      tx = db.newTx();
+      delete(tx, 10);
+      tx.commit();
+      tx = db.newTx();
+      long start = System.currentTimeMillis();
+      int n = 0;
+      for (int i=0; i<200; i++)
+         n = count(tx);
+      System.out.println("200 scans of " + n + " records (expected 500) took "
+                       + (System.currentTimeMillis() - start) + " ms");
+
+      // The freed slots are reused.
+      int size = tx.size("T.tbl");
+      ts = new TableScan(tx, "T", layout);
+      for (int i=0; i<4500; i++) {
+         ts.insert();
+         ts.setInt("a", i);
+      }
+      ts.close();
+      System.out.println(count(tx) + " records (expected 5000) in "
+                       + tx.size("T.tbl") + " blocks (expected " + size + ")");
+      tx.commit();
+   }
+
+   private static void delete(Transaction tx, int keep) {
+      TableScan ts = new TableScan(tx, "T", layout);
+      while (ts.next())
+         if (ts.getInt("a") % keep != 0)
+            ts.delete();
+      ts.close();
+   }
+
+   private static int count(Transaction tx) {
+      TableScan ts = new TableScan(tx, "T", layout);
+      int count = 0;
+      while (ts.next())
+         count++;
+      ts.close();
+      return count;
+   }
+}
@@ -0,0 +1,92 @@
+package simpledb.record;
+
+import simpledb.server.SimpleDB;
+import simpledb.tx.Transaction;
+import simpledb.plan.*;
+import simpledb.query.Scan;
+
+public class PaxPageTest {
+   private static Planner planner;
+
+   public static void main(String[] args) throws Exception {
+      SimpleDB db = new SimpleDB("paxtest");
+      planner = db.planner();
+      Transaction tx = db.newTx();
+      String fields = "(id int, grp int, amount int, note varchar(60), extra varchar(60))";
+      planner.executeUpdate("create table F" + fields, tx);
+      planner.executeUpdate("create table P" + fields + " with (layout='pax')", tx);
+      tx.commit();
+      tx = db.newTx();
+      for (int i=0; i<2000; i++) {
+         String vals = "(" + i + ", " + (i / 200) + ", " + i + ", 'note" + i + "', 'extra" + i + "')";
+         planner.executeUpdate("insert into F(id, grp, amount, note, extra) values " + vals, tx);
+         planner.executeUpdate("insert into P(id, grp, amount, note, extra) values " + vals, tx);
+      }
+      System.out.println("blocks for 2000 records: fixed " + tx.size("f.tbl")
+                       + ", pax " + tx.size("p.tbl"));
+      tx.commit();
+
+      tx = db.newTx();
+      check(tx, 2000, 0);
+      String query = "select grp, sum(amount) from %s group by grp";
+      // the records are inserted in group order, so the sort has a single run
+      for (String tbl : new String[] {"F", "P", "F", "P"}) {
+         long start = System.currentTimeMillis();
+         long total = 0;
+         for (int i=0; i<20; i++)
+            total = sum(tx, String.format(query, tbl));
+         System.out.println(tbl + ": 20 aggregations (total " + total + ") took "
+                          + (System.currentTimeMillis() - start) + " ms");
+      }
+      tx.commit();
+
+      tx = db.newTx();
+      planner.executeUpdate("update P set note = 'changed' where grp = 3", tx);
+      planner.executeUpdate("delete from P where grp = 5", tx);
+      check(tx, 1800, 200);
+      tx.commit();
+
+      // A rolled-back change restores the values of each column.
+      tx = db.newTx();
+      planner.executeUpdate("delete from P where grp = 1", tx);
+      planner.executeUpdate("update P set extra = 'x', amount = 0 where grp > 5", tx);
+      planner.executeUpdate("insert into P(id, grp, amount, note, extra) values (9999, 5, 0, 'a', 'b')", tx);
+      tx.rollback();
+
+      tx = db.newTx();
+      check(tx, 1800, 200);
+      tx.commit();
+   }
+
+   private static long sum(Transaction tx, String query) {
+      Plan p = planner.createQueryPlan(query, tx);
+      Scan s = p.open();
+      long total = 0;
+      while (s.next())
+         total += s.getInt("sumofamount");
+      s.close();
+      return total;
+   }
+
+   private static void check(Transaction tx, int expected, int changed) {
+      Plan p = planner.createQueryPlan("select id, grp, amount, note, extra from P", tx);
+      Scan s = p.open();
+      int count = 0, notes = 0, errors = 0;
+      while (s.next()) {
+         int id = s.getInt("id");
+         String note = s.getString("note");
+         count++;
+         if (note.equals("changed"))
+            notes++;
+         else if (!note.equals("note" + id))
+            errors++;
+         if (s.getInt("grp") != id / 200 || s.getInt("amount") != id
+               || !s.getString("extra").equals("extra" + id))
+            errors++;
+      }
+      s.close();
+      System.out.println(count + " records (expected " + expected + "), "
+                       + notes + " changed (expected " + changed + "), "
+                       + errors + " wrong values");
+   }
+}
@@ -0,0 +1,55 @@
+package simpledb.record;
+
+import simpledb.file.BlockId;
+import simpledb.tx.Transaction;
+
+/**
+ * Store records in a page that is partitioned by column
+ * (the PAX format).
+ * The page has as many slots as a page of the FIXED format,
+ * and the same bitmap at its start, but the values of each
+ * column are stored together in a mini-page: the flags of
+ * all slots come first, followed by the values of the first
+ * field of all slots, and so on.
+ * A mini-page starts at the bitmap size plus the number of
+ * slots times the field's offset in the layout, so a scan
+ * that reads only a few fields of each record only touches
+ * the mini-pages of those fields.
+ * <p>
+ * Records are locked and searched for exactly as in a
+ * page of the FIXED format. Since the values of a record
+ * are not contiguous, a change logs the before-image of the
+ * value that it affects rather than of the whole slot.
+ */
+public class PaxRecordPage extends RecordPage {
+
+   public PaxRecordPage(Transaction tx, BlockId blk, Layout layout) {
+      super(tx, blk, layout);
+   }
+
+   /**
+    * The flags form the first mini-page of the page.
+    */
+   protected int flagOffset(int slot) {
+      return headerSize() + slot * Integer.BYTES;
+   }
+
+   /**
+    * The value is in the mini-page of its column.
+    */
+   protected int fieldOffset(int slot, int col) {
+      return headerSize() + numSlots() * layout.offset(col)
+             + slot * layout.length(col);
+   }
+
+   /**
+    * Log the before-image of the slot's flag, or of the
+    * value in the specified column.
+    */
+   protected void logSlot(int op, int slot, int col) {
+      if (col < 0)
+         tx.logRecordSlot(op, blk, slot, flagOffset(slot), Integer.BYTES);
+      else
+         tx.logRecordSlot(op, blk, slot, fieldOffset(slot, col), layout.length(col));
+   }
+}
@@ -1,26 +1,114 @@
 package simpledb.record;
 
 import static java.sql.Types.INTEGER;
+import static simpledb.tx.recovery.LogRecord.*;
+import java.util.List;
 import simpledb.file.*;
+import simpledb.query.Constant;
 import simpledb.tx.Transaction;
+import simpledb.tx.TxMode;
 
 /**
  * Store a record at a given location in a block. 
+ * Changes are logged one slot at a time:
+ * inserting, deleting or modifying a record writes a single
+ * slot log record, and the individual field values are not logged.
+ * <p>
+ * Records are locked individually, so that transactions
+ * accessing different records of the same block do not conflict.
+ * A record is locked before any of its values are read or written.
+ * The search for a used or empty slot peeks at the slot flags
+ * without locking them, then locks the slot it finds and checks
+ * its flag again, since an uncommitted transaction may have
+ * changed it in the meantime.
+ * <p>
+ * The page begins with an occupancy bitmap, which has a bit
+ * for each slot, followed by the slots.
+ * The bitmap is a hint that lets the search skip the empty
+ * slots a word at a time: a slot whose bit is clear is empty,
+ * whereas a slot whose bit is set may or may not be used.
+ * An insertion sets the slot's bit before its flag, and a
+ * deletion leaves the bit set, because it may be rolled back.
+ * The bit is cleared by a locking transaction that finds the
+ * slot empty while holding a lock on it, provided that it did
+ * not delete the record itself; the deletion is then committed.
+ * Since a bit is never cleared while the slot's flag may become
+ * USED again, the bitmap needs no logging.
+ * Snapshot and optimistic transactions, which read the
+ * flags without locking them, ignore the bitmap.
+ * <p>
+ * If the table has a {@link ZoneMap}, the range of an integer
+ * field in the block is widened before a value is written to it.
+ * <p>
+ * This class stores records in fixed-size slots;
+ * tables in the SLOTTED format use the subclass
+ * {@link SlottedRecordPage} instead, and tables in the
+ * PAX format use {@link PaxRecordPage}, which stores the
+ * same slots column by column.
+ * The method {@link #open} creates the page that
+ * corresponds to the layout's format.
  * @author Edward Sciore
  */
 public class RecordPage {
    public static final int EMPTY = 0, USED = 1;
-   private Transaction tx;
-   private BlockId blk;
-   private Layout layout;
+   private static final int BITS = Integer.SIZE;
+   protected Transaction tx;
+   protected BlockId blk;
+   protected Layout layout;
+   private int numslots, header;
 
    public RecordPage(Transaction tx, BlockId blk, Layout layout) {
       this.tx = tx;
       this.blk = blk;
       this.layout = layout;
+      numslots = slotCount(tx.blockSize(), layout.slotSize());
+      header = bitmapSize(numslots);
       tx.pin(blk);
    }
 
+   /**
+    * Return the number of slots in a page of the specified size:
+    * as many as fit together with the bitmap that describes them.
+    * @param blocksize the size of a page
+    * @param slotsize the size of a slot
+    * @return the number of slots per page
+    */
+   public static int slotCount(int blocksize, int slotsize) {
+      int n = blocksize / slotsize;
+      while (n > 0 && bitmapSize(n) + n * slotsize > blocksize)
+         n--;
+      return n;
+   }
+
+   /**
+    * Return the number of records that a page
+    * filled by {@link #load} holds in the layout's format.
+    * @param blocksize the size of a page
+    * @param layout the layout of the table's records
+    * @return the number of records per loaded page
+    */
+   public static int loadCount(int blocksize, Layout layout) {
+      if (layout.format() == Layout.SLOTTED)
+         return SlottedRecordPage.recordCount(blocksize, layout.slotSize());
+      return slotCount(blocksize, layout.slotSize());
+   }
+
+   /**
+    * Create a record page for the specified block,
+    * according to the format of the layout.
+    * @param tx the transaction
+    * @param blk a reference to the disk block
+    * @param layout the layout of the table's records
+    * @return the record page
+    */
+   public static RecordPage open(Transaction tx, BlockId blk, Layout layout) {
+      if (layout.format() == Layout.SLOTTED)
+         return new SlottedRecordPage(tx, blk, layout);
+      if (layout.format() == Layout.PAX)
+         return new PaxRecordPage(tx, blk, layout);
+      return new RecordPage(tx, blk, layout);
+   }
+
    /**
     * Return the integer value stored for the
     * specified field of a specified slot.
@@ -28,8 +116,17 @@ public class RecordPage {
     * @return the integer stored in that field
     */
    public int getInt(int slot, String fldname) {
-      int fldpos = offset(slot) + layout.offset(fldname);
-      return tx.getInt(blk, fldpos);
+      return getInt(slot, layout.column(fldname));
+   }
+
+   /**
+    * Return the integer value stored for the field
+    * in the specified column of a specified slot.
+    * @param col the column number of the field
+    * @return the integer stored in that field
+    */
+   public int getInt(int slot, int col) {
+      return tx.getRecordInt(blk, slot, fieldOffset(slot, col));
    }
 
    /**
@@ -39,8 +136,22 @@ public class RecordPage {
     * @return the string stored in that field
     */
    public String getString(int slot, String fldname) {
-      int fldpos = offset(slot) + layout.offset(fldname);
-      return tx.getString(blk, fldpos);
+      return getString(slot, layout.column(fldname));
+   }
+
+   /**
+    * Return the string value stored for the field
+    * in the specified column of the specified slot.
+    * The value of an encoded field is decoded from its
+    * dictionary.
+    * @param col the column number of the field
+    * @return the string stored in that field
+    */
+   public String getString(int slot, int col) {
+      FieldDictionary dict = layout.dictionary(col);
+      if (dict != null)
+         return dict.value(tx.getRecordInt(blk, slot, fieldOffset(slot, col)));
+      return tx.getRecordString(blk, slot, fieldOffset(slot, col));
    }
 
    /**
@@ -50,22 +161,53 @@ public class RecordPage {
     * @param val the integer value stored in that field
     */
    public void setInt(int slot, String fldname, int val) {
-      int fldpos = offset(slot) + layout.offset(fldname);
-      tx.setInt(blk, fldpos, val, true);
+      tx.xLockRecord(blk, slot);
+      int col = layout.column(fldname);
+      widen(col, val, val);
+      logSlot(RECUPDATE, slot, col);
+      tx.setRecordInt(blk, slot, fieldOffset(slot, col), val);
    }
 
    /**
     * Store a string at the specified field
     * of the specified slot.
+    * An encoded field stores the code of the value,
+    * which is added to the field's dictionary if necessary.
     * @param fldname the name of the field
     * @param val the string value stored in that field
     */
    public void setString(int slot, String fldname, String val) {
-      int fldpos = offset(slot) + layout.offset(fldname);
-      tx.setString(blk, fldpos, val, true);
+      int col = layout.column(fldname);
+      FieldDictionary dict = layout.dictionary(col);
+      if (dict != null) {
+         setCode(slot, col, dict.code(tx, val));
+         return;
+      }
+      tx.xLockRecord(blk, slot);
+      logSlot(RECUPDATE, slot, col);
+      tx.setRecordString(blk, slot, fieldOffset(slot, col), val);
+   }
+
+   /**
+    * Store the code of a value at the encoded field
+    * in the specified column of the specified slot.
+    * @param col the column number of the field
+    * @param code the code of the value in the field's dictionary
+    */
+   public void setCode(int slot, int col, int code) {
+      tx.xLockRecord(blk, slot);
+      logSlot(RECUPDATE, slot, col);
+      tx.setRecordInt(blk, slot, fieldOffset(slot, col), code);
    }
    
+   /**
+    * Delete the record in the specified slot.
+    * The slot's bit in the bitmap stays set until the
+    * deletion is known to be committed.
+    */
    public void delete(int slot) {
+      tx.xLockRecord(blk, slot);
+      logSlot(RECDELETE, slot, -1);
       setFlag(slot, EMPTY);
    }
    
@@ -74,13 +216,17 @@ public class RecordPage {
     *  (because the old values are meaningless).
     */ 
    public void format() {
+      for (int pos=0; pos<header; pos+=Integer.BYTES)
+         tx.setInt(blk, pos, 0, false);
       int slot = 0;
+      int numcols = layout.schema().fields().size();
+      if (layout.zoneMap() != null)
+         layout.zoneMap().clear(this);
       while (isValidSlot(slot)) {
-         tx.setInt(blk, offset(slot), EMPTY, false); 
-         Schema sch = layout.schema();
-         for (String fldname : sch.fields()) {
-            int fldpos = offset(slot) + layout.offset(fldname);
-            if (sch.type(fldname) == INTEGER)
+         tx.setInt(blk, flagOffset(slot), EMPTY, false); 
+         for (int col=0; col<numcols; col++) {
+            int fldpos = fieldOffset(slot, col);
+            if (layout.type(col) == INTEGER)
                tx.setInt(blk, fldpos, 0, false);
             else
                tx.setString(blk, fldpos, "", false);
@@ -89,46 +235,286 @@ public class RecordPage {
       }
    }
 
+   /**
+    * Fill a new block with the specified records.
+    * The image of the page is built in memory, with the
+    * records in its first slots and their bits set, and is
+    * stored as a whole by {@link Transaction#setPage},
+    * which logs the page instead of each record.
+    * The block must have been appended by the transaction
+    * and not modified since.
+    * @param records the values of each record, in column order;
+    *                at most as many records as the page has slots
+    */
+   public void load(List<Constant[]> records) {
+      Page image = new Page(tx.blockSize());
+      if (layout.zoneMap() != null)
+         layout.zoneMap().clear(this);
+      int numcols = layout.schema().fields().size();
+      for (int col=0; col<numcols; col++)
+         if (layout.type(col) == INTEGER && !records.isEmpty()) {
+            int lo = Integer.MAX_VALUE, hi = Integer.MIN_VALUE;
+            for (Constant[] vals : records) {
+               lo = Math.min(lo, vals[col].asInt());
+               hi = Math.max(hi, vals[col].asInt());
+            }
+            widen(col, lo, hi);
+         }
+      for (int slot=0; slot<records.size(); slot++) {
+         Constant[] vals = records.get(slot);
+         int word = (slot / BITS) * Integer.BYTES;
+         image.setInt(word, image.getInt(word) | (1 << (slot % BITS)));
+         image.setInt(flagOffset(slot), USED);
+         for (int col=0; col<vals.length; col++) {
+            int fldpos = fieldOffset(slot, col);
+            FieldDictionary dict = layout.dictionary(col);
+            if (layout.type(col) == INTEGER)
+               image.setInt(fldpos, vals[col].asInt());
+            else if (dict != null)
+               image.setInt(fldpos, dict.code(tx, vals[col].asString()));
+            else
+               image.setString(fldpos, vals[col].asString());
+         }
+      }
+      tx.setPage(blk, image);
+   }
+
    public int nextAfter(int slot) {
       return searchAfter(slot, USED);
    }
  
+   /**
+    * Find an empty slot after the specified one and mark
+    * it as used.
+    * The values that the new record has before its fields
+    * are set are not in the block's zone map range: the caller
+    * sets every integer field, or calls {@link #widenSlot}
+    * once it has set the fields it needs.
+    * @param slot the slot after which to search, or -1
+    * @return the new record's slot, or -1 if the block is full
+    */
    public int insertAfter(int slot) {
       int newslot = searchAfter(slot, EMPTY);
-      if (newslot >= 0)
+      if (newslot >= 0) {
+         logSlot(RECINSERT, newslot, -1);
+         setBit(newslot, true);
          setFlag(newslot, USED);
+      }
       return newslot;
    }
   
+   /**
+    * Widen the zone map ranges of the block to include the
+    * integer values of the record in the specified slot, which
+    * the caller has locked. This is needed for an inserted
+    * record whose fields have not all been set.
+    * @param slot a slot of the page
+    */
+   public void widenSlot(int slot) {
+      if (layout.zoneMap() == null)
+         return;
+      int numcols = layout.schema().fields().size();
+      for (int col=0; col<numcols; col++)
+         if (layout.type(col) == INTEGER) {
+            int val = tx.peekInt(blk, fieldOffset(slot, col));
+            widen(col, val, val);
+         }
+   }
+
+   /**
+    * Return the number of empty slots in the block.
+    * The slot flags are read without locking them,
+    * so the result is only a hint for the free-space map.
+    * @return the number of empty slots
+    */
+   public int freeSlots() {
+      int count = 0;
+      for (int slot=0; isValidSlot(slot); slot++)
+         if (tx.peekInt(blk, flagOffset(slot)) == EMPTY)
+            count++;
+      return count;
+   }
+
+   /**
+    * Return true if no slot of the block holds a record.
+    * The slot flags are read without locking them, so the
+    * caller must hold a lock on the whole table.
+    * @return true if the block is empty
+    */
+   public boolean isEmpty() {
+      for (int slot=0; isValidSlot(slot); slot++)
+         if (tx.peekInt(blk, flagOffset(slot)) != EMPTY)
+            return false;
+      return true;
+   }
+
    public BlockId block() {
       return blk;
    }
+
+   /**
+    * Return the position of the empty/inuse flag
+    * of the specified slot within the page.
+    * @param slot a slot of the page
+    * @return the position of the slot's flag
+    */
+   protected int flagOffset(int slot) {
+      return offset(slot);
+   }
+
+   /**
+    * Return the position within the page of the field
+    * in the specified column of the specified slot.
+    * @param slot a slot of the page
+    * @param col the column number of the field
+    * @return the position of the field's value
+    */
+   protected int fieldOffset(int slot, int col) {
+      return offset(slot) + layout.offset(col);
+   }
+
+   /**
+    * Log the before-image of the bytes of the specified slot
+    * that a change affects. The flag and the fields of a slot
+    * are contiguous, so the whole slot is logged, whichever
+    * column changes.
+    * @param op one of RECINSERT, RECDELETE or RECUPDATE
+    * @param slot the slot that changes
+    * @param col the column that changes, or -1 for the flag
+    */
+   protected void logSlot(int op, int slot, int col) {
+      tx.logRecordSlot(op, blk, slot, offset(slot), layout.slotSize());
+   }
    
+   /**
+    * Return the integer stored in the field in the specified
+    * column of the specified slot, used or empty, without
+    * locking the slot; used to compute the block's zone map range.
+    */
+   int peekField(int slot, int col) {
+      return tx.getHint(blk, fieldOffset(slot, col));
+   }
+
    // Private auxiliary methods
    
+   /**
+    * Widen the range of the field in the block's zone map
+    * to include the specified values, which are about to
+    * be written to the field.
+    */
+   private void widen(int col, int lo, int hi) {
+      ZoneMap zonemap = layout.zoneMap();
+      if (zonemap != null)
+         zonemap.widen(this, col, lo, hi);
+   }
+
    /**
     * Set the record's empty/inuse flag.
+    * The change must already have been logged by logSlot.
     */
    private void setFlag(int slot, int flag) {
-      tx.setInt(blk, offset(slot), flag, true); 
+      tx.setRecordInt(blk, slot, flagOffset(slot), flag);
    }
 
    private int searchAfter(int slot, int flag) {
+      if (tx.mode() != TxMode.LOCKING)
+         return scanFlags(slot, flag);
+      if (flag == USED) {
+         for (int s=nextBit(slot+1, true); s>=0; s=nextBit(s+1, true)) {
+            tx.sLockRecord(blk, s);
+            if (tx.peekInt(blk, flagOffset(s)) == USED)
+               return s;
+            if (!tx.hasXLockRecord(blk, s))
+               setBit(s, false);  // the deletion is committed
+         }
+         return -1;
+      }
+      for (int s=nextBit(slot+1, false); s>=0; s=nextBit(s+1, false)) {
+         tx.xLockRecord(blk, s);
+         if (tx.peekInt(blk, flagOffset(s)) == EMPTY)
+            return s;
+      }
+      // an empty slot whose bit is still set
+      for (int s=nextBit(slot+1, true); s>=0; s=nextBit(s+1, true))
+         if (tx.peekInt(blk, flagOffset(s)) == EMPTY) {
+            tx.xLockRecord(blk, s);
+            if (tx.peekInt(blk, flagOffset(s)) == EMPTY)
+               return s;
+         }
+      return -1;
+   }
+
+   /**
+    * Search the slot flags one at a time, for transactions
+    * that do not use the bitmap.
+    */
+   private int scanFlags(int slot, int flag) {
       slot++;
       while (isValidSlot(slot)) {
-         if (tx.getInt(blk, offset(slot)) == flag)
-            return slot;
+         if (tx.peekInt(blk, flagOffset(slot)) == flag) {
+            if (flag == USED)
+               tx.sLockRecord(blk, slot);
+            else
+               tx.xLockRecord(blk, slot);
+            if (tx.getRecordInt(blk, slot, flagOffset(slot)) == flag)
+               return slot;
+         }
          slot++;
       }
       return -1;
    }
 
+   /**
+    * Return the first slot at or after the specified one
+    * whose bit has the specified value, or -1 if there is none.
+    * The bitmap is read a word at a time, without locking.
+    */
+   private int nextBit(int slot, boolean set) {
+      while (slot < numslots) {
+         int word = tx.getHint(blk, (slot / BITS) * Integer.BYTES);
+         if (!set)
+            word = ~word;
+         word &= -1 << (slot % BITS);
+         if (word != 0) {
+            int found = (slot / BITS) * BITS + Integer.numberOfTrailingZeros(word);
+            return (found < numslots) ? found : -1;
+         }
+         slot = (slot / BITS + 1) * BITS;
+      }
+      return -1;
+   }
+
+   private void setBit(int slot, boolean val) {
+      tx.setHintBit(blk, (slot / BITS) * Integer.BYTES, slot % BITS, val);
+   }
+
    private boolean isValidSlot(int slot) {
-      return offset(slot+1) <= tx.blockSize();
+      return slot < numslots;
+   }
+
+   /**
+    * Return the number of slots in the page.
+    * @return the number of slots
+    */
+   protected int numSlots() {
+      return numslots;
+   }
+
+   /**
+    * Return the size of the bitmap at the start of the page,
+    * which is where the slots begin.
+    * @return the size of the bitmap, in bytes
+    */
+   protected int headerSize() {
+      return header;
    }
 
    private int offset(int slot) {
-      return slot * layout.slotSize();
+      return header + slot * layout.slotSize();
+   }
+
+   private static int bitmapSize(int numslots) {
+      return (numslots + BITS - 1) / BITS * Integer.BYTES;
    }
 }
 
@@ -0,0 +1,71 @@
+package simpledb.record;
+
+import simpledb.server.SimpleDB;
+import simpledb.tx.Transaction;
+import simpledb.plan.*;
+import simpledb.query.Scan;
+
+public class SlottedPageTest {
+   private static final String LONGNAME = "a much longer name than before";
+   private static Planner planner;
+
+   public static void main(String[] args) throws Exception {
+      SimpleDB db = new SimpleDB("slottedtest");
+      planner = db.planner();
+      Transaction tx = db.newTx();
+      planner.executeUpdate("create table F(id int, name varchar(40))", tx);
+      planner.executeUpdate("create table S(id int, name varchar(40)) with (layout='slotted')", tx);
+      for (int i=0; i<200; i++) {
+         planner.executeUpdate("insert into F(id, name) values (" + i + ", 'n" + i + "')", tx);
+         planner.executeUpdate("insert into S(id, name) values (" + i + ", 'n" + i + "')", tx);
+      }
+      System.out.println("blocks for 200 records: fixed " + tx.size("f.tbl")
+                       + ", slotted " + tx.size("s.tbl"));
+      tx.commit();
+
+      // Grow the first hundred records, so that some of them
+      // no longer fit in their pages and move to other pages.
+      tx = db.newTx();
+      planner.executeUpdate("update S set name = '" + LONGNAME + "' where id < 100", tx);
+      planner.executeUpdate("delete from S where id >= 150", tx);
+      check(tx, 150, 100);
+      tx.commit();
+
+      // A rolled-back change restores the pages.
+      tx = db.newTx();
+      planner.executeUpdate("delete from S where id < 50", tx);
+      planner.executeUpdate("update S set name = 'x' where id >= 50", tx);
+      tx.rollback();
+
+      tx = db.newTx();
+      check(tx, 150, 100);
+      tx.commit();
+
+      // The moved records are found again after the
+      // database is reopened and its pages are reread.
+      db = new SimpleDB("slottedtest");
+      planner = db.planner();
+      tx = db.newTx();
+      check(tx, 150, 100);
+      tx.commit();
+   }
+
+   private static void check(Transaction tx, int expected, int grown) {
+      Plan p = planner.createQueryPlan("select id, name from S", tx);
+      Scan s = p.open();
+      int count = 0, longnames = 0, errors = 0;
+      while (s.next()) {
+         int id = s.getInt("id");
+         String name = s.getString("name");
+         count++;
+         if (name.equals(LONGNAME))
+            longnames++;
+         if (!name.equals(id < grown ? LONGNAME : "n" + id))
+            errors++;
+      }
+      s.close();
+      System.out.println(count + " records (expected " + expected + "), "
+                       + longnames + " grown (expected " + grown + "), "
+                       + errors + " wrong values (expected 0); table has " + tx.size("s.tbl") + " blocks");
+   }
+}
@@ -0,0 +1,514 @@
+package simpledb.record;
+
+import static java.sql.Types.INTEGER;
+import static simpledb.tx.recovery.LogRecord.RECUPDATE;
+import java.util.*;
+import simpledb.file.*;
+import simpledb.query.Constant;
+import simpledb.tx.Transaction;
+
+/**
+ * Store variable-length records in a slotted page.
+ * The page begins with a header holding the number of
+ * slots and the start of the record area; the slot directory
+ * follows, with an entry of two integers per slot:
+ * the slot's flag and the offset of its record.
+ * Records are stored at the end of the page, growing
+ * towards the directory, and only take the space their
+ * values need (see {@link Layout}).
+ * <p>
+ * A slot is a record's permanent identifier: when a record
+ * grows, it moves to free space within the page, and the page
+ * is compacted if necessary. If the page has no room, the record
+ * moves to another page of the table, and its slot keeps a
+ * forwarding pointer to it; the moved record is flagged so
+ * that scans only see it through its original slot.
+ * A new record is only inserted into a page that has room
+ * for the largest record that the layout allows.
+ * <p>
+ * Changing a record may move other records of the page,
+ * so records are not locked individually: the page is
+ * locked as a whole, and the first change a transaction
+ * makes to a page logs the image of the entire page.
+ * Later changes to the page are not logged.
+ */
+public class SlottedRecordPage extends RecordPage {
+   public static final int FORWARD = 2, MOVED = 3;
+   private static final int NUMSLOTS = 0, FREESPACE = 4, DIRECTORY = 8;
+   private static final int ENTRY_SIZE = 2 * Integer.BYTES;
+   private static final int FORWARD_SIZE = 2 * Integer.BYTES;
+
+   public SlottedRecordPage(Transaction tx, BlockId blk, Layout layout) {
+      super(tx, blk, layout);
+   }
+
+   /**
+    * Return the integer value stored for the field
+    * in the specified column of a specified slot.
+    * @param col the column number of the field
+    * @return the integer stored in that field
+    */
+   public int getInt(int slot, int col) {
+      if (flag(blk, slot) != FORWARD)
+         return tx.getInt(blk, recordOffset(blk, slot) + layout.offset(col));
+      RID rid = forwardedTo(slot);
+      BlockId target = block(rid);
+      tx.pin(target);
+      try {
+         return tx.getInt(target, recordOffset(target, rid.slot()) + layout.offset(col));
+      }
+      finally {
+         tx.unpin(target);
+      }
+   }
+
+   /**
+    * Return the string value stored for the field
+    * in the specified column of the specified slot.
+    * @param col the column number of the field
+    * @return the string stored in that field
+    */
+   public String getString(int slot, int col) {
+      if (flag(blk, slot) != FORWARD)
+         return readString(blk, slot, col);
+      RID rid = forwardedTo(slot);
+      BlockId target = block(rid);
+      tx.pin(target);
+      try {
+         return readString(target, rid.slot(), col);
+      }
+      finally {
+         tx.unpin(target);
+      }
+   }
+
+   /**
+    * Store an integer at the specified field
+    * of the specified slot.
+    * Integers have a fixed position in the record,
+    * so the record does not move.
+    * @param fldname the name of the field
+    * @param val the integer value stored in that field
+    */
+   public void setInt(int slot, String fldname, int val) {
+      if (flag(blk, slot) != FORWARD) {
+         logPage(blk);
+         tx.setInt(blk, recordOffset(blk, slot) + layout.offset(fldname), val, false);
+         return;
+      }
+      RID rid = forwardedTo(slot);
+      BlockId target = block(rid);
+      tx.pin(target);
+      logPage(target);
+      tx.setInt(target, recordOffset(target, rid.slot()) + layout.offset(fldname), val, false);
+      tx.unpin(target);
+   }
+
+   /**
+    * Store a string at the specified field
+    * of the specified slot.
+    * The record is rewritten in place if it does not grow;
+    * otherwise it moves to free space in its page or,
+    * if the page is full, to another page.
+    * @param fldname the name of the field
+    * @param val the string value stored in that field
+    */
+   public void setString(int slot, String fldname, String val) {
+      if (flag(blk, slot) != FORWARD) {
+         rewrite(slot, blk, slot, fldname, val);
+         return;
+      }
+      RID rid = forwardedTo(slot);
+      BlockId target = block(rid);
+      tx.pin(target);
+      rewrite(slot, target, rid.slot(), fldname, val);
+      tx.unpin(target);
+   }
+
+   public void delete(int slot) {
+      if (flag(blk, slot) == FORWARD) {
+         RID rid = forwardedTo(slot);
+         BlockId target = block(rid);
+         tx.pin(target);
+         logPage(target);
+         setFlag(target, rid.slot(), EMPTY);
+         tx.unpin(target);
+      }
+      logPage(blk);
+      setFlag(blk, slot, EMPTY);
+   }
+
+   /**
+    * Format a new page, which has no slots
+    * and whose record area is empty.
+    * These values are not logged.
+    */
+   public void format() {
+      format(blk);
+   }
+
+   /**
+    * Return the number of records of maximum size that
+    * a page of the specified size holds, together with
+    * their directory entries.
+    * @param blocksize the size of a page
+    * @param slotsize the maximum size of a record
+    * @return the number of records per page
+    */
+   public static int recordCount(int blocksize, int slotsize) {
+      return (blocksize - DIRECTORY) / (slotsize + ENTRY_SIZE);
+   }
+
+   /**
+    * Fill a new block with the specified records.
+    * As in the superclass, the image of the page is built
+    * in memory and stored as a whole by {@link Transaction#setPage}.
+    * The records take the first slots, and are stored
+    * contiguously at the end of the page.
+    * @param records the values of each record, in column order;
+    *                at most {@link #recordCount} records
+    */
+   public void load(List<Constant[]> records) {
+      Page image = new Page(tx.blockSize());
+      int end = tx.blockSize();
+      for (int slot=0; slot<records.size(); slot++) {
+         byte[] rec = encode(records.get(slot));
+         end -= rec.length;
+         image.setRawBytes(end, rec);
+         image.setInt(entryOffset(slot), USED);
+         image.setInt(entryOffset(slot) + Integer.BYTES, end);
+      }
+      image.setInt(NUMSLOTS, records.size());
+      image.setInt(FREESPACE, end);
+      tx.setPage(blk, image);
+   }
+
+   public int nextAfter(int slot) {
+      int n = numSlots(blk);
+      for (int i=slot+1; i<n; i++) {
+         int flag = flag(blk, i);
+         if (flag == USED || flag == FORWARD)
+            return i;
+      }
+      return -1;
+   }
+
+   /**
+    * Insert an empty record into the first empty slot
+    * after the specified one, or into a new slot,
+    * provided that the page has room for a record of the
+    * maximum size.
+    * @return the new slot, or -1 if the page is full
+    */
+   public int insertAfter(int slot) {
+      return insert(blk, slot, emptyRecord(), layout.slotSize(), USED);
+   }
+
+   /**
+    * Return the number of records of maximum size
+    * that the free space of the block can hold.
+    * @return the number of free slots
+    */
+   public int freeSlots() {
+      return freeSpace(blk) / (layout.slotSize() + ENTRY_SIZE);
+   }
+
+   /**
+    * Return true if no slot of the block holds a record,
+    * including a record moved from another block.
+    * @return true if the block is empty
+    */
+   public boolean isEmpty() {
+      int n = numSlots(blk);
+      for (int i=0; i<n; i++)
+         if (flag(blk, i) != EMPTY)
+            return false;
+      return true;
+   }
+
+   // Private auxiliary methods
+
+   /**
+    * Replace the value of a string field of the record in
+    * the specified slot of the specified block, which is either
+    * this page or the page to which the home slot forwards.
+    */
+   private void rewrite(int homeslot, BlockId b, int slot, String fldname, String val) {
+      Constant[] vals = readRecord(b, slot);
+      vals[layout.column(fldname)] = new Constant(val);
+      byte[] rec = encode(vals);
+      int oldlen = recordLength(b, slot);
+      logPage(b);
+      if (rec.length <= oldlen) {
+         tx.setBytes(b, recordOffset(b, slot), rec);
+         return;
+      }
+      int flag = flag(b, slot);
+      if (freeSpace(b) + oldlen >= rec.length) {
+         setFlag(b, slot, EMPTY);  // so that compaction discards the old record
+         int offset = allocate(b, rec.length);
+         tx.setBytes(b, offset, rec);
+         setEntry(b, slot, flag, offset);
+      }
+      else
+         move(homeslot, b, slot, rec);
+   }
+
+   /**
+    * Move a record that no longer fits in its page
+    * to another page, and make its home slot forward to it.
+    * The record is moved to the last page of the file
+    * if that page has room, and to a new page otherwise.
+    */
+   private void move(int homeslot, BlockId from, int slot, byte[] rec) {
+      String filename = blk.fileName();
+      int last = tx.size(filename) - 1;
+      BlockId target = new BlockId(filename, last);
+      RID rid = null;
+      if (last != blk.number() && last != from.number()) {
+         tx.pin(target);
+         int newslot = insert(target, -1, rec, rec.length, MOVED);
+         if (newslot >= 0)
+            rid = new RID(last, newslot);
+         tx.unpin(target);
+      }
+      if (rid == null) {
+         target = tx.append(filename);
+         tx.pin(target);
+         format(target);
+         rid = new RID(target.number(), insert(target, -1, rec, rec.length, MOVED));
+         tx.unpin(target);
+      }
+      if (!from.equals(blk))
+         setFlag(from, slot, EMPTY);  // the record had already moved
+      logPage(blk);
+      int stub = recordOffset(blk, homeslot);
+      tx.setInt(blk, stub, rid.blockNumber(), false);
+      tx.setInt(blk, stub + Integer.BYTES, rid.slot(), false);
+      setFlag(blk, homeslot, FORWARD);
+   }
+
+   /**
+    * Insert a record with the specified flag into the block,
+    * in the first empty slot after the specified one
+    * or in a new slot, if the block has the required space.
+    * @return the new slot, or -1 if the block is full
+    */
+   private int insert(BlockId b, int slot, byte[] rec, int required, int flag) {
+      int n = numSlots(b);
+      int newslot = n;
+      for (int i=slot+1; i<n; i++)
+         if (flag(b, i) == EMPTY) {
+            newslot = i;
+            break;
+         }
+      int entry = (newslot == n) ? ENTRY_SIZE : 0;
+      if (freeSpace(b) < required + entry)
+         return -1;
+      logPage(b);
+      if (entry > 0) {
+         if (contiguousSpace(b) < entry + rec.length)
+            compact(b);
+         tx.setInt(b, NUMSLOTS, n+1, false);
+      }
+      int offset = allocate(b, rec.length);
+      tx.setBytes(b, offset, rec);
+      setEntry(b, newslot, flag, offset);
+      return newslot;
+   }
+
+   /**
+    * Allocate space for a record at the end of the free area,
+    * compacting the page first if the free area is too small.
+    * The caller must have checked that the page has room.
+    */
+   private int allocate(BlockId b, int len) {
+      if (contiguousSpace(b) < len)
+         compact(b);
+      int offset = tx.getInt(b, FREESPACE) - len;
+      tx.setInt(b, FREESPACE, offset, false);
+      return offset;
+   }
+
+   /**
+    * Rewrite the records of the page contiguously at its end,
+    * which gathers the space freed by deleted records and by
+    * records that shrank or moved.
+    */
+   private void compact(BlockId b) {
+      int n = numSlots(b);
+      List<byte[]> recs = new ArrayList<>();
+      for (int i=0; i<n; i++) {
+         int flag = flag(b, i);
+         if (flag == EMPTY)
+            recs.add(null);
+         else if (flag == FORWARD) {
+            int offset = recordOffset(b, i);
+            recs.add(forwardRecord(tx.getInt(b, offset), tx.getInt(b, offset + Integer.BYTES)));
+         }
+         else
+            recs.add(encode(readRecord(b, i)));
+      }
+      int end = tx.blockSize();
+      for (int i=0; i<n; i++) {
+         byte[] rec = recs.get(i);
+         if (rec != null) {
+            end -= rec.length;
+            tx.setBytes(b, end, rec);
+            tx.setInt(b, entryOffset(i) + Integer.BYTES, end, false);
+         }
+      }
+      tx.setInt(b, FREESPACE, end, false);
+   }
+
+   private void format(BlockId b) {
+      tx.setInt(b, NUMSLOTS, 0, false);
+      tx.setInt(b, FREESPACE, tx.blockSize(), false);
+   }
+
+   private String readString(BlockId b, int slot, int col) {
+      int offset = recordOffset(b, slot);
+      int pos = tx.getInt(b, offset + layout.offset(col));
+      return tx.getString(b, offset + pos);
+   }
+
+   private Constant[] readRecord(BlockId b, int slot) {
+      Constant[] vals = new Constant[layout.schema().fields().size()];
+      int offset = recordOffset(b, slot);
+      for (int i=0; i<vals.length; i++) {
+         if (layout.type(i) == INTEGER)
+            vals[i] = new Constant(tx.getInt(b, offset + layout.offset(i)));
+         else
+            vals[i] = new Constant(readString(b, slot, i));
+      }
+      return vals;
+   }
+
+   /**
+    * Return the length of the record in the slot,
+    * which is that of its integer entries plus that
+    * of each of its strings.
+    */
+   private int recordLength(BlockId b, int slot) {
+      if (flag(b, slot) == FORWARD)
+         return FORWARD_SIZE;
+      Schema sch = layout.schema();
+      int offset = recordOffset(b, slot);
+      int len = sch.fields().size() * Integer.BYTES;
+      for (String fldname : sch.fields())
+         if (sch.type(fldname) != INTEGER) {
+            int pos = tx.getInt(b, offset + layout.offset(fldname));
+            len += Integer.BYTES + tx.getInt(b, offset + pos);
+         }
+      return len;
+   }
+
+   /**
+    * Encode the values of a record:
+    * an entry for each field, followed by the strings.
+    */
+   private byte[] encode(Constant[] vals) {
+      Schema sch = layout.schema();
+      List<String> fields = sch.fields();
+      int len = fields.size() * Integer.BYTES;
+      for (int i=0; i<vals.length; i++)
+         if (sch.type(fields.get(i)) != INTEGER)
+            len += Integer.BYTES + vals[i].asString().getBytes(Page.CHARSET).length;
+      byte[] rec = new byte[len];
+      Page p = new Page(rec);
+      int pos = fields.size() * Integer.BYTES;
+      for (int i=0; i<vals.length; i++) {
+         String fldname = fields.get(i);
+         if (sch.type(fldname) == INTEGER)
+            p.setInt(layout.offset(fldname), vals[i].asInt());
+         else {
+            p.setInt(layout.offset(fldname), pos);
+            p.setString(pos, vals[i].asString());
+            pos += Integer.BYTES + vals[i].asString().getBytes(Page.CHARSET).length;
+         }
+      }
+      return rec;
+   }
+
+   private byte[] emptyRecord() {
+      Schema sch = layout.schema();
+      List<String> fields = sch.fields();
+      Constant[] vals = new Constant[fields.size()];
+      for (int i=0; i<vals.length; i++)
+         vals[i] = (sch.type(fields.get(i)) == INTEGER) ? new Constant(0) : new Constant("");
+      return encode(vals);
+   }
+
+   private static byte[] forwardRecord(int blknum, int slot) {
+      byte[] rec = new byte[FORWARD_SIZE];
+      Page p = new Page(rec);
+      p.setInt(0, blknum);
+      p.setInt(Integer.BYTES, slot);
+      return rec;
+   }
+
+   /**
+    * Log the image of the whole page, before the
+    * transaction's first change to it.
+    * A log record must fit in a log page, which has
+    * the size of a block, so the image is logged in two halves;
+    * each is only logged once by the transaction.
+    */
+   private void logPage(BlockId b) {
+      int half = tx.blockSize() / 2;
+      tx.logSlot(RECUPDATE, b, 0, half);
+      tx.logSlot(RECUPDATE, b, half, tx.blockSize() - half);
+   }
+
+   /**
+    * Return the number of bytes available for records:
+    * the free area, plus the space of the deleted records
+    * and the unused space of records that shrank.
+    */
+   private int freeSpace(BlockId b) {
+      int n = numSlots(b);
+      int used = 0;
+      for (int i=0; i<n; i++)
+         if (flag(b, i) != EMPTY)
+            used += recordLength(b, i);
+      return tx.blockSize() - entryOffset(n) - used;
+   }
+
+   private int contiguousSpace(BlockId b) {
+      return tx.getInt(b, FREESPACE) - entryOffset(numSlots(b));
+   }
+
+   private RID forwardedTo(int slot) {
+      int offset = recordOffset(blk, slot);
+      return new RID(tx.getInt(blk, offset), tx.getInt(blk, offset + Integer.BYTES));
+   }
+
+   private BlockId block(RID rid) {
+      return new BlockId(blk.fileName(), rid.blockNumber());
+   }
+
+   private int numSlots(BlockId b) {
+      return tx.getInt(b, NUMSLOTS);
+   }
+
+   private int flag(BlockId b, int slot) {
+      return tx.getInt(b, entryOffset(slot));
+   }
+
+   private int recordOffset(BlockId b, int slot) {
+      return tx.getInt(b, entryOffset(slot) + Integer.BYTES);
+   }
+
+   private void setFlag(BlockId b, int slot, int flag) {
+      tx.setInt(b, entryOffset(slot), flag, false);
+   }
+
+   private void setEntry(BlockId b, int slot, int flag, int offset) {
+      tx.setInt(b, entryOffset(slot), flag, false);
+      tx.setInt(b, entryOffset(slot) + Integer.BYTES, offset, false);
+   }
+
+   private static int entryOffset(int slot) {
+      return DIRECTORY + slot * ENTRY_SIZE;
+   }
+}
@@ -0,0 +1,132 @@
+package simpledb.record;
+
+import static java.sql.Types.INTEGER;
+import java.util.*;
+import simpledb.file.BlockId;
+import simpledb.tx.Transaction;
+import simpledb.tx.TxMode;
+
+/**
+ * Compact a table whose blocks have been left sparse by
+ * deletions, so that scans read fewer blocks.
+ * The compactor moves the records of the last blocks of the
+ * table into the empty slots of its first blocks: a cursor
+ * moves backwards from the end of the table, and each record
+ * it finds is inserted into the lowest block that has room
+ * and deleted from its old slot, until the two cursors meet.
+ * The trailing blocks that are then empty are removed from
+ * the file when the transaction commits, and their zone map
+ * ranges are forgotten.
+ * <p>
+ * The table is XLocked as a whole until the transaction ends,
+ * so compaction takes the table offline: every locking or
+ * optimistic transaction that uses the table waits until the
+ * compacting transaction commits, however long the compaction
+ * takes. Only read-only transactions, which read a snapshot
+ * without locks, can still read the table; other tables are
+ * not affected. The moves are logged like any insertion and
+ * deletion, so the compaction can be rolled back. A moved record has a new RID; the caller
+ * uses {@link #moves} to update the table's indexes.
+ */
+public class TableCompactor {
+   private Transaction tx;
+   private Layout layout;
+   private String filename;
+   private FreeSpaceMap fsm;
+   private Map<RID,RID> moves = new LinkedHashMap<>();
+
+   /**
+    * Create a compactor for the specified table.
+    * @param tx the transaction, which must use locking
+    * @param tblname the name of the table
+    * @param layout the layout of the table's records
+    */
+   public TableCompactor(Transaction tx, String tblname, Layout layout) {
+      if (tx.mode() != TxMode.LOCKING)
+         throw new UnsupportedOperationException("a table can only be compacted by a locking transaction");
+      this.tx = tx;
+      this.layout = layout;
+      filename = tblname + ".tbl";
+      fsm = new FreeSpaceMap(tx, tblname);
+   }
+
+   /**
+    * Move the records of the table towards its start,
+    * record the free space of the remaining blocks in the
+    * free-space map, and truncate the empty blocks at the end
+    * of the table when the transaction commits.
+    * @return the number of blocks that the table keeps
+    */
+   public int compact() {
+      tx.xLockTable(filename);
+      int size = tx.size(filename);
+      int dst = 0;
+      RecordPage to = null;
+      int toslot = -1;
+      for (int src=size-1; src>dst; src--) {
+         RecordPage from = RecordPage.open(tx, block(src), layout);
+         int slot = from.nextAfter(-1);
+         while (slot >= 0) {
+            if (to == null)
+               to = RecordPage.open(tx, block(dst), layout);
+            int newslot = to.insertAfter(toslot);
+            if (newslot < 0) {
+               tx.unpin(to.block());
+               to = null;
+               toslot = -1;
+               if (++dst == src)
+                  break;
+               continue;
+            }
+            move(from, slot, to, newslot);
+            toslot = newslot;
+            slot = from.nextAfter(slot);
+         }
+         tx.unpin(from.block());
+      }
+      if (to != null)
+         tx.unpin(to.block());
+
+      int newsize = 0;
+      for (int blknum=0; blknum<size; blknum++) {
+         RecordPage rp = RecordPage.open(tx, block(blknum), layout);
+         if (!rp.isEmpty())
+            newsize = blknum + 1;
+         fsm.record(blknum, rp.freeSlots());
+         tx.unpin(rp.block());
+      }
+      if (newsize < size) {
+         fsm.truncate(newsize);
+         if (layout.zoneMap() != null)
+            layout.zoneMap().forget(newsize, size);
+         tx.truncate(filename, newsize);
+      }
+      return newsize;
+   }
+
+   /**
+    * Return the records that the compaction moved,
+    * as a map from the old RID of each record to its new RID.
+    * @return the moved records
+    */
+   public Map<RID,RID> moves() {
+      return moves;
+   }
+
+   private void move(RecordPage from, int slot, RecordPage to, int newslot) {
+      for (String fldname : layout.schema().fields()) {
+         int col = layout.column(fldname);
+         if (layout.type(col) == INTEGER)
+            to.setInt(newslot, fldname, from.getInt(slot, col));
+         else
+            to.setString(newslot, fldname, from.getString(slot, col));
+      }
+      from.delete(slot);
+      moves.put(new RID(from.block().number(), slot),
+                new RID(to.block().number(), newslot));
+   }
+
+   private BlockId block(int blknum) {
+      return new BlockId(filename, blknum);
+   }
+}
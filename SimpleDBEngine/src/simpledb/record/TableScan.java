@@ -4,6 +4,7 @@ import static java.sql.Types.INTEGER;
 import simpledb.file.BlockId;
 import simpledb.query.*;
 import simpledb.tx.Transaction;
+import simpledb.tx.TxMode;
 
 import java.util.Arrays;
 
@@ -16,36 +17,75 @@ public class TableScan implements UpdateScan {
    private Transaction tx;
    private Layout layout;
    private RecordPage rp;
+   private FreeSpaceMap fsm;
    private String filename;
    private int currentslot;
+   private long[] ranges;
+   private boolean inserted = false;
 
+   /**
+    * Create a scan of the table.
+    * If the table is empty, a first block is appended to it,
+    * except in a read-only transaction, which may not append
+    * to a non-temporary table; the scan then has no current
+    * block until the first insertion.
+    */
    public TableScan(Transaction tx, String tblname, Layout layout) {
       this.tx = tx;
       this.layout = layout;
       filename = tblname + ".tbl";
-      if (tx.size(filename) == 0)
-         moveToNewBlock();
-      else 
+      fsm = new FreeSpaceMap(tx, tblname);
+      if (tx.size(filename) > 0)
          moveToBlock(0);
+      else if (!tx.isReadOnly())
+         moveToNewBlock();
    }
 
    // Methods that implement Scan
 
    public void beforeFirst() {
-      moveToBlock(0);
+      if (rp != null)
+         moveToBlock(0);
    }
 
+   /**
+    * Move to the next record.
+    * If the scan is restricted, the blocks whose zone map
+    * ranges exclude the records of interest are skipped
+    * without being read.
+    * @see simpledb.query.Scan#next()
+    */
    public boolean next() {
-      currentslot = rp.nextAfter(currentslot);
+      if (rp == null)
+         return false;
+      widenInserted();
+      if (currentslot >= 0 || !skips(rp.block().number()))
+         currentslot = rp.nextAfter(currentslot);
       while (currentslot < 0) {
-         if (atLastBlock())
+         int blknum = nextBlock(rp.block().number()+1);
+         if (blknum < 0)
             return false;
-         moveToBlock(rp.block().number()+1);
+         moveToBlock(blknum);
          currentslot = rp.nextAfter(currentslot);
       }
       return true;
    }
 
+   /**
+    * Restrict the scan to the blocks that may hold a record
+    * satisfying the constant terms of the predicate, according
+    * to the table's zone map. The other records of the blocks
+    * that are read are still returned.
+    * The restriction is ignored by an optimistic transaction,
+    * whose validation only checks the blocks that it reads.
+    * @param pred the predicate of the records of interest
+    */
+   public void restrict(Predicate pred) {
+      ZoneMap zonemap = layout.zoneMap();
+      if (zonemap != null && tx.mode() != TxMode.OPTIMISTIC)
+         ranges = zonemap.ranges(pred, layout.schema());
+   }
+
    public int getInt(String fldname) {
       return rp.getInt(currentslot, fldname);
    }
@@ -55,10 +95,39 @@ public class TableScan implements UpdateScan {
    }
 
    public Constant getVal(String fldname) {
-      if (layout.schema().type(fldname) == INTEGER)
-         return new Constant(getInt(fldname));
-      else
-         return new Constant(getString(fldname));
+      return getVal(layout.column(fldname));
+   }
+
+   /**
+    * Return the column number of the field,
+    * which is its position in the table's schema.
+    * @see simpledb.query.Scan#columnIndex(java.lang.String)
+    */
+   public int columnIndex(String fldname) {
+      return layout.column(fldname);
+   }
+
+   public int getInt(int col) {
+      return rp.getInt(currentslot, col);
+   }
+
+   public String getString(int col) {
+      return rp.getString(currentslot, col);
+   }
+
+   /**
+    * Return the value of the field in the specified column.
+    * The value of an encoded field holds its code, and is
+    * only decoded if its string is needed.
+    * @see simpledb.query.Scan#getVal(int)
+    */
+   public Constant getVal(int col) {
+      if (layout.type(col) == INTEGER)
+         return new Constant(getInt(col));
+      FieldDictionary dict = layout.dictionary(col);
+      if (dict != null)
+         return new Constant(dict, rp.getInt(currentslot, col));
+      return new Constant(getString(col));
    }
 
    public boolean hasField(String fldname) {
@@ -66,8 +135,10 @@ public class TableScan implements UpdateScan {
    }
 
    public void close() {
-      if (rp != null)
+      if (rp != null) {
+         widenInserted();
          tx.unpin(rp.block());
+      }
    }
 
    // Methods that implement UpdateScan
@@ -80,32 +151,65 @@ public class TableScan implements UpdateScan {
       rp.setString(currentslot, fldname, val);
    }
 
+   /**
+    * Store the value in the specified field.
+    * An encoded value that comes from the field's own
+    * dictionary is stored by its code, without decoding it.
+    * @see simpledb.query.UpdateScan#setVal(java.lang.String, simpledb.query.Constant)
+    */
    public void setVal(String fldname, Constant val) {
-      if (layout.schema().type(fldname) == INTEGER)
+      int col = layout.column(fldname);
+      if (layout.type(col) == INTEGER)
          setInt(fldname, val.asInt());
+      else if (val.dictionary() != null && val.dictionary() == layout.dictionary(col))
+         rp.setCode(currentslot, col, val.code());
       else
          setString(fldname, val.asString());
    }
 
+   /**
+    * Insert a new record after the current one, if the
+    * current block has room, and otherwise into the
+    * block that the table's free-space map finds,
+    * or into a new block if no block has room.
+    * The number of free slots of a full block is
+    * recorded in the map before looking elsewhere;
+    * if the block still has an empty slot before the
+    * current one, the map finds the block itself,
+    * which is then searched from its first slot.
+    * The values of the new record are added to the zone
+    * map once the scan leaves it, since the fields that
+    * are not set keep the values of the empty slot.
+    */
    public void insert() {
+      if (rp == null)
+         moveToNewBlock();
+      widenInserted();
       currentslot = rp.insertAfter(currentslot);
+      int lastfull = -1;
       while (currentslot < 0) {
-         if (atLastBlock()) 
+         int full = rp.block().number();
+         fsm.record(full, rp.freeSlots());
+         int blknum = fsm.findBlock(tx.size(filename));
+         if (blknum < 0 || blknum == lastfull)
             moveToNewBlock();
-         else 
-            moveToBlock(rp.block().number()+1);
+         else
+            moveToBlock(blknum);
+         lastfull = full;
          currentslot = rp.insertAfter(currentslot);
       }
+      inserted = true;
    }
 
    public void delete() {
       rp.delete(currentslot);
+      fsm.record(rp.block().number(), rp.freeSlots());
    }
 
    public void moveToRid(RID rid) {
       close();
       BlockId blk = new BlockId(filename, rid.blockNumber());
-      rp = new RecordPage(tx, blk, layout);
+      rp = RecordPage.open(tx, blk, layout);
       currentslot = rid.slot();
    }
 
@@ -118,19 +222,51 @@ public class TableScan implements UpdateScan {
    private void moveToBlock(int blknum) {
       close();
       BlockId blk = new BlockId(filename, blknum);
-      rp = new RecordPage(tx, blk, layout);
+      rp = RecordPage.open(tx, blk, layout);
       currentslot = -1;
    }
 
    private void moveToNewBlock() {
       close();
       BlockId blk = tx.append(filename);
-      rp = new RecordPage(tx, blk, layout);
+      rp = RecordPage.open(tx, blk, layout);
       rp.format();
       currentslot = -1;
    }
 
-   private boolean atLastBlock() {
-      return rp.block().number() == tx.size(filename) - 1;
+   /**
+    * Widen the zone map ranges of the current block to
+    * include the values of the record that the scan inserted,
+    * whose fields have now been set.
+    */
+   private void widenInserted() {
+      if (inserted) {
+         rp.widenSlot(currentslot);
+         inserted = false;
+      }
+   }
+
+   /**
+    * Return the first block from the specified one that the
+    * scan does not skip, or -1 if there is none.
+    */
+   private int nextBlock(int blknum) {
+      int size = tx.size(filename);
+      while (blknum < size && skips(blknum))
+         blknum++;
+      return (blknum < size) ? blknum : -1;
+   }
+
+   /**
+    * Return true if the zone map shows that the specified
+    * block has no record of interest to a restricted scan.
+    * The block is S-locked first, so that no record can be
+    * added to it or modified while the scan is active.
+    */
+   private boolean skips(int blknum) {
+      if (ranges == null)
+         return false;
+      tx.sLock(new BlockId(filename, blknum));
+      return !layout.zoneMap().mayContain(blknum, ranges);
    }
 }
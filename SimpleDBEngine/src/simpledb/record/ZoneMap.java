@@ -0,0 +1,268 @@
+package simpledb.record;
+
+import static java.sql.Types.INTEGER;
+import java.util.*;
+import java.util.function.Consumer;
+import simpledb.file.*;
+import simpledb.query.Predicate;
+import simpledb.tx.Transaction;
+
+/**
+ * The zone map of a table, which records the smallest and
+ * largest value of each integer field in each block, so that a
+ * scan can skip the blocks that cannot hold a record satisfying
+ * its predicate.
+ * <p>
+ * The map is stored in the file tblname.zone. Each block of the
+ * table has an entry: a flag, which is 0 if the block's range
+ * is unknown, followed by the minimum and maximum of each integer
+ * field. A new block of the map contains only unknown entries.
+ * <p>
+ * A block's range covers every value of its records, including
+ * the deleted records and the old values that a rollback may
+ * restore, so that it remains valid whichever changes are committed
+ * or rolled back. A range is therefore only ever widened: it is
+ * widened before a value is written, and an unknown range is first
+ * computed from all the slots of the block, used or empty.
+ * A new block is given an empty range when it is formatted, since
+ * its empty slots hold no values of interest; the values of a record
+ * inserted into an empty slot are covered once they have been set
+ * (see {@link RecordPage#widenSlot}).
+ * The map needs no locking or logging.
+ * The entries that a transaction changes are written to disk before
+ * its commit record, so the committed values on disk are always
+ * covered by the map on disk; the changes of a transaction that
+ * does not commit are undone, and the wider range remains harmless.
+ * <p>
+ * A single ZoneMap object is shared by all transactions, and the
+ * whole map is kept in memory.
+ * Tables in the SLOTTED format have no zone map, since the fields
+ * of a record that has been moved are stored in another block.
+ */
+public class ZoneMap {
+   private static final int KNOWN = 1;
+   private String filename;
+   private int[] zonecols;
+   private int numzones, entrysize;
+   private int perblock = -1;
+   private int[] entries = new int[0];
+   private Set<Integer> dirty = new HashSet<>();
+   private final Consumer<Transaction> flusher = this::flush;
+
+   /**
+    * Create the zone map of the specified table.
+    * The map is read from disk when it is first loaded.
+    * @param tblname the name of the table
+    * @param sch the schema of the table
+    */
+   public ZoneMap(String tblname, Schema sch) {
+      filename = tblname + ".zone";
+      List<String> fields = sch.fields();
+      zonecols = new int[fields.size()];
+      for (int col=0; col<fields.size(); col++)
+         zonecols[col] = (sch.type(fields.get(col)) == INTEGER) ? numzones++ : -1;
+      entrysize = 1 + 2 * numzones;
+   }
+
+   /**
+    * Return true if the schema has an integer field,
+    * so that a zone map of its table is of some use.
+    * @param sch the schema of a table
+    * @return true if the schema has an integer field
+    */
+   public static boolean applies(Schema sch) {
+      for (String fldname : sch.fields())
+         if (sch.type(fldname) == INTEGER)
+            return true;
+      return false;
+   }
+
+   /**
+    * Read the zone map from disk, if that has not been done yet.
+    * @param tx the calling transaction
+    */
+   public synchronized void load(Transaction tx) {
+      if (perblock >= 0)
+         return;
+      perblock = tx.blockSize() / (entrysize * Integer.BYTES);
+      int size = tx.hintSize(filename);
+      entries = new int[size * perblock * entrysize];
+      Page p = new Page(tx.blockSize());
+      for (int b=0; b<size; b++) {
+         tx.readUnbuffered(new BlockId(filename, b), p);
+         for (int i=0; i<perblock*entrysize; i++)
+            entries[b*perblock*entrysize + i] = p.getInt(i * Integer.BYTES);
+      }
+   }
+
+   /**
+    * Widen the range of the field in the specified column of
+    * the record page's block to include the specified values.
+    * This method is called before the values are written.
+    * @param rp the record page, which the transaction has pinned
+    * @param col the column number of the field
+    * @param lo the smallest value to be written
+    * @param hi the largest value to be written
+    */
+   public synchronized void widen(RecordPage rp, int col, int lo, int hi) {
+      int zone = zonecols[col];
+      if (zone < 0)
+         return;
+      int blknum = rp.block().number();
+      int pos = entry(blknum);
+      boolean changed = false;
+      if (entries[pos] != KNOWN) {
+         compute(rp, pos);
+         changed = true;
+      }
+      int minpos = pos + 1 + 2*zone;
+      if (lo < entries[minpos]) {
+         entries[minpos] = lo;
+         changed = true;
+      }
+      if (hi > entries[minpos+1]) {
+         entries[minpos+1] = hi;
+         changed = true;
+      }
+      if (changed)
+         changed(rp, blknum);
+   }
+
+   /**
+    * Give the record page's block an empty range, since its
+    * contents are about to be replaced by a new block's.
+    * @param rp the record page, which the transaction has pinned
+    */
+   public synchronized void clear(RecordPage rp) {
+      int blknum = rp.block().number();
+      int pos = entry(blknum);
+      entries[pos] = KNOWN;
+      for (int zone=0; zone<numzones; zone++) {
+         entries[pos + 1 + 2*zone] = Integer.MAX_VALUE;
+         entries[pos + 2 + 2*zone] = Integer.MIN_VALUE;
+      }
+      changed(rp, blknum);
+   }
+
+   /**
+    * Forget the ranges of the specified blocks, which then
+    * may hold any value.
+    * This method is called when the blocks are removed from
+    * the table, so that their old ranges do not widen the
+    * ranges of the blocks that may later replace them.
+    * @param from the first block to forget
+    * @param to the block after the last one to forget
+    */
+   public synchronized void forget(int from, int to) {
+      for (int blknum=from; blknum<to; blknum++) {
+         int pos = blknum * entrysize;
+         if (pos < entries.length && entries[pos] == KNOWN) {
+            entries[pos] = 0;
+            dirty.add(blknum / perblock);
+         }
+      }
+   }
+
+   /**
+    * Return the range of each integer field that the constant
+    * terms of the predicate allow, or null if the predicate
+    * does not restrict any of them.
+    * @param pred the predicate
+    * @param sch the schema of the table
+    * @return the lowest and highest allowed value of each field, or null
+    */
+   public long[] ranges(Predicate pred, Schema sch) {
+      long[] ranges = new long[2 * numzones];
+      boolean restricted = false;
+      List<String> fields = sch.fields();
+      for (int col=0; col<fields.size(); col++) {
+         int zone = zonecols[col];
+         if (zone < 0)
+            continue;
+         long[] range = pred.range(fields.get(col));
+         ranges[2*zone] = range[0];
+         ranges[2*zone+1] = range[1];
+         if (range[0] > Integer.MIN_VALUE || range[1] < Integer.MAX_VALUE)
+            restricted = true;
+      }
+      return restricted ? ranges : null;
+   }
+
+   /**
+    * Return true if the specified block may hold a record
+    * whose fields are in the specified ranges.
+    * @param blknum the number of a block of the table
+    * @param ranges the ranges returned by {@link #ranges}
+    * @return false if the block has no such record
+    */
+   public synchronized boolean mayContain(int blknum, long[] ranges) {
+      int pos = blknum * entrysize;
+      if (pos >= entries.length || entries[pos] != KNOWN)
+         return true;
+      for (int zone=0; zone<numzones; zone++) {
+         int min = entries[pos + 1 + 2*zone], max = entries[pos + 2 + 2*zone];
+         if (max < ranges[2*zone] || min > ranges[2*zone+1])
+            return false;
+      }
+      return true;
+   }
+
+   /**
+    * Write the changed blocks of the map to disk.
+    * The map is extended by the blocks it does not have yet.
+    */
+   private synchronized void flush(Transaction tx) {
+      for (int b : dirty) {
+         while (tx.hintSize(filename) <= b)
+            tx.appendHint(filename);
+         Page p = new Page(tx.blockSize());
+         for (int i=0; i<perblock*entrysize; i++)
+            p.setInt(i * Integer.BYTES, entries[b*perblock*entrysize + i]);
+         tx.writeUnbuffered(new BlockId(filename, b), p);
+      }
+      dirty.clear();
+   }
+
+   /**
+    * Note that the entry of the block has changed, so that
+    * it is written to disk when the transaction commits.
+    */
+   private void changed(RecordPage rp, int blknum) {
+      dirty.add(blknum / perblock);
+      rp.tx.beforeCommit(flusher);
+   }
+
+   /**
+    * Return the position of the specified block's entry,
+    * enlarging the array of entries to hold it if necessary.
+    */
+   private int entry(int blknum) {
+      int pos = blknum * entrysize;
+      if (pos >= entries.length) {
+         int blocks = (blknum / perblock + 1) * perblock;
+         entries = Arrays.copyOf(entries, Math.max(blocks * entrysize, 2 * entries.length));
+      }
+      return pos;
+   }
+
+   /**
+    * Compute the range of each field from all the slots
+    * of the block, used or empty.
+    * The values are read without locking the slots; any value
+    * written after they are read is widened first.
+    */
+   private void compute(RecordPage rp, int pos) {
+      clear(rp);
+      for (int col=0; col<zonecols.length; col++) {
+         int zone = zonecols[col];
+         if (zone < 0)
+            continue;
+         int minpos = pos + 1 + 2*zone;
+         for (int slot=0; slot<rp.numSlots(); slot++) {
+            int val = rp.peekField(slot, col);
+            entries[minpos] = Math.min(entries[minpos], val);
+            entries[minpos+1] = Math.max(entries[minpos+1], val);
+         }
+      }
+   }
+}
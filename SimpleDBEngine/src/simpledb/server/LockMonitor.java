@@ -0,0 +1,144 @@
+package simpledb.server;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import javax.management.*;
+import simpledb.file.BlockId;
+import simpledb.tx.Transaction;
+import simpledb.tx.concurrency.*;
+
+/**
+ * The JMX view of the lock manager and the active transactions.
+ * The monitor is registered with the platform MBean server
+ * under the name {@value #NAME} when the database starts.
+ */
+public class LockMonitor implements LockMonitorMBean {
+   public static final String NAME = "simpledb:type=LockMonitor";
+
+   /**
+    * Register the monitor with the platform MBean server,
+    * unless a monitor is already registered.
+    * The name is constant and the monitor is a compliant MBean,
+    * so registration can only fail because of a programming error.
+    */
+   public static synchronized void register() {
+      try {
+         MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+         ObjectName name = new ObjectName(NAME);
+         if (!mbs.isRegistered(name))
+            mbs.registerMBean(new LockMonitor(), name);
+      }
+      catch(JMException e) {
+         throw new RuntimeException("cannot register the lock monitor", e);
+      }
+   }
+
+   public String getDeadlockPolicy() {
+      return ConcurrencyMgr.deadlockPolicy().toString();
+   }
+
+   public String[] getLockModes() {
+      LockMode[] modes = LockMode.values();
+      String[] result = new String[modes.length];
+      for (int i=0; i<modes.length; i++)
+         result[i] = modes[i].toString();
+      return result;
+   }
+
+   public long[] getAcquisitions() {
+      LockStats stats = ConcurrencyMgr.lockStats();
+      LockMode[] modes = LockMode.values();
+      long[] result = new long[modes.length];
+      for (int i=0; i<modes.length; i++)
+         result[i] = stats.acquisitions(modes[i]);
+      return result;
+   }
+
+   public long[] getWaits() {
+      LockStats stats = ConcurrencyMgr.lockStats();
+      LockMode[] modes = LockMode.values();
+      long[] result = new long[modes.length];
+      for (int i=0; i<modes.length; i++)
+         result[i] = stats.waits(modes[i]);
+      return result;
+   }
+
+   public String[] getWaitHistogramBuckets() {
+      long[] bounds = LockStats.WAIT_BOUNDS;
+      String[] result = new String[bounds.length + 1];
+      for (int i=0; i<bounds.length; i++)
+         result[i] = "<= " + bounds[i] + " ms";
+      result[bounds.length] = "> " + bounds[bounds.length-1] + " ms";
+      return result;
+   }
+
+   public long[] getWaitHistogram() {
+      return ConcurrencyMgr.lockStats().waitHistogram();
+   }
+
+   public long getTotalWaitTime() {
+      return ConcurrencyMgr.lockStats().totalWaitTime();
+   }
+
+   public long getTimeouts() {
+      return ConcurrencyMgr.lockStats().timeouts();
+   }
+
+   public long getDeadlocks() {
+      return ConcurrencyMgr.lockStats().deadlocks();
+   }
+
+   public long getWaitDies() {
+      return ConcurrencyMgr.lockStats().waitDies();
+   }
+
+   public long getWounds() {
+      return ConcurrencyMgr.lockStats().wounds();
+   }
+
+   public long getEscalations() {
+      return ConcurrencyMgr.escalationCount();
+   }
+
+   public int getActiveTransactions() {
+      return Transaction.activeTransactions().size();
+   }
+
+   public String getLongestWaiter() {
+      LockInfo li = ConcurrencyMgr.longestWaiter();
+      return (li == null) ? "none" : li.toString();
+   }
+
+   public String[] getLocks() {
+      return describe(ConcurrencyMgr.locks());
+   }
+
+   public String[] getTransactions() {
+      List<String> result = new ArrayList<>();
+      long now = System.currentTimeMillis();
+      for (Transaction tx : Transaction.activeTransactions()) {
+         String s = "tx " + tx.txNum() + " (" + tx.mode().toString().toLowerCase()
+               + ", " + (now - tx.startTime()) + " ms, " + tx.lockCount() + " locks)";
+         LockInfo li = tx.waitingFor();
+         if (li != null)
+            s += ": " + li;
+         result.add(s);
+      }
+      return result.toArray(new String[0]);
+   }
+
+   public String[] locksOn(String filename, int blknum) {
+      return describe(ConcurrencyMgr.locks(new BlockId(filename, blknum)));
+   }
+
+   public void resetStatistics() {
+      ConcurrencyMgr.lockStats().reset();
+   }
+
+   private static String[] describe(List<LockInfo> locks) {
+      String[] result = new String[locks.size()];
+      for (int i=0; i<result.length; i++)
+         result[i] = locks.get(i).toString();
+      return result;
+   }
+}
@@ -0,0 +1,40 @@
+package simpledb.server;
+
+/**
+ * The management interface of the lock manager,
+ * through which a JMX client such as jconsole can observe
+ * lock activity while the server is running.
+ * The per-mode counts are indexed in the order of
+ * {@link #getLockModes()}, and the histogram in the order
+ * of {@link #getWaitHistogramBuckets()}.
+ * The numbers are those of {@link simpledb.tx.concurrency.LockStats}.
+ */
+public interface LockMonitorMBean {
+   String getDeadlockPolicy();
+   String[] getLockModes();
+   long[] getAcquisitions();
+   long[] getWaits();
+   String[] getWaitHistogramBuckets();
+   long[] getWaitHistogram();
+   long getTotalWaitTime();
+   long getTimeouts();
+   long getDeadlocks();
+   long getWaitDies();
+   long getWounds();
+   long getEscalations();
+   int getActiveTransactions();
+   String getLongestWaiter();
+   String[] getLocks();
+   String[] getTransactions();
+
+   /**
+    * Describe the holders and waiters of the specified block.
+    * The block number -2 denotes the table locks of the file.
+    * @param filename the name of the file
+    * @param blknum the number of the block
+    * @return a description of each holder and waiter
+    */
+   String[] locksOn(String filename, int blknum);
+
+   void resetStatistics();
+}
@@ -5,10 +5,13 @@ import simpledb.file.FileMgr;
 import simpledb.log.LogMgr;
 import simpledb.buffer.BufferMgr;
 import simpledb.tx.Transaction;
+import simpledb.tx.TxMode;
+import simpledb.tx.concurrency.*;
 import simpledb.metadata.MetadataMgr;
 import simpledb.plan.*;
 import simpledb.index.planner.IndexUpdatePlanner;
 import simpledb.opt.HeuristicQueryPlanner;
+import simpledb.partition.PartitionUpdatePlanner;
 
 /**
  * The class that configures the system.
@@ -19,6 +22,12 @@ public class SimpleDB {
    public static int BLOCK_SIZE = 400;
    public static int BUFFER_SIZE = 8;
    public static String LOG_FILE = "simpledb.log";
+   public static int RECOVERY_WORKERS =
+         Runtime.getRuntime().availableProcessors(); // the most threads recovery may use
+   public static long LOG_FLUSH_INTERVAL = 200; // milliseconds
+   public static DeadlockPolicy DEADLOCK_POLICY = DeadlockPolicy.DETECT;
+   public static String COPY_DIRECTORY = "."; // holds the files of copy statements
+   public static long VERSION_STORE_SIZE = 1 << 22; // bytes of snapshot versions in memory
 
    private  FileMgr     fm;
    private  BufferMgr   bm;
@@ -36,7 +45,11 @@ public class SimpleDB {
       File dbDirectory = new File(dirname);
       fm = new FileMgr(dbDirectory, blocksize);
       lm = new LogMgr(fm, LOG_FILE);
+      lm.setFlushInterval(LOG_FLUSH_INTERVAL);
       bm = new BufferMgr(fm, lm, buffsize); 
+      ConcurrencyMgr.setDeadlockPolicy(DEADLOCK_POLICY);
+      Transaction.setVersionStoreSize(VERSION_STORE_SIZE);
+      LockMonitor.register();
    }
    
    /**
@@ -52,14 +65,15 @@ public class SimpleDB {
          System.out.println("creating new database");
       else {
          System.out.println("recovering existing database");
-         tx.recover();
+         tx.recover(RECOVERY_WORKERS);
       }
       mdm = new MetadataMgr(isnew, tx);
 //      QueryPlanner qp = new BasicQueryPlanner(mdm);
 //      UpdatePlanner up = new BasicUpdatePlanner(mdm);
       QueryPlanner qp = new HeuristicQueryPlanner(mdm);
-      UpdatePlanner up = new IndexUpdatePlanner(mdm);
+      UpdatePlanner up = new PartitionUpdatePlanner(new IndexUpdatePlanner(mdm), mdm);
       planner = new Planner(qp, up);
+      planner.setCopyDirectory(COPY_DIRECTORY);
       tx.commit();
    }
    
@@ -70,7 +84,34 @@ public class SimpleDB {
    public Transaction newTx() {
       return new Transaction(fm, lm, bm);
    }
+
+   /**
+    * Create a read-only transaction, which reads
+    * a snapshot of the database without locking.
+    */
+   public Transaction newReadOnlyTx() {
+      return new Transaction(fm, lm, bm, true);
+   }
+
+   /**
+    * Create an optimistic transaction, which takes no
+    * locks until it is validated at commit.
+    */
+   public Transaction newOptimisticTx() {
+      return new Transaction(fm, lm, bm, TxMode.OPTIMISTIC);
+   }
    
+   /**
+    * Shut down the database.
+    * The log's background flusher is stopped and the log
+    * is written to disk, so asynchronous commits are not lost.
+    * The modified buffers of committed transactions
+    * are already on disk.
+    */
+   public void close() {
+      lm.close();
+   }
+
    public MetadataMgr mdMgr() {
       return mdm;
    }
@@ -3,12 +3,20 @@ package simpledb.server;
 import java.rmi.registry.*;
 
 import simpledb.jdbc.network.*;
+import simpledb.tx.concurrency.DeadlockPolicy;
 
 public class StartServer {
    public static void main(String args[]) throws Exception {
       // configure and initialize the database
       String dirname = (args.length == 0) ? "studentdb" : args[0];
+      if (args.length > 1)
+         SimpleDB.DEADLOCK_POLICY = DeadlockPolicy.valueOf(args[1].toUpperCase());
+      if (args.length > 2)
+         SimpleDB.RECOVERY_WORKERS = Integer.parseInt(args[2]);
+      if (args.length > 3)
+         SimpleDB.COPY_DIRECTORY = args[3];
       SimpleDB db = new SimpleDB(dirname);
+      Runtime.getRuntime().addShutdownHook(new Thread(db::close));
       
       // create a registry specific for the server on the default port
       Registry reg = LocateRegistry.createRegistry(1099);
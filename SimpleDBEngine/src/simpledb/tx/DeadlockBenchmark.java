@@ -0,0 +1,109 @@
+package simpledb.tx;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import simpledb.file.BlockId;
+import simpledb.tx.concurrency.*;
+
+/**
+ * A stress test of the lock table's deadlock policies.
+ * Each thread repeatedly runs a "transaction" that locks
+ * a few random blocks of a small, heavily-shared file in
+ * random order, reading each block and then sometimes
+ * upgrading its lock in order to write it.
+ * Deadlocks are therefore frequent.
+ * A transaction that is aborted is retried until it commits,
+ * keeping its transaction number. Under WAIT_DIE and WOUND_WAIT,
+ * the number is the transaction's priority, so a retried
+ * transaction eventually becomes the oldest one and cannot starve.
+ * (A {@link Transaction} always takes a new number, and so a
+ * client that retries with a new Transaction loses its priority;
+ * the benchmark keeps it by using the concurrency managers.)
+ * For each policy, the benchmark runs for a fixed time
+ * and reports the committed transactions per second
+ * and the fraction of attempts that were aborted.
+ * The lock timeout is shortened for all policies, so that
+ * the TIMEOUT policy does not spend most of the run waiting.
+ * The concurrency managers are used directly, so that
+ * the measurements are not affected by logging or buffering.
+ */
+public class DeadlockBenchmark {
+   private static final int NUM_BLOCKS = 50;
+   private static final int LOCKS_PER_TX = 6;
+   private static final long RUN_TIME = 3000;     // milliseconds
+   private static final long LOCK_TIMEOUT = 100;  // milliseconds
+   private static AtomicInteger nextTxNum = new AtomicInteger();
+
+   public static void main(String[] args) throws InterruptedException {
+      int nthreads = (args.length > 0) ? Integer.parseInt(args[0]) : 8;
+      ConcurrencyMgr.setLockTimeout(LOCK_TIMEOUT);
+      for (DeadlockPolicy policy : DeadlockPolicy.values()) {
+         ConcurrencyMgr.setLockStripes(16);
+         ConcurrencyMgr.setDeadlockPolicy(policy);
+         AtomicLong commits = new AtomicLong();
+         AtomicLong aborts = new AtomicLong();
+         long end = System.currentTimeMillis() + RUN_TIME;
+         Thread[] threads = new Thread[nthreads];
+         for (int i=0; i<nthreads; i++) {
+            threads[i] = new Thread(new Worker(i, end, commits, aborts));
+            threads[i].start();
+         }
+         for (Thread t : threads)
+            t.join();
+         long attempts = commits.get() + aborts.get();
+         System.out.println(policy + ": "
+               + (commits.get() * 1000 / RUN_TIME) + " txs/sec, "
+               + (aborts.get() * 1000 / RUN_TIME) + " aborts/sec, abort rate "
+               + String.format("%.1f%%", 100.0 * aborts.get() / Math.max(1, attempts)));
+      }
+   }
+
+   static class Worker implements Runnable {
+      private long end;
+      private AtomicLong commits, aborts;
+      private Random rand;
+
+      Worker(int id, long end, AtomicLong commits, AtomicLong aborts) {
+         this.end = end;
+         this.commits = commits;
+         this.aborts = aborts;
+         rand = new Random(id);
+      }
+
+      public void run() {
+         while (System.currentTimeMillis() < end) {
+            List<Integer> blknums = new ArrayList<>();
+            while (blknums.size() < LOCKS_PER_TX) {
+               int n = rand.nextInt(NUM_BLOCKS);
+               if (!blknums.contains(n))
+                  blknums.add(n);
+            }
+            boolean[] writes = new boolean[LOCKS_PER_TX];
+            for (int i=0; i<LOCKS_PER_TX; i++)
+               writes[i] = rand.nextInt(4) == 0;
+            // retry the same transaction, with the same number, until it commits
+            int txnum = nextTxNum.incrementAndGet();
+            while (System.currentTimeMillis() < end) {
+               ConcurrencyMgr cm = new ConcurrencyMgr(txnum);
+               try {
+                  for (int i=0; i<LOCKS_PER_TX; i++) {
+                     BlockId blk = new BlockId("benchfile", blknums.get(i));
+                     cm.sLock(blk);
+                     Thread.yield();
+                     if (writes[i])
+                        cm.xLock(blk);
+                  }
+                  cm.release();
+                  commits.incrementAndGet();
+                  break;
+               }
+               catch(LockAbortException e) {
+                  cm.release();
+                  aborts.incrementAndGet();
+                  Thread.yield();  // give the conflicting transactions a chance to finish
+               }
+            }
+         }
+      }
+   }
+}
@@ -0,0 +1,72 @@
+package simpledb.tx;
+
+import java.util.*;
+import simpledb.file.BlockId;
+import simpledb.tx.concurrency.*;
+
+/**
+ * A lock-heavy variant of ConcurrencyTest that measures
+ * the throughput of the lock table.
+ * Each thread repeatedly runs a "transaction" that slocks
+ * a number of random blocks and xlocks one block of its own,
+ * acquiring the locks in block order so that no deadlock can occur.
+ * The benchmark is run against a lock table with a single stripe
+ * and against one with several stripes.
+ * The concurrency managers are used directly, so that
+ * the measurements are not affected by logging or buffering.
+ */
+public class LockBenchmark {
+   private static final int NUM_BLOCKS = 1000;
+   private static final int LOCKS_PER_TX = 20;
+   private static final int TXS_PER_THREAD = 20000;
+
+   public static void main(String[] args) throws InterruptedException {
+      int nthreads = (args.length > 0) ? Integer.parseInt(args[0]) : 8;
+      for (int nstripes : new int[] {1, 4, 16, 64}) {
+         ConcurrencyMgr.setLockStripes(nstripes);
+         long start = System.currentTimeMillis();
+         Thread[] threads = new Thread[nthreads];
+         for (int i=0; i<nthreads; i++) {
+            threads[i] = new Thread(new Worker(i, nthreads));
+            threads[i].start();
+         }
+         for (Thread t : threads)
+            t.join();
+         long elapsed = Math.max(1, System.currentTimeMillis() - start);
+         long txs = (long) nthreads * TXS_PER_THREAD;
+         System.out.println(nthreads + " threads, " + nstripes + " stripes: "
+               + (txs * 1000 / elapsed) + " txs/sec");
+      }
+   }
+
+   static class Worker implements Runnable {
+      private int id, nthreads;
+      private Random rand;
+
+      Worker(int id, int nthreads) {
+         this.id = id;
+         this.nthreads = nthreads;
+         rand = new Random(id);
+      }
+
+      public void run() {
+         for (int i=0; i<TXS_PER_THREAD; i++) {
+            ConcurrencyMgr cm = new ConcurrencyMgr(i*nthreads + id);
+            // a block that only this thread writes
+            int xblk = nthreads * rand.nextInt(NUM_BLOCKS / nthreads) + id;
+            TreeSet<Integer> blknums = new TreeSet<>();
+            blknums.add(xblk);
+            while (blknums.size() < LOCKS_PER_TX)
+               blknums.add(rand.nextInt(NUM_BLOCKS));
+            for (int n : blknums) {
+               BlockId blk = new BlockId("benchfile", n);
+               if (n == xblk)
+                  cm.xLock(blk);
+               else
+                  cm.sLock(blk);
+            }
+            cm.release();
+         }
+      }
+   }
+}
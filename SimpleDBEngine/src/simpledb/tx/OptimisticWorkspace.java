@@ -0,0 +1,137 @@
+package simpledb.tx;
+
+import java.util.*;
+import simpledb.file.*;
+
+/**
+ * The private state of an optimistic transaction:
+ * its read set, which holds the version of each block
+ * and the size of each file it has read,
+ * and its write set, which holds a private copy of each
+ * block it has modified together with the list of writes
+ * to be installed at commit.
+ */
+class OptimisticWorkspace {
+   private static final int END_OF_FILE = -1;
+   private Map<BlockId,Long> readversions = new HashMap<>();
+   private Map<String,Integer> sizes = new HashMap<>();
+   private Map<BlockId,Page> pages = new HashMap<>();
+   private List<BlockId> writeblocks = new ArrayList<>();
+   private List<Runnable> writes = new ArrayList<>();
+
+   /**
+    * Record the version of a block that the transaction read.
+    * Only the first version read is kept: if the block has
+    * changed since then, the transaction is not valid.
+    * @param blk the block
+    * @param version its current version
+    */
+   void recordRead(BlockId blk, long version) {
+      readversions.putIfAbsent(blk, version);
+   }
+
+   /**
+    * Record the size of a file that the transaction read.
+    * As with blocks, only the first size read is kept.
+    * @param filename the name of the file
+    * @param size its current number of blocks
+    */
+   void recordSize(String filename, int size) {
+      sizes.putIfAbsent(filename, size);
+   }
+
+   /**
+    * Replace the recorded size of a file,
+    * after the transaction has appended to it.
+    * @param filename the name of the file
+    * @param size its new number of blocks
+    */
+   void setSize(String filename, int size) {
+      sizes.put(filename, size);
+   }
+
+   /**
+    * Return the recorded size of the file,
+    * or null if the transaction has not read it.
+    * @param filename the name of the file
+    * @return the recorded size
+    */
+   Integer size(String filename) {
+      return sizes.get(filename);
+   }
+
+   Map<BlockId,Long> readVersions() {
+      return readversions;
+   }
+
+   Map<String,Integer> sizes() {
+      return sizes;
+   }
+
+   /**
+    * Return the private copy of the block,
+    * or null if the transaction has not modified it.
+    * @param blk the block
+    * @return its private copy
+    */
+   Page page(BlockId blk) {
+      return pages.get(blk);
+   }
+
+   void putPage(BlockId blk, Page p) {
+      pages.put(blk, p);
+   }
+
+   /**
+    * Add a write to those that are installed at commit.
+    * @param blk the block that is written
+    * @param w the write
+    */
+   void addWrite(BlockId blk, Runnable w) {
+      writeblocks.add(blk);
+      writes.add(w);
+   }
+
+   /**
+    * Perform the transaction's writes, in the order
+    * in which it made them.
+    * Each block is pinned while it is written.
+    * @param tx the transaction
+    */
+   void install(Transaction tx) {
+      for (int i=0; i<writes.size(); i++) {
+         BlockId blk = writeblocks.get(i);
+         tx.pin(blk);
+         writes.get(i).run();
+         tx.unpin(blk);
+      }
+   }
+
+   /**
+    * Return true if the transaction has modified the block.
+    * @param blk the block
+    * @return true if the block is in the write set
+    */
+   boolean isWritten(BlockId blk) {
+      return pages.containsKey(blk);
+   }
+
+   /**
+    * Return the blocks that the transaction has read or
+    * written, together with the end-of-file marker of each
+    * file whose size it read, in a fixed global order.
+    * Committing transactions that lock their blocks in this
+    * order cannot deadlock with each other.
+    * @return the sorted list of blocks
+    */
+   List<BlockId> lockOrder() {
+      Set<BlockId> blks = new HashSet<>(readversions.keySet());
+      blks.addAll(pages.keySet());
+      for (String filename : sizes.keySet())
+         blks.add(new BlockId(filename, END_OF_FILE));
+      List<BlockId> result = new ArrayList<>(blks);
+      result.sort(Comparator.comparing(BlockId::fileName)
+                            .thenComparingInt(BlockId::number));
+      return result;
+   }
+}
@@ -1,10 +1,13 @@
 package simpledb.tx;
 
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import simpledb.file.*;
 import simpledb.log.LogMgr;
 import simpledb.buffer.*;
 import simpledb.tx.recovery.*;
-import simpledb.tx.concurrency.ConcurrencyMgr;
+import simpledb.tx.concurrency.*;
 
 /**
  * Provide transaction management for clients,
@@ -15,12 +18,27 @@ import simpledb.tx.concurrency.ConcurrencyMgr;
 public class Transaction {
    private static int nextTxNum = 0;
    private static final int END_OF_FILE = -1;
+   private static VersionStore versions = new VersionStore(Long.MAX_VALUE);
+   private static BlockVersions blockversions = new BlockVersions();
+   private static Map<Integer,Transaction> active = new ConcurrentHashMap<>();
+   private static final Object registration = new Object();
    private RecoveryMgr    recoveryMgr;
    private ConcurrencyMgr concurMgr;
    private BufferMgr bm;
    private FileMgr fm;
    private int txnum;
    private BufferList mybuffers;
+   private boolean synchronousCommit = true;
+   private long snapshot = -1;
+   private Map<BlockId,Page> snapshotPages = new HashMap<>();
+   private Map<String,Integer> truncations = new HashMap<>();
+   private Set<Consumer<Transaction>> commitActions = new LinkedHashSet<>();
+   private OptimisticWorkspace workspace;
+   private boolean optimistic = false;
+   private boolean ended = false;
+   private boolean finished = false;
+   private TxMode mode;
+   private long starttime = System.currentTimeMillis();
    
    /**
     * Create a new transaction and its associated 
@@ -35,12 +53,67 @@ public class Transaction {
     * is called first.
     */
    public Transaction(FileMgr fm, LogMgr lm, BufferMgr bm) {
+      this(fm, lm, bm, TxMode.LOCKING);
+   }
+
+   /**
+    * Create a new transaction, which is read-only
+    * if the specified flag is true.
+    * A read-only transaction reads a snapshot of the
+    * database as of the time it starts, which it
+    * reconstructs from the version store instead of
+    * locking the blocks it reads.
+    * It therefore never waits for writers, and writers
+    * never wait for it. It may not modify any
+    * blocks other than those of its temporary tables.
+    * Since it has nothing to undo, it has no recovery
+    * manager: it writes no log records, and its commit
+    * and rollback do no log I/O.
+    * @param readonly true if the transaction is read-only
+    */
+   public Transaction(FileMgr fm, LogMgr lm, BufferMgr bm, boolean readonly) {
+      this(fm, lm, bm, readonly ? TxMode.SNAPSHOT : TxMode.LOCKING);
+   }
+
+   /**
+    * Create a new transaction that uses the specified
+    * kind of concurrency control.
+    * <p>
+    * An optimistic transaction reads the current contents of
+    * blocks without locking them, recording the version
+    * of each block it reads, and makes its writes to private
+    * copies of the blocks.
+    * When it commits, it locks the blocks it has accessed,
+    * checks that none of them has changed since it read it,
+    * and then performs its writes as a locking transaction would.
+    * If the check fails, the transaction rolls back and commit
+    * throws a ValidationException; the client may then retry it.
+    * Appending to a file is not deferred: the transaction
+    * locks the end of the file when it first appends to it.
+    * @param mode the concurrency control of the transaction
+    */
+   public Transaction(FileMgr fm, LogMgr lm, BufferMgr bm, TxMode mode) {
       this.fm = fm;
       this.bm = bm;
+      this.mode = mode;
       txnum       = nextTxNumber();
-      recoveryMgr = new RecoveryMgr(this, txnum, lm, bm);
-      concurMgr   = new ConcurrencyMgr();
+      concurMgr   = new ConcurrencyMgr(txnum);
       mybuffers = new BufferList(bm);
+      if (mode != TxMode.SNAPSHOT)
+         recoveryMgr = new RecoveryMgr(this, txnum, lm, bm);
+      if (mode == TxMode.OPTIMISTIC) {
+         workspace = new OptimisticWorkspace();
+         optimistic = true;
+      }
+      // a transaction that reads without locks must not start
+      // while another one is checking whether it can truncate
+      synchronized (registration) {
+         if (mode == TxMode.SNAPSHOT)
+            snapshot = versions.beginSnapshot(writers());
+         if (optimistic)
+            blockversions.begin();
+         active.put(txnum, this);
+      }
    }
    
    /**
@@ -48,26 +121,86 @@ public class Transaction {
     * Flush all modified buffers (and their log records),
     * write and flush a commit record to the log,
     * release all locks, and unpin any pinned buffers.
+    * A read-only transaction only releases its
+    * snapshot, locks and buffers.
+    * An optimistic transaction is first validated,
+    * and its writes installed.
+    * The files that the transaction truncates are truncated
+    * once the commit record is on disk (the commit is then
+    * synchronous), before the locks are released.
+    * The actions registered by {@link #beforeCommit} are
+    * performed before the modified buffers are flushed.
+    * @throws ValidationException if an optimistic transaction is not valid
     */
    public void commit() {
-      recoveryMgr.commit();
-      System.out.println("transaction " + txnum + " committed");
-      concurMgr.release();
-      mybuffers.unpinAll();
+      if (workspace != null)
+         validateAndInstall();
+      if (!isReadOnly()) {
+         for (Consumer<Transaction> action : commitActions)
+            action.accept(this);
+         recoveryMgr.commit(synchronousCommit || !truncations.isEmpty());
+         synchronized (registration) {
+            versions.commit(txnum);
+            finished = true;
+         }
+         truncateFiles();
+         System.out.println("transaction " + txnum + " committed");
+      }
+      endTx();
    }
    
+   /**
+    * Register an action to be performed when the transaction
+    * commits, before its modified buffers and its commit record
+    * are written to disk. An action registered several times
+    * is performed once; the actions are discarded if the
+    * transaction rolls back.
+    * @param action the action, which is passed the transaction
+    */
+   public void beforeCommit(Consumer<Transaction> action) {
+      commitActions.add(action);
+   }
+
+   /**
+    * Specify whether commit waits for the commit record
+    * to be written to disk.
+    * A transaction that does not wait commits faster,
+    * but it may be lost (in its entirety) if the system
+    * crashes within the log manager's flush interval.
+    * Only the flush of the commit record is deferred:
+    * the transaction's modified pages are still written
+    * to disk at commit, because recovery can only undo.
+    * @param synchronous false if commit should not wait for the log
+    */
+   public void setSynchronousCommit(boolean synchronous) {
+      synchronousCommit = synchronous;
+   }
+
    /**
     * Rollback the current transaction.
     * Undo any modified values,
     * flush those buffers,
     * write and flush a rollback record to the log,
     * release all locks, and unpin any pinned buffers.
+    * A read-only transaction has nothing to undo:
+    * the changes to its temporary tables are discarded
+    * along with the tables.
+    * A transaction that has already ended, such as an
+    * optimistic one that failed validation, is left as it is.
     */
    public void rollback() {
-      recoveryMgr.rollback();
-      System.out.println("transaction " + txnum + " rolled back");
-      concurMgr.release();
-      mybuffers.unpinAll();
+      if (ended)
+         return;
+      workspace = null;
+      if (!isReadOnly()) {
+         recoveryMgr.rollback();
+         synchronized (registration) {
+            versions.rollback(txnum);
+            finished = true;
+         }
+         System.out.println("transaction " + txnum + " rolled back");
+      }
+      endTx();
    }
    
    /**
@@ -82,6 +215,19 @@ public class Transaction {
       bm.flushAll(txnum);
       recoveryMgr.recover();
    }
+
+   /**
+    * Recover the database as in {@link #recover()},
+    * but undo the uncommitted changes using a pool of
+    * worker threads, each responsible for a disjoint set of blocks.
+    * The pool is sized from the number of blocks to undo,
+    * so a database that was shut down cleanly needs none.
+    * @param nworkers the maximum number of recovery threads
+    */
+   public void recover(int nworkers) {
+      bm.flushAll(txnum);
+      recoveryMgr.recover(nworkers);
+   }
    
    /**
     * Pin the specified block.
@@ -100,6 +246,62 @@ public class Transaction {
     */
    public void unpin(BlockId blk) {
       mybuffers.unpin(blk);
+      if (mybuffers.getBuffer(blk) == null)
+         snapshotPages.remove(blk);
+   }
+
+   /**
+    * Return true if the transaction is a read-only
+    * transaction, which reads a snapshot of the database.
+    * @return true if the transaction is read-only
+    */
+   public boolean isReadOnly() {
+      return snapshot >= 0;
+   }
+
+   /**
+    * Return the transactions that have started
+    * and not yet committed or rolled back,
+    * in the order in which they started.
+    * @return the active transactions
+    */
+   public static List<Transaction> activeTransactions() {
+      List<Transaction> result = new ArrayList<>(active.values());
+      result.sort(Comparator.comparingInt(Transaction::txNum));
+      return result;
+   }
+
+   public int txNum() {
+      return txnum;
+   }
+
+   public TxMode mode() {
+      return mode;
+   }
+
+   /**
+    * Return the time at which the transaction started.
+    * @return the start time, in milliseconds since the epoch
+    */
+   public long startTime() {
+      return starttime;
+   }
+
+   /**
+    * Return the number of locks that the transaction holds.
+    * @return the number of held locks
+    */
+   public int lockCount() {
+      return concurMgr.lockCount();
+   }
+
+   /**
+    * Describe the lock request that the transaction
+    * is waiting for, or return null if it is not waiting.
+    * @return the transaction's waiting request
+    */
+   public LockInfo waitingFor() {
+      return ConcurrencyMgr.waitingFor(txnum);
    }
    
    /**
@@ -112,9 +314,49 @@ public class Transaction {
     * @return the integer stored at that offset
     */
    public int getInt(BlockId blk, int offset) {
-      concurMgr.sLock(blk);
+      if (!readsSnapshot(blk) && !readsOptimistically(blk))
+         concurMgr.sLock(blk);
+      return peekInt(blk, offset);
+   }
+
+   /**
+    * Return the integer value stored at the specified offset
+    * of the specified block, within the record in the
+    * specified slot.
+    * The method obtains an SLock on the record only, and not
+    * on the block, so it must only be used by record pages,
+    * for values that belong to the record.
+    * @param blk a reference to a disk block
+    * @param slot the slot of the record
+    * @param offset the byte offset within the block
+    * @return the integer stored at that offset
+    */
+   public int getRecordInt(BlockId blk, int slot, int offset) {
+      sLockRecord(blk, slot);
+      return peekInt(blk, offset);
+   }
+
+   /**
+    * Return the integer value stored at the
+    * specified offset of the specified block,
+    * without locking the block.
+    * The value is read while latching the buffer, so it is
+    * consistent, but it may be changed by an uncommitted
+    * transaction; the caller must lock the record that
+    * contains the value before relying on it.
+    * @param blk a reference to a disk block
+    * @param offset the byte offset within the block
+    * @return the integer stored at that offset
+    */
+   public int peekInt(BlockId blk, int offset) {
+      if (readsSnapshot(blk))
+         return snapshotPage(blk).getInt(offset);
+      if (readsOptimistically(blk))
+         return optimisticGetInt(blk, offset);
       Buffer buff = mybuffers.getBuffer(blk);
-      return buff.contents().getInt(offset);
+      synchronized (buff) {
+         return buff.contents().getInt(offset);
+      }
    }
    
    /**
@@ -127,9 +369,24 @@ public class Transaction {
     * @return the string stored at that offset
     */
    public String getString(BlockId blk, int offset) {
-      concurMgr.sLock(blk);
-      Buffer buff = mybuffers.getBuffer(blk);
-      return buff.contents().getString(offset);
+      if (!readsSnapshot(blk) && !readsOptimistically(blk))
+         concurMgr.sLock(blk);
+      return readString(blk, offset);
+   }
+
+   /**
+    * Return the string value stored at the specified offset
+    * of the specified block, within the record in the
+    * specified slot.
+    * As with {@link #getRecordInt}, only the record is locked.
+    * @param blk a reference to a disk block
+    * @param slot the slot of the record
+    * @param offset the byte offset within the block
+    * @return the string stored at that offset
+    */
+   public String getRecordString(BlockId blk, int slot, int offset) {
+      sLockRecord(blk, slot);
+      return readString(blk, offset);
    }
    
    /**
@@ -146,14 +403,50 @@ public class Transaction {
     * @param val the value to be stored
     */
    public void setInt(BlockId blk, int offset, int val, boolean okToLog) {
+      checkWritable(blk);
+      if (readsOptimistically(blk)) {
+         privatePage(blk).setInt(offset, val);
+         workspace.addWrite(blk, () -> setInt(blk, offset, val, okToLog));
+         return;
+      }
       concurMgr.xLock(blk);
+      writeInt(blk, offset, val, okToLog);
+   }
+
+   /**
+    * Store an integer at the specified offset of the specified
+    * block, within the record in the specified slot, without
+    * logging it.
+    * The method obtains an XLock on the record only, and not
+    * on the block, so it must only be used by record pages,
+    * which log the record's before-image with {@link #logRecordSlot}.
+    * @param blk a reference to the disk block
+    * @param slot the slot of the record
+    * @param offset a byte offset within that block
+    * @param val the value to be stored
+    */
+   public void setRecordInt(BlockId blk, int slot, int offset, int val) {
+      checkWritable(blk);
+      if (readsOptimistically(blk)) {
+         privatePage(blk).setInt(offset, val);
+         workspace.addWrite(blk, () -> setRecordInt(blk, slot, offset, val));
+         return;
+      }
+      concurMgr.xLockRecord(blk, slot);
+      writeInt(blk, offset, val, false);
+   }
+
+   private void writeInt(BlockId blk, int offset, int val, boolean okToLog) {
       Buffer buff = mybuffers.getBuffer(blk);
-      int lsn = -1;
-      if (okToLog)
-         lsn = recoveryMgr.setInt(buff, offset, val);
-      Page p = buff.contents();
-      p.setInt(offset, val);
-      buff.setModified(txnum, lsn);
+      synchronized (buff) {
+         long lsn = -1;
+         if (okToLog && recoveryMgr != null)
+            lsn = recoveryMgr.setInt(buff, offset, val);
+         saveVersion(buff, offset, Integer.BYTES);
+         buff.contents().setInt(offset, val);
+         buff.setModified(txnum, lsn);
+         blockversions.bump(blk);
+      }
    }
    
    /**
@@ -170,14 +463,306 @@ public class Transaction {
     * @param val the value to be stored
     */
    public void setString(BlockId blk, int offset, String val, boolean okToLog) {
+      checkWritable(blk);
+      if (readsOptimistically(blk)) {
+         privatePage(blk).setString(offset, val);
+         workspace.addWrite(blk, () -> setString(blk, offset, val, okToLog));
+         return;
+      }
+      concurMgr.xLock(blk);
+      writeString(blk, offset, val, okToLog);
+   }
+
+   /**
+    * Store a string at the specified offset of the specified
+    * block, within the record in the specified slot, without
+    * logging it.
+    * As with {@link #setRecordInt}, only the record is locked.
+    * @param blk a reference to the disk block
+    * @param slot the slot of the record
+    * @param offset a byte offset within that block
+    * @param val the value to be stored
+    */
+   public void setRecordString(BlockId blk, int slot, int offset, String val) {
+      checkWritable(blk);
+      if (readsOptimistically(blk)) {
+         privatePage(blk).setString(offset, val);
+         workspace.addWrite(blk, () -> setRecordString(blk, slot, offset, val));
+         return;
+      }
+      concurMgr.xLockRecord(blk, slot);
+      writeString(blk, offset, val, false);
+   }
+
+   private void writeString(BlockId blk, int offset, String val, boolean okToLog) {
+      Buffer buff = mybuffers.getBuffer(blk);
+      synchronized (buff) {
+         long lsn = -1;
+         if (okToLog && recoveryMgr != null)
+            lsn = recoveryMgr.setString(buff, offset, val);
+         saveVersion(buff, offset, Page.maxLength(val.length()));
+         buff.contents().setString(offset, val);
+         buff.setModified(txnum, lsn);
+         blockversions.bump(blk);
+      }
+   }
+
+   /**
+    * Log a change to the record stored in the slot at the
+    * specified offset of the specified block.
+    * The method first obtains an XLock on the block.
+    * It then asks the recovery manager to log the slot's
+    * before-image, which happens only for the transaction's
+    * first change to the slot.
+    * The values of the record are then written with
+    * okToLog set to false.
+    * A read-only transaction logs nothing.
+    * @param op one of LogRecord.RECINSERT, RECDELETE or RECUPDATE
+    * @param blk a reference to the disk block
+    * @param offset the byte offset of the slot within that block
+    * @param slotsize the size of the slot, in bytes
+    */
+   public void logSlot(int op, BlockId blk, int offset, int slotsize) {
+      checkWritable(blk);
+      if (readsOptimistically(blk)) {
+         privatePage(blk);
+         workspace.addWrite(blk, () -> logSlot(op, blk, offset, slotsize));
+         return;
+      }
       concurMgr.xLock(blk);
+      writeSlotLog(op, blk, offset, slotsize);
+   }
+
+   /**
+    * Log a change to the record in the specified slot,
+    * whose bytes start at the specified offset.
+    * The method obtains an XLock on the record only,
+    * and not on the block; otherwise it is the same as
+    * {@link #logSlot}.
+    * @param op one of LogRecord.RECINSERT, RECDELETE or RECUPDATE
+    * @param blk a reference to the disk block
+    * @param slot the slot of the record
+    * @param offset the byte offset of the logged bytes within that block
+    * @param length the number of logged bytes
+    */
+   public void logRecordSlot(int op, BlockId blk, int slot, int offset, int length) {
+      checkWritable(blk);
+      if (readsOptimistically(blk)) {
+         privatePage(blk);
+         workspace.addWrite(blk, () -> logRecordSlot(op, blk, slot, offset, length));
+         return;
+      }
+      concurMgr.xLockRecord(blk, slot);
+      writeSlotLog(op, blk, offset, length);
+   }
+
+   private void writeSlotLog(int op, BlockId blk, int offset, int slotsize) {
+      if (recoveryMgr == null)
+         return;
+      Buffer buff = mybuffers.getBuffer(blk);
+      synchronized (buff) {
+         long lsn = recoveryMgr.logSlot(op, buff, offset, slotsize);
+         if (lsn >= 0)
+            buff.setModified(txnum, lsn);
+      }
+   }
+
+   /**
+    * Store an array of bytes at the specified offset
+    * of the specified block, without logging it.
+    * This method is used to write the records of
+    * slotted pages, whose changes are logged as images
+    * of the whole page.
+    * @param blk a reference to the disk block
+    * @param offset a byte offset within that block
+    * @param val the bytes to be stored
+    */
+   public void setBytes(BlockId blk, int offset, byte[] val) {
+      checkWritable(blk);
+      if (readsOptimistically(blk)) {
+         privatePage(blk).setRawBytes(offset, val);
+         workspace.addWrite(blk, () -> setBytes(blk, offset, val));
+         return;
+      }
+      concurMgr.xLock(blk);
+      writeBytes(blk, offset, val);
+   }
+
+   /**
+    * Restore a before-image that the transaction logged,
+    * when a slot record is undone.
+    * The block is not locked: the transaction still holds
+    * the lock, on the block or on the record, under which
+    * it made the change, and recovery runs before any other
+    * transaction starts.
+    * @param blk a reference to the disk block
+    * @param offset a byte offset within that block
+    * @param val the bytes to be restored
+    */
+   public void undoBytes(BlockId blk, int offset, byte[] val) {
+      writeBytes(blk, offset, val);
+   }
+
+   private void writeBytes(BlockId blk, int offset, byte[] val) {
+      Buffer buff = mybuffers.getBuffer(blk);
+      synchronized (buff) {
+         saveVersion(buff, offset, val.length);
+         buff.contents().setRawBytes(offset, val);
+         buff.setModified(txnum, -1);
+         blockversions.bump(blk);
+      }
+   }
+
+   /**
+    * Store the image of a whole page in the specified block,
+    * which the transaction must have appended to its file
+    * and not modified since.
+    * Instead of logging the values of the page, the method
+    * writes a single NEWPAGE log record, whose undo
+    * empties the block again.
+    * This method is used by bulk loads, which build their
+    * pages in memory.
+    * @param blk a reference to the new disk block
+    * @param image the contents of the page
+    */
+   public void setPage(BlockId blk, Page image) {
+      checkWritable(blk);
+      byte[] bytes = image.getRawBytes(0, blockSize());
+      if (readsOptimistically(blk)) {
+         privatePage(blk).setRawBytes(0, bytes);
+         workspace.addWrite(blk, () -> setPage(blk, new Page(bytes)));
+         return;
+      }
+      concurMgr.xLock(blk);
+      Buffer buff = mybuffers.getBuffer(blk);
+      synchronized (buff) {
+         long lsn = -1;
+         if (recoveryMgr != null)
+            lsn = recoveryMgr.logNewPage(buff, bytes.length);
+         saveVersion(buff, 0, bytes.length);
+         buff.contents().setRawBytes(0, bytes);
+         buff.setModified(txnum, lsn);
+         blockversions.bump(blk);
+      }
+   }
+
+   /**
+    * Return the integer value stored at the specified
+    * offset of the specified block of a hint file,
+    * such as the free-space map of a table.
+    * A hint only guides a search whose result the caller
+    * verifies, so hint files are read and written without
+    * locks, snapshots or logging: every transaction sees
+    * the current value, and a change is neither undone
+    * by a rollback nor guaranteed to survive a crash.
+    * The block must be pinned.
+    * @param blk a reference to a block of a hint file
+    * @param offset the byte offset within the block
+    * @return the integer stored at that offset
+    */
+   public int getHint(BlockId blk, int offset) {
       Buffer buff = mybuffers.getBuffer(blk);
-      int lsn = -1;
-      if (okToLog)
-         lsn = recoveryMgr.setString(buff, offset, val);
-      Page p = buff.contents();
-      p.setString(offset, val);
-      buff.setModified(txnum, lsn);
+      synchronized (buff) {
+         return buff.contents().getInt(offset);
+      }
+   }
+
+   /**
+    * Store an integer at the specified offset of the
+    * specified block of a hint file, without locking
+    * or logging it.
+    * @param blk a reference to a block of a hint file
+    * @param offset the byte offset within the block
+    * @param val the value to be stored
+    */
+   public void setHint(BlockId blk, int offset, int val) {
+      checkWritable(blk);
+      Buffer buff = mybuffers.getBuffer(blk);
+      synchronized (buff) {
+         buff.contents().setInt(offset, val);
+         buff.setModified(txnum, -1);
+      }
+   }
+
+   /**
+    * Set or clear one bit of the integer stored at the
+    * specified offset of the specified block, without
+    * locking or logging it.
+    * Unlike setHint, this method may be used for hints
+    * stored in the blocks of a table, such as the occupancy
+    * bitmap of a record page: the bit is changed while the
+    * buffer is latched, so concurrent changes to the other
+    * bits of the integer are not lost.
+    * An optimistic transaction changes the bit only when it
+    * installs its writes.
+    * @param blk a reference to the disk block
+    * @param offset the byte offset of the integer within the block
+    * @param bit the position of the bit, from 0 to 31
+    * @param val true to set the bit, false to clear it
+    */
+   public void setHintBit(BlockId blk, int offset, int bit, boolean val) {
+      checkWritable(blk);
+      if (readsOptimistically(blk)) {
+         workspace.addWrite(blk, () -> setHintBit(blk, offset, bit, val));
+         return;
+      }
+      Buffer buff = mybuffers.getBuffer(blk);
+      synchronized (buff) {
+         int word = buff.contents().getInt(offset);
+         word = val ? (word | (1 << bit)) : (word & ~(1 << bit));
+         buff.contents().setInt(offset, word);
+         buff.setModified(txnum, -1);
+      }
+   }
+
+   /**
+    * Return the number of blocks in the specified hint file,
+    * without locking the end of the file.
+    * @param filename the name of the hint file
+    * @return the number of blocks in the file
+    */
+   public int hintSize(String filename) {
+      return fm.length(filename);
+   }
+
+   /**
+    * Append a new block to the specified hint file,
+    * without locking the end of the file.
+    * Concurrent appends may add more blocks than needed,
+    * which is harmless, since a new block is filled with zeros.
+    * @param filename the name of the hint file
+    * @return a reference to the newly-created block
+    */
+   public BlockId appendHint(String filename) {
+      checkWritable(new BlockId(filename, END_OF_FILE));
+      return fm.append(filename);
+   }
+
+   /**
+    * Read the specified block directly from disk into the
+    * specified page, bypassing the buffer pool, without
+    * locking or logging.
+    * This method and {@link #writeUnbuffered} are used for
+    * files whose contents are only ever appended, and which
+    * are never accessed through buffers, such as the
+    * dictionaries of encoded fields.
+    * @param blk a reference to the disk block
+    * @param p the page that receives the contents of the block
+    */
+   public void readUnbuffered(BlockId blk, Page p) {
+      fm.read(blk, p);
+   }
+
+   /**
+    * Write the specified page directly to the specified
+    * block, bypassing the buffer pool, without locking or
+    * logging. The block is on disk when the method returns.
+    * @param blk a reference to the disk block
+    * @param p the page to write
+    */
+   public void writeUnbuffered(BlockId blk, Page p) {
+      checkWritable(blk);
+      fm.write(blk, p);
    }
 
    /**
@@ -190,7 +775,13 @@ public class Transaction {
     */
    public int size(String filename) {
       BlockId dummyblk = new BlockId(filename, END_OF_FILE);
-      concurMgr.sLock(dummyblk);
+      if (readsOptimistically(dummyblk)) {
+         int size = fm.length(filename);
+         workspace.recordSize(filename, size);
+         return size;
+      }
+      if (!readsSnapshot(dummyblk))
+         concurMgr.sLock(dummyblk);
       return fm.length(filename);
    }
    
@@ -204,10 +795,115 @@ public class Transaction {
     */
    public BlockId append(String filename) {
       BlockId dummyblk = new BlockId(filename, END_OF_FILE);
+      checkWritable(dummyblk);
       concurMgr.xLock(dummyblk);
-      return fm.append(filename);
+      if (!readsOptimistically(dummyblk))
+         return fm.append(filename);
+      Integer size = workspace.size(filename);
+      if (size != null && size != fm.length(filename))
+         throw new ValidationException("the size of " + filename + " has changed");
+      BlockId blk = fm.append(filename);
+      workspace.setSize(filename, fm.length(filename));
+      return blk;
    }
    
+   /**
+    * Truncate the specified file to the specified number
+    * of blocks when the transaction commits.
+    * The transaction obtains an XLock on the whole file, and
+    * the blocks to be removed must be empty when it commits.
+    * The truncation is not logged: it happens after the
+    * commit record has been written, so a rollback simply
+    * keeps the blocks, and a crash before the truncation
+    * leaves them empty.
+    * The file is not truncated if a transaction that reads
+    * without locks is active, since it may still read the
+    * removed blocks; the blocks are then kept, empty.
+    * @param filename the name of the file
+    * @param numblocks the number of blocks to keep
+    */
+   public void truncate(String filename, int numblocks) {
+      xLockTable(filename);
+      truncations.put(filename, numblocks);
+   }
+
+   /**
+    * Obtain an SLock on the specified block without reading it,
+    * so that no other transaction can modify the block.
+    * A read-only or optimistic transaction takes no locks.
+    * @param blk a reference to the disk block
+    */
+   public void sLock(BlockId blk) {
+      if (!readsSnapshot(blk) && !readsOptimistically(blk))
+         concurMgr.sLock(blk);
+   }
+
+   /**
+    * Obtain an SLock on the record in the specified slot
+    * of the specified block.
+    * The transaction can then read the record with
+    * getRecordInt and getRecordString without locking the whole block.
+    * A read-only or optimistic transaction takes no locks.
+    * @param blk a reference to the disk block
+    * @param slot the slot of the record
+    */
+   public void sLockRecord(BlockId blk, int slot) {
+      if (!readsSnapshot(blk) && !readsOptimistically(blk))
+         concurMgr.sLockRecord(blk, slot);
+   }
+
+   /**
+    * Obtain an XLock on the record in the specified slot
+    * of the specified block.
+    * The transaction can then modify the record with
+    * setRecordInt and setRecordString without locking the whole block.
+    * @param blk a reference to the disk block
+    * @param slot the slot of the record
+    */
+   public void xLockRecord(BlockId blk, int slot) {
+      checkWritable(blk);
+      if (!readsOptimistically(blk))
+         concurMgr.xLockRecord(blk, slot);
+   }
+
+   /**
+    * Return true if the transaction holds an XLock that covers
+    * the record in the specified slot, which is the case
+    * whenever the transaction has modified the record.
+    * @param blk a reference to the disk block
+    * @param slot the slot of the record
+    * @return true if the record is XLocked by the transaction
+    */
+   public boolean hasXLockRecord(BlockId blk, int slot) {
+      return concurMgr.hasXLockRecord(blk, slot);
+   }
+
+   /**
+    * Obtain an SLock on the entire specified file.
+    * A transaction that is about to read most of a file
+    * can call this method instead of locking its blocks
+    * one at a time.
+    * A read-only or optimistic transaction takes no locks.
+    * @param filename the name of the file
+    */
+   public void sLockTable(String filename) {
+      BlockId dummyblk = new BlockId(filename, END_OF_FILE);
+      if (!readsSnapshot(dummyblk) && !readsOptimistically(dummyblk))
+         concurMgr.sLockTable(filename);
+   }
+
+   /**
+    * Obtain an XLock on the entire specified file,
+    * for a bulk operation that modifies most of it.
+    * @param filename the name of the file
+    */
+   public void xLockTable(String filename) {
+      BlockId dummyblk = new BlockId(filename, END_OF_FILE);
+      checkWritable(dummyblk);
+      if (!readsOptimistically(dummyblk))
+         concurMgr.xLockTable(filename);
+   }
+
    public int blockSize() {
       return fm.blockSize();
    }
@@ -216,6 +912,233 @@ public class Transaction {
       return bm.available();
    }
    
+   /**
+    * Release the transaction's locks, snapshot and buffers.
+    */
+   private void endTx() {
+      ended = true;
+      synchronized (registration) {
+         active.remove(txnum);
+      }
+      concurMgr.release();
+      if (snapshot >= 0)
+         versions.endSnapshot(snapshot);
+      if (optimistic)
+         blockversions.end();
+      snapshotPages.clear();
+      mybuffers.unpinAll();
+   }
+
+   /**
+    * Return true if the block is read from the snapshot.
+    * A read-only transaction reads the blocks of its own
+    * temporary tables directly, because no other
+    * transaction can modify them.
+    */
+   private boolean readsSnapshot(BlockId blk) {
+      return snapshot >= 0 && !isTemp(blk);
+   }
+
+   /**
+    * Return the contents of the block as seen by the
+    * transaction's snapshot.
+    * The contents are computed the first time the block
+    * is read while pinned, by copying the buffer's page
+    * and restoring the versions of the writes that the
+    * snapshot does not see.
+    * The buffer is latched during the copy, so that no
+    * write can occur between the copy and the restore.
+    */
+   private Page snapshotPage(BlockId blk) {
+      Page p = snapshotPages.get(blk);
+      if (p == null) {
+         Buffer buff = mybuffers.getBuffer(blk);
+         synchronized (buff) {
+            p = new Page(buff.contents().getRawBytes(0, fm.blockSize()));
+            versions.applyVersions(blk, p, snapshot);
+         }
+         snapshotPages.put(blk, p);
+      }
+      return p;
+   }
+
+   /**
+    * Return true if the block is accessed optimistically,
+    * without locks.
+    * Like a read-only transaction, an optimistic one
+    * accesses its temporary tables directly.
+    */
+   private boolean readsOptimistically(BlockId blk) {
+      return workspace != null && !isTemp(blk);
+   }
+
+   /**
+    * Read a value of an optimistic transaction, from its
+    * private copy of the block if it has modified the block,
+    * and otherwise from the buffer, recording the block's version.
+    */
+   /**
+    * Read the string at the specified offset of the block
+    * that the transaction sees, without locking the block.
+    */
+   private String readString(BlockId blk, int offset) {
+      if (readsSnapshot(blk))
+         return snapshotPage(blk).getString(offset);
+      if (readsOptimistically(blk))
+         return optimisticGetString(blk, offset);
+      Buffer buff = mybuffers.getBuffer(blk);
+      synchronized (buff) {
+         return buff.contents().getString(offset);
+      }
+   }
+
+   private int optimisticGetInt(BlockId blk, int offset) {
+      Page p = workspace.page(blk);
+      if (p != null)
+         return p.getInt(offset);
+      Buffer buff = mybuffers.getBuffer(blk);
+      synchronized (buff) {
+         workspace.recordRead(blk, blockversions.version(blk));
+         return buff.contents().getInt(offset);
+      }
+   }
+
+   private String optimisticGetString(BlockId blk, int offset) {
+      Page p = workspace.page(blk);
+      if (p != null)
+         return p.getString(offset);
+      Buffer buff = mybuffers.getBuffer(blk);
+      synchronized (buff) {
+         workspace.recordRead(blk, blockversions.version(blk));
+         return buff.contents().getString(offset);
+      }
+   }
+
+   /**
+    * Return the transaction's private copy of the block,
+    * creating it from the block's current contents the
+    * first time the block is modified.
+    * The version of those contents is added to the read set,
+    * because the transaction's writes are based on them.
+    */
+   private Page privatePage(BlockId blk) {
+      Page p = workspace.page(blk);
+      if (p == null) {
+         Buffer buff = mybuffers.getBuffer(blk);
+         synchronized (buff) {
+            workspace.recordRead(blk, blockversions.version(blk));
+            p = new Page(buff.contents().getRawBytes(0, fm.blockSize()));
+         }
+         workspace.putPage(blk, p);
+      }
+      return p;
+   }
+
+   /**
+    * Validate an optimistic transaction and install its writes.
+    * The transaction locks the blocks it has accessed, in the
+    * workspace's order: an XLock on the blocks it has modified
+    * and an SLock on the others. The locks exclude any
+    * uncommitted writer, and are held until the transaction ends.
+    * The transaction is valid if no block it read has a
+    * new version and no file it read has a new size.
+    * It then becomes an ordinary locking transaction, which
+    * installs the writes by performing them again on the
+    * shared buffers, logging them as usual.
+    * If validation fails, the transaction is rolled back.
+    */
+   private void validateAndInstall() {
+      OptimisticWorkspace ws = workspace;
+      try {
+         for (BlockId blk : ws.lockOrder()) {
+            if (ws.isWritten(blk))
+               concurMgr.xLock(blk);
+            else
+               concurMgr.sLock(blk);
+         }
+         for (Map.Entry<BlockId,Long> e : ws.readVersions().entrySet())
+            if (blockversions.version(e.getKey()) != e.getValue())
+               throw new ValidationException("block " + e.getKey() + " has changed");
+         for (Map.Entry<String,Integer> e : ws.sizes().entrySet())
+            if (fm.length(e.getKey()) != e.getValue())
+               throw new ValidationException("the size of " + e.getKey() + " has changed");
+         workspace = null;
+         ws.install(this);
+      }
+      catch (RuntimeException e) {
+         rollback();
+         throw e;
+      }
+   }
+
+   /**
+    * Truncate the files registered by {@link #truncate},
+    * unless another active transaction does not use locks.
+    * No such transaction can start until the files are truncated.
+    * The transaction's buffers are unpinned first, so that the
+    * buffer manager can detach them from the removed blocks;
+    * a file whose removed blocks are still pinned keeps them.
+    */
+   private void truncateFiles() {
+      if (truncations.isEmpty())
+         return;
+      mybuffers.unpinAll();
+      synchronized (registration) {
+         for (Transaction tx : active.values())
+            if (tx != this && tx.mode() != TxMode.LOCKING)
+               return;
+         for (String filename : truncations.keySet())
+            if (!bm.truncate(filename, truncations.get(filename)))
+               System.out.println("transaction " + txnum + " kept the empty blocks of "
+                                  + filename + ", which are pinned");
+      }
+   }
+
+   /**
+    * Set the maximum number of bytes that the version store
+    * keeps in memory. A writer whose versions would not fit
+    * is undone from the log by the snapshots that need it.
+    * @param size the maximum size of the saved versions, in bytes
+    */
+   public static void setVersionStoreSize(long size) {
+      versions.setMaxSize(size);
+   }
+
+   /**
+    * Save the bytes about to be overwritten in the version store,
+    * so that snapshots can restore them.
+    * Nothing is copied unless a snapshot is active,
+    * and the bytes of temporary tables are not saved.
+    */
+   private void saveVersion(Buffer buff, int offset, int length) {
+      BlockId blk = buff.block();
+      if (versions.isSaving() && !isTemp(blk))
+         versions.saveVersion(txnum, recoveryMgr, blk, offset,
+                              buff.contents().getRawBytes(offset, length));
+   }
+
+   /**
+    * Return the recovery managers of the active transactions
+    * that can still write, keyed by transaction number.
+    * The caller must synchronize on the registration lock.
+    */
+   private static Map<Integer,RecoveryMgr> writers() {
+      Map<Integer,RecoveryMgr> result = new HashMap<>();
+      for (Transaction tx : active.values())
+         if (tx.recoveryMgr != null && !tx.finished)
+            result.put(tx.txnum, tx.recoveryMgr);
+      return result;
+   }
+
+   private void checkWritable(BlockId blk) {
+      if (readsSnapshot(blk))
+         throw new ReadOnlyException("transaction " + txnum + " is read-only");
+   }
+
+   private static boolean isTemp(BlockId blk) {
+      return blk.fileName().startsWith("temp");
+   }
+
    private static synchronized int nextTxNumber() {
       nextTxNum++;
       return nextTxNum;
@@ -0,0 +1,14 @@
+package simpledb.tx;
+
+/**
+ * The ways in which a transaction can control concurrency.
+ * LOCKING transactions use strict two-phase locking.
+ * SNAPSHOT transactions are read-only, and read a snapshot
+ * of the database without locking.
+ * OPTIMISTIC transactions take no locks while they execute:
+ * they buffer their writes privately, and validate their
+ * reads and install their writes when they commit.
+ */
+public enum TxMode {
+   LOCKING, SNAPSHOT, OPTIMISTIC
+}
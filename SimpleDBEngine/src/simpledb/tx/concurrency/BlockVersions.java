@@ -0,0 +1,74 @@
+package simpledb.tx.concurrency;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import simpledb.file.BlockId;
+
+/**
+ * The version numbers of blocks, which optimistic
+ * transactions use to validate their reads.
+ * <p>
+ * Every write to a block gives it a new version number,
+ * taken from a global counter, so a block's version
+ * changes whenever its contents do and never returns
+ * to an earlier value.
+ * An optimistic transaction records the version of each
+ * block it reads; at commit, it is valid only if none
+ * of those versions has changed.
+ * <p>
+ * The versions are only needed while optimistic
+ * transactions are active. Writes do not record
+ * versions when there are none, and the table is
+ * emptied when the last one finishes; a block that
+ * has no entry has version 0.
+ */
+public class BlockVersions {
+   private AtomicLong counter = new AtomicLong();
+   private Map<BlockId,Long> versions = new ConcurrentHashMap<>();
+   private int active = 0;
+   private volatile boolean tracking = false;
+
+   /**
+    * Register the start of an optimistic transaction.
+    */
+   public synchronized void begin() {
+      active++;
+      tracking = true;
+   }
+
+   /**
+    * Register the end of an optimistic transaction.
+    * When no optimistic transaction remains,
+    * the versions are discarded.
+    */
+   public synchronized void end() {
+      active--;
+      if (active == 0) {
+         tracking = false;
+         versions.clear();
+      }
+   }
+
+   /**
+    * Give the block a new version.
+    * The caller must hold the latch of the block's buffer,
+    * so that the write and the new version appear
+    * atomic to a transaction reading the block.
+    * @param blk the block that was written
+    */
+   public void bump(BlockId blk) {
+      if (tracking)
+         versions.put(blk, counter.incrementAndGet());
+   }
+
+   /**
+    * Return the current version of the block.
+    * @param blk the block
+    * @return its version number
+    */
+   public long version(BlockId blk) {
+      Long v = versions.get(blk);
+      return (v == null) ? 0 : v;
+   }
+}
@@ -1,6 +1,7 @@
 package simpledb.tx.concurrency;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import simpledb.file.BlockId;
 
 /**
@@ -9,6 +10,25 @@ import simpledb.file.BlockId;
  * The concurrency manager keeps track of which locks the 
  * transaction currently has, and interacts with the
  * global lock table as needed. 
+ * <p>
+ * Locking is hierarchical: a file is represented by a dummy
+ * block, on which the transaction takes an intention lock
+ * (IS or IX) before locking one of the file's blocks.
+ * A transaction that accesses most of a file can instead
+ * take a single S or X lock on the whole file.
+ * Below the blocks are the record slots: a transaction can
+ * lock individual records, after taking an intention lock on
+ * their block. Its block-level requests for that block are then
+ * satisfied by the intention lock, because the record locks
+ * protect the data; the buffer's latch keeps the page
+ * itself consistent while several transactions modify it.
+ * <p>
+ * The manager counts the block and record locks that the
+ * transaction holds on each file. When the count for a file
+ * exceeds the escalation threshold, the locks are escalated:
+ * the transaction obtains an S lock on the whole file (or an
+ * X lock, if it has modified the file), and then releases
+ * its finer-grained locks on it, which the file lock covers.
  * @author Edward Sciore
  */
 public class ConcurrencyMgr {
@@ -17,49 +37,333 @@ public class ConcurrencyMgr {
     * The global lock table. This variable is static because 
     * all transactions share the same table.
     */
-   private static LockTable locktbl = new LockTable();
-   private Map<BlockId,String> locks  = new HashMap<BlockId,String>();
+   private static volatile LockTable locktbl = new LockTable(LockTable.DEFAULT_STRIPES, DeadlockPolicy.DETECT);
+   private static final int TABLE = -2;  // the dummy block number of a whole file
+   public static final int DEFAULT_ESCALATION_THRESHOLD = 1000;
+   private static volatile int threshold = DEFAULT_ESCALATION_THRESHOLD;
+   private static AtomicLong escalations = new AtomicLong();
+   private static AtomicLong escalatedlocks = new AtomicLong();
+   private Map<Object,LockMode> locks  = new HashMap<Object,LockMode>();
+   private Map<String,Integer> filecounts = new HashMap<String,Integer>();
+   private int txnum;
+
+   /**
+    * Replace the global lock table by an empty one
+    * having the specified number of stripes.
+    * The method must only be called when no transaction holds locks.
+    * @param nstripes the number of stripes
+    */
+   public static void setLockStripes(int nstripes) {
+      LockTable old = locktbl;
+      locktbl = new LockTable(nstripes, old.policy());
+      locktbl.setMaxTime(old.maxTime());
+   }
+
+   /**
+    * Set the time after which a lock request that is
+    * still waiting is aborted.
+    * @param millis the maximum waiting time, in milliseconds
+    */
+   public static void setLockTimeout(long millis) {
+      locktbl.setMaxTime(millis);
+   }
+
+   /**
+    * Set the way in which the lock table deals with deadlocks.
+    * The method should be called at startup, before any
+    * transaction requests a lock.
+    * @param policy the deadlock policy
+    */
+   public static void setDeadlockPolicy(DeadlockPolicy policy) {
+      locktbl.setPolicy(policy);
+   }
+
+   public static DeadlockPolicy deadlockPolicy() {
+      return locktbl.policy();
+   }
+
+   /**
+    * Set the number of block and record locks that a transaction
+    * may hold on a file before they are escalated to a file lock.
+    * A value of Integer.MAX_VALUE disables escalation.
+    * @param n the escalation threshold
+    */
+   public static void setEscalationThreshold(int n) {
+      threshold = n;
+   }
+
+   /**
+    * Return the number of escalations performed since startup.
+    * @return the number of escalations
+    */
+   public static long escalationCount() {
+      return escalations.get();
+   }
+
+   /**
+    * Return the number of block and record locks that were
+    * released because they were escalated to file locks.
+    * @return the number of escalated locks
+    */
+   public static long escalatedLockCount() {
+      return escalatedlocks.get();
+   }
+
+   /**
+    * Return the statistics of the global lock table.
+    * @return the lock statistics
+    */
+   public static LockStats lockStats() {
+      return locktbl.stats();
+   }
+
+   /**
+    * Describe every lock that is currently held or waited for.
+    * @return the held locks and waiting requests
+    */
+   public static List<LockInfo> locks() {
+      return locktbl.locks();
+   }
+
+   /**
+    * Describe the current holders of the block,
+    * followed by its waiting requests in queue order.
+    * The dummy block of a file (number -2) describes
+    * the table locks on the file.
+    * @param blk a reference to the disk block
+    * @return the held locks and waiting requests on the block
+    */
+   public static List<LockInfo> locks(BlockId blk) {
+      return locktbl.locks(blk);
+   }
+
+   /**
+    * Describe the request that has been waiting the longest,
+    * or return null if no request is waiting.
+    * @return the longest current waiter
+    */
+   public static LockInfo longestWaiter() {
+      return locktbl.longestWaiter();
+   }
+
+   /**
+    * Describe the lock request that the transaction is
+    * waiting for, or return null if it is not waiting.
+    * @param txnum the id of the transaction
+    * @return the transaction's waiting request
+    */
+   public static LockInfo waitingFor(int txnum) {
+      return locktbl.waitingFor(txnum);
+   }
+
+   /**
+    * Create a concurrency manager for the specified transaction.
+    * The transaction's id identifies it in the lock table's
+    * waits-for graph, where younger transactions (those with
+    * higher ids) are chosen as deadlock victims.
+    * @param txnum the id of the transaction
+    */
+   public ConcurrencyMgr(int txnum) {
+      this.txnum = txnum;
+   }
 
    /**
     * Obtain an SLock on the block, if necessary.
     * The method will ask the lock table for an SLock
-    * if the transaction currently has no locks on that block.
+    * if the transaction does not already hold a lock
+    * on the block or its table that covers it.
+    * An IS lock on the table is obtained first.
     * @param blk a reference to the disk block
     */
    public void sLock(BlockId blk) {
-      if (locks.get(blk) == null) {
-         locktbl.sLock(blk);
-         locks.put(blk, "S");
+      if (!hasLock(blk, LockMode.S)) {
+         lock(tableBlock(blk.fileName()), LockMode.IS);
+         lock(blk, LockMode.S);
+         escalateIfNeeded(blk.fileName());
       }
    }
 
    /**
     * Obtain an XLock on the block, if necessary.
-    * If the transaction does not have an XLock on that block,
-    * then the method first gets an SLock on that block
-    * (if necessary), and then upgrades it to an XLock.
+    * If the transaction does not have an XLock on that block
+    * (or on its table), then the method first gets an IX lock
+    * on the table, and then an XLock on the block, upgrading
+    * any SLock it already holds.
     * @param blk a reference to the disk block
     */
    public void xLock(BlockId blk) {
-      if (!hasXLock(blk)) {
-         sLock(blk);
-         locktbl.xLock(blk);
-         locks.put(blk, "X");
+      if (!hasLock(blk, LockMode.X)) {
+         lock(tableBlock(blk.fileName()), LockMode.IX);
+         lock(blk, LockMode.X);
+         escalateIfNeeded(blk.fileName());
       }
    }
 
+   /**
+    * Obtain an SLock on the record in the specified slot,
+    * after obtaining IS locks on its block and table.
+    * @param blk a reference to the disk block
+    * @param slot the slot of the record
+    */
+   public void sLockRecord(BlockId blk, int slot) {
+      SlotId rec = new SlotId(blk, slot);
+      if (!hasLock(rec, LockMode.S)) {
+         lock(tableBlock(blk.fileName()), LockMode.IS);
+         lock(blk, LockMode.IS);
+         lock(rec, LockMode.S);
+         escalateIfNeeded(blk.fileName());
+      }
+   }
+
+   /**
+    * Obtain an XLock on the record in the specified slot,
+    * after obtaining IX locks on its block and table.
+    * @param blk a reference to the disk block
+    * @param slot the slot of the record
+    */
+   public void xLockRecord(BlockId blk, int slot) {
+      SlotId rec = new SlotId(blk, slot);
+      if (!hasLock(rec, LockMode.X)) {
+         lock(tableBlock(blk.fileName()), LockMode.IX);
+         lock(blk, LockMode.IX);
+         lock(rec, LockMode.X);
+         escalateIfNeeded(blk.fileName());
+      }
+   }
+
+   /**
+    * Return true if the transaction holds an XLock that covers
+    * the record in the specified slot: an XLock on the record
+    * itself, or on its block or file.
+    * @param blk a reference to the disk block
+    * @param slot the slot of the record
+    * @return true if the record is XLocked by the transaction
+    */
+   public boolean hasXLockRecord(BlockId blk, int slot) {
+      return hasLock(new SlotId(blk, slot), LockMode.X);
+   }
+
+   /**
+    * Obtain an SLock on the entire file.
+    * This lock covers every block of the file, including
+    * the end-of-file marker, so a transaction that
+    * reads most of a table needs only this one lock.
+    * @param filename the name of the file
+    */
+   public void sLockTable(String filename) {
+      lock(tableBlock(filename), LockMode.S);
+   }
+
+   /**
+    * Obtain an XLock on the entire file.
+    * @param filename the name of the file
+    */
+   public void xLockTable(String filename) {
+      lock(tableBlock(filename), LockMode.X);
+   }
+
+   /**
+    * Return the number of locks that the transaction holds.
+    * When called from another thread, the value may be stale.
+    * @return the number of held locks
+    */
+   public int lockCount() {
+      return locks.size();
+   }
+
    /**
     * Release all locks by asking the lock table to
     * unlock each one.
     */
    public void release() {
-      for (BlockId blk : locks.keySet()) 
-         locktbl.unlock(blk);
+      for (Object item : locks.keySet()) 
+         locktbl.unlock(item, txnum);
+      locktbl.endTx(txnum);
       locks.clear();
+      filecounts.clear();
    }
 
-   private boolean hasXLock(BlockId blk) {
-      String locktype = locks.get(blk);
-      return locktype != null && locktype.equals("X");
+   /**
+    * Obtain a lock in the specified mode on the
+    * item, unless a lock held on it already covers that mode.
+    */
+   private void lock(Object item, LockMode mode) {
+      LockMode held = locks.get(item);
+      if (held != null && held.covers(mode))
+         return;
+      locktbl.lock(item, txnum, mode);
+      locks.put(item, (held == null) ? mode : held.combine(mode));
+      if (held == null && !isTableBlock(item))
+         filecounts.merge(fileName(item), 1, Integer::sum);
+   }
+
+   /**
+    * Escalate the transaction's locks on the file if
+    * their number exceeds the threshold.
+    * The file lock is an X lock if the transaction holds
+    * an IX or SIX lock on the file, and an S lock otherwise.
+    * Once it is granted, the block and record locks on the file
+    * are released; they are covered by the file lock.
+    */
+   private void escalateIfNeeded(String filename) {
+      Integer count = filecounts.get(filename);
+      if (count == null || count <= threshold)
+         return;
+      BlockId tblk = tableBlock(filename);
+      LockMode held = locks.get(tblk);
+      boolean modified = held != null && held.covers(LockMode.IX);
+      lock(tblk, modified ? LockMode.X : LockMode.S);
+
+      Iterator<Object> iter = locks.keySet().iterator();
+      while (iter.hasNext()) {
+         Object item = iter.next();
+         if (!isTableBlock(item) && fileName(item).equals(filename)) {
+            locktbl.unlock(item, txnum);
+            iter.remove();
+         }
+      }
+      filecounts.remove(filename);
+      escalations.incrementAndGet();
+      escalatedlocks.addAndGet(count);
+   }
+
+   /**
+    * Return true if the locks held on the item or on one
+    * of its ancestors already cover the specified mode.
+    * A lock on an ancestor covers an S or X request only
+    * if it is itself an S, SIX or X lock.
+    */
+   private boolean hasLock(Object item, LockMode mode) {
+      LockMode held = locks.get(item);
+      if (held != null && held.covers(mode))
+         return true;
+      if (item instanceof SlotId) {
+         BlockId blk = ((SlotId) item).block();
+         return coversChildren(blk, mode) || coversChildren(tableBlock(blk.fileName()), mode);
+      }
+      return coversChildren(tableBlock(((BlockId) item).fileName()), mode);
+   }
+
+   private boolean coversChildren(BlockId parent, LockMode mode) {
+      LockMode held = locks.get(parent);
+      return held != null && held != LockMode.IS && held != LockMode.IX
+            && held.covers(mode);
+   }
+
+   private static boolean isTableBlock(Object item) {
+      return item instanceof BlockId && ((BlockId) item).number() == TABLE;
+   }
+
+   private static String fileName(Object item) {
+      if (item instanceof SlotId)
+         return ((SlotId) item).block().fileName();
+      return ((BlockId) item).fileName();
+   }
+
+   /**
+    * Return the dummy block that stands for the whole file.
+    */
+   private static BlockId tableBlock(String filename) {
+      return new BlockId(filename, TABLE);
    }
 }
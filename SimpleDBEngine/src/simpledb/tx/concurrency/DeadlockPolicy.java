@@ -0,0 +1,23 @@
+package simpledb.tx.concurrency;
+
+/**
+ * The ways in which the lock table deals with deadlocks.
+ * In every policy, a request that waits for too long
+ * is aborted.
+ * <ul>
+ * <li>TIMEOUT relies on that time limit alone.
+ * <li>DETECT maintains a waits-for graph, and aborts the
+ * youngest transaction of a cycle as soon as it forms.
+ * <li>WAIT_DIE and WOUND_WAIT prevent deadlocks by ordering
+ * transactions by their ids, a lower id meaning an older
+ * transaction. Under WAIT_DIE, a transaction may only wait
+ * for younger transactions; a request that conflicts with an
+ * older holder is aborted ("dies").
+ * Under WOUND_WAIT, a transaction only waits for older
+ * transactions; a request that conflicts with a younger holder
+ * aborts ("wounds") that holder, and then waits for it.
+ * </ul>
+ */
+public enum DeadlockPolicy {
+   TIMEOUT, DETECT, WAIT_DIE, WOUND_WAIT
+}
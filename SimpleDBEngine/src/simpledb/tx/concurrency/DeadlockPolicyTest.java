@@ -0,0 +1,89 @@
+package simpledb.tx.concurrency;
+
+import java.util.concurrent.atomic.AtomicReference;
+import simpledb.file.BlockId;
+
+/**
+ * Tests the WAIT_DIE and WOUND_WAIT deadlock policies,
+ * in which a lower transaction number means an older transaction.
+ * Under WAIT_DIE, a younger transaction that requests a lock
+ * held by an older one must be aborted at once, while an older
+ * one must wait. Under WOUND_WAIT, an older transaction that
+ * requests a lock held by a younger one must abort the younger
+ * one at its next lock request, while a younger one must wait.
+ */
+public class DeadlockPolicyTest {
+   private static BlockId blk1 = new BlockId("testfile", 1);
+   private static BlockId blk2 = new BlockId("testfile", 2);
+
+   public static void main(String[] args) throws InterruptedException {
+      DeadlockPolicy policy = ConcurrencyMgr.deadlockPolicy();
+      ConcurrencyMgr.setDeadlockPolicy(DeadlockPolicy.WAIT_DIE);
+      ConcurrencyMgr older = new ConcurrencyMgr(1);
+      ConcurrencyMgr younger = new ConcurrencyMgr(2);
+      older.xLock(blk1);
+      System.out.println("WAIT_DIE, younger requests the lock of older: "
+                         + attempt(() -> younger.sLock(blk1)) + " (expected aborted)");
+      younger.release();
+      older.release();
+
+      ConcurrencyMgr younger2 = new ConcurrencyMgr(4);
+      ConcurrencyMgr older2 = new ConcurrencyMgr(3);
+      younger2.xLock(blk1);
+      AtomicReference<String> result = new AtomicReference<>("waiting");
+      Thread t = new Thread(() -> result.set(attempt(() -> older2.sLock(blk1))));
+      t.start();
+      Thread.sleep(200);
+      System.out.println("WAIT_DIE, older requests the lock of younger: "
+                         + result.get() + " (expected waiting)");
+      younger2.release();
+      t.join();
+      System.out.println("WAIT_DIE, after younger releases its lock: "
+                         + result.get() + " (expected granted)");
+      older2.release();
+
+      ConcurrencyMgr.setDeadlockPolicy(DeadlockPolicy.WOUND_WAIT);
+      ConcurrencyMgr older3 = new ConcurrencyMgr(5);
+      ConcurrencyMgr younger3 = new ConcurrencyMgr(6);
+      younger3.xLock(blk1);
+      result.set("waiting");
+      t = new Thread(() -> result.set(attempt(() -> older3.sLock(blk1))));
+      t.start();
+      Thread.sleep(200);
+      System.out.println("WOUND_WAIT, older requests the lock of younger: "
+                         + result.get() + " (expected waiting)");
+      System.out.println("WOUND_WAIT, next request of the wounded younger: "
+                         + attempt(() -> younger3.sLock(blk2)) + " (expected aborted)");
+      younger3.release();
+      t.join();
+      System.out.println("WOUND_WAIT, after younger releases its locks: "
+                         + result.get() + " (expected granted)");
+      older3.release();
+
+      ConcurrencyMgr older4 = new ConcurrencyMgr(7);
+      ConcurrencyMgr younger4 = new ConcurrencyMgr(8);
+      older4.xLock(blk1);
+      result.set("waiting");
+      t = new Thread(() -> result.set(attempt(() -> younger4.sLock(blk1))));
+      t.start();
+      Thread.sleep(200);
+      System.out.println("WOUND_WAIT, younger requests the lock of older: "
+                         + result.get() + " (expected waiting)");
+      older4.release();
+      t.join();
+      System.out.println("WOUND_WAIT, after older releases its lock: "
+                         + result.get() + " (expected granted)");
+      younger4.release();
+      ConcurrencyMgr.setDeadlockPolicy(policy);
+   }
+
+   private static String attempt(Runnable request) {
+      try {
+         request.run();
+         return "granted";
+      }
+      catch(LockAbortException e) {
+         return "aborted";
+      }
+   }
+}
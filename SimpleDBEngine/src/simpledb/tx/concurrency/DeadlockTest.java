@@ -0,0 +1,62 @@
+package simpledb.tx.concurrency;
+
+import java.util.*;
+import simpledb.server.SimpleDB;
+import simpledb.file.BlockId;
+import simpledb.tx.Transaction;
+
+/**
+ * Tests deadlock detection.
+ * Three transactions each lock a block and then request the
+ * block of the next one, forming a cycle in the waits-for graph.
+ * The youngest of them must be aborted as soon as the cycle
+ * forms, well before the lock timeout, and the other two
+ * must then commit.
+ */
+public class DeadlockTest {
+   private static final int TXS = 3;
+   private static SimpleDB db;
+   private static List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+   public static void main(String[] args) throws InterruptedException {
+      db = new SimpleDB("deadlocktest", 400, 8);
+      ConcurrencyMgr.setDeadlockPolicy(DeadlockPolicy.DETECT);
+      Transaction[] txs = new Transaction[TXS];
+      for (int i=0; i<TXS; i++)
+         txs[i] = db.newTx();
+      long start = System.currentTimeMillis();
+      Thread[] threads = new Thread[TXS];
+      for (int i=0; i<TXS; i++) {
+         Transaction tx = txs[i];
+         BlockId mine = new BlockId("testfile", i);
+         BlockId next = new BlockId("testfile", (i + 1) % TXS);
+         threads[i] = new Thread(() -> run(tx, mine, next));
+         threads[i].start();
+      }
+      for (Thread t : threads)
+         t.join();
+      long elapsed = System.currentTimeMillis() - start;
+      Collections.sort(events);
+      System.out.println("Outcomes: " + events);
+      System.out.println("Expected: transaction " + txs[TXS-1].txNum()
+                         + " aborted and the others committed, in well under "
+                         + LockTable.DEFAULT_MAX_TIME + " ms (took " + elapsed + " ms)");
+   }
+
+   private static void run(Transaction tx, BlockId mine, BlockId next) {
+      try {
+         tx.pin(mine);
+         tx.pin(next);
+         tx.setInt(mine, 0, tx.txNum(), false);
+         Thread.sleep(500);
+         tx.getInt(next, 0);
+         tx.commit();
+         events.add("transaction " + tx.txNum() + " committed");
+      }
+      catch(LockAbortException e) {
+         events.add("transaction " + tx.txNum() + " aborted");
+         tx.rollback();
+      }
+      catch(InterruptedException e) {}
+   }
+}
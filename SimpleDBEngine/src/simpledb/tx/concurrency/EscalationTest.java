@@ -0,0 +1,67 @@
+package simpledb.tx.concurrency;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import simpledb.file.BlockId;
+
+/**
+ * Tests lock escalation.
+ * Once a transaction holds more block and record locks on a
+ * file than the threshold, they must be replaced by a single
+ * file lock: an S lock if the transaction only read the file,
+ * and an X lock once it has modified it.
+ */
+public class EscalationTest {
+   private static final int THRESHOLD = 10;
+
+   public static void main(String[] args) throws InterruptedException {
+      ConcurrencyMgr.setEscalationThreshold(THRESHOLD);
+      long escalations = ConcurrencyMgr.escalationCount();
+
+      ConcurrencyMgr reader = new ConcurrencyMgr(1);
+      for (int i=0; i<50; i++)
+         reader.sLockRecord(new BlockId("testfile", i / 5), i % 5);
+      System.out.println("After reading 50 records: " + reader.lockCount() + " locks, "
+                         + tableLock(1) + " on the file (expected S), "
+                         + (ConcurrencyMgr.escalationCount() - escalations)
+                         + " escalations (expected 1)");
+      for (int i=0; i<30; i++)
+         reader.xLockRecord(new BlockId("testfile", i), 0);
+      System.out.println("After modifying 30 records: " + reader.lockCount() + " locks, "
+                         + tableLock(1) + " on the file (expected X), "
+                         + (ConcurrencyMgr.escalationCount() - escalations)
+                         + " escalations (expected 2)");
+
+      // The file lock blocks the readers of any other block.
+      ConcurrencyMgr other = new ConcurrencyMgr(2);
+      AtomicBoolean granted = new AtomicBoolean();
+      Thread t = new Thread(() -> {
+         other.sLock(new BlockId("testfile", 99));
+         granted.set(true);
+      });
+      t.start();
+      Thread.sleep(300);
+      System.out.println("Reader of block 99 before the release: "
+                         + (granted.get() ? "granted" : "waiting") + " (expected waiting)");
+      reader.release();
+      t.join();
+      System.out.println("Reader of block 99 after the release: "
+                         + (granted.get() ? "granted" : "waiting") + " (expected granted)");
+      other.release();
+
+      ConcurrencyMgr writer = new ConcurrencyMgr(3);
+      for (int i=0; i<THRESHOLD; i++)
+         writer.xLock(new BlockId("otherfile", i));
+      System.out.println("After modifying " + THRESHOLD + " blocks: "
+                         + (ConcurrencyMgr.escalationCount() - escalations)
+                         + " escalations (expected 2)");
+      writer.release();
+      ConcurrencyMgr.setEscalationThreshold(ConcurrencyMgr.DEFAULT_ESCALATION_THRESHOLD);
+   }
+
+   private static String tableLock(int txnum) {
+      for (LockInfo li : ConcurrencyMgr.locks(new BlockId("testfile", -2)))
+         if (li.txNum() == txnum)
+            return li.mode().toString();
+      return "no lock";
+   }
+}
@@ -0,0 +1,92 @@
+package simpledb.tx.concurrency;
+
+import simpledb.server.SimpleDB;
+import simpledb.file.BlockId;
+import simpledb.tx.Transaction;
+import simpledb.plan.Planner;
+import simpledb.query.Scan;
+
+/**
+ * Tests the table-level and intention locks.
+ * A full scan must only hold an intention lock on its table,
+ * so that other transactions can still modify the blocks that
+ * it has not read.
+ * A table S lock must block the writers of any of its blocks
+ * but not its readers, and writers of different blocks must
+ * not block each other.
+ */
+public class IntentionLockTest {
+   private static final long TIMEOUT = 300;
+
+   public static void main(String[] args) {
+      SimpleDB db = new SimpleDB("intentionlocktest");
+      Planner planner = db.planner();
+      Transaction tx = db.newTx();
+      planner.executeUpdate("create table T(a int, b varchar(20))", tx);
+      for (int i=0; i<300; i++)
+         planner.executeUpdate("insert into T(a, b) values (" + i + ", 'value" + i + "')", tx);
+      tx.commit();
+
+      ConcurrencyMgr.setLockTimeout(TIMEOUT);
+      tx = db.newTx();
+      Scan s = planner.createQueryPlan("select a from T", tx).open();
+      int count = 0;
+      while (s.next())
+         count++;
+      s.close();
+      int blocks = tx.size("t.tbl"), later = 0;
+      String tablelock = "none";
+      for (LockInfo li : ConcurrencyMgr.locks(new BlockId("t.tbl", -2)))
+         if (li.txNum() == tx.txNum())
+            tablelock = li.mode().toString();
+      for (LockInfo li : ConcurrencyMgr.locks())
+         if (li.txNum() == tx.txNum() && li.block().fileName().equals("t.tbl")
+               && li.block().number() > 0)
+            later++;
+      System.out.println("A scan of " + count + " records in " + blocks + " blocks holds "
+                         + tablelock + " on the table (expected IS) and "
+                         + (later > 0 ? "some" : "no")
+                         + " locks past its first block (expected some)");
+      ConcurrencyMgr appender = new ConcurrencyMgr(1000);
+      System.out.println("Writer of a new block of the scanned table: "
+                         + attempt(() -> appender.xLock(new BlockId("t.tbl", blocks)))
+                         + " (expected granted)");
+      appender.release();
+      tx.commit();
+
+      ConcurrencyMgr.setLockTimeout(TIMEOUT);
+      BlockId blk1 = new BlockId("testfile", 1);
+      BlockId blk2 = new BlockId("testfile", 2);
+      ConcurrencyMgr scanner = new ConcurrencyMgr(1001);
+      ConcurrencyMgr reader  = new ConcurrencyMgr(1002);
+      ConcurrencyMgr writer1 = new ConcurrencyMgr(1003);
+      ConcurrencyMgr writer2 = new ConcurrencyMgr(1004);
+      scanner.sLockTable("testfile");
+      System.out.println("Reader of block 1 under a table S lock: "
+                         + attempt(() -> reader.sLock(blk1)) + " (expected granted)");
+      System.out.println("Writer of block 2 under a table S lock: "
+                         + attempt(() -> writer1.xLock(blk2)) + " (expected aborted)");
+      scanner.release();
+      reader.release();
+      writer1.release();
+      System.out.println("Writers of blocks 1 and 2: "
+                         + attempt(() -> writer1.xLock(blk1)) + " and "
+                         + attempt(() -> writer2.xLock(blk2)) + " (expected granted and granted)");
+      System.out.println("Table S lock during the writes: "
+                         + attempt(() -> scanner.sLockTable("testfile")) + " (expected aborted)");
+      writer1.release();
+      writer2.release();
+      scanner.release();
+      ConcurrencyMgr.setLockTimeout(LockTable.DEFAULT_MAX_TIME);
+   }
+
+   private static String attempt(Runnable request) {
+      try {
+         request.run();
+         return "granted";
+      }
+      catch(LockAbortException e) {
+         return "aborted";
+      }
+   }
+}
@@ -0,0 +1,104 @@
+package simpledb.tx.concurrency;
+
+import simpledb.file.BlockId;
+
+/**
+ * A description of a lock that a transaction
+ * holds or is waiting for, as of the time it was created.
+ * The locked item is a block; for a record lock it is the
+ * record's block together with its slot, and for a table lock
+ * it is the dummy block of the table, whose number is -2.
+ */
+public class LockInfo {
+   private BlockId blk;
+   private int slot;
+   private int txnum;
+   private LockMode mode;
+   private boolean granted;
+   private long waittime;
+
+   LockInfo(Object item, int txnum, LockMode mode, boolean granted, long waittime) {
+      if (item instanceof SlotId) {
+         blk = ((SlotId) item).block();
+         slot = ((SlotId) item).slot();
+      }
+      else {
+         blk = (BlockId) item;
+         slot = -1;
+      }
+      this.txnum = txnum;
+      this.mode = mode;
+      this.granted = granted;
+      this.waittime = waittime;
+   }
+
+   /**
+    * Return the locked block, or the dummy block
+    * of the file if this is a table lock.
+    * @return the block
+    */
+   public BlockId block() {
+      return blk;
+   }
+
+   /**
+    * Return the locked slot, or -1 if the lock
+    * is not a record lock.
+    * @return the slot
+    */
+   public int slot() {
+      return slot;
+   }
+
+   /**
+    * Return the kind of item that is locked:
+    * "table", "block" or "record".
+    * @return the granularity of the lock
+    */
+   public String granularity() {
+      if (slot >= 0)
+         return "record";
+      return (blk.number() == -2) ? "table" : "block";
+   }
+
+   public int txNum() {
+      return txnum;
+   }
+
+   /**
+    * Return the mode that is held or, for a request
+    * that is waiting, the mode that it will hold.
+    * @return the lock mode
+    */
+   public LockMode mode() {
+      return mode;
+   }
+
+   /**
+    * Return true if the lock is held,
+    * and false if the transaction is waiting for it.
+    * @return true if the lock is granted
+    */
+   public boolean isGranted() {
+      return granted;
+   }
+
+   /**
+    * Return how long the request has been waiting,
+    * or 0 if the lock is granted.
+    * @return the wait time, in milliseconds
+    */
+   public long waitTime() {
+      return waittime;
+   }
+
+   public String toString() {
+      String target = (slot >= 0)
+            ? "[file " + blk.fileName() + ", block " + blk.number() + ", slot " + slot + "]"
+            : (blk.number() == -2) ? "[file " + blk.fileName() + "]" : blk.toString();
+      if (granted)
+         return "tx " + txnum + " holds " + mode + " on " + target;
+      return "tx " + txnum + " waits for " + mode + " on " + target
+            + " (" + waittime + " ms)";
+   }
+}
@@ -0,0 +1,62 @@
+package simpledb.tx.concurrency;
+
+/**
+ * The modes in which a lock can be held.
+ * S and X are the usual shared and exclusive locks.
+ * The intention modes are taken on a table before locking
+ * its blocks: IS before an SLock on a block, IX before an XLock,
+ * and SIX by a transaction that reads the whole table
+ * and modifies some of its blocks.
+ */
+public enum LockMode {
+   IS, IX, S, SIX, X;
+
+   private static final boolean[][] COMPATIBLE = {
+      //          IS     IX     S      SIX    X
+      /* IS  */ { true,  true,  true,  true,  false },
+      /* IX  */ { true,  true,  false, false, false },
+      /* S   */ { true,  false, true,  false, false },
+      /* SIX */ { true,  false, false, false, false },
+      /* X   */ { false, false, false, false, false }
+   };
+
+   /**
+    * Return true if a lock in this mode and a lock in the other
+    * mode can be held on the same item by different transactions.
+    * @param other another lock mode
+    * @return true if the modes are compatible
+    */
+   public boolean isCompatible(LockMode other) {
+      return COMPATIBLE[ordinal()][other.ordinal()];
+   }
+
+   /**
+    * Return the weakest mode that is at least
+    * as strong as both this mode and the other.
+    * @param other another lock mode
+    * @return the combination of the two modes
+    */
+   public LockMode combine(LockMode other) {
+      if (covers(other))
+         return this;
+      if (other.covers(this))
+         return other;
+      return SIX;  // the only incomparable pair is S and IX
+   }
+
+   /**
+    * Return true if holding this mode makes
+    * a request for the other mode unnecessary.
+    * @param other another lock mode
+    * @return true if this mode is at least as strong as the other
+    */
+   public boolean covers(LockMode other) {
+      switch (this) {
+      case X:   return true;
+      case SIX: return other != X;
+      case S:   return other == S || other == IS;
+      case IX:  return other == IX || other == IS;
+      default:  return other == IS;
+      }
+   }
+}
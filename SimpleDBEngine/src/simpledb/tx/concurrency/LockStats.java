@@ -0,0 +1,168 @@
+package simpledb.tx.concurrency;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * Cumulative statistics about the requests of a lock table.
+ * For each lock mode, the table counts the locks granted
+ * in that mode and how many of them had to wait.
+ * The time spent waiting, whether or not the lock was
+ * eventually granted, is recorded in a histogram whose
+ * buckets have the upper bounds given by {@link #WAIT_BOUNDS}.
+ * The requests that were aborted are counted by reason.
+ * <p>
+ * The counters are updated without latching,
+ * so a set of values read while the table is busy
+ * need not be mutually consistent.
+ */
+public class LockStats {
+   /**
+    * The upper bounds of the buckets of the wait-time histogram,
+    * in milliseconds. The last bucket has no upper bound.
+    */
+   public static final long[] WAIT_BOUNDS = {1, 10, 100, 1000, 10000};
+
+   private int nmodes = LockMode.values().length;
+   private AtomicLongArray acquisitions = new AtomicLongArray(nmodes);
+   private AtomicLongArray waits = new AtomicLongArray(nmodes);
+   private AtomicLongArray histogram = new AtomicLongArray(WAIT_BOUNDS.length + 1);
+   private AtomicLong totalwait = new AtomicLong();
+   private AtomicLong timeouts = new AtomicLong();
+   private AtomicLong deadlocks = new AtomicLong();
+   private AtomicLong waitdies = new AtomicLong();
+   private AtomicLong wounds = new AtomicLong();
+
+   /**
+    * Record a lock that was granted without waiting.
+    * @param mode the mode of the lock
+    */
+   void granted(LockMode mode) {
+      acquisitions.incrementAndGet(mode.ordinal());
+   }
+
+   /**
+    * Record a request that waited for the specified time.
+    * @param mode the requested mode
+    * @param millis the time waited, in milliseconds
+    * @param granted true if the lock was eventually granted
+    */
+   void waited(LockMode mode, long millis, boolean granted) {
+      if (granted)
+         acquisitions.incrementAndGet(mode.ordinal());
+      waits.incrementAndGet(mode.ordinal());
+      totalwait.addAndGet(millis);
+      int i = 0;
+      while (i < WAIT_BOUNDS.length && millis > WAIT_BOUNDS[i])
+         i++;
+      histogram.incrementAndGet(i);
+   }
+
+   /**
+    * Record a request that was aborted for the specified reason.
+    * @param reason the reason, one of the constants of {@link LockTable}
+    */
+   void aborted(String reason) {
+      switch (reason) {
+      case LockTable.TIMEOUT:  timeouts.incrementAndGet();  break;
+      case LockTable.DEADLOCK: deadlocks.incrementAndGet(); break;
+      case LockTable.WAIT_DIE: waitdies.incrementAndGet();  break;
+      case LockTable.WOUNDED:  wounds.incrementAndGet();    break;
+      default: break;
+      }
+   }
+
+   /**
+    * Return the number of locks granted in the specified mode,
+    * including upgrades to that mode.
+    * @param mode the lock mode
+    * @return the number of locks granted in that mode
+    */
+   public long acquisitions(LockMode mode) {
+      return acquisitions.get(mode.ordinal());
+   }
+
+   /**
+    * Return the number of requests for the specified mode
+    * that had to wait.
+    * @param mode the lock mode
+    * @return the number of waiting requests for that mode
+    */
+   public long waits(LockMode mode) {
+      return waits.get(mode.ordinal());
+   }
+
+   /**
+    * Return the wait-time histogram.
+    * Element i counts the waits of at most WAIT_BOUNDS[i]
+    * milliseconds (and more than the previous bound);
+    * the last element counts the longer waits.
+    * @return a copy of the histogram
+    */
+   public long[] waitHistogram() {
+      long[] result = new long[histogram.length()];
+      for (int i=0; i<result.length; i++)
+         result[i] = histogram.get(i);
+      return result;
+   }
+
+   /**
+    * Return the total time spent waiting for locks.
+    * @return the total wait time, in milliseconds
+    */
+   public long totalWaitTime() {
+      return totalwait.get();
+   }
+
+   /**
+    * Return the number of requests aborted because
+    * they waited longer than the table's maximum time.
+    * @return the number of timeouts
+    */
+   public long timeouts() {
+      return timeouts.get();
+   }
+
+   /**
+    * Return the number of requests aborted
+    * to break a deadlock cycle.
+    * @return the number of deadlock victims
+    */
+   public long deadlocks() {
+      return deadlocks.get();
+   }
+
+   /**
+    * Return the number of requests aborted
+    * by the wait-die policy.
+    * @return the number of requests that died
+    */
+   public long waitDies() {
+      return waitdies.get();
+   }
+
+   /**
+    * Return the number of requests aborted because
+    * their transaction was wounded by an older one.
+    * @return the number of wounded requests
+    */
+   public long wounds() {
+      return wounds.get();
+   }
+
+   /**
+    * Reset all statistics to zero.
+    */
+   public void reset() {
+      for (int i=0; i<nmodes; i++) {
+         acquisitions.set(i, 0);
+         waits.set(i, 0);
+      }
+      for (int i=0; i<histogram.length(); i++)
+         histogram.set(i, 0);
+      totalwait.set(0);
+      timeouts.set(0);
+      deadlocks.set(0);
+      waitdies.set(0);
+      wounds.set(0);
+   }
+}
@@ -1,103 +1,531 @@
 package simpledb.tx.concurrency;
 
 import java.util.*;
-import simpledb.file.BlockId;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
 
 /**
- * The lock table, which provides methods to lock and unlock blocks.
- * If a transaction requests a lock that causes a conflict with an
- * existing lock, then that transaction is placed on a wait list.
- * There is only one wait list for all blocks.
- * When the last lock on a block is unlocked, then all transactions
- * are removed from the wait list and rescheduled.
- * If one of those transactions discovers that the lock it is waiting for
- * is still locked, it will place itself back on the wait list.
+ * The lock table, which provides methods to lock and unlock items.
+ * An item is usually a block; the concurrency manager also locks
+ * record slots, and a dummy block that stands for a whole table.
+ * A lock is held in one of the modes of {@link LockMode}.
+ * The table is partitioned into stripes; each item hashes to
+ * one stripe, and each stripe is protected by its own latch,
+ * so that requests for items in different stripes do not contend.
+ * <p>
+ * Each locked item has a FIFO queue of waiting requests.
+ * If a transaction requests a lock that conflicts with a lock
+ * held by another transaction, then the request is placed at the
+ * end of the item's queue.
+ * When a lock is released, the queued requests that are now
+ * compatible are granted in queue order, and only the threads
+ * of those requests are woken up.
+ * A new request that is compatible with the held locks is granted
+ * even if other requests are waiting; making it wait behind
+ * another new request could deadlock a transaction that already
+ * holds a lock the waiting transaction needs.
+ * The exception is an upgrade: a request by a transaction that
+ * already holds a lock on the item. A new request that conflicts
+ * with a waiting upgrade waits behind it, so that a stream of
+ * readers cannot starve a transaction that wants to write.
+ * <p>
+ * Deadlocks are handled according to the table's {@link DeadlockPolicy}.
+ * Under the DETECT policy, the table maintains a waits-for graph of
+ * the transactions. When a request has to wait, the graph is checked
+ * for a cycle through the requesting transaction; if there is one,
+ * the youngest transaction on the cycle is aborted immediately,
+ * by throwing an exception in its thread.
+ * Under WAIT_DIE, a request that would wait for an older transaction
+ * is aborted instead; under WOUND_WAIT, a request wounds the younger
+ * transactions it waits for: a wounded transaction that is waiting
+ * is aborted at once, and one that is running is aborted at its
+ * next lock request.
+ * In every policy, a request that remains on the queue for a certain
+ * amount of time (by default 10 seconds) is also removed and its
+ * transaction aborted.
+ * <p>
+ * The table keeps statistics about the requests in a {@link LockStats}
+ * object, and can describe the locks that are currently held and
+ * waited for, so that a pile-up of lock waits can be observed
+ * while it happens.
  * @author Edward Sciore
  */
 class LockTable {
-   private static final long MAX_TIME = 10000; // 10 seconds
-   
-   private Map<BlockId,Integer> locks = new HashMap<BlockId,Integer>();
-   
-   /**
-    * Grant an SLock on the specified block.
-    * If an XLock exists when the method is called,
-    * then the calling thread will be placed on a wait list
-    * until the lock is released.
-    * If the thread remains on the wait list for a certain 
-    * amount of time (currently 10 seconds),
+   static final int DEFAULT_STRIPES = 16;
+   static final long DEFAULT_MAX_TIME = 10000; // 10 seconds
+   static final String TIMEOUT  = "lock wait timeout";
+   static final String DEADLOCK = "deadlock";
+   static final String WAIT_DIE = "wait-die";
+   static final String WOUNDED  = "wounded";
+   static final String INTERRUPTED = "interrupted";
+
+   private Stripe[] stripes;
+   private WaitsForGraph graph = new WaitsForGraph();
+   private Map<Integer,Waiter> waiters = new ConcurrentHashMap<>();
+   private Set<Integer> wounded = ConcurrentHashMap.newKeySet();
+   private volatile DeadlockPolicy policy;
+   private volatile long maxtime = DEFAULT_MAX_TIME;
+   private LockStats stats = new LockStats();
+
+   /**
+    * Create a lock table having the specified number of stripes
+    * and the specified deadlock policy.
+    * @param nstripes the number of stripes
+    * @param policy the deadlock policy
+    */
+   LockTable(int nstripes, DeadlockPolicy policy) {
+      this.policy = policy;
+      stripes = new Stripe[nstripes];
+      for (int i=0; i<nstripes; i++)
+         stripes[i] = new Stripe();
+   }
+
+   /**
+    * Change the deadlock policy.
+    * The method should only be called at startup,
+    * since the waits-for graph is only maintained
+    * under the DETECT policy.
+    * @param policy the new deadlock policy
+    */
+   void setPolicy(DeadlockPolicy policy) {
+      this.policy = policy;
+   }
+
+   DeadlockPolicy policy() {
+      return policy;
+   }
+
+   /**
+    * Set the time after which a waiting request is aborted.
+    * @param millis the maximum waiting time, in milliseconds
+    */
+   void setMaxTime(long millis) {
+      maxtime = millis;
+   }
+
+   long maxTime() {
+      return maxtime;
+   }
+
+   LockStats stats() {
+      return stats;
+   }
+
+   /**
+    * Forget the transaction, which has released all its locks.
+    * @param txnum the id of the transaction
+    */
+   void endTx(int txnum) {
+      wounded.remove(txnum);
+   }
+
+   /**
+    * Grant a lock in the specified mode on the specified item.
+    * If the transaction already holds a lock on the item,
+    * the lock is upgraded to the combination of the two modes.
+    * If another transaction holds a conflicting lock
+    * when the method is called, then the calling thread
+    * will be placed on the item's wait queue until
+    * the request can be granted.
+    * If the thread remains on the queue for a certain
+    * amount of time (by default 10 seconds),
     * then an exception is thrown.
-    * @param blk a reference to the disk block
+    * An exception is also thrown if the deadlock policy
+    * aborts the request, or if the transaction has been
+    * wounded since its previous request.
+    * @param item the block or slot to be locked
+    * @param txnum the id of the requesting transaction
+    * @param mode the requested lock mode
     */
-   public synchronized void sLock(BlockId blk) {
+   void lock(Object item, int txnum, LockMode mode) {
+      if (policy == DeadlockPolicy.WOUND_WAIT && wounded.contains(txnum)) {
+         stats.aborted(WOUNDED);
+         throw new LockAbortException(WOUNDED + ": transaction " + txnum
+               + " was wounded by an older transaction");
+      }
+      Stripe s = stripe(item);
+      s.latch.lock();
       try {
-         long timestamp = System.currentTimeMillis();
-         while (hasXlock(blk) && !waitingTooLong(timestamp))
-            wait(MAX_TIME);
-         if (hasXlock(blk))
-            throw new LockAbortException();
-         int val = getLockVal(blk);  // will not be negative
-         locks.put(blk, val+1);
+         Lock lock = s.locks.computeIfAbsent(item, b -> new Lock());
+         LockMode held = lock.holders.get(txnum);
+         LockMode target = (held == null) ? mode : held.combine(mode);
+         boolean upgrade = (held != null);
+         if (canGrant(lock, txnum, target, upgrade)) {
+            grant(lock, txnum, target);
+            stats.granted(target);
+            return;
+         }
+         Waiter w = new Waiter(item, txnum, target, upgrade, s);
+         lock.queue.addLast(w);
+         waitFor(s, item, lock, w);
       }
-      catch(InterruptedException e) {
-         throw new LockAbortException();
+      finally {
+         s.latch.unlock();
+      }
+   }
+
+   /**
+    * Release the transaction's lock on the specified item.
+    * The queued requests that are now compatible
+    * are granted and their threads notified.
+    * @param item the locked block or slot
+    * @param txnum the id of the transaction holding the lock
+    */
+   void unlock(Object item, int txnum) {
+      Stripe s = stripe(item);
+      s.latch.lock();
+      try {
+         Lock lock = s.locks.get(item);
+         lock.holders.remove(txnum);
+         if (policy == DeadlockPolicy.DETECT)
+            for (Waiter w : lock.queue)
+               graph.removeEdge(w.txnum, txnum);
+         grantWaiters(lock);
+         removeIfUnused(s, item, lock);
+      }
+      finally {
+         s.latch.unlock();
       }
    }
-   
+
    /**
-    * Grant an XLock on the specified block.
-    * If a lock of any type exists when the method is called,
-    * then the calling thread will be placed on a wait list
-    * until the locks are released.
-    * If the thread remains on the wait list for a certain 
-    * amount of time (currently 10 seconds),
-    * then an exception is thrown.
-    * @param blk a reference to the disk block
+    * Wait until the request is granted.
+    * Before waiting, the deadlock policy is applied to each
+    * transaction that the request waits for. If the request
+    * is an upgrade, the new requests queued before it now
+    * also wait for it, and the policy is applied to them too.
+    * The stripe latch is released while waiting.
+    * If the request times out or is aborted by the policy,
+    * it is removed from the queue, which may allow other
+    * requests to be granted.
     */
-   synchronized void xLock(BlockId blk) {
+   private void waitFor(Stripe s, Object item, Lock lock, Waiter w) {
+      waiters.put(w.txnum, w);
+      for (int blocker : blockers(lock, w.txnum, w.mode, w.upgrade))
+         addWaitsFor(s, w, blocker);
+      if (w.upgrade)
+         for (Waiter other : new ArrayList<>(lock.queue))
+            if (!other.upgrade && !other.mode.isCompatible(w.mode))
+               addWaitsFor(s, other, w.txnum);
+      if (policy == DeadlockPolicy.DETECT)
+         detectDeadlock(s, w);
+
+      long deadline = w.start + maxtime;
+      boolean interrupted = false;
       try {
-         long timestamp = System.currentTimeMillis();
-         while (hasOtherSLocks(blk) && !waitingTooLong(timestamp))
-            wait(MAX_TIME);
-         if (hasOtherSLocks(blk))
-            throw new LockAbortException();
-         locks.put(blk, -1);
+         long remaining = maxtime;
+         while (!w.granted && !w.aborted && remaining > 0) {
+            w.cond.await(remaining, TimeUnit.MILLISECONDS);
+            remaining = deadline - System.currentTimeMillis();
+         }
       }
       catch(InterruptedException e) {
-         throw new LockAbortException();
+         // the request is abandoned below;
+         // the thread stays interrupted for its caller
+         interrupted = true;
+         Thread.currentThread().interrupt();
+      }
+      long waited = System.currentTimeMillis() - w.start;
+      stats.waited(w.mode, waited, w.granted);
+      if (!w.granted) {
+         String reason = w.aborted ? w.reason : interrupted ? INTERRUPTED : TIMEOUT;
+         String msg = reason + ": transaction " + w.txnum + " waited " + waited
+               + " ms for " + w.mode + " on " + item + ", held by " + lock.holders;
+         lock.queue.remove(w);
+         waiters.remove(w.txnum);
+         if (policy == DeadlockPolicy.DETECT)
+            graph.removeWaiter(w.txnum);
+         grantWaiters(lock);
+         removeIfUnused(s, item, lock);
+         stats.aborted(reason);
+         throw new LockAbortException(msg);
       }
    }
-   
+
    /**
-    * Release a lock on the specified block.
-    * If this lock is the last lock on that block,
-    * then the waiting transactions are notified.
-    * @param blk a reference to the disk block
+    * Apply the deadlock policy to a waiting request
+    * that waits for the specified transaction:
+    * under DETECT, add an edge to the waits-for graph;
+    * under WAIT_DIE, abort the request if the transaction is older;
+    * under WOUND_WAIT, wound the transaction if it is younger.
     */
-   synchronized void unlock(BlockId blk) {
-      int val = getLockVal(blk);
-      if (val > 1)
-         locks.put(blk, val-1);
-      else {
-         locks.remove(blk);
-         notifyAll();
+   private void addWaitsFor(Stripe s, Waiter w, int blocker) {
+      if (policy == DeadlockPolicy.DETECT)
+         graph.addEdge(w.txnum, blocker);
+      else if (policy == DeadlockPolicy.WAIT_DIE && w.txnum > blocker)
+         kill(w, WAIT_DIE);
+      else if (policy == DeadlockPolicy.WOUND_WAIT && w.txnum < blocker) {
+         wounded.add(blocker);
+         Waiter v = waiters.get(blocker);
+         if (v != null)
+            abort(v, s, WOUNDED);
       }
    }
-   
-   private boolean hasXlock(BlockId blk) {
-      return getLockVal(blk) < 0;
+
+   /**
+    * Abort the youngest transaction of the cycle
+    * that the waiting request closes, if there is one.
+    */
+   private void detectDeadlock(Stripe s, Waiter w) {
+      int victim = graph.findVictim(w.txnum);
+      if (victim == w.txnum)
+         kill(w, DEADLOCK);
+      else if (victim >= 0) {
+         Waiter v = waiters.get(victim);
+         if (v != null)  // it may have been granted in the meantime
+            abort(v, s, DEADLOCK);
+      }
    }
-   
-   private boolean hasOtherSLocks(BlockId blk) {
-      return getLockVal(blk) > 1;
+
+   /**
+    * Abort the waiting request of a victim.
+    * The victim's request may be in a different stripe,
+    * so the current stripe's latch is released while
+    * the victim's latch is held, to avoid latch deadlocks.
+    */
+   private void abort(Waiter victim, Stripe current, String reason) {
+      if (victim.stripe == current) {
+         kill(victim, reason);
+         return;
+      }
+      current.latch.unlock();
+      victim.stripe.latch.lock();
+      try {
+         kill(victim, reason);
+      }
+      finally {
+         victim.stripe.latch.unlock();
+         current.latch.lock();
+      }
    }
-   
-   private boolean waitingTooLong(long starttime) {
-      return System.currentTimeMillis() - starttime > MAX_TIME;
+
+   /**
+    * Abort the waiting request, unless it has been granted.
+    * Its edges leave the waits-for graph at once, so that
+    * a later search does not choose it again as the victim
+    * of a cycle that its abort will not break.
+    * The caller must hold the latch of the request's stripe.
+    */
+   private void kill(Waiter w, String reason) {
+      if (!w.granted && !w.aborted) {
+         w.aborted = true;
+         w.reason = reason;
+         if (policy == DeadlockPolicy.DETECT)
+            graph.removeWaiter(w.txnum);
+         w.cond.signal();
+      }
    }
-   
-   private int getLockVal(BlockId blk) {
-      Integer ival = locks.get(blk);
-      return (ival == null) ? 0 : ival.intValue();
+
+   /**
+    * Grant, in queue order, each waiting request that is
+    * compatible with the item's current locks.
+    */
+   private void grantWaiters(Lock lock) {
+      Iterator<Waiter> iter = lock.queue.iterator();
+      while (iter.hasNext()) {
+         Waiter w = iter.next();
+         if (w.aborted || !canGrant(lock, w.txnum, w.mode, w.upgrade))
+            continue;
+         iter.remove();
+         waiters.remove(w.txnum);
+         if (policy == DeadlockPolicy.DETECT)
+            graph.removeWaiter(w.txnum);
+         w.granted = true;
+         w.cond.signal();
+         grant(lock, w.txnum, w.mode);
+      }
+   }
+
+   /**
+    * Return true if a request can be granted, because
+    * no other transaction blocks it.
+    */
+   private boolean canGrant(Lock lock, int txnum, LockMode mode, boolean upgrade) {
+      for (Map.Entry<Integer,LockMode> e : lock.holders.entrySet())
+         if (e.getKey() != txnum && !mode.isCompatible(e.getValue()))
+            return false;
+      if (!upgrade)
+         for (Waiter other : lock.queue)
+            if (other.upgrade && !other.aborted && !mode.isCompatible(other.mode))
+               return false;
+      return true;
+   }
+
+   /**
+    * Return the transactions that prevent a request from
+    * being granted: those holding a conflicting lock, and,
+    * for a new request, those waiting for a conflicting upgrade.
+    */
+   private List<Integer> blockers(Lock lock, int txnum, LockMode mode, boolean upgrade) {
+      List<Integer> result = new ArrayList<>();
+      for (Map.Entry<Integer,LockMode> e : lock.holders.entrySet())
+         if (e.getKey() != txnum && !mode.isCompatible(e.getValue()))
+            result.add(e.getKey());
+      if (!upgrade)
+         for (Waiter other : lock.queue)
+            if (other.upgrade && !other.aborted && !mode.isCompatible(other.mode))
+               result.add(other.txnum);
+      return result;
+   }
+
+   /**
+    * Grant the lock to the transaction.
+    * The queued requests that conflict with the
+    * new mode now also wait for that transaction,
+    * so the deadlock policy is applied to them:
+    * under WAIT_DIE the younger ones are aborted,
+    * and under WOUND_WAIT an older one wounds the transaction,
+    * which is not waiting and so is aborted at its next request.
+    */
+   private void grant(Lock lock, int txnum, LockMode mode) {
+      lock.holders.put(txnum, mode);
+      for (Waiter w : lock.queue) {
+         if (w.mode.isCompatible(mode) || w.txnum == txnum)
+            continue;
+         if (policy == DeadlockPolicy.DETECT)
+            graph.addEdge(w.txnum, txnum);
+         else if (policy == DeadlockPolicy.WAIT_DIE && w.txnum > txnum)
+            kill(w, WAIT_DIE);
+         else if (policy == DeadlockPolicy.WOUND_WAIT && w.txnum < txnum)
+            wounded.add(txnum);
+      }
+   }
+
+   /**
+    * Describe every lock that is held or waited for.
+    * The stripes are examined one at a time, so the result
+    * is not an atomic snapshot of the whole table.
+    * @return the held locks and waiting requests
+    */
+   List<LockInfo> locks() {
+      List<LockInfo> result = new ArrayList<>();
+      for (Stripe s : stripes) {
+         s.latch.lock();
+         try {
+            for (Map.Entry<Object,Lock> e : s.locks.entrySet())
+               describe(e.getKey(), e.getValue(), result);
+         }
+         finally {
+            s.latch.unlock();
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Describe the holders of the specified item,
+    * followed by its waiting requests in queue order.
+    * @param item a block or slot
+    * @return the held locks and waiting requests on the item
+    */
+   List<LockInfo> locks(Object item) {
+      List<LockInfo> result = new ArrayList<>();
+      Stripe s = stripe(item);
+      s.latch.lock();
+      try {
+         Lock lock = s.locks.get(item);
+         if (lock != null)
+            describe(item, lock, result);
+      }
+      finally {
+         s.latch.unlock();
+      }
+      return result;
+   }
+
+   /**
+    * Describe the request that has been waiting the longest,
+    * or return null if no request is waiting.
+    * @return the longest current waiter
+    */
+   LockInfo longestWaiter() {
+      Waiter oldest = null;
+      for (Waiter w : waiters.values())
+         if (oldest == null || w.start < oldest.start)
+            oldest = w;
+      if (oldest == null)
+         return null;
+      return new LockInfo(oldest.item, oldest.txnum, oldest.mode, false,
+                          System.currentTimeMillis() - oldest.start);
+   }
+
+   /**
+    * Describe the request that the transaction is
+    * waiting for, or return null if it is not waiting.
+    * @param txnum the id of the transaction
+    * @return the transaction's waiting request
+    */
+   LockInfo waitingFor(int txnum) {
+      Waiter w = waiters.get(txnum);
+      if (w == null)
+         return null;
+      return new LockInfo(w.item, w.txnum, w.mode, false,
+                          System.currentTimeMillis() - w.start);
+   }
+
+   private void describe(Object item, Lock lock, List<LockInfo> result) {
+      long now = System.currentTimeMillis();
+      for (Map.Entry<Integer,LockMode> e : lock.holders.entrySet())
+         result.add(new LockInfo(item, e.getKey(), e.getValue(), true, 0));
+      for (Waiter w : lock.queue)
+         if (!w.aborted)
+            result.add(new LockInfo(item, w.txnum, w.mode, false, now - w.start));
+   }
+
+   private void removeIfUnused(Stripe s, Object item, Lock lock) {
+      if (lock.holders.isEmpty() && lock.queue.isEmpty())
+         s.locks.remove(item);
+   }
+
+   private Stripe stripe(Object item) {
+      return stripes[(item.hashCode() & Integer.MAX_VALUE) % stripes.length];
+   }
+
+   /**
+    * A partition of the lock table.
+    */
+   private static class Stripe {
+      ReentrantLock latch = new ReentrantLock();
+      Map<Object,Lock> locks = new HashMap<>();
+   }
+
+   /**
+    * The lock state of an item:
+    * the mode held by each holding transaction,
+    * and the queue of waiting requests.
+    */
+   private static class Lock {
+      Map<Integer,LockMode> holders = new HashMap<>();
+      Deque<Waiter> queue = new ArrayDeque<>();
+   }
+
+   /**
+    * A waiting request, which has its own condition
+    * so that its thread can be woken up individually.
+    * The mode is the one the transaction will hold once
+    * the request is granted; an upgrade is a request by
+    * a transaction that already holds a lock on the item.
+    * The flags are only accessed while holding the stripe latch.
+    */
+   private static class Waiter {
+      Object item;
+      int txnum;
+      LockMode mode;
+      boolean upgrade;
+      boolean granted = false;
+      boolean aborted = false;
+      String reason;
+      Stripe stripe;
+      Condition cond;
+      long start = System.currentTimeMillis();
+
+      Waiter(Object item, int txnum, LockMode mode, boolean upgrade, Stripe stripe) {
+         this.item = item;
+         this.txnum = txnum;
+         this.mode = mode;
+         this.upgrade = upgrade;
+         this.stripe = stripe;
+         cond = stripe.latch.newCondition();
+      }
    }
 }
@@ -0,0 +1,78 @@
+package simpledb.tx.concurrency;
+
+import java.util.*;
+import simpledb.file.BlockId;
+
+/**
+ * Tests the wakeups of the lock table.
+ * Releasing a lock must grant the waiting requests of
+ * that block that are compatible with the remaining locks,
+ * and only those; requests waiting for other blocks stay
+ * asleep. A waiting request whose thread is interrupted must be
+ * aborted with the thread's interrupt status still set.
+ */
+public class LockTableTest {
+   private static LockTable locktbl = new LockTable(4, DeadlockPolicy.TIMEOUT);
+   private static List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+   public static void main(String[] args) throws InterruptedException {
+      BlockId blk1 = new BlockId("testfile", 1);
+      BlockId blk2 = new BlockId("testfile", 2);
+      locktbl.lock(blk1, 1, LockMode.X);
+      locktbl.lock(blk2, 5, LockMode.X);
+      Thread t2 = request(blk1, 2, LockMode.S);
+      Thread t3 = request(blk1, 3, LockMode.X);
+      Thread t4 = request(blk1, 4, LockMode.S);
+      Thread t6 = request(blk2, 6, LockMode.S);
+
+      // Both shared requests are granted, and the exclusive
+      // request between them keeps waiting.
+      locktbl.unlock(blk1, 1);
+      t2.join();
+      t4.join();
+      System.out.println("After tx 1 unlocks block 1: " + new TreeSet<>(events)
+                         + " (expected [tx 2 granted, tx 4 granted]), tx 3 "
+                         + waiting(3) + " (expected waiting), tx 6 " + waiting(6)
+                         + " (expected waiting)");
+      locktbl.unlock(blk1, 2);
+      Thread.sleep(100);
+      System.out.println("After tx 2 unlocks block 1: tx 3 " + waiting(3)
+                         + " (expected waiting)");
+      locktbl.unlock(blk1, 4);
+      t3.join();
+      locktbl.unlock(blk1, 3);
+      System.out.println("After tx 4 unlocks block 1: " + events.get(events.size() - 1)
+                         + " (expected tx 3 granted), tx 6 " + waiting(6)
+                         + " (expected waiting)");
+
+      events.clear();
+      t6.interrupt();
+      t6.join();
+      locktbl.unlock(blk2, 5);
+      System.out.println("After interrupting tx 6: " + events
+                         + " (expected [tx 6 aborted, interrupted])");
+   }
+
+   private static String waiting(int txnum) {
+      return (locktbl.waitingFor(txnum) == null) ? "not waiting" : "waiting";
+   }
+
+   // Start a thread that requests the lock,
+   // and wait until the request is queued.
+   private static Thread request(BlockId blk, int txnum, LockMode mode) throws InterruptedException {
+      Thread t = new Thread(() -> {
+         try {
+            locktbl.lock(blk, txnum, mode);
+            events.add("tx " + txnum + " granted");
+         }
+         catch(LockAbortException e) {
+            events.add("tx " + txnum + " aborted"
+                       + (Thread.currentThread().isInterrupted() ? ", interrupted" : ""));
+         }
+      });
+      t.start();
+      while (locktbl.waitingFor(txnum) == null)
+         Thread.sleep(10);
+      return t;
+   }
+}
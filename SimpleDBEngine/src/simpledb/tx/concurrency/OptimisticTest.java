@@ -0,0 +1,77 @@
+package simpledb.tx.concurrency;
+
+import simpledb.server.SimpleDB;
+import simpledb.file.BlockId;
+import simpledb.tx.Transaction;
+
+/**
+ * Tests optimistic transactions.
+ * The writes of an optimistic transaction must stay private
+ * until it commits. Its commit must fail validation if another
+ * transaction modified a block that it read, in which case it
+ * is rolled back and releases its locks; transactions that do
+ * not conflict must commit.
+ */
+public class OptimisticTest {
+   private static final long TIMEOUT = 300;
+
+   public static void main(String[] args) {
+      SimpleDB db = new SimpleDB("optimistictest", 400, 8);
+      BlockId blk0 = new BlockId("testfile", 0);
+      BlockId blk1 = new BlockId("testfile", 1);
+      Transaction tx = db.newTx();
+      tx.pin(blk0);
+      tx.pin(blk1);
+      tx.setInt(blk0, 0, 0, true);
+      tx.setInt(blk1, 0, 0, true);
+      tx.commit();
+
+      // tx2 modifies the block that tx1 read.
+      Transaction tx1 = db.newOptimisticTx();
+      tx1.pin(blk0);
+      int val = tx1.getInt(blk0, 0);
+      Transaction tx2 = db.newTx();
+      tx2.pin(blk0);
+      tx2.setInt(blk0, 0, 5, true);
+      tx2.commit();
+      tx1.setInt(blk0, 0, val + 100, true);
+      try {
+         tx1.commit();
+         System.out.println("The conflicting transaction committed");
+      }
+      catch(ValidationException e) {
+         System.out.println("Validation failed: " + e.getMessage());
+      }
+      tx1.rollback();
+
+      ConcurrencyMgr.setLockTimeout(TIMEOUT);
+      tx = db.newTx();
+      tx.pin(blk0);
+      tx.setInt(blk0, 4, 1, true);
+      System.out.println("After the failed commit, block 0 holds " + tx.getInt(blk0, 0)
+                         + " (expected 5) and can be locked by another transaction");
+      tx.commit();
+      ConcurrencyMgr.setLockTimeout(LockTable.DEFAULT_MAX_TIME);
+
+      // The private writes of tx3 are invisible until it commits.
+      Transaction tx3 = db.newOptimisticTx();
+      tx3.pin(blk1);
+      tx3.setInt(blk1, 0, 42, true);
+      Transaction reader = db.newTx();
+      reader.pin(blk1);
+      int before = reader.getInt(blk1, 0);
+      reader.commit();
+      Transaction tx4 = db.newOptimisticTx();
+      tx4.pin(blk0);
+      tx4.setInt(blk0, 0, 7, true);
+      tx3.commit();
+      tx4.commit();
+      tx = db.newTx();
+      tx.pin(blk0);
+      tx.pin(blk1);
+      System.out.println("Block 1 holds " + before + " before tx3 commits (expected 0) and "
+                         + tx.getInt(blk1, 0) + " after (expected 42); block 0 holds "
+                         + tx.getInt(blk0, 0) + " after tx4 commits (expected 7)");
+      tx.commit();
+   }
+}
@@ -0,0 +1,17 @@
+package simpledb.tx.concurrency;
+
+/**
+ * A runtime exception indicating that a read-only
+ * transaction attempted to modify the database.
+ * The transaction itself is unaffected, and may go on
+ * reading its snapshot.
+ */
+@SuppressWarnings("serial")
+public class ReadOnlyException extends RuntimeException {
+   public ReadOnlyException() {
+   }
+
+   public ReadOnlyException(String reason) {
+      super(reason);
+   }
+}
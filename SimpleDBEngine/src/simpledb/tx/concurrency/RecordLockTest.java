@@ -0,0 +1,97 @@
+package simpledb.tx.concurrency;
+
+import simpledb.server.SimpleDB;
+import simpledb.file.BlockId;
+import simpledb.tx.Transaction;
+import simpledb.plan.Planner;
+import simpledb.query.Scan;
+import simpledb.record.*;
+
+/**
+ * Tests record-level locking.
+ * Two transactions must be able to modify different records
+ * of the same block at the same time, while a transaction that
+ * modifies a record locked by another one must wait, and so
+ * must a transaction that reads the whole block, even if it
+ * has locked some of the block's records.
+ * Rolling back one of the transactions must not undo the
+ * changes of the other.
+ */
+public class RecordLockTest {
+   private static final long TIMEOUT = 300;
+
+   public static void main(String[] args) {
+      SimpleDB db = new SimpleDB("recordlocktest");
+      Planner planner = db.planner();
+      Transaction tx = db.newTx();
+      planner.executeUpdate("create table T(a int, b int)", tx);
+      for (int i=0; i<10; i++)
+         planner.executeUpdate("insert into T(a, b) values (" + i + ", 0)", tx);
+      tx.commit();
+
+      // With a short timeout, any wait aborts the transaction.
+      ConcurrencyMgr.setLockTimeout(TIMEOUT);
+      Transaction tx1 = db.newTx();
+      Transaction tx2 = db.newTx();
+      Layout layout = db.mdMgr().getLayout("t", tx1);
+      TableScan s1 = new TableScan(tx1, "t", layout);
+      TableScan s2 = new TableScan(tx2, "t", layout);
+      s1.moveToRid(new RID(0, 1));
+      s1.setInt("b", 1);
+      s2.moveToRid(new RID(0, 2));
+      s2.setInt("b", 2);
+      s2.insert();
+      s2.setInt("a", 100);
+      s2.setInt("b", 100);
+      s1.delete();
+      System.out.println("Two transactions modified the same block without waiting");
+      try {
+         tx1.getInt(new BlockId("t.tbl", 0), 0);
+         System.out.println("tx1 read the whole block while tx2 modified it");
+      }
+      catch(LockAbortException e) {
+         System.out.println("tx1 waited to read the whole block, and was aborted");
+      }
+      try {
+         s2.moveToRid(new RID(0, 1));
+         s2.setInt("b", 3);
+         System.out.println("tx2 modified the record deleted by tx1");
+      }
+      catch(LockAbortException e) {
+         System.out.println("tx2 waited for the record deleted by tx1, and was aborted");
+      }
+      s1.close();
+      s2.close();
+      tx1.rollback();
+      tx2.rollback();
+      ConcurrencyMgr.setLockTimeout(LockTable.DEFAULT_MAX_TIME);
+
+      // Repeat without the conflict, and commit only tx4.
+      Transaction tx3 = db.newTx();
+      Transaction tx4 = db.newTx();
+      s1 = new TableScan(tx3, "t", layout);
+      s2 = new TableScan(tx4, "t", layout);
+      s1.moveToRid(new RID(0, 1));
+      s1.setInt("b", 1);
+      s2.moveToRid(new RID(0, 2));
+      s2.setInt("b", 2);
+      s1.delete();
+      s2.insert();
+      s2.setInt("a", 100);
+      s2.setInt("b", 100);
+      s1.close();
+      s2.close();
+      tx3.rollback();
+      tx4.commit();
+
+      tx = db.newTx();
+      Scan s = planner.createQueryPlan("select a, b from T", tx).open();
+      StringBuilder result = new StringBuilder();
+      while (s.next())
+         result.append(s.getInt("a")).append(":").append(s.getInt("b")).append(" ");
+      s.close();
+      tx.commit();
+      System.out.println("Records: " + result);
+      System.out.println("Expected: 0:0 1:0 2:2 3:0 4:0 5:0 6:0 7:0 8:0 9:0 100:100");
+   }
+}
@@ -0,0 +1,42 @@
+package simpledb.tx.concurrency;
+
+import simpledb.file.BlockId;
+
+/**
+ * The identifier of a record slot, used as the
+ * lockable item for record-level locks.
+ * In the locking hierarchy, a slot lies below its block,
+ * which lies below the dummy block of its file.
+ */
+class SlotId {
+   private BlockId blk;
+   private int slot;
+
+   public SlotId(BlockId blk, int slot) {
+      this.blk = blk;
+      this.slot = slot;
+   }
+
+   public BlockId block() {
+      return blk;
+   }
+
+   public int slot() {
+      return slot;
+   }
+
+   public boolean equals(Object obj) {
+      if (!(obj instanceof SlotId))
+         return false;
+      SlotId s = (SlotId) obj;
+      return blk.equals(s.blk) && slot == s.slot;
+   }
+
+   public String toString() {
+      return "[file " + blk.fileName() + ", block " + blk.number() + ", slot " + slot + "]";
+   }
+
+   public int hashCode() {
+      return 31 * blk.hashCode() + slot;
+   }
+}
@@ -0,0 +1,84 @@
+package simpledb.tx.concurrency;
+
+import simpledb.server.SimpleDB;
+import simpledb.tx.Transaction;
+import simpledb.plan.Planner;
+import simpledb.query.Scan;
+
+/**
+ * Tests the snapshots of read-only transactions.
+ * A read-only transaction must see the database as of its
+ * start: neither uncommitted changes, nor changes committed
+ * after it started. It must not wait for the locks of
+ * writers, and any attempt to write must be rejected.
+ * This must hold whether the snapshot restores the writes
+ * from saved versions or, when the writer was running before
+ * the snapshot began or its versions do not fit in the
+ * version store, from the writer's log records.
+ */
+public class SnapshotTest {
+   private static SimpleDB db;
+   private static Planner planner;
+
+   public static void main(String[] args) {
+      db = new SimpleDB("snapshottest");
+      planner = db.planner();
+      Transaction tx = db.newTx();
+      planner.executeUpdate("create table T(a int, b varchar(9))", tx);
+      for (int i=0; i<50; i++)
+         planner.executeUpdate("insert into T(a, b) values (" + i + ", 'v" + i + "')", tx);
+      tx.commit();
+
+      // The writer holds exclusive locks while r1 reads.
+      Transaction w1 = db.newTx();
+      planner.executeUpdate("update T set a = 1000 where a < 25", w1);
+      Transaction r1 = db.newReadOnlyTx();
+      System.out.println("r1 before w1 commits: " + sum(r1) + " (expected 1225)");
+      w1.commit();
+      System.out.println("r1 after w1 commits: " + sum(r1) + " (expected 1225)");
+      Transaction r2 = db.newReadOnlyTx();
+      System.out.println("r2 after w1 commits: " + sum(r2) + " (expected 25925)");
+
+      Transaction w2 = db.newTx();
+      planner.executeUpdate("delete from T where a = 1000", w2);
+      planner.executeUpdate("insert into T(a, b) values (7, 'x')", w2);
+      System.out.println("r2 while w2 is active: " + sum(r2) + " (expected 25925)");
+      w2.commit();
+      System.out.println("r2 after w2 commits: " + sum(r2) + " (expected 25925)");
+      r1.commit();
+      r2.commit();
+
+      Transaction r3 = db.newReadOnlyTx();
+      System.out.println("r3 after w2 commits: " + sum(r3) + " (expected 932)");
+      try {
+         planner.executeUpdate("delete from T", r3);
+         System.out.println("r3 deleted the records");
+      }
+      catch(ReadOnlyException e) {
+         System.out.println("r3 write rejected: " + e.getMessage());
+      }
+      System.out.println("r3 after the rejected write: " + sum(r3) + " (expected 932)");
+
+      // The version store has no room, so w3 is undone from the log.
+      Transaction.setVersionStoreSize(0);
+      Transaction w3 = db.newTx();
+      planner.executeUpdate("delete from T where a < 40", w3);
+      System.out.println("r3 while w3 is active: " + sum(r3) + " (expected 932)");
+      w3.commit();
+      System.out.println("r3 after w3 commits: " + sum(r3) + " (expected 932)");
+      r3.commit();
+      Transaction r4 = db.newReadOnlyTx();
+      System.out.println("r4 after w3 commits: " + sum(r4) + " (expected 445)");
+      r4.commit();
+      Transaction.setVersionStoreSize(SimpleDB.VERSION_STORE_SIZE);
+   }
+
+   private static int sum(Transaction tx) {
+      Scan s = planner.createQueryPlan("select a from T", tx).open();
+      int sum = 0;
+      while (s.next())
+         sum += s.getInt("a");
+      s.close();
+      return sum;
+   }
+}
@@ -0,0 +1,18 @@
+package simpledb.tx.concurrency;
+
+/**
+ * A runtime exception indicating that an optimistic
+ * transaction failed validation, because another
+ * transaction modified data that it read.
+ * The transaction must be rolled back
+ * (commit does so itself), and the client may retry it.
+ */
+@SuppressWarnings("serial")
+public class ValidationException extends RuntimeException {
+   public ValidationException() {
+   }
+
+   public ValidationException(String reason) {
+      super(reason);
+   }
+}
@@ -0,0 +1,258 @@
+package simpledb.tx.concurrency;
+
+import java.util.*;
+import java.util.function.Consumer;
+import simpledb.file.*;
+import simpledb.tx.recovery.RecoveryMgr;
+
+/**
+ * The version store, which lets read-only transactions
+ * see a consistent snapshot of the database without locking.
+ * <p>
+ * Before a transaction overwrites bytes of a block,
+ * it saves their previous contents here as a version.
+ * A committed transaction is given a commit timestamp,
+ * and a snapshot transaction is given a snapshot timestamp
+ * when it starts.
+ * A write is visible to a snapshot if its transaction
+ * committed at or before the snapshot's timestamp.
+ * The snapshot's view of a block is therefore obtained
+ * from the block's current contents by restoring the saved
+ * versions of the invisible writes, most recent first.
+ * <p>
+ * Versions are saved only while a snapshot is active.
+ * The writes of a transaction that has no saved versions
+ * are instead undone from its log records, by following
+ * its chain of records backwards as a rollback does.
+ * This happens to the transactions that were running when
+ * the first snapshot began, and to a transaction whose
+ * versions would exceed the size of the store: its versions
+ * are then discarded and it switches to the log.
+ * <p>
+ * The versions of a transaction are discarded once they are
+ * visible to every active snapshot (and so to every future one),
+ * and when the transaction rolls back, because by then
+ * its writes have been undone.
+ */
+public class VersionStore {
+   private long clock = 0;
+   private long size = 0, maxsize;
+   private volatile boolean saving = false;
+   private Map<BlockId,List<Version>> versions = new HashMap<>();
+   private Map<Integer,Set<BlockId>> txblocks = new HashMap<>();
+   private Map<Integer,RecoveryMgr> logged = new HashMap<>();
+   private Map<Integer,Long> committed = new HashMap<>();
+   private TreeMap<Long,Integer> snapshots = new TreeMap<>();
+
+   /**
+    * Create a version store holding at most
+    * the specified number of bytes of versions.
+    * @param maxsize the maximum size of the saved versions, in bytes
+    */
+   public VersionStore(long maxsize) {
+      this.maxsize = maxsize;
+   }
+
+   /**
+    * Set the maximum size of the saved versions.
+    * @param maxsize the maximum size, in bytes
+    */
+   public synchronized void setMaxSize(long maxsize) {
+      this.maxsize = maxsize;
+   }
+
+   /**
+    * Return true if a snapshot is active,
+    * in which case writers must save versions.
+    * A writer that calls this method without holding the
+    * latch of its buffer may miss a snapshot that begins
+    * concurrently, but such a snapshot undoes the writer's
+    * changes from the log.
+    * @return true if versions are being saved
+    */
+   public boolean isSaving() {
+      return saving;
+   }
+
+   /**
+    * Save the bytes that the transaction is about to overwrite.
+    * The caller must hold a latch on the block's buffer,
+    * so that the write and the saving of its version
+    * appear atomic to a transaction reading the block.
+    * Nothing is saved if no snapshot is active or if the
+    * transaction's writes are undone from the log.
+    * If the store is full, the transaction's versions
+    * are discarded and its writes are undone from the log
+    * from now on.
+    * @param txnum the id of the writing transaction
+    * @param rm the recovery manager of the writing transaction
+    * @param blk the block being written
+    * @param offset the offset of the write
+    * @param oldbytes the bytes being overwritten
+    */
+   public synchronized void saveVersion(int txnum, RecoveryMgr rm, BlockId blk,
+                                        int offset, byte[] oldbytes) {
+      if (!saving || logged.containsKey(txnum))
+         return;
+      if (size + oldbytes.length > maxsize) {
+         discard(txnum);
+         logged.put(txnum, rm);
+         return;
+      }
+      versions.computeIfAbsent(blk, b -> new ArrayList<>())
+              .add(new Version(txnum, offset, oldbytes));
+      txblocks.computeIfAbsent(txnum, t -> new HashSet<>()).add(blk);
+      size += oldbytes.length;
+   }
+
+   /**
+    * Record that the transaction has committed.
+    * If no snapshot is active, then its versions
+    * can never be needed and are discarded immediately.
+    * @param txnum the id of the committing transaction
+    */
+   public synchronized void commit(int txnum) {
+      if (!txblocks.containsKey(txnum) && !logged.containsKey(txnum))
+         return;
+      clock++;
+      if (snapshots.isEmpty())
+         discard(txnum);
+      else
+         committed.put(txnum, clock);
+   }
+
+   /**
+    * Discard the versions of a transaction that has rolled back.
+    * A transaction that rolls back while a snapshot reads
+    * its writes from the log leaves the page as it was before
+    * those writes, so undoing them again does no harm.
+    * @param txnum the id of the transaction
+    */
+   public synchronized void rollback(int txnum) {
+      discard(txnum);
+   }
+
+   /**
+    * Start a snapshot.
+    * The snapshot sees the writes of every transaction
+    * that has committed so far, and of no other.
+    * If no other snapshot is active, versions have not been
+    * saved, and so the writes of the running transactions
+    * are undone from their log records.
+    * The caller must prevent transactions from starting
+    * or finishing during the call.
+    * @param writers the recovery managers of the running transactions
+    *                that have not yet committed or rolled back
+    * @return the timestamp of the snapshot
+    */
+   public synchronized long beginSnapshot(Map<Integer,RecoveryMgr> writers) {
+      if (snapshots.isEmpty()) {
+         for (Map.Entry<Integer,RecoveryMgr> e : writers.entrySet()) {
+            discard(e.getKey());
+            logged.put(e.getKey(), e.getValue());
+         }
+         saving = true;
+      }
+      snapshots.merge(clock, 1, Integer::sum);
+      return clock;
+   }
+
+   /**
+    * End the snapshot having the specified timestamp,
+    * and discard the versions that are no longer needed.
+    * When the last snapshot ends, versions stop being saved.
+    * @param ts the timestamp of the snapshot
+    */
+   public synchronized void endSnapshot(long ts) {
+      if (snapshots.merge(ts, -1, Integer::sum) == 0)
+         snapshots.remove(ts);
+      long oldest = snapshots.isEmpty() ? clock : snapshots.firstKey();
+      List<Integer> obsolete = new ArrayList<>();
+      for (Map.Entry<Integer,Long> e : committed.entrySet())
+         if (e.getValue() <= oldest)
+            obsolete.add(e.getKey());
+      for (int txnum : obsolete) {
+         committed.remove(txnum);
+         discard(txnum);
+      }
+      if (snapshots.isEmpty())
+         saving = false;
+   }
+
+   /**
+    * Convert the page, which holds the current contents
+    * of the block, into the block's contents as seen by
+    * the snapshot.
+    * The invisible transactions are undone one at a time,
+    * the uncommitted ones first and then the committed ones
+    * in reverse commit order, each from its saved versions
+    * or from its log records.
+    * The undo steps are determined while holding the store's
+    * monitor, but the log is read after releasing it.
+    * The caller must hold a latch on the block's buffer
+    * while copying its contents and calling this method.
+    * @param blk the block
+    * @param p a copy of the block's current contents
+    * @param ts the timestamp of the snapshot
+    */
+   public void applyVersions(BlockId blk, Page p, long ts) {
+      List<Consumer<Page>> steps = new ArrayList<>();
+      synchronized (this) {
+         List<Version> list = versions.getOrDefault(blk, Collections.emptyList());
+         Set<Integer> txs = new HashSet<>(logged.keySet());
+         for (Version v : list)
+            txs.add(v.txnum);
+         List<Integer> invisible = new ArrayList<>();
+         for (int txnum : txs) {
+            Long committs = committed.get(txnum);
+            if (committs == null || committs > ts)
+               invisible.add(txnum);
+         }
+         invisible.sort(Comparator.comparing((Integer t) -> committed.getOrDefault(t, Long.MAX_VALUE))
+                                  .reversed());
+         for (int txnum : invisible) {
+            RecoveryMgr rm = logged.get(txnum);
+            if (rm != null)
+               steps.add(pg -> rm.undo(blk, pg));
+            else
+               for (int i=list.size()-1; i>=0; i--) {
+                  Version v = list.get(i);
+                  if (v.txnum == txnum)
+                     steps.add(pg -> pg.setRawBytes(v.offset, v.oldbytes));
+               }
+         }
+      }
+      for (Consumer<Page> step : steps)
+         step.accept(p);
+   }
+
+   private void discard(int txnum) {
+      logged.remove(txnum);
+      Set<BlockId> blks = txblocks.remove(txnum);
+      if (blks == null)
+         return;
+      for (BlockId blk : blks) {
+         List<Version> list = versions.get(blk);
+         for (Version v : list)
+            if (v.txnum == txnum)
+               size -= v.oldbytes.length;
+         list.removeIf(v -> v.txnum == txnum);
+         if (list.isEmpty())
+            versions.remove(blk);
+      }
+   }
+
+   /**
+    * The saved contents of bytes overwritten by a transaction.
+    */
+   private static class Version {
+      int txnum, offset;
+      byte[] oldbytes;
+
+      Version(int txnum, int offset, byte[] oldbytes) {
+         this.txnum = txnum;
+         this.offset = offset;
+         this.oldbytes = oldbytes;
+      }
+   }
+}
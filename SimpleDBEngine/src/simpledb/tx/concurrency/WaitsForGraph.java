@@ -0,0 +1,79 @@
+package simpledb.tx.concurrency;
+
+import java.util.*;
+
+/**
+ * The waits-for graph of the lock table.
+ * There is an edge from transaction T1 to transaction T2
+ * if T1 is waiting for a lock that T2 holds.
+ * A cycle in the graph is a deadlock.
+ * <p>
+ * The lock table adds and removes edges as requests
+ * wait, are granted, and as locks are released.
+ * A cycle can only be created when a transaction starts to wait,
+ * so the lock table checks for one at that moment.
+ */
+class WaitsForGraph {
+   private Map<Integer,Set<Integer>> edges = new HashMap<>();
+
+   /**
+    * Record that the first transaction waits for the second.
+    * @param waiter the id of the waiting transaction
+    * @param holder the id of the transaction holding the lock
+    */
+   synchronized void addEdge(int waiter, int holder) {
+      if (waiter != holder)
+         edges.computeIfAbsent(waiter, t -> new HashSet<>()).add(holder);
+   }
+
+   /**
+    * Record that the first transaction no longer
+    * waits for the second.
+    * @param waiter the id of the waiting transaction
+    * @param holder the id of the transaction that released its lock
+    */
+   synchronized void removeEdge(int waiter, int holder) {
+      Set<Integer> holders = edges.get(waiter);
+      if (holders != null)
+         holders.remove(holder);
+   }
+
+   /**
+    * Record that the transaction is no longer waiting.
+    * @param waiter the id of the transaction
+    */
+   synchronized void removeWaiter(int waiter) {
+      edges.remove(waiter);
+   }
+
+   /**
+    * Look for a cycle that passes through the specified
+    * transaction, and if there is one, choose the youngest
+    * transaction on it (the one with the highest id) as the victim.
+    * @param txnum the id of a transaction that has just started to wait
+    * @return the id of the victim, or -1 if there is no deadlock
+    */
+   synchronized int findVictim(int txnum) {
+      List<Integer> path = new ArrayList<>();
+      if (!findPath(txnum, txnum, path, new HashSet<>()))
+         return -1;
+      return Collections.max(path);
+   }
+
+   /**
+    * Depth-first search for a path from the current
+    * transaction back to the target.
+    * The transactions on the path are added to the list.
+    */
+   private boolean findPath(int current, int target, List<Integer> path, Set<Integer> visited) {
+      path.add(current);
+      for (int next : edges.getOrDefault(current, Collections.emptySet())) {
+         if (next == target)
+            return true;
+         if (visited.add(next) && findPath(next, target, path, visited))
+            return true;
+      }
+      path.remove(path.size()-1);
+      return false;
+   }
+}
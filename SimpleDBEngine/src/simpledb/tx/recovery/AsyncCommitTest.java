@@ -0,0 +1,118 @@
+package simpledb.tx.recovery;
+
+import java.io.File;
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+import simpledb.tx.Transaction;
+
+/**
+ * Tests asynchronous commits.
+ * The program first runs itself in a separate process, which
+ * commits three transactions and then halts as if it had crashed:
+ * a synchronous commit, an asynchronous commit followed by a
+ * pause longer than the flush interval, and an asynchronous
+ * commit immediately before the crash. Recovery must keep
+ * the first two transactions and undo the last one.
+ * A second process makes an asynchronous commit and halts
+ * right after closing the database, which must stop the
+ * background flusher and write the commit record.
+ */
+public class AsyncCommitTest {
+   private static final String DIRNAME = "asynccommittest";
+   private static final long FLUSH_INTERVAL = 1000;
+   private static SimpleDB db;
+
+   public static void main(String[] args) throws Exception {
+      if (args.length > 0 && args[0].equals("crash")) {
+         crash();
+         return;
+      }
+      if (args.length > 0 && args[0].equals("close")) {
+         close();
+         return;
+      }
+      run("crash");
+
+      db = new SimpleDB(DIRNAME, 400, 8);
+      Transaction tx = db.newTx();
+      tx.recover();
+      FileMgr fm = db.fileMgr();
+      Page page = new Page(fm.blockSize());
+      fm.read(new BlockId("testfile", 0), page);
+      System.out.println("After recovery: synchronous commit " + page.getInt(0)
+                         + " (expected 1), hardened asynchronous commit " + page.getInt(4)
+                         + " (expected 2), lost asynchronous commit " + page.getInt(8)
+                         + " (expected 0)");
+      tx.commit();
+
+      run("close");
+      db = new SimpleDB(DIRNAME, 400, 8);
+      tx = db.newTx();
+      tx.recover();
+      fm = db.fileMgr();
+      fm.read(new BlockId("testfile", 0), page);
+      System.out.println("After closing: asynchronous commit " + page.getInt(12)
+                         + " (expected 4)");
+      tx.commit();
+   }
+
+   private static void run(String mode) throws Exception {
+      String java = System.getProperty("java.home") + File.separator + "bin"
+                    + File.separator + "java";
+      Process p = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                                     AsyncCommitTest.class.getName(), mode)
+                  .inheritIO().start();
+      p.waitFor();
+   }
+
+   private static void crash() throws InterruptedException {
+      SimpleDB.LOG_FLUSH_INTERVAL = FLUSH_INTERVAL;
+      db = new SimpleDB(DIRNAME, 400, 8);
+      BlockId blk = new BlockId("testfile", 0);
+      Transaction tx = db.newTx();
+      tx.pin(blk);
+      for (int i=0; i<3; i++)
+         tx.setInt(blk, i * Integer.BYTES, 0, false);
+      tx.commit();
+
+      tx = db.newTx();
+      tx.pin(blk);
+      tx.setInt(blk, 0, 1, true);
+      tx.commit();
+
+      // The background flusher writes this commit
+      // within one flush interval.
+      tx = db.newTx();
+      tx.setSynchronousCommit(false);
+      tx.pin(blk);
+      tx.setInt(blk, 4, 2, true);
+      tx.commit();
+      Thread.sleep(FLUSH_INTERVAL * 3 / 2);
+
+      // This commit is still in memory when the system halts.
+      tx = db.newTx();
+      tx.setSynchronousCommit(false);
+      tx.pin(blk);
+      tx.setInt(blk, 8, 3, true);
+      tx.commit();
+      Runtime.getRuntime().halt(0);
+   }
+
+   private static void close() {
+      SimpleDB.LOG_FLUSH_INTERVAL = FLUSH_INTERVAL;
+      db = new SimpleDB(DIRNAME, 400, 8);
+      BlockId blk = new BlockId("testfile", 0);
+      Transaction tx = db.newTx();
+      tx.setSynchronousCommit(false);
+      tx.pin(blk);
+      tx.setInt(blk, 12, 4, true);
+      tx.commit();
+      db.close();
+      boolean running = false;
+      for (Thread t : Thread.getAllStackTraces().keySet())
+         if (t.getName().equals("log flusher"))
+            running = true;
+      System.out.println("The flusher is running after close: " + running + " (expected false)");
+      Runtime.getRuntime().halt(0);
+   }
+}
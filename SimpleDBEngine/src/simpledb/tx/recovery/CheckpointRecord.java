@@ -1,6 +1,5 @@
 package simpledb.tx.recovery;
 
-import simpledb.file.Page;
 import simpledb.log.LogMgr;
 import simpledb.tx.Transaction;
 
@@ -40,10 +39,9 @@ public class CheckpointRecord implements LogRecord {
     * and nothing else.
     * @return the LSN of the last log value
     */
-   public static int writeToLog(LogMgr lm) {
-      byte[] rec = new byte[Integer.BYTES];
-      Page p = new Page(rec);
-      p.setInt(0, CHECKPOINT);
-      return lm.append(rec);
+   public static long writeToLog(LogMgr lm) {
+      LogRecordBuffer buf = new LogRecordBuffer(lm);
+      buf.writeOp(CHECKPOINT);
+      return buf.append();
    }
 }
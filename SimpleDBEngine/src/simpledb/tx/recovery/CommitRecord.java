@@ -1,6 +1,5 @@
 package simpledb.tx.recovery;
 
-import simpledb.file.Page;
 import simpledb.log.LogMgr;
 import simpledb.tx.Transaction;
 
@@ -11,9 +10,8 @@ import simpledb.tx.Transaction;
 public class CommitRecord implements LogRecord {
    private int txnum;
 
-   public CommitRecord(Page p) {
-      int tpos = Integer.BYTES;
-      txnum = p.getInt(tpos);
+   public CommitRecord(LogRecordBuffer buf) {
+      txnum = buf.readInt();
    }
 
    public int op() {
@@ -40,11 +38,10 @@ public class CommitRecord implements LogRecord {
     * followed by the transaction id.
     * @return the LSN of the last log value
     */
-   public static int writeToLog(LogMgr lm, int txnum) {
-      byte[] rec = new byte[2*Integer.BYTES];
-      Page p = new Page(rec);
-      p.setInt(0, COMMIT);
-      p.setInt(Integer.BYTES, txnum);
-      return lm.append(rec);
+   public static long writeToLog(LogMgr lm, int txnum) {
+      LogRecordBuffer buf = new LogRecordBuffer(lm);
+      buf.writeOp(COMMIT);
+      buf.writeInt(txnum);
+      return buf.append();
    }
 }
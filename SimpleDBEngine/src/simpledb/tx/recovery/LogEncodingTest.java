@@ -0,0 +1,77 @@
+package simpledb.tx.recovery;
+
+import java.util.*;
+import simpledb.server.SimpleDB;
+import simpledb.file.BlockId;
+import simpledb.log.LogMgr;
+
+/**
+ * Tests the compact encoding of the log records.
+ * The program writes setstring records that mention many
+ * files with long names, and checks that each record is
+ * shorter than its file name, that the records are returned
+ * in reverse order by the log iterator and by their prevLSN
+ * chain, and that they decode to the same values after
+ * the file dictionary is reread from disk. It also checks
+ * that a prevLSN beyond 2 GB is decoded intact.
+ */
+public class LogEncodingTest {
+   private static final String DIRNAME = "logencodingtest";
+   private static final String PREFIX = "studentidxleaf";
+   private static final int FILES = 30, RECORDS = 200;
+
+   public static void main(String[] args) {
+      SimpleDB db = new SimpleDB(DIRNAME, 400, 8);
+      LogMgr lm = db.logMgr();
+      List<String> written = new ArrayList<>();
+      long lsn = -1;
+      int longest = 0;
+      for (int i=0; i<RECORDS; i++) {
+         BlockId blk = new BlockId(PREFIX + (i % FILES) + ".tbl", i);
+         lsn = SetStringRecord.writeToLog(lm, 1, lsn, blk, i * 4, "val" + i);
+         longest = Math.max(longest, lm.read(lsn).length);
+         written.add("<SETSTRING 1 " + blk + " " + (i * 4) + " val" + i + ">");
+      }
+      lm.flush(lsn);
+      Collections.reverse(written);
+      System.out.println("The longest record has " + longest
+                         + " bytes (expected fewer than " + (PREFIX + "0.tbl").length() + ")");
+
+      int chained = 0;
+      for (long prev = lsn; prev >= 0; chained++) {
+         LogRecord rec = LogRecord.createLogRecord(lm.read(prev), lm);
+         if (!rec.toString().equals(written.get(chained)))
+            break;
+         prev = rec.prevLSN();
+      }
+      System.out.println("The prevLSN chain has " + chained + " records (expected " + RECORDS + ")");
+      System.out.println("Backward iteration: " + mismatches(lm, written)
+                         + " mismatches (expected 0)");
+
+      // A new log manager rereads the file dictionary from disk.
+      db = new SimpleDB(DIRNAME, 400, 8);
+      System.out.println("Backward iteration after reopening: " + mismatches(db.logMgr(), written)
+                         + " mismatches (expected 0)");
+
+      lm = db.logMgr();
+      long farlsn = 5L * Integer.MAX_VALUE;
+      lsn = SetStringRecord.writeToLog(lm, 1, farlsn, new BlockId(PREFIX + "0.tbl", 0), 0, "far");
+      LogRecord far = LogRecord.createLogRecord(lm.read(lsn), lm);
+      System.out.println("The prevLSN past 2 GB decodes as " + far.prevLSN()
+                         + " (expected " + farlsn + ")");
+   }
+
+   // Compare the most recent records in the log with the expected ones.
+   private static int mismatches(LogMgr lm, List<String> expected) {
+      int mismatches = 0;
+      Iterator<byte[]> iter = lm.iterator();
+      for (String s : expected) {
+         if (!iter.hasNext())
+            return mismatches + 1;
+         LogRecord rec = LogRecord.createLogRecord(iter.next(), lm);
+         if (!rec.toString().equals(s))
+            mismatches++;
+      }
+      return mismatches;
+   }
+}
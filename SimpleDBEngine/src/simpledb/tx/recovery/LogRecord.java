@@ -1,6 +1,8 @@
 package simpledb.tx.recovery;
 
+import simpledb.file.BlockId;
 import simpledb.file.Page;
+import simpledb.log.LogMgr;
 import simpledb.tx.Transaction;
 
 /**
@@ -10,7 +12,9 @@ import simpledb.tx.Transaction;
 public interface LogRecord {
    static final int CHECKPOINT = 0, START = 1,
          COMMIT = 2, ROLLBACK  = 3,
-         SETINT = 4, SETSTRING = 5;
+         SETINT = 4, SETSTRING = 5,
+         RECINSERT = 6, RECDELETE = 7, RECUPDATE = 8,
+         NEWPAGE = 9;
 
    /**
     * Returns the log record's type. 
@@ -25,36 +29,79 @@ public interface LogRecord {
     */
    int txNumber();
 
+   /**
+    * Returns the LSN of the previous log record written
+    * by the same transaction, or -1 if the record
+    * is not part of a transaction's undo chain.
+    * @return the LSN of the transaction's previous log record
+    */
+   default long prevLSN() {
+      return -1;
+   }
+
    /**
     * Undoes the operation encoded by this log record.
     * The only log record types for which this method
-    * does anything interesting are SETINT and SETSTRING.
+    * does anything interesting are SETINT, SETSTRING,
+    * the slot records RECINSERT, RECDELETE and RECUPDATE,
+    * and NEWPAGE.
     * @param txnum the id of the transaction that is performing the undo.
     */
    void undo(Transaction tx);
 
+   /**
+    * Returns the block modified by the operation
+    * encoded by this log record, or null if the
+    * record contains no undo information.
+    * @return the block modified by the operation
+    */
+   default BlockId block() {
+      return null;
+   }
+
+   /**
+    * Undoes the operation directly on a page holding
+    * the contents of the record's block.
+    * No locks are obtained and nothing is logged,
+    * so the page must either be a private copy of the
+    * block, as for a snapshot, or belong to a buffer
+    * that no other transaction uses, as during recovery
+    * at startup.
+    * @param p the page holding the contents of block()
+    */
+   default void undo(Page p) {}
+
    /**
     * Interpret the bytes returned by the log iterator.
-    * @param bytes
-    * @return
+    * @param bytes the bytes of a log record
+    * @param lm the log manager, whose file dictionary
+    *           resolves the file ids in the record
+    * @return the log record
     */
-   static LogRecord createLogRecord(byte[] bytes) {
-      Page p = new Page(bytes);
-      switch (p.getInt(0)) {
+   static LogRecord createLogRecord(byte[] bytes, LogMgr lm) {
+      LogRecordBuffer buf = new LogRecordBuffer(lm, bytes);
+      int op = buf.readOp();
+      switch (op) {
       case CHECKPOINT: 
          return new CheckpointRecord();
       case START: 
-         return new StartRecord(p);
+         return new StartRecord(buf);
       case COMMIT: 
-         return new CommitRecord(p);
+         return new CommitRecord(buf);
       case ROLLBACK: 
-         return new RollbackRecord(p);
+         return new RollbackRecord(buf);
       case SETINT: 
-         return new SetIntRecord(p);
+         return new SetIntRecord(buf);
       case SETSTRING: 
-         return new SetStringRecord(p);
+         return new SetStringRecord(buf);
+      case RECINSERT:
+      case RECDELETE:
+      case RECUPDATE:
+         return new SlotRecord(op, buf);
+      case NEWPAGE:
+         return new NewPageRecord(buf);
       default:
          return null;
       }
    }
-}
\ No newline at end of file
+}
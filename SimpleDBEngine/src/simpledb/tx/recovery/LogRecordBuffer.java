@@ -0,0 +1,146 @@
+package simpledb.tx.recovery;
+
+import java.util.Arrays;
+import simpledb.file.*;
+import simpledb.log.LogMgr;
+
+/**
+ * The compact encoding used by the recovery log records.
+ * A record begins with a one-byte operator.
+ * Integers are written as variable-length "varints":
+ * seven bits per byte, low-order bits first, with the high bit
+ * of each byte indicating that more bytes follow.
+ * LSNs are written the same way as longs, so an LSN below 2 GB
+ * takes the same bytes as an integer.
+ * Integers are zigzag-encoded first, so that small negative
+ * values such as a prevLSN of -1 also take a single byte.
+ * Strings and byte arrays are preceded by their length,
+ * and a block is written as its file id in the log manager's
+ * file dictionary followed by its block number.
+ * <p>
+ * A buffer is used either to build a new record
+ * or to read the values of an existing one, in order.
+ */
+class LogRecordBuffer {
+   private LogMgr lm;
+   private byte[] bytes;
+   private int pos = 0;
+
+   /**
+    * Create an empty buffer for building a log record.
+    * @param lm the log manager, used to look up file ids
+    */
+   public LogRecordBuffer(LogMgr lm) {
+      this.lm = lm;
+      bytes = new byte[32];
+   }
+
+   /**
+    * Create a buffer for reading the specified log record.
+    * @param lm the log manager, used to look up file names
+    * @param bytes the bytes of the log record
+    */
+   public LogRecordBuffer(LogMgr lm, byte[] bytes) {
+      this.lm = lm;
+      this.bytes = bytes;
+   }
+
+   public void writeOp(int op) {
+      ensure(1);
+      bytes[pos++] = (byte) op;
+   }
+
+   public void writeInt(int n) {
+      ensure(5);
+      int v = (n << 1) ^ (n >> 31);
+      while ((v & ~0x7F) != 0) {
+         bytes[pos++] = (byte) ((v & 0x7F) | 0x80);
+         v >>>= 7;
+      }
+      bytes[pos++] = (byte) v;
+   }
+
+   public void writeLong(long n) {
+      ensure(10);
+      long v = (n << 1) ^ (n >> 63);
+      while ((v & ~0x7FL) != 0) {
+         bytes[pos++] = (byte) ((v & 0x7F) | 0x80);
+         v >>>= 7;
+      }
+      bytes[pos++] = (byte) v;
+   }
+
+   public void writeBytes(byte[] b) {
+      writeInt(b.length);
+      ensure(b.length);
+      System.arraycopy(b, 0, bytes, pos, b.length);
+      pos += b.length;
+   }
+
+   public void writeString(String s) {
+      writeBytes(s.getBytes(Page.CHARSET));
+   }
+
+   public void writeBlock(BlockId blk) {
+      writeInt(lm.fileId(blk.fileName()));
+      writeInt(blk.number());
+   }
+
+   public int readOp() {
+      return bytes[pos++] & 0xFF;
+   }
+
+   public int readInt() {
+      int v = 0;
+      int shift = 0;
+      byte b;
+      do {
+         b = bytes[pos++];
+         v |= (b & 0x7F) << shift;
+         shift += 7;
+      } while ((b & 0x80) != 0);
+      return (v >>> 1) ^ -(v & 1);
+   }
+
+   public long readLong() {
+      long v = 0;
+      int shift = 0;
+      byte b;
+      do {
+         b = bytes[pos++];
+         v |= (long) (b & 0x7F) << shift;
+         shift += 7;
+      } while ((b & 0x80) != 0);
+      return (v >>> 1) ^ -(v & 1);
+   }
+
+   public byte[] readBytes() {
+      int length = readInt();
+      byte[] b = Arrays.copyOfRange(bytes, pos, pos + length);
+      pos += length;
+      return b;
+   }
+
+   public String readString() {
+      return new String(readBytes(), Page.CHARSET);
+   }
+
+   public BlockId readBlock() {
+      String filename = lm.fileName(readInt());
+      int blknum = readInt();
+      return new BlockId(filename, blknum);
+   }
+
+   /**
+    * Append the built record to the log.
+    * @return the LSN of the record
+    */
+   public long append() {
+      return lm.append(Arrays.copyOf(bytes, pos));
+   }
+
+   private void ensure(int n) {
+      if (pos + n > bytes.length)
+         bytes = Arrays.copyOf(bytes, Math.max(2*bytes.length, pos + n));
+   }
+}
@@ -0,0 +1,85 @@
+package simpledb.tx.recovery;
+
+import simpledb.file.*;
+import simpledb.log.LogMgr;
+import simpledb.tx.Transaction;
+
+/**
+ * The NEWPAGE log record, which is written when a bulk load
+ * stores the image of a whole page in a block that it has
+ * just appended to a table.
+ * The before-image of such a block is an empty page of zeros,
+ * so the record holds no image at all: a single small record
+ * replaces the slot records of every record in the page.
+ */
+public class NewPageRecord implements LogRecord {
+   private int txnum, size;
+   private long prevlsn;
+   private BlockId blk;
+
+   /**
+    * Create a new newpage log record.
+    * @param buf the buffer containing the log values
+    */
+   public NewPageRecord(LogRecordBuffer buf) {
+      txnum = buf.readInt();
+      prevlsn = buf.readLong();
+      blk = buf.readBlock();
+      size = buf.readInt();
+   }
+
+   public int op() {
+      return NEWPAGE;
+   }
+
+   public int txNumber() {
+      return txnum;
+   }
+
+   public long prevLSN() {
+      return prevlsn;
+   }
+
+   public String toString() {
+      return "<NEWPAGE " + txnum + " " + blk + ">";
+   }
+
+   /**
+    * Empty the block again.
+    * The method pins a buffer to the specified block,
+    * overwrites the whole page with zeros, which is
+    * a page whose slots are all empty, and unpins the buffer.
+    * @see simpledb.tx.recovery.LogRecord#undo(Transaction)
+    */
+   public void undo(Transaction tx) {
+      tx.pin(blk);
+      tx.setBytes(blk, 0, new byte[size]); // the undo is not logged
+      tx.unpin(blk);
+   }
+
+   public BlockId block() {
+      return blk;
+   }
+
+   public void undo(Page p) {
+      p.setRawBytes(0, new byte[size]);
+   }
+
+   /**
+    * A static method to write a newpage record to the log.
+    * This log record contains the NEWPAGE operator,
+    * followed by the transaction id, the LSN of the
+    * transaction's previous log record, the file id and
+    * number of the new block, and the size of the page.
+    * @return the LSN of the last log value
+    */
+   public static long writeToLog(LogMgr lm, int txnum, long prevlsn, BlockId blk, int size) {
+      LogRecordBuffer buf = new LogRecordBuffer(lm);
+      buf.writeOp(NEWPAGE);
+      buf.writeInt(txnum);
+      buf.writeLong(prevlsn);
+      buf.writeBlock(blk);
+      buf.writeInt(size);
+      return buf.append();
+   }
+}
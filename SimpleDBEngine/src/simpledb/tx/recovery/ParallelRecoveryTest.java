@@ -0,0 +1,100 @@
+package simpledb.tx.recovery;
+
+import java.io.File;
+import java.util.*;
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+import simpledb.tx.Transaction;
+
+/**
+ * Tests recovery with several worker threads.
+ * The program first runs itself in a separate process, which
+ * writes to many blocks in transactions that commit, roll back
+ * or never complete, and then halts as if it had crashed.
+ * The program then recovers the database with a pool of
+ * workers, and checks that only the changes of the
+ * incomplete transaction were undone.
+ */
+public class ParallelRecoveryTest {
+   private static final String DIRNAME = "parallelrecoverytest";
+   private static final int BLOCKS = 40, VALUES = 20, WORKERS = 4;
+   private static SimpleDB db;
+
+   public static void main(String[] args) throws Exception {
+      if (args.length > 0 && args[0].equals("crash")) {
+         crash();
+         return;
+      }
+      String java = System.getProperty("java.home") + File.separator + "bin"
+                    + File.separator + "java";
+      Process p = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                                     ParallelRecoveryTest.class.getName(), "crash")
+                  .inheritIO().start();
+      p.waitFor();
+
+      db = new SimpleDB(DIRNAME, 400, 8);
+      Transaction tx = db.newTx();
+      tx.recover(WORKERS);
+
+      // Even blocks hold the committed values,
+      // and odd blocks those of the later committed transaction.
+      FileMgr fm = db.fileMgr();
+      Page page = new Page(fm.blockSize());
+      int wrong = 0;
+      for (int b=0; b<BLOCKS; b++) {
+         fm.read(new BlockId("testfile", b), page);
+         int expected = (b % 2 == 0) ? b : -b;
+         for (int i=0; i<VALUES; i++)
+            if (page.getInt(i * Integer.BYTES) != expected + i)
+               wrong++;
+      }
+      System.out.println("After recovery with " + WORKERS + " workers: "
+                         + wrong + " wrong values (expected 0)");
+   }
+
+   private static void crash() {
+      db = new SimpleDB(DIRNAME, 400, 8);
+      Transaction tx1 = db.newTx();
+      write(tx1, 0, 1, 0, false);
+      tx1.commit();
+
+      // tx2 never completes; tx3 commits and tx4 rolls back.
+      Transaction tx2 = db.newTx();
+      Transaction tx3 = db.newTx();
+      write(tx2, 0, 2, 1000, true);
+      write(tx3, 1, 2, 0, true);
+      tx3.commit();
+      Transaction tx4 = db.newTx();
+      write(tx4, 1, 2, 2000, true);
+      tx4.rollback();
+      write(tx2, 1, 4, 3000, true);
+      flushUncommitted();
+      Runtime.getRuntime().halt(0);
+   }
+
+   // Write the buffers of the transactions that have not completed.
+   private static void flushUncommitted() {
+      Set<Integer> finished = new HashSet<>();
+      Iterator<byte[]> iter = db.logMgr().iterator();
+      while (iter.hasNext()) {
+         LogRecord rec = LogRecord.createLogRecord(iter.next(), db.logMgr());
+         if (rec.op() == LogRecord.COMMIT || rec.op() == LogRecord.ROLLBACK)
+            finished.add(rec.txNumber());
+         else if (rec.op() == LogRecord.START && !finished.contains(rec.txNumber()))
+            db.bufferMgr().flushAll(rec.txNumber());
+      }
+   }
+
+   // Write to every step-th block, starting at the specified one.
+   // A value of 0 writes the block's default values.
+   private static void write(Transaction tx, int start, int step, int val, boolean okToLog) {
+      for (int b=start; b<BLOCKS; b+=step) {
+         BlockId blk = new BlockId("testfile", b);
+         int base = (val != 0) ? val : (b % 2 == 0) ? b : -b;
+         tx.pin(blk);
+         for (int i=0; i<VALUES; i++)
+            tx.setInt(blk, i * Integer.BYTES, base + i, okToLog);
+         tx.unpin(blk);
+      }
+   }
+}
@@ -1,6 +1,7 @@
 package simpledb.tx.recovery;
 
 import java.util.*;
+import java.util.concurrent.*;
 import simpledb.file.*;
 import simpledb.log.*;
 import simpledb.buffer.*;
@@ -12,10 +13,13 @@ import static simpledb.tx.recovery.LogRecord.*;
  * @author Edward Sciore
  */
 public class RecoveryMgr {
+   private static final int BLOCKS_PER_WORKER = 16;
    private LogMgr lm;
    private BufferMgr bm;
    private Transaction tx;
    private int txnum;
+   private volatile long lastlsn;
+   private Map<BlockId,Set<Integer>> loggedslots = new HashMap<>();
 
    /**
     * Create a recovery manager for the specified transaction.
@@ -26,16 +30,36 @@ public class RecoveryMgr {
       this.txnum = txnum;
       this.lm = lm;
       this.bm = bm;
-      StartRecord.writeToLog(lm, txnum);
+      lastlsn = StartRecord.writeToLog(lm, txnum);
    }
 
    /**
     * Write a commit record to the log, and flushes it to disk.
     */
    public void commit() {
+      commit(true);
+   }
+
+   /**
+    * Write a commit record to the log.
+    * The transaction's modified buffers are always flushed first,
+    * synchronous or not, since recovery has no redo phase
+    * to rewrite them.
+    * If the commit is synchronous, the commit record is then
+    * flushed to disk before the method returns; otherwise
+    * the log manager's background flusher writes it shortly after,
+    * and asynchronous commit saves only that one log write.
+    * An asynchronous commit that is lost in a crash is
+    * undone by recovery like any uncommitted transaction.
+    * @param synchronous whether to wait for the commit record to reach disk
+    */
+   public void commit(boolean synchronous) {
       bm.flushAll(txnum);
-      int lsn = CommitRecord.writeToLog(lm, txnum);
-      lm.flush(lsn);
+      long lsn = CommitRecord.writeToLog(lm, txnum);
+      if (synchronous)
+         lm.flush(lsn);
+      else
+         lm.flushAsync(lsn);
    }
 
    /**
@@ -44,7 +68,7 @@ public class RecoveryMgr {
    public void rollback() {
       doRollback();
       bm.flushAll(txnum);
-      int lsn = RollbackRecord.writeToLog(lm, txnum);
+      long lsn = RollbackRecord.writeToLog(lm, txnum);
       lm.flush(lsn);
    }
 
@@ -55,7 +79,25 @@ public class RecoveryMgr {
    public void recover() {
       doRecover();
       bm.flushAll(txnum);
-      int lsn = CheckpointRecord.writeToLog(lm);
+      long lsn = CheckpointRecord.writeToLog(lm);
+      lm.flush(lsn);
+   }
+
+   /**
+    * Recover uncompleted transactions from the log,
+    * using up to the specified number of worker threads
+    * depending on how many blocks must be undone,
+    * and then write a quiescent checkpoint record to the log and flush it.
+    * @param nworkers the maximum number of recovery threads
+    */
+   public void recover(int nworkers) {
+      if (nworkers <= 1) {
+         recover();
+         return;
+      }
+      doParallelRecover(nworkers);
+      bm.flushAll(txnum);
+      long lsn = CheckpointRecord.writeToLog(lm);
       lm.flush(lsn);
    }
 
@@ -65,10 +107,11 @@ public class RecoveryMgr {
     * @param offset the offset of the value in the page
     * @param newval the value to be written
     */
-   public int setInt(Buffer buff, int offset, int newval) {
+   public long setInt(Buffer buff, int offset, int newval) {
       int oldval = buff.contents().getInt(offset);
       BlockId blk = buff.block();
-      return SetIntRecord.writeToLog(lm, txnum, blk, offset, oldval);
+      lastlsn = SetIntRecord.writeToLog(lm, txnum, lastlsn, blk, offset, oldval);
+      return lastlsn;
    }
 
    /**
@@ -77,29 +120,90 @@ public class RecoveryMgr {
     * @param offset the offset of the value in the page
     * @param newval the value to be written
     */
-   public int setString(Buffer buff, int offset, String newval) {
+   public long setString(Buffer buff, int offset, String newval) {
       String oldval = buff.contents().getString(offset);
       BlockId blk = buff.block();
-      return SetStringRecord.writeToLog(lm, txnum, blk, offset, oldval);
+      lastlsn = SetStringRecord.writeToLog(lm, txnum, lastlsn, blk, offset, oldval);
+      return lastlsn;
    }
 
    /**
-    * Rollback the transaction, by iterating
-    * through the log records until it finds 
+    * Write a slot record to the log, if necessary, and return its lsn.
+    * The before-image of a slot only needs to be logged the first
+    * time the transaction changes that slot: undoing that record
+    * also undoes every later change to the slot, so the method
+    * writes nothing (and returns -1) for subsequent changes.
+    * For a RECINSERT, only the slot's flag is saved,
+    * because the rest of an empty slot is meaningless.
+    * @param op one of RECINSERT, RECDELETE or RECUPDATE
+    * @param buff the buffer containing the page
+    * @param offset the offset of the slot in the page
+    * @param slotsize the size of the slot, in bytes
+    */
+   public long logSlot(int op, Buffer buff, int offset, int slotsize) {
+      BlockId blk = buff.block();
+      Set<Integer> slots = loggedslots.computeIfAbsent(blk, b -> new HashSet<>());
+      if (!slots.add(offset))
+         return -1;
+      int len = (op == RECINSERT) ? Integer.BYTES : slotsize;
+      byte[] image = buff.contents().getRawBytes(offset, len);
+      lastlsn = SlotRecord.writeToLog(lm, op, txnum, lastlsn, blk, offset, image);
+      return lastlsn;
+   }
+
+   /**
+    * Write a newpage record to the log and return its lsn.
+    * The record is written once for a block that the
+    * transaction has appended and is about to fill with
+    * the image of a whole page.
+    * @param buff the buffer containing the page
+    * @param size the size of the page, in bytes
+    */
+   public long logNewPage(Buffer buff, int size) {
+      lastlsn = NewPageRecord.writeToLog(lm, txnum, lastlsn, buff.block(), size);
+      return lastlsn;
+   }
+
+   /**
+    * Undo the transaction's changes to the block on a page
+    * holding a copy of its contents, by following the chain
+    * of the transaction's log records backwards as
+    * a rollback does. Neither the buffer nor the log
+    * is modified, so a snapshot can use this method to remove
+    * the writes of a transaction that is still running.
+    * @param blk the block
+    * @param p the copy of the block's contents
+    */
+   public void undo(BlockId blk, Page p) {
+      long lsn = lastlsn;
+      while (lsn >= 0) {
+         LogRecord rec = LogRecord.createLogRecord(lm.read(lsn), lm);
+         if (rec.op() == START)
+            return;
+         if (blk.equals(rec.block()))
+            rec.undo(p);
+         lsn = rec.prevLSN();
+      }
+   }
+
+   /**
+    * Rollback the transaction, by following the chain
+    * of the transaction's log records backwards
+    * from its most recent record until it finds
     * the transaction's START record,
-    * calling undo() for each of the transaction's
-    * log records.
+    * calling undo() for each record on the chain.
+    * Each record is read directly by its LSN, so the
+    * log records of other transactions are never examined.
     */
    private void doRollback() {
-      Iterator<byte[]> iter = lm.iterator();
-      while (iter.hasNext()) {
-         byte[] bytes = iter.next();
-         LogRecord rec = LogRecord.createLogRecord(bytes); 
-         if (rec.txNumber() == txnum) {
-            if (rec.op() == START)
-               return;
-            rec.undo(tx);
-         }
+      long lsn = lastlsn;
+      while (lsn >= 0) {
+         byte[] bytes = lm.read(lsn);
+         LogRecord rec = LogRecord.createLogRecord(bytes, lm);
+         if (rec.op() == START)
+            return;
+         rec.undo(tx);
+         lsn = rec.prevLSN();
       }
    }
 
@@ -116,7 +220,7 @@ public class RecoveryMgr {
       Iterator<byte[]> iter = lm.iterator();
       while (iter.hasNext()) {
          byte[] bytes = iter.next();
-         LogRecord rec = LogRecord.createLogRecord(bytes);
+         LogRecord rec = LogRecord.createLogRecord(bytes, lm);
          if (rec.op() == CHECKPOINT)
             return;
          if (rec.op() == COMMIT || rec.op() == ROLLBACK)
@@ -125,4 +229,79 @@ public class RecoveryMgr {
             rec.undo(tx);
       }
    }
+
+   /**
+    * Do a complete database recovery in two phases.
+    * The first phase iterates through the log records
+    * (stopping at a CHECKPOINT record or the end of the log)
+    * and gathers the undo records of unfinished transactions
+    * into a work list for each block, most recent record first.
+    * The second phase partitions the blocks among a pool of
+    * worker threads. Since each block belongs to exactly one
+    * worker, the workers can undo their records directly on
+    * the buffer pages without locking, and each block is pinned
+    * only once no matter how many records modified it.
+    * The pool has one worker per BLOCKS_PER_WORKER blocks
+    * to undo, up to the specified number; if a single worker
+    * suffices, as after a clean shutdown, no pool is created
+    * and the blocks are undone by the calling thread.
+    * @param nworkers the maximum number of worker threads
+    */
+   private void doParallelRecover(int nworkers) {
+      Map<BlockId,List<LogRecord>> work = new LinkedHashMap<>();
+      Collection<Integer> finishedTxs = new HashSet<>();
+      Iterator<byte[]> iter = lm.iterator();
+      while (iter.hasNext()) {
+         byte[] bytes = iter.next();
+         LogRecord rec = LogRecord.createLogRecord(bytes, lm);
+         if (rec.op() == CHECKPOINT)
+            break;
+         if (rec.op() == COMMIT || rec.op() == ROLLBACK)
+            finishedTxs.add(rec.txNumber());
+         else if (!finishedTxs.contains(rec.txNumber()) && rec.block() != null)
+            work.computeIfAbsent(rec.block(), b -> new ArrayList<>()).add(rec);
+      }
+
+      int needed = (work.size() + BLOCKS_PER_WORKER - 1) / BLOCKS_PER_WORKER;
+      nworkers = Math.max(1, Math.min(nworkers, Math.min(needed, bm.available())));
+      if (nworkers == 1) {
+         undoBlocks(new ArrayList<>(work.keySet()), work);
+         return;
+      }
+      List<List<BlockId>> partitions = new ArrayList<>();
+      for (int i=0; i<nworkers; i++)
+         partitions.add(new ArrayList<>());
+      for (BlockId blk : work.keySet())
+         partitions.get((blk.hashCode() & Integer.MAX_VALUE) % nworkers).add(blk);
+
+      ExecutorService pool = Executors.newFixedThreadPool(nworkers);
+      try {
+         List<Future<?>> results = new ArrayList<>();
+         for (List<BlockId> blocks : partitions)
+            results.add(pool.submit(() -> undoBlocks(blocks, work)));
+         for (Future<?> f : results)
+            f.get();
+      }
+      catch(InterruptedException | ExecutionException e) {
+         throw new RuntimeException("recovery failed", e);
+      }
+      finally {
+         pool.shutdown();
+      }
+   }
+
+   /**
+    * Undo the work list of each of the specified blocks.
+    * This method is executed by a recovery worker thread,
+    * or by the recovering thread if there is only one worker.
+    */
+   private void undoBlocks(List<BlockId> blocks, Map<BlockId,List<LogRecord>> work) {
+      for (BlockId blk : blocks) {
+         Buffer buff = bm.pin(blk);
+         for (LogRecord rec : work.get(blk))
+            rec.undo(buff.contents());
+         buff.setModified(txnum, -1);
+         bm.unpin(buff);
+      }
+   }
 }
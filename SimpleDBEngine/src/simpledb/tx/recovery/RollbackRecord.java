@@ -1,6 +1,5 @@
 package simpledb.tx.recovery;
 
-import simpledb.file.Page;
 import simpledb.log.LogMgr;
 import simpledb.tx.Transaction;
 
@@ -15,9 +14,8 @@ public class RollbackRecord implements LogRecord {
     * Create a RollbackRecord object.
     * @param txnum the ID of the specified transaction
     */
-   public RollbackRecord(Page p) {
-      int tpos = Integer.BYTES;
-      txnum = p.getInt(tpos);
+   public RollbackRecord(LogRecordBuffer buf) {
+      txnum = buf.readInt();
    }
 
    public int op() {
@@ -44,11 +42,10 @@ public class RollbackRecord implements LogRecord {
     * followed by the transaction id.
     * @return the LSN of the last log value
     */
-   public static int writeToLog(LogMgr lm, int txnum) {
-      byte[] rec = new byte[2*Integer.BYTES];
-      Page p = new Page(rec);
-      p.setInt(0, ROLLBACK);
-      p.setInt(Integer.BYTES, txnum);
-      return lm.append(rec);
+   public static long writeToLog(LogMgr lm, int txnum) {
+      LogRecordBuffer buf = new LogRecordBuffer(lm);
+      buf.writeOp(ROLLBACK);
+      buf.writeInt(txnum);
+      return buf.append();
    }
 }
@@ -0,0 +1,59 @@
+package simpledb.tx.recovery;
+
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+import simpledb.tx.Transaction;
+
+/**
+ * Rolls back a transaction whose log records are interleaved
+ * with those of another transaction, and checks that its
+ * changes are undone while the other transaction's are kept.
+ */
+public class RollbackTest {
+   private static final int VALUES = 50;
+
+   public static void main(String[] args) {
+      SimpleDB db = new SimpleDB("rollbacktest", 400, 8);
+      BlockId blk0 = new BlockId("testfile", 0);
+      BlockId blk1 = new BlockId("testfile", 1);
+
+      Transaction tx1 = db.newTx();
+      tx1.pin(blk0);
+      tx1.pin(blk1);
+      for (int i=0; i<VALUES; i++) {
+         tx1.setInt(blk0, i * Integer.BYTES, i, false);
+         tx1.setInt(blk1, i * Integer.BYTES, i, false);
+      }
+      tx1.setString(blk0, VALUES * Integer.BYTES, "abc", false);
+      tx1.commit();
+
+      Transaction tx2 = db.newTx();
+      Transaction tx3 = db.newTx();
+      tx2.pin(blk0);
+      tx3.pin(blk1);
+      for (int round=0; round<20; round++) {
+         for (int i=0; i<VALUES; i++) {
+            tx2.setInt(blk0, i * Integer.BYTES, 1000 + round, true);
+            tx3.setInt(blk1, i * Integer.BYTES, 2000 + i, true);
+         }
+         tx2.setString(blk0, VALUES * Integer.BYTES, "xyz" + round, true);
+      }
+      tx2.rollback();
+      tx3.commit();
+
+      Transaction tx4 = db.newTx();
+      tx4.pin(blk0);
+      tx4.pin(blk1);
+      int wrong = 0;
+      for (int i=0; i<VALUES; i++) {
+         if (tx4.getInt(blk0, i * Integer.BYTES) != i)
+            wrong++;
+         if (tx4.getInt(blk1, i * Integer.BYTES) != 2000 + i)
+            wrong++;
+      }
+      String s = tx4.getString(blk0, VALUES * Integer.BYTES);
+      tx4.commit();
+      System.out.println("After rollback: " + wrong + " wrong values (expected 0), "
+                         + "string " + s + " (expected abc)");
+   }
+}
@@ -6,24 +6,19 @@ import simpledb.tx.Transaction;
 
 public class SetIntRecord implements LogRecord {
    private int txnum, offset, val;
+   private long prevlsn;
    private BlockId blk;
 
    /**
     * Create a new setint log record.
-    * @param bb the bytebuffer containing the log values
+    * @param buf the buffer containing the log values
     */
-   public SetIntRecord(Page p) {
-      int tpos = Integer.BYTES;
-      txnum = p.getInt(tpos);
-      int fpos = tpos + Integer.BYTES;
-      String filename = p.getString(fpos);
-      int bpos = fpos + Page.maxLength(filename.length());
-      int blknum = p.getInt(bpos);
-      blk = new BlockId(filename, blknum);
-      int opos = bpos + Integer.BYTES;
-      offset = p.getInt(opos);
-      int vpos = opos + Integer.BYTES;      
-      val = p.getInt(vpos);
+   public SetIntRecord(LogRecordBuffer buf) {
+      txnum = buf.readInt();
+      prevlsn = buf.readLong();
+      blk = buf.readBlock();
+      offset = buf.readInt();
+      val = buf.readInt();
    }
 
    public int op() {
@@ -34,6 +29,10 @@ public class SetIntRecord implements LogRecord {
       return txnum;
    }
 
+   public long prevLSN() {
+      return prevlsn;
+   }
+
    public String toString() {
       return "<SETINT " + txnum + " " + blk + " " + offset + " " + val + ">";
    }
@@ -51,28 +50,31 @@ public class SetIntRecord implements LogRecord {
       tx.unpin(blk);
    }
 
+   public BlockId block() {
+      return blk;
+   }
+
+   public void undo(Page p) {
+      p.setInt(offset, val);
+   }
+
    /**
     * A static method to write a setInt record to the log.
     * This log record contains the SETINT operator,
-    * followed by the transaction id, the filename, number,
+    * followed by the transaction id, the LSN of the
+    * transaction's previous log record, the file id, number,
     * and offset of the modified block, and the previous
     * integer value at that offset.
     * @return the LSN of the last log value
     */
-   public static int writeToLog(LogMgr lm, int txnum, BlockId blk, int offset, int val) {
-      int tpos = Integer.BYTES;
-      int fpos = tpos + Integer.BYTES;
-      int bpos = fpos + Page.maxLength(blk.fileName().length());
-      int opos = bpos + Integer.BYTES;
-      int vpos = opos + Integer.BYTES;
-      byte[] rec = new byte[vpos + Integer.BYTES];
-      Page p = new Page(rec);
-      p.setInt(0, SETINT);
-      p.setInt(tpos, txnum);
-      p.setString(fpos, blk.fileName());
-      p.setInt(bpos, blk.number());
-      p.setInt(opos, offset);
-      p.setInt(vpos, val);
-      return lm.append(rec);
+   public static long writeToLog(LogMgr lm, int txnum, long prevlsn, BlockId blk, int offset, int val) {
+      LogRecordBuffer buf = new LogRecordBuffer(lm);
+      buf.writeOp(SETINT);
+      buf.writeInt(txnum);
+      buf.writeLong(prevlsn);
+      buf.writeBlock(blk);
+      buf.writeInt(offset);
+      buf.writeInt(val);
+      return buf.append();
    }
 }
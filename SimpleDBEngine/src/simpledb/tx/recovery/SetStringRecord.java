@@ -6,25 +6,20 @@ import simpledb.tx.Transaction;
 
 public class SetStringRecord implements LogRecord {
    private int txnum, offset;
+   private long prevlsn;
    private String val;
    private BlockId blk;
 
    /**
-    * Create a new setint log record.
-    * @param bb the bytebuffer containing the log values
+    * Create a new setstring log record.
+    * @param buf the buffer containing the log values
     */
-   public SetStringRecord(Page p) {
-      int tpos = Integer.BYTES;
-      txnum = p.getInt(tpos);
-      int fpos = tpos + Integer.BYTES;
-      String filename = p.getString(fpos);
-      int bpos = fpos + Page.maxLength(filename.length());
-      int blknum = p.getInt(bpos);
-      blk = new BlockId(filename, blknum);
-      int opos = bpos + Integer.BYTES;
-      offset = p.getInt(opos);
-      int vpos = opos + Integer.BYTES;      
-      val = p.getString(vpos);
+   public SetStringRecord(LogRecordBuffer buf) {
+      txnum = buf.readInt();
+      prevlsn = buf.readLong();
+      blk = buf.readBlock();
+      offset = buf.readInt();
+      val = buf.readString();
    }
 
    public int op() {
@@ -35,6 +30,10 @@ public class SetStringRecord implements LogRecord {
       return txnum;
    }
 
+   public long prevLSN() {
+      return prevlsn;
+   }
+
    public String toString() {
       return "<SETSTRING " + txnum + " " + blk + " " + offset + " " + val + ">";
    }
@@ -52,29 +51,31 @@ public class SetStringRecord implements LogRecord {
       tx.unpin(blk);
    }
 
+   public BlockId block() {
+      return blk;
+   }
+
+   public void undo(Page p) {
+      p.setString(offset, val);
+   }
+
    /**
     * A static method to write a setInt record to the log.
     * This log record contains the SETINT operator,
-    * followed by the transaction id, the filename, number,
+    * followed by the transaction id, the LSN of the
+    * transaction's previous log record, the file id, number,
     * and offset of the modified block, and the previous
     * integer value at that offset.
     * @return the LSN of the last log value
     */
-   public static int writeToLog(LogMgr lm, int txnum, BlockId blk, int offset, String val) {
-      int tpos = Integer.BYTES;
-      int fpos = tpos + Integer.BYTES;
-      int bpos = fpos + Page.maxLength(blk.fileName().length());
-      int opos = bpos + Integer.BYTES;
-      int vpos = opos + Integer.BYTES;
-      int reclen = vpos + Page.maxLength(val.length());
-      byte[] rec = new byte[reclen];
-      Page p = new Page(rec);
-      p.setInt(0, SETSTRING);
-      p.setInt(tpos, txnum);
-      p.setString(fpos, blk.fileName());
-      p.setInt(bpos, blk.number());
-      p.setInt(opos, offset);
-      p.setString(vpos, val);
-      return lm.append(rec);
+   public static long writeToLog(LogMgr lm, int txnum, long prevlsn, BlockId blk, int offset, String val) {
+      LogRecordBuffer buf = new LogRecordBuffer(lm);
+      buf.writeOp(SETSTRING);
+      buf.writeInt(txnum);
+      buf.writeLong(prevlsn);
+      buf.writeBlock(blk);
+      buf.writeInt(offset);
+      buf.writeString(val);
+      return buf.append();
    }
 }
\ No newline at end of file
@@ -0,0 +1,93 @@
+package simpledb.tx.recovery;
+
+import simpledb.file.*;
+import simpledb.log.LogMgr;
+import simpledb.tx.Transaction;
+
+/**
+ * The RECINSERT, RECDELETE and RECUPDATE log records.
+ * Unlike SETINT and SETSTRING, which describe a single value,
+ * these records describe a change to an entire record slot:
+ * they hold the before-image of the bytes that the change affects.
+ * A RECINSERT record only needs the slot's empty/inuse flag,
+ * whereas the other two hold the image of the whole slot.
+ */
+public class SlotRecord implements LogRecord {
+   private int op, txnum, offset;
+   private long prevlsn;
+   private BlockId blk;
+   private byte[] image;
+
+   /**
+    * Create a new slot log record.
+    * @param op the operator of the record
+    * @param buf the buffer containing the log values
+    */
+   public SlotRecord(int op, LogRecordBuffer buf) {
+      this.op = op;
+      txnum = buf.readInt();
+      prevlsn = buf.readLong();
+      blk = buf.readBlock();
+      offset = buf.readInt();
+      image = buf.readBytes();
+   }
+
+   public int op() {
+      return op;
+   }
+
+   public int txNumber() {
+      return txnum;
+   }
+
+   public long prevLSN() {
+      return prevlsn;
+   }
+
+   public String toString() {
+      String name = (op == RECINSERT) ? "RECINSERT"
+                  : (op == RECDELETE) ? "RECDELETE" : "RECUPDATE";
+      return "<" + name + " " + txnum + " " + blk + " " + offset + " " + image.length + ">";
+   }
+
+   /**
+    * Restore the saved before-image of the slot.
+    * The method pins a buffer to the specified block,
+    * writes the saved bytes back at the slot's offset,
+    * and unpins the buffer.
+    * @see simpledb.tx.recovery.LogRecord#undo(Transaction)
+    */
+   public void undo(Transaction tx) {
+      tx.pin(blk);
+      tx.undoBytes(blk, offset, image); // the undo is not logged
+      tx.unpin(blk);
+   }
+
+   public BlockId block() {
+      return blk;
+   }
+
+   public void undo(Page p) {
+      p.setRawBytes(offset, image);
+   }
+
+   /**
+    * A static method to write a slot record to the log.
+    * This log record contains the operator,
+    * followed by the transaction id, the LSN of the
+    * transaction's previous log record, the file id and number
+    * of the modified block, the offset of the slot,
+    * and the before-image of the affected bytes.
+    * @return the LSN of the last log value
+    */
+   public static long writeToLog(LogMgr lm, int op, int txnum, long prevlsn, BlockId blk, int offset, byte[] image) {
+      LogRecordBuffer buf = new LogRecordBuffer(lm);
+      buf.writeOp(op);
+      buf.writeInt(txnum);
+      buf.writeLong(prevlsn);
+      buf.writeBlock(blk);
+      buf.writeInt(offset);
+      buf.writeBytes(image);
+      return buf.append();
+   }
+}
@@ -0,0 +1,123 @@
+package simpledb.tx.recovery;
+
+import java.io.File;
+import java.util.Iterator;
+import simpledb.server.SimpleDB;
+import simpledb.tx.Transaction;
+import simpledb.plan.Planner;
+import simpledb.query.Scan;
+
+/**
+ * Tests the slot log records of the record pages.
+ * The program first runs itself in a separate process,
+ * which loads a table of each layout, modifies them in a
+ * transaction that never completes, and then halts as if it
+ * had crashed. The recovery of the database must undo every
+ * insertion, deletion and update of that transaction.
+ * The program then checks that a rollback undoes the same
+ * kinds of changes, and that an insertion writes a
+ * single log record per row.
+ */
+public class SlotRecoveryTest {
+   private static final String DIRNAME = "slotrecoverytest";
+   private static final String[] LAYOUTS = {"fixed", "slotted", "pax"};
+   private static SimpleDB db;
+   private static Planner planner;
+
+   public static void main(String[] args) throws Exception {
+      if (args.length > 0 && args[0].equals("crash")) {
+         crash();
+         return;
+      }
+      deleteDirectory(new File(DIRNAME));
+      String java = System.getProperty("java.home") + File.separator + "bin"
+                    + File.separator + "java";
+      Process p = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                                     SlotRecoveryTest.class.getName(), "crash")
+                  .inheritIO().start();
+      p.waitFor();
+
+      db = new SimpleDB(DIRNAME);
+      planner = db.planner();
+      Transaction tx = db.newTx();
+      for (String layout : LAYOUTS)
+         check(tx, "After recovery", layout);
+      tx.commit();
+
+      tx = db.newTx();
+      for (String layout : LAYOUTS)
+         modify(tx, layout);
+      tx.rollback();
+      tx = db.newTx();
+      for (String layout : LAYOUTS)
+         check(tx, "After rollback", layout);
+      tx.commit();
+
+      tx = db.newTx();
+      for (int i=0; i<50; i++)
+         planner.executeUpdate("insert into Tfixed(id, name) values (" + (500 + i)
+                               + ", 'new" + i + "')", tx);
+      int records = 0;
+      Iterator<byte[]> iter = db.logMgr().iterator();
+      while (iter.hasNext()) {
+         LogRecord rec = LogRecord.createLogRecord(iter.next(), db.logMgr());
+         if (rec.txNumber() == tx.txNum() && rec.op() != LogRecord.START)
+            records++;
+      }
+      tx.rollback();
+      System.out.println("50 insertions wrote " + records + " log records (expected 50)");
+   }
+
+   // Load the tables, then halt in the middle of a transaction.
+   private static void crash() {
+      db = new SimpleDB(DIRNAME);
+      planner = db.planner();
+      Transaction tx = db.newTx();
+      for (String layout : LAYOUTS) {
+         planner.executeUpdate("create table T" + layout + "(id int, name varchar(30))"
+                               + " with (layout='" + layout + "')", tx);
+         for (int i=0; i<100; i++)
+            planner.executeUpdate("insert into T" + layout + "(id, name) values ("
+                                  + i + ", 'n" + i + "')", tx);
+      }
+      tx.commit();
+
+      tx = db.newTx();
+      for (String layout : LAYOUTS)
+         modify(tx, layout);
+      db.bufferMgr().flushAll(tx.txNum());
+      Runtime.getRuntime().halt(0);
+   }
+
+   private static void modify(Transaction tx, String layout) {
+      String tblname = "T" + layout;
+      planner.executeUpdate("update " + tblname + " set name = 'a much longer name'"
+                            + " where id < 60", tx);
+      planner.executeUpdate("delete from " + tblname + " where id >= 80", tx);
+      for (int i=200; i<230; i++)
+         planner.executeUpdate("insert into " + tblname + "(id, name) values ("
+                               + i + ", 'x" + i + "')", tx);
+   }
+
+   // Every original record must be present and unchanged.
+   private static void check(Transaction tx, String msg, String layout) {
+      Scan s = planner.createQueryPlan("select id, name from T" + layout, tx).open();
+      int count = 0, wrong = 0;
+      while (s.next()) {
+         count++;
+         if (!s.getString("name").equals("n" + s.getInt("id")))
+            wrong++;
+      }
+      s.close();
+      System.out.println(msg + ", " + layout + " layout: " + count + " records (expected 100), "
+                         + wrong + " wrong (expected 0)");
+   }
+
+   private static void deleteDirectory(File dir) {
+      File[] files = dir.listFiles();
+      if (files != null)
+         for (File f : files)
+            f.delete();
+      dir.delete();
+   }
+}
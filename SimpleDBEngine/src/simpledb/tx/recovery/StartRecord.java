@@ -1,6 +1,5 @@
 package simpledb.tx.recovery;
 
-import simpledb.file.Page;
 import simpledb.log.LogMgr;
 import simpledb.tx.Transaction;
 
@@ -9,11 +8,10 @@ public class StartRecord implements LogRecord {
    
    /**
     * Create a log record by reading one other value from the log.
-    * @param bb the bytebuffer containing the log values
+    * @param buf the buffer containing the log values
     */
-   public StartRecord(Page p) {
-      int tpos = Integer.BYTES;
-      txnum = p.getInt(tpos);
+   public StartRecord(LogRecordBuffer buf) {
+      txnum = buf.readInt();
    }
    
    public int op() {
@@ -40,11 +38,10 @@ public class StartRecord implements LogRecord {
     * followed by the transaction id.
     * @return the LSN of the last log value
     */
-   public static int writeToLog(LogMgr lm, int txnum) {
-      byte[] rec = new byte[2*Integer.BYTES];
-      Page p = new Page(rec);
-      p.setInt(0, START);
-      p.setInt(Integer.BYTES, txnum);
-      return lm.append(rec);
+   public static long writeToLog(LogMgr lm, int txnum) {
+      LogRecordBuffer buf = new LogRecordBuffer(lm);
+      buf.writeOp(START);
+      buf.writeInt(txnum);
+      return buf.append();
    }
 }